@@ -0,0 +1,95 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets a request that the client has given up on stop early.  The code
+ * serving a request runs between {@link #begin} and {@link #end}; long
+ * loops call {@link #checkpoint} now and then, which throws
+ * <code>CancellationException</code> once the request has been
+ * cancelled, so the work stops and no stale answer is printed.
+ *
+ * <p>Cancelling only sets a flag; it does not interrupt the thread, since
+ * an interrupt closes any <code>FileChannel</code> the thread is reading,
+ * such as a shared member store.  A checkpoint also stops a request whose
+ * thread was interrupted by someone else.  Outside a request, checkpoints
+ * do nothing.</p>
+ */
+public class Cancellation {
+
+    private static final ThreadLocal<Cancellation> current = new ThreadLocal<>();
+
+    private volatile boolean cancelled;
+
+    /**
+     * Cancels the request.  Its next checkpoint throws, or, if it has not
+     * started, it is not run.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether the request has been cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Starts serving a request on the calling thread.
+     *
+     * @param request the request's token
+     */
+    public static void begin(Cancellation request) {
+        current.set(request);
+    }
+
+    /**
+     * Ends the request served on the calling thread.
+     */
+    public static void end() {
+        current.remove();
+    }
+
+    /**
+     * Returns whether the request served on the calling thread has been
+     * cancelled.
+     *
+     * @return false outside a request
+     */
+    public static boolean isCurrentCancelled() {
+        Cancellation request = current.get();
+        return request != null && request.cancelled;
+    }
+
+    /**
+     * Stops the request served on the calling thread if it has been
+     * cancelled.
+     *
+     * @exception CancellationException if it has been cancelled, or its
+     * thread interrupted
+     */
+    public static void checkpoint() {
+        Cancellation request = current.get();
+        if (request != null && (request.cancelled || Thread.currentThread().isInterrupted())) {
+            throw new CancellationException("Request cancelled");
+        }
+    }
+}
@@ -93,6 +93,40 @@ public interface Connection {
    * @param statement a <code>String</code> value
    */
   void evalBshScript(String statement) throws Throwable;
+
+  /**
+   * Turn multiplexed mode on or off.  In multiplexed mode, a call from
+   * Emacs into Java returns at once and runs on a worker thread; its
+   * answer is written when it finishes, as
+   * <code>(jdee-juci-response ID RESULT)</code>, or as
+   * <code>(jdee-juci-error ID "MESSAGE")</code> if it throws.  Answers
+   * come in the order the calls finish.
+   *
+   * @param multiplexed true for multiplexed mode
+   */
+  void setMultiplexed(boolean multiplexed);
+
+  /**
+   * Returns a view of this connection whose calls, in multiplexed mode,
+   * are answered tagged with <code>id</code>, as in
+   * <code>juciConn.withRequestId(7).complete(...)</code>.  Calls made on
+   * the connection itself are numbered by the connection.
+   *
+   * @param id a request ID chosen by Emacs
+   * @return a proxy implementing the same interfaces as the connection
+   */
+  Connection withRequestId(int id);
+
+  /**
+   * Cancel a call made in multiplexed mode, because Emacs no longer wants
+   * its answer.  The call stops at its next {@link Cancellation}
+   * checkpoint, or is not started if it is still waiting for a worker,
+   * and no answer is written for it.  Does nothing if the call has
+   * already been answered.
+   *
+   * @param id the request ID of the call
+   */
+  void cancelRequest(int id);
 }
 
 // Connection.java ends here
@@ -85,7 +85,7 @@ public class ConnectionFactory {
       assertInterface(proxyInterfaces[i], false);
     }
 
-    Set ifcs  = new HashSet();
+    Set<Class<?>> ifcs = new HashSet<>();
     Map impls = new HashMap();
 
     for (int i = 0; i < proxyInterfaces.length; i++) {
@@ -94,9 +94,7 @@ public class ConnectionFactory {
 
     addInterfaces(ifcs, impls, Connection.class, null);
 
-    return (Connection) Proxy.newProxyInstance(getClassLoader(),
-                                               (Class[]) ifcs.toArray(new Class[ifcs.size()]),
-                                               getCurrentImpl(global, impls, connVarName, true));
+    return newProxy(ifcs, getCurrentImpl(global, impls, connVarName, true));
   }
 
   /**
@@ -112,14 +110,12 @@ public class ConnectionFactory {
 
     assertInterface(proxyInterface, true);
 
-    Set ifcs  = new HashSet();
+    Set<Class<?>> ifcs = new HashSet<>();
     Map impls = new HashMap();
 
     addInterfaces(ifcs, impls, proxyInterface, proxyInterface);
     addInterfaces(ifcs, impls, Connection.class, null);
-    return (Connection) Proxy.newProxyInstance(getClassLoader(),
-                                               (Class[]) ifcs.toArray(new Class[ifcs.size()]),
-                                               getCurrentImpl(null, impls, null, false));
+    return newProxy(ifcs, getCurrentImpl(null, impls, null, false));
   }
 
   /**
@@ -137,7 +133,7 @@ public class ConnectionFactory {
       assertInterface(proxyInterfaces[i], true);
     }
 
-    Set ifcs  = new HashSet();
+    Set<Class<?>> ifcs = new HashSet<>();
     Map impls = new HashMap();
 
     for (int i = 0; i < proxyInterfaces.length; i++) {
@@ -145,9 +141,7 @@ public class ConnectionFactory {
     }
 
     addInterfaces(ifcs, impls, Connection.class, null);
-    return (Connection) Proxy.newProxyInstance(getClassLoader(),
-                                               (Class[]) ifcs.toArray(new Class[ifcs.size()]),
-                                               getCurrentImpl(null, impls, null, false));
+    return newProxy(ifcs, getCurrentImpl(null, impls, null, false));
   }
 
   /**
@@ -166,7 +160,15 @@ public class ConnectionFactory {
     return null;
   }
 
-  private static void addInterfaces(Set ifaces, Map impls, Class proxyClass, Class implClass) {
+  // Creates the proxy and fills in the connection's dispatch table for it
+  private static Connection newProxy(Set<Class<?>> ifcs, ConnectionImpl impl) {
+    impl.prepare(ifcs);
+    return (Connection) Proxy.newProxyInstance(getClassLoader(),
+                                               ifcs.toArray(new Class<?>[ifcs.size()]),
+                                               impl);
+  }
+
+  private static void addInterfaces(Set<Class<?>> ifaces, Map impls, Class proxyClass, Class implClass) {
     if (proxyClass.isInterface()) {
       // add the java-to-elisp bridge interface
       ifaces.add(proxyClass);
@@ -209,7 +211,7 @@ public class ConnectionFactory {
     return connimpl;
   }
 
-  private static ClassLoader getClassLoader() {
+  static ClassLoader getClassLoader() {
     ClassLoader loader = Thread.currentThread().getContextClassLoader();
 
     if (loader == null) {
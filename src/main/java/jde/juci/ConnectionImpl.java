@@ -24,10 +24,21 @@
 package jde.juci;
 
 import java.io.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import bsh.Interpreter;
 import bsh.NameSpace;
@@ -38,6 +49,16 @@ import bsh.This;
  * the two-way communication via a separate thread that invokes java code
  * called from Emacs.
  *
+ * <p>In multiplexed mode (see {@link Connection#setMultiplexed}), calls
+ * from Emacs into Java return at once and run on a pool of worker
+ * threads.  Each answer is written when its call finishes, as
+ * <code>(jdee-juci-response ID RESULT)</code> or
+ * <code>(jdee-juci-error ID "MESSAGE")</code>, where <code>ID</code> was
+ * given with the call, by making it through
+ * {@link Connection#withRequestId}.  A slow call then no longer holds up
+ * the ones after it.  Calls back into Emacs from
+ * the workers are made one at a time.</p>
+ *
  * @author <a href="mailto:nsieger@bitstream.net">Nick Sieger</a>
  * @version 1.0
  */
@@ -48,6 +69,24 @@ public class ConnectionImpl implements InvocationHandler, Connection {
 
   private Map cachedImplInstances  = new HashMap();
 
+  // How each proxy method is handled, filled in by prepare
+  private final Map<Method, Target> targets = new ConcurrentHashMap<Method, Target>();
+
+  // The interfaces of every proxy made for this connection
+  private final Set<Class<?>> proxyInterfaces = new LinkedHashSet<>();
+
+  private static final Object[] NO_ARGS = new Object[0];
+
+  private static final Method EQUALS;
+
+  static {
+    try {
+      EQUALS = Object.class.getMethod("equals", Object.class);
+    } catch (NoSuchMethodException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
   private PrintWriter output       = new PrintWriter(System.out);
   private LispWriter  lispWriter   = new LispWriter(output);
   private LinkedList  resultStack  = new LinkedList();
@@ -57,11 +96,27 @@ public class ConnectionImpl implements InvocationHandler, Connection {
   private ThreadedInvoker invoker;
   private boolean threaded = true; // set to false for some unit tests
 
-  private Object monitor = new Object();
+  // Guards resultsPushed; signalled on every push
+  private final Object monitor = new Object();
+  private long resultsPushed = 0;
+
+  // Held while a lisp form is written, as workers write concurrently
+  private final Object outputLock = new Object();
+
+  // Held for the whole of a call into Emacs, so only one is outstanding
+  private final Object elispLock = new Object();
+
+  private volatile boolean multiplexed = false;
+  private ExecutorService workers;
+  private final AtomicInteger requestIds = new AtomicInteger();
+  // Calls submitted and not yet answered, by request ID
+  private final Map<Integer, Cancellation> pending = new ConcurrentHashMap<>();
 
   // Debugging
   private String loggerFilename;
-  private Logger logger = new Logger();
+  private volatile Logger logger = new Logger();
+
+  private static final Symbol INVOKE_ELISP = new Symbol("jdee-juci-invoke-elisp");
 
   private static final Object RESULT_PENDING = new Object() {
       public String toString() { return "RESULT_PENDING"; }
@@ -71,7 +126,6 @@ public class ConnectionImpl implements InvocationHandler, Connection {
   {
     invoker = new ThreadedInvoker();
     invoker.start();
-    Thread.yield();             // allow invoker to reach wait()
   }
 
   /**
@@ -91,6 +145,26 @@ public class ConnectionImpl implements InvocationHandler, Connection {
 
   void addSupportedInterfaces(Map newImpls) {
     impls.putAll(newImpls);
+    // an interface first seen as Elisp may now have a Java implementation
+    targets.clear();
+  }
+
+  /**
+   * Builds the dispatch table entries for the methods of proxy interfaces,
+   * so that calls through the proxy need only a table lookup.
+   *
+   * @param interfaces the interfaces a proxy implements
+   */
+  void prepare(Collection<Class<?>> interfaces) {
+    synchronized (proxyInterfaces) {
+      proxyInterfaces.addAll(interfaces);
+    }
+    for (Iterator<Class<?>> i = interfaces.iterator(); i.hasNext();) {
+      Method[] methods = i.next().getMethods();
+      for (int j = 0; j < methods.length; j++) {
+        target(methods[j]);
+      }
+    }
   }
 
   /**
@@ -99,8 +173,10 @@ public class ConnectionImpl implements InvocationHandler, Connection {
    * @param writer a <code>PrintWriter</code> value
    */
   public void setOutput(PrintWriter writer) {
-    this.output     = writer;
-    this.lispWriter = new LispWriter(output);
+    synchronized (outputLock) {
+      this.output     = writer;
+      this.lispWriter = new LispWriter(output);
+    }
   }
 
   void setThreaded(boolean threaded) {
@@ -119,44 +195,135 @@ public class ConnectionImpl implements InvocationHandler, Connection {
    * @exception Throwable if an error occurs
    */
   public Object invoke(Object object, Method method, Object[] args) throws Throwable {
+    return invoke(object, method, args, null);
+  }
+
+  // As invoke, with the request ID of a call made through withRequestId
+  private Object invoke(Object object, Method method, Object[] args, Integer requestId)
+    throws Throwable {
     try {
-      Object result = null;
+      Target target = targets.get(method);
+      if (target == null) {
+        target = target(method);
+      }
+      if (args == null) {
+        args = NO_ARGS;
+      }
 
-      if (Connection.class == method.getDeclaringClass()) {
-        if (method.getName().equals("begin")) {
-          begin();
-        } else if (method.getName().equals("end")) {
-          end();
-        } else if (method.getName().equals("reset")) {
-          reset();
-        } else if (method.getName().equals("popResult")) {
-          result = popResult();
-        } else if (method.getName().equals("pushResult")) {
-          pushResult(args[0]);
-        } else if (method.getName().equals("setLoggerFilename")) {
-          setLoggerFilename((String) args[0]);
-        } else if (method.getName().equals("evalBshScript")) {
-          evalBshScript((String) args[0]);
+      switch (target.kind) {
+      case Target.SELF:
+        return (Object) target.handle.invokeExact(args);
+      case Target.IDENTITY:
+        return Boolean.valueOf(args[0] == object);
+      case Target.JAVA:
+        return invokeJava(target, args, requestId);
+      default:
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+          Object result = invokeElisp(target, args);
+          failed = false;
+          return result;
+        } finally {
+          target.stats.record(start, failed);
         }
-      } else if (Object.class == method.getDeclaringClass()) {
-        method.invoke(this, args);
-      } else {
-        result = invokeOther(method, args);
       }
-
-      return result;
     } catch (Throwable t) {
       logger.error("Error during invoke", t);
       throw t;
     }
   }
 
-  private Class getImplClass(Method method) {
-    Class declaringClass = method.getDeclaringClass();
-    Class implClass      = null;
+  /**
+   * How calls to one proxy method are handled.
+   */
+  private static final class Target {
+    /** A method of this connection: Connection's own, or Object's. */
+    static final int SELF  = 0;
+    /** A method of a Java implementation called from Emacs. */
+    static final int JAVA  = 1;
+    /** A method implemented in Elisp called from Java. */
+    static final int ELISP = 2;
+    /** Object.equals, which is true only for the proxy itself. */
+    static final int IDENTITY = 3;
+
+    final int kind;
+    final Method method;
+
+    /**
+     * SELF: bound to the connection, (Object[])Object.  JAVA: taking the
+     * implementation instance, (Object, Object[])Object, or null if the
+     * method is not accessible that way and is called by reflection.
+     */
+    final MethodHandle handle;
+
+    /** JAVA: the implementation class, and its instance once made. */
+    final Class<?> implClass;
+    volatile Object instance;
+
+    /** ELISP: the function to call. */
+    final Symbol function;
+
+    /** JAVA and ELISP: timings of calls, by qualified method name. */
+    final EndpointStats stats;
+
+    Target(int kind, Method method, MethodHandle handle, Class<?> implClass, Symbol function) {
+      this.kind      = kind;
+      this.method    = method;
+      this.handle    = handle;
+      this.implClass = implClass;
+      this.function  = function;
+      this.stats     = kind == SELF || kind == IDENTITY ? null : EndpointStats.forEndpoint(
+        method.getDeclaringClass().getName() + "." + method.getName());
+    }
+  }
+
+  // Makes and records the table entry for a method
+  private Target target(Method method) {
+    Target target;
+    Class<?> declaringClass = method.getDeclaringClass();
+    if (method.equals(EQUALS)) {
+      // the connection would compare itself, not its proxy, to the argument
+      target = new Target(Target.IDENTITY, method, null, null, null);
+    } else if (declaringClass == Connection.class || declaringClass == Object.class) {
+      try {
+        MethodHandle h = MethodHandles.publicLookup().unreflect(method).bindTo(this);
+        target = new Target(Target.SELF, method, spread(h, 0), null, null);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    } else {
+      Class<?> implClass = getImplClass(method);
+      if (implClass != null) {
+        MethodHandle h = null;
+        try {
+          h = spread(MethodHandles.publicLookup().unreflect(method), 1);
+        } catch (IllegalAccessException e) {
+          // not public: call it by reflection
+        }
+        target = new Target(Target.JAVA, method, h, implClass, null);
+      } else {
+        String name = declaringClass.getName() + "." + method.getName();
+        target = new Target(Target.ELISP, method, null, null, new Symbol(Symbol.java2Elisp(name)));
+      }
+    }
+    targets.put(method, target);
+    return target;
+  }
+
+  // Adapts a handle to take its trailing arguments as an Object[] and
+  // return an Object, so that it can be called with invokeExact
+  private static MethodHandle spread(MethodHandle h, int leading) {
+    int n = h.type().parameterCount() - leading;
+    return h.asSpreader(Object[].class, n).asType(MethodType.genericMethodType(leading, true));
+  }
+
+  private Class<?> getImplClass(Method method) {
+    Class<?> declaringClass = method.getDeclaringClass();
+    Class<?> implClass      = null;
 
     if (impls.containsKey(declaringClass)) {
-      implClass = (Class) impls.get(declaringClass);
+      implClass = (Class<?>) impls.get(declaringClass);
     } else if (impls.values().contains(declaringClass)) {
       implClass = declaringClass;
     }
@@ -164,46 +331,166 @@ public class ConnectionImpl implements InvocationHandler, Connection {
     return implClass;
   }
 
-  private Object invokeJava(Class implClass, Method method, Object[] args) throws Throwable {
+  private Object invokeJava(Target target, Object[] args, Integer requestId) throws Throwable {
 
-    Object instance = cachedImplInstances.get(implClass);
+    Object instance = target.instance;
 
     if (instance == null) {
-      instance = implClass.newInstance();
-      cachedImplInstances.put(implClass, instance);
+      synchronized (cachedImplInstances) {
+        instance = cachedImplInstances.get(target.implClass);
+        if (instance == null) {
+          instance = target.implClass.newInstance();
+          cachedImplInstances.put(target.implClass, instance);
+        }
+      }
+      target.instance = instance;
     }
 
     maybeConvertMaps(args);
 
-    invoker.addInvocation(new ReflectionInvocation(instance, method, args));
+    Invocation inv = target.handle != null
+      ? new HandleInvocation(target.handle, instance, args)
+      : new ReflectionInvocation(instance, target.method, args);
+
+    if (multiplexed) {
+      submitRequest(inv, target.stats, requestId);
+      return defaultValue(target.method.getReturnType());
+    }
+
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      long seen = resultsPushed();
+      invoker.addInvocation(inv);
+      Object result = finishInvoke(seen);
+      failed = false;
+      return result;
+    } finally {
+      target.stats.record(start, failed);
+    }
+  }
+
+  private synchronized void submitRequest(final Invocation inv, final EndpointStats stats,
+                                         Integer requestId) {
+    final int id = requestId != null ? requestId.intValue() : requestIds.incrementAndGet();
+    if (workers == null) {
+      workers = Executors.newFixedThreadPool(
+        Math.max(2, Runtime.getRuntime().availableProcessors()),
+        new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ConnectionImpl worker " + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          }
+        });
+    }
+    final Cancellation request = new Cancellation();
+    pending.put(id, request);
+    workers.execute(new Runnable() {
+        public void run() {
+          Object result = null;
+          if (!request.isCancelled()) {
+            long start = System.nanoTime();
+            Cancellation.begin(request);
+            try {
+              result = inv.invoke();
+            } finally {
+              Cancellation.end();
+            }
+            stats.record(start, result instanceof ExceptionResult);
+          }
+          pending.remove(id);
+          if (request.isCancelled()) {
+            logger.debug("Dropping answer to cancelled request");
+          } else {
+            writeResponse(id, result);
+          }
+        }
+      });
+  }
+
+  public Connection withRequestId(final int id) {
+    Class<?>[] ifcs;
+    synchronized (proxyInterfaces) {
+      ifcs = proxyInterfaces.toArray(new Class<?>[proxyInterfaces.size()]);
+    }
+    return (Connection) Proxy.newProxyInstance(ConnectionFactory.getClassLoader(), ifcs,
+                                               new InvocationHandler() {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+          return ConnectionImpl.this.invoke(proxy, method, args, Integer.valueOf(id));
+        }
+      });
+  }
+
+  // Stops the worker pool once the calls already submitted are answered
+  private synchronized void stopWorkers() {
+    if (workers != null) {
+      workers.shutdown();
+      workers = null;
+    }
+  }
 
-    return finishInvoke();
+  public void cancelRequest(int id) {
+    Cancellation request = pending.get(id);
+    if (request != null) {
+      request.cancel();
+    }
   }
 
-  private Object invokeElisp(Class implClass, Method method, Object[] args)
+  // The value a proxy returns for a call answered later
+  private static Object defaultValue(Class<?> type) {
+    if (!type.isPrimitive() || type == void.class) {
+      return null;
+    } else if (type == boolean.class) {
+      return Boolean.FALSE;
+    } else if (type == char.class) {
+      return Character.valueOf((char) 0);
+    } else if (type == long.class) {
+      return Long.valueOf(0);
+    } else if (type == float.class) {
+      return Float.valueOf(0);
+    } else if (type == double.class) {
+      return Double.valueOf(0);
+    } else if (type == byte.class) {
+      return Byte.valueOf((byte) 0);
+    } else if (type == short.class) {
+      return Short.valueOf((short) 0);
+    }
+    return Integer.valueOf(0);
+  }
+
+  private Object invokeElisp(Target target, Object[] args)
     throws ElispError {
 
-    logger.debug(method.toString());
+    if (logger.isDebugEnabled()) {
+      logger.debug(target.method.toString());
+    }
 
     List eval = new ArrayList();
-    eval.add(new Symbol("jdee-juci-invoke-elisp"));
+    eval.add(INVOKE_ELISP);
 
     List form = new ArrayList();
-    form.add(new Symbol(Symbol.java2Elisp(method.getDeclaringClass().getName() + "." + method.getName())));
+    form.add(target.function);
 
-    if (args != null && args.length > 0) {
+    if (args.length > 0) {
       form.addAll(Arrays.asList(args));
     }
 
     eval.add(form);
-    lispWriter.writeForm(eval);
-    output.println();
-    output.flush();
-    pushResult(RESULT_PENDING);
 
-    waitForResult();
+    Object result;
+    synchronized (elispLock) {
+      long seen = resultsPushed();
+      writeForm(eval);
+      if (!multiplexed) {
+        // wakes the thread waiting in finishInvoke, which answers nil
+        seen = pushCountedResult(RESULT_PENDING);
+      }
 
-    Object result = popResult();
+      waitForResult(seen);
+      result = popResult();
+    }
     if (result instanceof ElispError) {
       throw (ElispError) result;
     } else {
@@ -211,19 +498,10 @@ public class ConnectionImpl implements InvocationHandler, Connection {
     }
   }
 
-  private Object invokeOther(Method method, Object[] args) throws Throwable {
-    Class implClass = getImplClass(method);
-
-    if (implClass != null) {
-      return invokeJava(implClass, method, args);
-    } else {
-      return invokeElisp(implClass, method, args);
-    }
-  }
-
-  // wait for a result on an inbound Java call and return it
-  private Object finishInvoke() throws Throwable {
-    waitForResult();
+  // wait for a result on an inbound Java call and return it; seen is the
+  // number of results pushed before the call was queued
+  private Object finishInvoke(long seen) throws Throwable {
+    waitForResult(seen);
 
     Object result = peekResult();
     if (result == RESULT_PENDING) {
@@ -272,14 +550,24 @@ public class ConnectionImpl implements InvocationHandler, Connection {
     }
   }
 
-  private void waitForResult() {
+  private long resultsPushed() {
+    synchronized (monitor) {
+      return resultsPushed;
+    }
+  }
+
+  // Waits until more than seen results have been pushed.  Counting
+  // pushes, rather than waiting for a notify, means a result pushed
+  // before the wait starts is not missed.
+  private void waitForResult(long seen) {
     if (threaded) {
       try {
         synchronized (monitor) {
           logger.debug("About to wait");
-          monitor.wait();
+          while (resultsPushed == seen) {
+            monitor.wait();
+          }
           logger.debug("woke up");
-          Thread.yield();
         }
       } catch (InterruptedException ie) {
         logger.warning("caught interrupt");
@@ -288,19 +576,11 @@ public class ConnectionImpl implements InvocationHandler, Connection {
     }
   }
 
-  private void notifyResultReady() {
-    if (threaded) {
-      // Notify other thread waiting for result
-      synchronized (monitor) {
-        logger.debug("About to notify");
-        monitor.notify();
-      }
-    }
-  }
-
   public void begin() {
     beginCalls++;
-    logger.debug("*** begin " + beginCalls);
+    if (logger.isDebugEnabled()) {
+      logger.debug("*** begin " + beginCalls);
+    }
   }
 
   public void end() {
@@ -328,8 +608,11 @@ public class ConnectionImpl implements InvocationHandler, Connection {
       synchronized (ConnectionFactory.connectionLock) {
         ConnectionFactory.currentConnection = null;
       }
+      stopWorkers();
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("*** end " + beginCalls);
     }
-    logger.debug("*** end " + beginCalls);
   }
 
   public void reset() {
@@ -339,11 +622,22 @@ public class ConnectionImpl implements InvocationHandler, Connection {
   }
 
   public void pushResult(Object result) {
-    logger.debug("pushing: " + result + (result != null ? " " + result.getClass() : ""));
+    pushCountedResult(result);
+  }
+
+  // Pushes a result and returns the number of results pushed so far
+  private long pushCountedResult(Object result) {
+    if (logger.isDebugEnabled()) {
+      logger.debug("pushing: " + result + (result != null ? " " + result.getClass() : ""));
+    }
     synchronized (resultStack) {
       resultStack.addLast(result);
     }
-    notifyResultReady();
+    synchronized (monitor) {
+      logger.debug("About to notify");
+      monitor.notifyAll();
+      return ++resultsPushed;
+    }
   }
 
   public Object popResult() {
@@ -368,7 +662,9 @@ public class ConnectionImpl implements InvocationHandler, Connection {
     if (loggerFilename == null || !loggerFilename.equals(filename)) {
       try {
         loggerFilename = filename;
+        Logger old     = logger;
         logger         = new Logger(new FileWriter(filename, true));
+        old.close();
       } catch (IOException io) {
         // whoops, no logger
       }
@@ -377,8 +673,19 @@ public class ConnectionImpl implements InvocationHandler, Connection {
 
   public void evalBshScript(final String statement) throws Throwable {
     // TODO: should do some form of maybeConvertMaps here
+    long seen = resultsPushed();
     invoker.addInvocation(new BshInvocation(statement));
-    finishInvoke();
+    finishInvoke(seen);
+  }
+
+  public synchronized void setMultiplexed(boolean multiplexed) {
+    this.multiplexed = multiplexed;
+    if (!multiplexed) {
+      stopWorkers();
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("*** multiplexed " + multiplexed);
+    }
   }
 
   private void writeResult(Object result) {
@@ -387,9 +694,38 @@ public class ConnectionImpl implements InvocationHandler, Connection {
     }
 
     logger.debug("writeResult", result);
-    lispWriter.writeUnknown(result);
-    output.println();
-    output.flush();
+    synchronized (outputLock) {
+      lispWriter.writeUnknown(result);
+      output.println();
+      output.flush();
+    }
+  }
+
+  private void writeResponse(int id, Object result) {
+    List response = new ArrayList();
+    if (result instanceof ExceptionResult) {
+      Throwable t = ((ExceptionResult) result).exception;
+      logger.error("Error in request " + id, t);
+      response.add(new Symbol("jdee-juci-error"));
+      response.add(Integer.valueOf(id));
+      response.add(String.valueOf(t));
+    } else {
+      if (logger.isDebugEnabled()) {
+        logger.debug("writeResponse " + id, result);
+      }
+      response.add(new Symbol("jdee-juci-response"));
+      response.add(Integer.valueOf(id));
+      response.add(result != null ? result : LispWriter.NIL);
+    }
+    writeForm(response);
+  }
+
+  private void writeForm(List form) {
+    synchronized (outputLock) {
+      lispWriter.writeForm(form);
+      output.println();
+      output.flush();
+    }
   }
 
   private static class ExceptionResult {
@@ -426,7 +762,9 @@ public class ConnectionImpl implements InvocationHandler, Connection {
     public Object invoke() {
       Object result = null;
       try {
-        logger.debug("Invoking " + method);
+        if (logger.isDebugEnabled()) {
+          logger.debug("Invoking " + method);
+        }
         result = method.invoke(invokeOn, args);
       } catch (InvocationTargetException ite) {
         result = new ExceptionResult(ite.getTargetException());
@@ -438,6 +776,30 @@ public class ConnectionImpl implements InvocationHandler, Connection {
     }
   }
 
+  private class HandleInvocation implements Invocation {
+
+    private MethodHandle handle;
+    private Object invokeOn;
+    private Object[] args;
+
+    private HandleInvocation(MethodHandle h, Object o, Object[] arr) {
+      handle   = h;
+      invokeOn = o;
+      args     = arr;
+    }
+
+    public Object invoke() {
+      try {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Invoking " + handle);
+        }
+        return (Object) handle.invokeExact(invokeOn, args);
+      } catch (Throwable t) {
+        return new ExceptionResult(t);
+      }
+    }
+  }
+
   private class BshInvocation implements Invocation {
     private String statement;
     private BshInvocation(String statement) {
@@ -448,7 +810,9 @@ public class ConnectionImpl implements InvocationHandler, Connection {
       Interpreter bsh    = new Interpreter(new StringReader(""), writer, writer, false, global.getNameSpace());
       Object      result = null;
       try {
-        logger.debug("Evaluating " + statement);
+        if (logger.isDebugEnabled()) {
+          logger.debug("Evaluating " + statement);
+        }
         result = bsh.eval(statement);
       } catch (bsh.EvalError e) {
         result = new ExceptionResult(e);
@@ -459,7 +823,7 @@ public class ConnectionImpl implements InvocationHandler, Connection {
 
   private class ThreadedInvoker extends Thread {
 
-    private LinkedList invocations = new LinkedList();
+    private BlockingQueue<Invocation> invocations = new LinkedBlockingQueue<Invocation>();
 
     public ThreadedInvoker() {
       super("ConnectionImpl threaded invoker");
@@ -468,25 +832,11 @@ public class ConnectionImpl implements InvocationHandler, Connection {
     public void run() {
       for (;;) {
         try {
-          Invocation inv = null;
-
-          try {
-            synchronized (invocations) {
-              inv = (Invocation) invocations.removeFirst();
-            }
-          } catch (NoSuchElementException nsee) {}
-
-          if (inv == null) {
-            synchronized (this) {
-              logger.debug("Waiting for invocation");
-              wait();
-              logger.debug("Woke up");
-              Thread.yield();
-            }
-          } else {
-            Object result = inv.invoke();
-            pushResult(result);
-          }
+          logger.debug("Waiting for invocation");
+          Invocation inv = invocations.take();
+          logger.debug("Woke up");
+          Object result = inv.invoke();
+          pushResult(result);
         } catch (InterruptedException ie) {
           // keep going
         }
@@ -494,14 +844,8 @@ public class ConnectionImpl implements InvocationHandler, Connection {
     }
 
     public void addInvocation(Invocation inv) {
-      synchronized (invocations) {
-        invocations.addLast(inv);
-      }
-
-      synchronized (this) {
-        logger.debug("Notifying of new invocation");
-        notify();
-      }
+      logger.debug("Queueing invocation");
+      invocations.add(inv);
     }
 
   }
@@ -0,0 +1,196 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table of Java handlers for request forms read by {@link LispReader}.  A
+ * request <code>(jde.util.JdeUtilities.getQualifiedName "List")</code> is
+ * passed to the handler registered under
+ * <code>jde.util.JdeUtilities.getQualifiedName</code> with the arguments
+ * <code>("List")</code>, without going through BeanShell.
+ *
+ * <p>The static helpers convert arguments to the types Java methods take,
+ * and throw <code>IllegalArgumentException</code> for anything else.</p>
+ *
+ * <p>Every call is timed and counted in the {@link EndpointStats} of its
+ * request name.</p>
+ */
+public class Dispatcher {
+
+    /**
+     * Java code bound to a request name.
+     */
+    public interface Handler {
+
+        /**
+         * Handles one request.  Handlers write their answer to
+         * <code>System.out</code>, as the methods BeanShell would call do.
+         *
+         * @param args the request's arguments, as read
+         * @exception Exception if the request fails
+         */
+        void handle(List<Object> args) throws Exception;
+    }
+
+    private final Map<String, Handler> handlers = new HashMap<>();
+
+    /**
+     * Binds a request name to a handler, replacing any handler bound to it.
+     *
+     * @param name the symbol at the head of the request form
+     * @param handler the handler
+     */
+    public void register(String name, Handler handler) {
+        handlers.put(name, timed(EndpointStats.forEndpoint(name), handler));
+    }
+
+    private static Handler timed(final EndpointStats stats, final Handler handler) {
+        return new Handler() {
+            public void handle(List<Object> args) throws Exception {
+                long start = System.nanoTime();
+                boolean failed = true;
+                try {
+                    handler.handle(args);
+                    failed = false;
+                } finally {
+                    stats.record(start, failed);
+                }
+            }
+        };
+    }
+
+    /**
+     * Tests whether a handler is bound to a request name.
+     *
+     * @param name a request name
+     * @return true if {@link #register} bound a handler to it
+     */
+    public boolean isBound(String name) {
+        return handlers.containsKey(name);
+    }
+
+    /**
+     * Returns the handler for a request form.
+     *
+     * @param form a form read by {@link LispReader}
+     * @return the handler bound to the symbol at the head of
+     * <code>form</code>, or <code>null</code> if <code>form</code> is not a
+     * list starting with a bound symbol
+     */
+    public Handler getHandler(Object form) {
+        if (!(form instanceof List) || ((List) form).isEmpty()) {
+            return null;
+        }
+        Object head = ((List) form).get(0);
+        return head instanceof Symbol ? handlers.get(((Symbol) head).getName()) : null;
+    }
+
+    /**
+     * Handles a request form.
+     *
+     * @param form a form read by {@link LispReader}
+     * @return false if no handler is bound to <code>form</code>
+     * @exception Exception if the handler fails
+     */
+    @SuppressWarnings("unchecked")
+    public boolean dispatch(Object form) throws Exception {
+        Handler handler = getHandler(form);
+        if (handler == null) {
+            return false;
+        }
+        List<Object> list = (List<Object>) form;
+        handler.handle(list.subList(1, list.size()));
+        return true;
+    }
+
+    /*************************************************************************
+     * Arguments
+     *************************************************************************/
+
+    /**
+     * Checks the number of arguments.
+     *
+     * @param args the arguments
+     * @param min the fewest allowed
+     * @param max the most allowed
+     * @return the number of arguments
+     */
+    public static int arity(List<Object> args, int min, int max) {
+        int n = args.size();
+        if (n < min || n > max) {
+            throw new IllegalArgumentException("Wrong number of arguments: " + n);
+        }
+        return n;
+    }
+
+    /**
+     * Returns a string argument; <code>nil</code> is <code>null</code>.
+     */
+    public static String string(List<Object> args, int i) {
+        Object o = args.get(i);
+        if (o == LispWriter.NIL) {
+            return null;
+        } else if (o instanceof String) {
+            return (String) o;
+        }
+        throw new IllegalArgumentException("Not a string: " + o);
+    }
+
+    /**
+     * Returns an integer argument.
+     */
+    public static int integer(List<Object> args, int i) {
+        Object o = args.get(i);
+        if (o instanceof Integer) {
+            return ((Integer) o).intValue();
+        }
+        throw new IllegalArgumentException("Not an integer: " + o);
+    }
+
+    /**
+     * Returns a list or vector of strings as an array, quoted or not;
+     * <code>nil</code> is an empty array.
+     */
+    public static String[] strings(List<Object> args, int i) {
+        Object o = args.get(i);
+        if (o instanceof Quoted) {
+            o = ((Quoted) o).getQuoted();
+        }
+        Object[] elements;
+        if (o == LispWriter.NIL) {
+            return new String[0];
+        } else if (o instanceof List) {
+            elements = ((List) o).toArray();
+        } else if (o instanceof Object[]) {
+            elements = (Object[]) o;
+        } else {
+            throw new IllegalArgumentException("Not a list of strings: " + o);
+        }
+        String[] strings = new String[elements.length];
+        for (int j = 0; j < elements.length; j++) {
+            if (!(elements[j] instanceof String)) {
+                throw new IllegalArgumentException("Not a string: " + elements[j]);
+            }
+            strings[j] = (String) elements[j];
+        }
+        return strings;
+    }
+}
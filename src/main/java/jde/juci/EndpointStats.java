@@ -0,0 +1,189 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.lang.management.ManagementFactory;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Call counts and a {@link LatencyHistogram} for one server endpoint,
+ * such as <code>jde.util.Completion.getClassInfo</code>.  Requests
+ * dispatched by {@link Dispatcher}, Java methods called through a JUCI
+ * connection and Elisp functions called from Java are all recorded, so
+ * slow calls can be found in a running server.
+ *
+ * <p>Each endpoint is published over JMX as
+ * <code>jde.juci:type=EndpointStats,name=...</code>, and all of them are
+ * printed as an alist by {@link #getStats}.</p>
+ */
+public class EndpointStats implements EndpointStatsMBean {
+
+    private static final ConcurrentMap<String, EndpointStats> endpoints =
+        new ConcurrentHashMap<>();
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+
+    private EndpointStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the statistics of an endpoint, creating and publishing them
+     * the first time.
+     *
+     * @param name the endpoint's qualified name
+     * @return the statistics
+     */
+    public static EndpointStats forEndpoint(String name) {
+        EndpointStats stats = endpoints.get(name);
+        if (stats == null) {
+            EndpointStats created = new EndpointStats(name);
+            stats = endpoints.putIfAbsent(name, created);
+            if (stats == null) {
+                stats = created;
+                register(created);
+            }
+        }
+        return stats;
+    }
+
+    private static void register(EndpointStats stats) {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(stats, new ObjectName("jde.juci:type=EndpointStats,name="
+                                                     + ObjectName.quote(stats.name)));
+        } catch (JMException e) {
+            System.err.println("Cannot register EndpointStats MBean: " + e);
+        }
+    }
+
+    /**
+     * Records a call.
+     *
+     * @param startNanos <code>System.nanoTime()</code> when the call
+     * started
+     * @param failed whether the call threw
+     */
+    public void record(long startNanos, boolean failed) {
+        latency.record(System.nanoTime() - startNanos);
+        if (failed) {
+            errors.incrementAndGet();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /*************************************************************************
+     * EndpointStatsMBean
+     *************************************************************************/
+
+    public long getCalls() {
+        return latency.getCount();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public double getMeanMicros() {
+        return latency.getMean() / 1000;
+    }
+
+    public long getP50Micros() {
+        return latency.getPercentile(50) / 1000;
+    }
+
+    public long getP90Micros() {
+        return latency.getPercentile(90) / 1000;
+    }
+
+    public long getP99Micros() {
+        return latency.getPercentile(99) / 1000;
+    }
+
+    public long getMaxMicros() {
+        return latency.getMax() / 1000;
+    }
+
+    public void reset() {
+        latency.reset();
+        errors.set(0);
+    }
+
+    /*************************************************************************
+     * Lisp endpoint
+     *************************************************************************/
+
+    /**
+     * Prints the statistics of every endpoint called so far as an alist
+     * keyed by endpoint name, durations in microseconds:
+     *
+     * <pre>
+     *   (list (cons "jde.util.Completion.getClassInfo"
+     *               (list (cons 'calls 12) (cons 'errors 0) (cons 'mean-us 840.5)
+     *                     (cons 'p50-us 511) (cons 'p90-us 2047) (cons 'p99-us 3900)
+     *                     (cons 'max-us 3900)))
+     *         ...)
+     * </pre>
+     *
+     * Percentiles are the upper bounds of histogram buckets, capped at the
+     * slowest call, so with a dozen calls the p99 is the slowest one.
+     */
+    public static void getStats() {
+        StringBuilder sb = new StringBuilder("(list");
+        for (EndpointStats s : new TreeMap<String, EndpointStats>(endpoints).values()) {
+            if (s.getCalls() == 0) {
+                continue;
+            }
+            sb.append(" (cons ").append(LispWriter.quote(s.name)).append(" (list");
+            entry(sb, "calls", s.getCalls());
+            entry(sb, "errors", s.getErrors());
+            sb.append(" (cons 'mean-us ").append(Math.round(s.getMeanMicros() * 10) / 10.0).append(')');
+            entry(sb, "p50-us", s.getP50Micros());
+            entry(sb, "p90-us", s.getP90Micros());
+            entry(sb, "p99-us", s.getP99Micros());
+            entry(sb, "max-us", s.getMaxMicros());
+            sb.append("))");
+        }
+        sb.append(')');
+        System.out.println(sb);
+        System.out.flush();
+    }
+
+    /**
+     * Sets the counts of every endpoint to zero.
+     */
+    public static void resetAll() {
+        for (EndpointStats s : endpoints.values()) {
+            s.reset();
+        }
+    }
+
+    private static void entry(StringBuilder sb, String name, long value) {
+        sb.append(" (cons '").append(name).append(' ').append(value).append(')');
+    }
+}
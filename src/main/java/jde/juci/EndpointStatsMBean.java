@@ -0,0 +1,49 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+/**
+ * JMX view of one endpoint's {@link EndpointStats}, registered as
+ * <code>jde.juci:type=EndpointStats,name=...</code>.  Durations are in
+ * microseconds.
+ */
+public interface EndpointStatsMBean {
+
+    /** @return number of calls completed */
+    long getCalls();
+
+    /** @return number of calls that failed */
+    long getErrors();
+
+    /** @return mean call duration */
+    double getMeanMicros();
+
+    /** @return median call duration */
+    long getP50Micros();
+
+    /** @return 90th percentile call duration */
+    long getP90Micros();
+
+    /** @return 99th percentile call duration */
+    long getP99Micros();
+
+    /** @return longest call duration */
+    long getMaxMicros();
+
+    /** Sets all counts to zero. */
+    void reset();
+}
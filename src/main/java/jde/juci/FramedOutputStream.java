@@ -0,0 +1,111 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a response as a sequence of length-prefixed frames, ended by an
+ * empty frame.  Each frame is its length in bytes as six lowercase hex
+ * digits, then that many bytes:
+ *
+ * <pre>
+ *   00000c(list "a" "b")000000
+ * </pre>
+ *
+ * <p>A frame is sent whenever the buffer fills or the stream is flushed,
+ * so the start of a large response goes out while the rest is still being
+ * computed, and the client never has to scan for the end of a form: it
+ * reads exactly the announced number of bytes, and stops at the empty
+ * frame.</p>
+ */
+public class FramedOutputStream extends OutputStream {
+
+    /** Largest frame sent. */
+    public static final int MAX_FRAME = 16384;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[6 + MAX_FRAME];
+    private int count;
+
+    /**
+     * Creates a new <code>FramedOutputStream</code> instance.
+     *
+     * @param out where frames are written
+     */
+    public FramedOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    public void write(int b) throws IOException {
+        if (count == MAX_FRAME) {
+            writeFrame();
+        }
+        buf[6 + count++] = (byte) b;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == MAX_FRAME) {
+                writeFrame();
+            }
+            int n = Math.min(len, MAX_FRAME - count);
+            System.arraycopy(b, off, buf, 6 + count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Sends what has been written so far as a frame.
+     */
+    public void flush() throws IOException {
+        if (count > 0) {
+            writeFrame();
+        }
+        out.flush();
+    }
+
+    /**
+     * Ends the current response: sends what is left and the empty frame.
+     */
+    public void endResponse() throws IOException {
+        if (count > 0) {
+            writeFrame();
+        }
+        writeFrame();
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    // Fills in the header in front of the buffered bytes and sends both
+    private void writeFrame() throws IOException {
+        for (int i = 5, n = count; i >= 0; i--, n >>>= 4) {
+            buf[i] = HEX[n & 0xf];
+        }
+        out.write(buf, 0, 6 + count);
+        count = 0;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class responsible for converting lisp forms into java objects; the
+ * inverse of {@link LispWriter}.
+ *
+ * <p>Lists are read as <code>java.util.List</code>s, vectors as
+ * <code>Object[]</code>, dotted pairs as {@link Cons}, <code>'x</code> as
+ * {@link Quoted}, strings as <code>String</code>, character literals as
+ * <code>Character</code>, integers as <code>Integer</code> or
+ * <code>Long</code>, floats as <code>Double</code> and everything else as
+ * a {@link Symbol}.  The symbols <code>t</code> and <code>nil</code> are
+ * read as {@link LispWriter#T} and {@link LispWriter#NIL}; <code>()</code>
+ * is an empty list.</p>
+ */
+public class LispReader {
+
+    private final Reader input;
+    private final StringBuilder token = new StringBuilder(64);
+    private final int[] pushedBack = new int[2];
+    private int pushed;
+
+    /**
+     * Creates a new <code>LispReader</code> instance.
+     */
+    public LispReader(Reader source) {
+        this.input = source;
+    }
+
+    /**
+     * Reads the first form in a string.
+     *
+     * @param s the text of a form
+     * @return the form
+     * @exception IOException if the text is not a well-formed form
+     */
+    public static Object read(String s) throws IOException {
+        return new LispReader(new StringReader(s)).read();
+    }
+
+    /**
+     * Reads the next form.
+     *
+     * @return the form
+     * @exception EOFException if the input ends before a form, or in the
+     * middle of one
+     * @exception IOException if the input is not well formed, or cannot
+     * be read
+     */
+    public Object read() throws IOException {
+        int c = skipWhitespace();
+        switch (c) {
+            case -1:
+                throw new EOFException("End of input");
+            case '(':
+                return readList();
+            case '[':
+                return readVector();
+            case ')':
+            case ']':
+                throw new IOException("Unexpected '" + (char) c + "'");
+            case '\'':
+                return new Quoted(read());
+            case '"':
+                return readString();
+            case '?':
+                return Character.valueOf(readChar());
+            default:
+                return readAtom(c);
+        }
+    }
+
+    private Object readList() throws IOException {
+        List<Object> list = new ArrayList<>();
+        for (;;) {
+            int c = skipWhitespace();
+            if (c == ')') {
+                return list.isEmpty() ? Collections.emptyList() : list;
+            } else if (c == -1) {
+                throw new EOFException("End of input in list");
+            } else if (c == '.') {
+                int d = next();
+                unread(d);
+                if (!isDelimiter(d)) {
+                    unread(c);
+                    list.add(read());
+                    continue;
+                }
+                if (list.size() != 1) {
+                    throw new IOException("Only dotted pairs are supported");
+                }
+                Object cdr = read();
+                if (skipWhitespace() != ')') {
+                    throw new IOException("Expected ')' after dotted pair");
+                }
+                return new Cons(list.get(0), cdr);
+            }
+            unread(c);
+            list.add(read());
+        }
+    }
+
+    private Object[] readVector() throws IOException {
+        List<Object> list = new ArrayList<>();
+        for (;;) {
+            int c = skipWhitespace();
+            if (c == ']') {
+                return list.toArray();
+            } else if (c == -1) {
+                throw new EOFException("End of input in vector");
+            }
+            unread(c);
+            list.add(read());
+        }
+    }
+
+    private String readString() throws IOException {
+        token.setLength(0);
+        for (;;) {
+            int c = next();
+            if (c == '"') {
+                return token.toString();
+            } else if (c == -1) {
+                throw new EOFException("End of input in string");
+            } else if (c == '\\') {
+                c = next();
+                if (c == '\n') {
+                    // escaped newline: not part of the string
+                    continue;
+                }
+                token.append(unescape(c));
+            } else {
+                token.append((char) c);
+            }
+        }
+    }
+
+    private char readChar() throws IOException {
+        int c = next();
+        if (c == -1) {
+            throw new EOFException("End of input in character");
+        }
+        return c == '\\' ? unescape(next()) : (char) c;
+    }
+
+    private static char unescape(int c) throws IOException {
+        switch (c) {
+            case -1:
+                throw new EOFException("End of input after backslash");
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'e':
+                return '\033';
+            case 's':
+                return ' ';
+            default:
+                return (char) c;
+        }
+    }
+
+    private Object readAtom(int c) throws IOException {
+        token.setLength(0);
+        boolean escaped = false;
+        while (c != -1 && !isDelimiter(c)) {
+            if (c == '\\') {
+                c = next();
+                if (c == -1) {
+                    throw new EOFException("End of input after backslash");
+                }
+                escaped = true;
+            }
+            token.append((char) c);
+            c = next();
+        }
+        unread(c);
+
+        String s = token.toString();
+        if (!escaped) {
+            Object n = parseNumber(s);
+            if (n != null) {
+                return n;
+            } else if (s.equals("t")) {
+                return LispWriter.T;
+            } else if (s.equals("nil")) {
+                return LispWriter.NIL;
+            }
+        }
+        return new Symbol(s);
+    }
+
+    // An integer or float in elisp syntax, or null if s is a symbol
+    private static Object parseNumber(String s) {
+        int n = s.length();
+        int i = (n > 1 && (s.charAt(0) == '-' || s.charAt(0) == '+')) ? 1 : 0;
+        int digits = 0;
+        while (i < n && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+            i++;
+            digits++;
+        }
+        if (digits > 0 && (i == n || (i == n - 1 && s.charAt(i) == '.'))) {
+            String integer = s.substring(s.charAt(0) == '+' ? 1 : 0, i);
+            if (digits < 10) {
+                return Integer.valueOf(Integer.parseInt(integer));
+            }
+            try {
+                long l = Long.parseLong(integer);
+                return l == (int) l ? (Object) Integer.valueOf((int) l) : (Object) Long.valueOf(l);
+            } catch (NumberFormatException e) {
+                return Double.valueOf(integer);
+            }
+        }
+        boolean sawDigit = digits > 0;
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+            } else if (c != '.' && c != 'e' && c != 'E' && c != '-' && c != '+') {
+                return null;
+            }
+        }
+        if (!sawDigit) {
+            return null;
+        }
+        try {
+            return Double.valueOf(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isDelimiter(int c) {
+        switch (c) {
+            case -1:
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+            case '\f':
+            case '(':
+            case ')':
+            case '[':
+            case ']':
+            case '"':
+            case '\'':
+            case ';':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Skips whitespace and comments and returns the next character
+    private int skipWhitespace() throws IOException {
+        for (;;) {
+            int c = next();
+            if (c == ';') {
+                do {
+                    c = next();
+                } while (c != '\n' && c != -1);
+            }
+            if (c == -1 || !Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+    }
+
+    private int next() throws IOException {
+        return pushed > 0 ? pushedBack[--pushed] : input.read();
+    }
+
+    private void unread(int c) {
+        pushedBack[pushed++] = c;
+    }
+}
@@ -22,6 +22,7 @@
 package jde.juci;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -30,6 +31,14 @@ import java.util.Map;
 /**
  * Class responsible for converting java objects into lisp forms.
  *
+ * <p>Forms are built in a reusable character buffer: strings are scanned
+ * for characters that need escapes and copied in runs, numbers are
+ * formatted in place, and the buffer is written to the destination in one
+ * call at the end of each top-level <code>write</code> method, or whenever
+ * it fills up.  Output written directly to the destination between calls
+ * therefore stays in order.  A <code>LispWriter</code> must not be shared
+ * between threads.</p>
+ *
  * @author <a href="mailto:nsieger@bitstream.net">Nick Sieger</a>
  * @version 1.0
  */
@@ -51,7 +60,39 @@ public class LispWriter {
      */
     public static final Quoted NULL = new Quoted(new Symbol("null"));
 
+    private static final int CHUNK = 8192;
+
+    /**
+     * The letter written after a backslash for characters below 128 that
+     * need escaping in strings, or 0.
+     */
+    private static final char[] STRING_ESCAPES = new char[128];
+
+    /** Likewise for character literals. */
+    private static final char[] CHAR_ESCAPES = new char[128];
+
+    static {
+        STRING_ESCAPES['"']  = '"';
+        STRING_ESCAPES['\''] = '\'';
+        STRING_ESCAPES['\\'] = '\\';
+        STRING_ESCAPES['\n'] = 'n';
+        STRING_ESCAPES['\b'] = 'b';
+        STRING_ESCAPES['\r'] = 'r';
+        STRING_ESCAPES['\t'] = 't';
+        STRING_ESCAPES['\f'] = 'f';
+        System.arraycopy(STRING_ESCAPES, 0, CHAR_ESCAPES, 0, 128);
+        CHAR_ESCAPES['?'] = '?';
+        CHAR_ESCAPES[')'] = ')';
+        CHAR_ESCAPES['('] = '(';
+        CHAR_ESCAPES[']'] = ']';
+        CHAR_ESCAPES['['] = '[';
+    }
+
+    private static final char[] MIN_LONG = Long.toString(Long.MIN_VALUE).toCharArray();
+
     private final PrintWriter output;
+    private final char[] buf = new char[CHUNK];
+    private int len;
     private boolean autoQuoteLists = true;
     private boolean inQuote = false;
 
@@ -62,6 +103,21 @@ public class LispWriter {
         this.output = dest;
     }
 
+    /**
+     * Returns a string as an elisp string literal, escaped as
+     * {@link #writeString} writes it.
+     *
+     * @param string the string
+     * @return <code>string</code> within double quotes
+     */
+    public static String quote(String string) {
+        StringWriter quoted = new StringWriter(string.length() + 16);
+        PrintWriter out = new PrintWriter(quoted);
+        new LispWriter(out).writeString(string);
+        out.flush();
+        return quoted.toString();
+    }
+
     public boolean isAutoQuoteLists() {
         return this.autoQuoteLists;
     }
@@ -71,127 +127,53 @@ public class LispWriter {
     }
 
     public void writeList(Collection<?> list) {
-        if (isAutoQuoteLists() && !inQuote) {
-            output.write("'");
-            inQuote = true;
-            writeForm(list);
-            inQuote = false;
-        } else {
-            writeForm(list);
-        }
+        list(list);
+        drain();
     }
 
     public void writeForm(Collection<?> c) {
-        output.print("(");
-        for (Iterator<?> i = c.iterator(); i.hasNext();) {
-            writeUnknown(i.next());
-            if (i.hasNext())
-                output.print(" ");
-        }
-        output.print(")");
+        form(c);
+        drain();
     }
 
     public void writeAlist(Map<Object, Object> map) {
-        Collection<Cons> alist = new ArrayList<>();
-        for (Map.Entry<Object, Object> e : map.entrySet()) {
-            alist.add(new Cons(e.getKey(), e.getValue()));
-        }
-        writeList(alist);
+        alist(map);
+        drain();
     }
 
     public void writeCons(Cons cons) {
-        output.print("(");
-        writeUnknown(cons.getCar());
-        output.print(" . ");
-        writeUnknown(cons.getCdr());
-        output.print(")");
+        cons(cons);
+        drain();
     }
 
     public void writeString(String string) {
-        output.print("\"");
-        for (int i = 0; i < string.length(); i++) {
-            char c = string.charAt(i);
-            // TODO: any more special characters that should be quoted here?
-            switch (c) {
-                case '\"':
-                case '\'':
-                case '\\':
-                    output.write("\\");
-                    output.write(c);
-                    break;
-                case '\n':
-                    output.write("\\n");
-                    break;
-                case '\b':
-                    output.write("\\b");
-                    break;
-                case '\r':
-                    output.write("\\r");
-                    break;
-                case '\t':
-                    output.write("\\t");
-                    break;
-                case '\f':
-                    output.write("\\f");
-                    break;
-                default:
-                    output.print(c);
-                    break;
-            }
-        }
-        output.print("\"");
+        string(string);
+        drain();
     }
 
     public void writeInt(int n) {
-        output.write(Integer.toString(n));
+        number(n);
+        drain();
     }
 
     public void writeLong(long n) {
-        output.write(Long.toString(n));
+        number(n);
+        drain();
     }
 
     public void writeFloat(float f) {
-        output.write(Float.toString(f));
+        append(Float.toString(f));
+        drain();
     }
 
     public void writeDouble(double d) {
-        output.write(Double.toString(d));
+        append(Double.toString(d));
+        drain();
     }
 
     public void writeChar(char c) {
-        output.write("?");
-        // TODO: any more special characters that should be quoted here?
-        switch (c) {
-            case '\"':
-            case '\'':
-            case '\\':
-            case '?':
-            case ')':
-            case '(':
-            case ']':
-            case '[':
-                output.write("\\");
-                output.write(c);
-                break;
-            case '\n':
-                output.write("\\n");
-                break;
-            case '\b':
-                output.write("\\b");
-                break;
-            case '\r':
-                output.write("\\r");
-                break;
-            case '\t':
-                output.write("\\t");
-                break;
-            case '\f':
-                output.write("\\f");
-                break;
-            default:
-                output.write(c);
-                break;
-        }
+        character(c);
+        drain();
     }
 
     public void writeChar(Character c) {
@@ -215,57 +197,225 @@ public class LispWriter {
     }
 
     public void writeSymbol(Symbol name) {
-        output.write(name.getName());
+        append(name.getName());
+        drain();
     }
 
     public void writeQuoted(Quoted q) {
+        quoted(q);
+        drain();
+    }
+
+    public void writeUnknown(Object o) {
+        unknown(o);
+        drain();
+    }
+
+    /*************************************************************************
+     * Forms, written to the buffer
+     *************************************************************************/
+
+    private void list(Collection<?> list) {
+        if (isAutoQuoteLists() && !inQuote) {
+            append('\'');
+            inQuote = true;
+            form(list);
+            inQuote = false;
+        } else {
+            form(list);
+        }
+    }
+
+    private void form(Collection<?> c) {
+        append('(');
+        for (Iterator<?> i = c.iterator(); i.hasNext();) {
+            unknown(i.next());
+            if (i.hasNext())
+                append(' ');
+        }
+        append(')');
+    }
+
+    private void alist(Map<Object, Object> map) {
+        Collection<Cons> alist = new ArrayList<>();
+        for (Map.Entry<Object, Object> e : map.entrySet()) {
+            alist.add(new Cons(e.getKey(), e.getValue()));
+        }
+        list(alist);
+    }
+
+    private void cons(Cons cons) {
+        append('(');
+        unknown(cons.getCar());
+        append(" . ");
+        unknown(cons.getCdr());
+        append(')');
+    }
+
+    private void string(String string) {
+        append('"');
+        int n = string.length();
+        int run = 0;
+        for (int i = 0; i < n; i++) {
+            char c = string.charAt(i);
+            // TODO: any more special characters that should be quoted here?
+            if (c < 128 && STRING_ESCAPES[c] != 0) {
+                append(string, run, i);
+                escape(STRING_ESCAPES[c]);
+                run = i + 1;
+            }
+        }
+        append(string, run, n);
+        append('"');
+    }
+
+    private void character(char c) {
+        append('?');
+        // TODO: any more special characters that should be quoted here?
+        if (c < 128 && CHAR_ESCAPES[c] != 0) {
+            escape(CHAR_ESCAPES[c]);
+        } else {
+            append(c);
+        }
+    }
+
+    private void escape(char c) {
+        reserve(2);
+        buf[len++] = '\\';
+        buf[len++] = c;
+    }
+
+    private void quoted(Quoted q) {
         boolean changeQuote = !inQuote;
 
         if (changeQuote) {
             inQuote = true;
         }
 
-        output.write("'");
-        writeUnknown(q.getQuoted());
+        append('\'');
+        unknown(q.getQuoted());
 
         if (changeQuote) {
             inQuote = false;
         }
     }
 
-    private void writeNumber(Number n) {
+    private void number(Number n) {
         if (n instanceof Long) {
-            writeLong(n.longValue());
+            number(n.longValue());
         } else if (n instanceof Double) {
-            writeDouble(n.doubleValue());
+            append(Double.toString(n.doubleValue()));
         } else if (n instanceof Float) {
-            writeFloat(n.floatValue());
+            append(Float.toString(n.floatValue()));
         } else {
-            writeInt(n.intValue());
+            number(n.intValue());
         }
     }
 
-    public void writeUnknown(Object o) {
-        if (o instanceof Number) {
-            writeNumber((Number) o);
+    // Formats in place, right to left, without going through a String
+    private void number(long n) {
+        if (n == Long.MIN_VALUE) {
+            append(MIN_LONG);
+            return;
+        }
+        reserve(20);
+        if (n < 0) {
+            buf[len++] = '-';
+            n = -n;
+        }
+        int digits = 1;
+        for (long m = n; m >= 10; m /= 10) {
+            digits++;
+        }
+        int end = len + digits;
+        for (int i = end - 1; i >= len; i--) {
+            buf[i] = (char) ('0' + (int) (n % 10));
+            n /= 10;
+        }
+        len = end;
+    }
+
+    private void unknown(Object o) {
+        if (o == null) {
+            quoted(NULL);
+            return;
+        }
+        // The common element types first, by exact class
+        Class<?> c = o.getClass();
+        if (c == String.class) {
+            string((String) o);
+        } else if (c == Symbol.class) {
+            append(((Symbol) o).getName());
+        } else if (c == Integer.class) {
+            number(((Integer) o).intValue());
+        } else if (c == Long.class) {
+            number(((Long) o).longValue());
+        } else if (o instanceof Number) {
+            number((Number) o);
         } else if (o instanceof Collection) {
-            writeList((Collection) o);
+            list((Collection) o);
         } else if (o instanceof Map) {
-            writeAlist((Map) o);
+            alist((Map) o);
         } else if (o instanceof Cons) {
-            writeCons((Cons) o);
+            cons((Cons) o);
         } else if (o instanceof Quoted) {
-            writeQuoted((Quoted) o);
+            quoted((Quoted) o);
         } else if (o instanceof Symbol) {
-            writeSymbol((Symbol) o);
+            append(((Symbol) o).getName());
         } else if (o instanceof Character) {
-            writeChar((Character) o);
+            character(((Character) o).charValue());
         } else if (o instanceof Boolean) {
-            writeBoolean((Boolean) o);
-        } else if (o != null) {
-            writeString(o.toString());
+            append(((Boolean) o).booleanValue() ? T.getName() : NIL.getName());
         } else {
-            writeQuoted(NULL);
+            string(o.toString());
+        }
+    }
+
+    /*************************************************************************
+     * The buffer
+     *************************************************************************/
+
+    private void append(char c) {
+        if (len == buf.length) {
+            drain();
+        }
+        buf[len++] = c;
+    }
+
+    private void append(char[] chars) {
+        reserve(chars.length);
+        System.arraycopy(chars, 0, buf, len, chars.length);
+        len += chars.length;
+    }
+
+    private void append(String s) {
+        append(s, 0, s.length());
+    }
+
+    // Copies s[start, end), in pieces if it does not fit
+    private void append(String s, int start, int end) {
+        while (start < end) {
+            if (len == buf.length) {
+                drain();
+            }
+            int n = Math.min(end - start, buf.length - len);
+            s.getChars(start, start + n, buf, len);
+            len += n;
+            start += n;
+        }
+    }
+
+    // Makes room for n characters, n <= CHUNK
+    private void reserve(int n) {
+        if (len + n > buf.length) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        if (len > 0) {
+            output.write(buf, 0, len);
+            len = 0;
         }
     }
 }
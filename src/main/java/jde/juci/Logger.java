@@ -27,12 +27,29 @@ import java.io.*;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 
 /**
  * Simple logger for debugging JUCI.
  *
+ * <p>Messages below the logger's level are dropped before any work is
+ * done, so callers need only guard messages that are costly to build,
+ * with {@link #isDebugEnabled}.  Messages that pass are put in a ring
+ * buffer without locking, and formatted and written to the destination
+ * by a background thread.  If the buffer is full, errors and warnings wait
+ * for room; other messages are counted and dropped rather than holding up
+ * the caller.</p>
+ *
+ * <p>The level is set by the system property
+ * <code>jde.juci.log.level</code> (<code>ERROR</code>,
+ * <code>WARNING</code>, <code>INFO</code> or <code>DEBUG</code>, the
+ * default).  Each message is tagged with the method that logged it only
+ * if the system property <code>jde.juci.log.caller</code> is
+ * <code>true</code>, since finding it means walking the stack.</p>
+ *
  * @author <a href="mailto:nsieger@bitstream.net">Nick Sieger</a>
  * @version 1.0
  */
@@ -53,8 +70,9 @@ public class Logger {
   public static final Level INFO    = new Level(2);
   public static final Level DEBUG   = new Level(3);
 
-  private static int nextThreadId = 10;
-  private static ThreadLocal threadIds = new ThreadLocal();
+  private static final Level[] byNumber = {
+    ERROR, WARNING, INFO, DEBUG
+  };
 
   private static final String[] levels = {
     "ERROR", "WARNING", "INFO", "DEBUG"
@@ -62,13 +80,33 @@ public class Logger {
 
   private static final String LINE_SEP = System.getProperty("line.separator");
 
+  // Must be a power of two
+  private static final int CAPACITY = 4096;
+
   private final Writer output;
   private LispWriter lispWriter;
 
+  // Levels up to this are logged; -1 when disabled
+  private volatile int threshold = -1;
+  private volatile boolean inferCaller;
+
+  private final AtomicReferenceArray<Entry> ring = new AtomicReferenceArray<>(CAPACITY);
+  // Next slot to claim, and next slot to write
+  private final AtomicLong tail = new AtomicLong();
+  private volatile long head;
+  // Slots written and flushed
+  private volatile long written;
+  private final AtomicLong dropped = new AtomicLong();
+
+  private volatile boolean closed;
+  private volatile boolean idle;
+  private Thread writer;
+
+  // Only used by the writer thread
   private DateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
 
   /**
-   * Creates a new <code>Logger</code> instance.
+   * Creates a new <code>Logger</code> instance that logs nothing.
    */
   public Logger() {
     this.output = null;
@@ -85,6 +123,54 @@ public class Logger {
       output.write(LINE_SEP);
       output.flush();
     } catch (IOException io) {}
+
+    setLevel(parseLevel(System.getProperty("jde.juci.log.level")));
+    setInferCaller(Boolean.getBoolean("jde.juci.log.caller"));
+
+    writer = new Thread("JUCI logger") {
+        public void run() {
+          drain();
+        }
+      };
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Sets the most detailed level logged.
+   */
+  public void setLevel(Level lvl) {
+    if (output != null && !closed) {
+      threshold = lvl.lvl;
+    }
+  }
+
+  /**
+   * Turns tagging messages with the method that logged them on or off.
+   */
+  public void setInferCaller(boolean on) {
+    inferCaller = on;
+  }
+
+  /**
+   * Returns the level named <code>name</code>, or <code>DEBUG</code> if
+   * there is none.
+   */
+  public static Level parseLevel(String name) {
+    for (int i = 0; i < levels.length; i++) {
+      if (levels[i].equalsIgnoreCase(name)) {
+        return byNumber[i];
+      }
+    }
+    return DEBUG;
+  }
+
+  public boolean isEnabled(Level lvl) {
+    return lvl.lvl <= threshold;
+  }
+
+  public boolean isDebugEnabled() {
+    return DEBUG.lvl <= threshold;
   }
 
   public void error(String msg) {
@@ -119,16 +205,13 @@ public class Logger {
     log(DEBUG, msg);
   }
 
+  /**
+   * Logs a message followed by a lisp form.  The form is written later by
+   * the logger's thread, so it should not change after it is logged.
+   */
   public void debug(String msg, Object form) {
-    log(DEBUG, null, null);
-    if (lispWriter != null) {
-      try {
-        output.write(msg + ": ");
-        lispWriter.writeUnknown(form);
-        output.write(LINE_SEP);
-        output.flush();
-      } catch (IOException io) {
-      }
+    if (DEBUG.lvl <= threshold) {
+      enqueue(new Entry(DEBUG, msg, null, true, form));
     }
   }
 
@@ -141,69 +224,184 @@ public class Logger {
   }
 
   public void log(Level lvl, String msg, Throwable t) {
-    if (output == null) {
-      return;                   // logging disabled
+    if (lvl.lvl <= threshold) {
+      enqueue(new Entry(lvl, msg, t, false, null));
     }
+  }
 
-    StringBuffer msgbuf = new StringBuffer("T");
-    msgbuf.append(getThreadId()).append("|");
-    msgbuf.append(timestampFormat.format(new Date())).append("|");
-    msgbuf.append(lvl).append("|");
-    msgbuf.append(inferCaller());
-    if (msg != null) {
-      msgbuf.append(LINE_SEP).append(msg);
+  /**
+   * Waits until everything logged so far has been written.
+   */
+  public void flush() {
+    if (writer == null) {
+      return;
     }
-    msgbuf.append(LINE_SEP);
-    if (t != null) {
-      StringWriter writer = new StringWriter();
-      t.printStackTrace(new PrintWriter(writer));
-      msgbuf.append(writer.toString());
+    long target = tail.get();
+    while (written < target && writer.isAlive()) {
+      LockSupport.unpark(writer);
+      LockSupport.parkNanos(100000L);
     }
-    synchronized (this) {
+  }
+
+  /**
+   * Writes everything logged so far, stops logging and closes the
+   * destination.
+   */
+  public void close() {
+    if (output == null || closed) {
+      return;
+    }
+    threshold = -1;
+    closed = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /*************************************************************************
+   * Ring buffer
+   *************************************************************************/
+
+  // A message as logged; formatted by the writer thread
+  private static class Entry {
+    final Level level;
+    final long time = System.currentTimeMillis();
+    final long threadId = Thread.currentThread().getId();
+    final String msg;
+    final Throwable throwable;
+    final boolean hasForm;
+    final Object form;
+    String caller;
+
+    Entry(Level level, String msg, Throwable throwable, boolean hasForm, Object form) {
+      this.level     = level;
+      this.msg       = msg;
+      this.throwable = throwable;
+      this.hasForm   = hasForm;
+      this.form      = form;
+    }
+  }
+
+  private void enqueue(Entry e) {
+    if (inferCaller) {
+      e.caller = inferCaller();
+    }
+    for (;;) {
+      long t = tail.get();
+      if (t - head >= CAPACITY) {
+        if (e.level.lvl > WARNING.lvl || closed) {
+          dropped.incrementAndGet();
+          return;
+        }
+        // errors and warnings wait for room
+        LockSupport.unpark(writer);
+        LockSupport.parkNanos(100000L);
+        continue;
+      }
+      if (tail.compareAndSet(t, t + 1)) {
+        ring.set((int) t & (CAPACITY - 1), e);
+        break;
+      }
+    }
+    if (idle) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  // Body of the writer thread
+  private void drain() {
+    for (;;) {
+      boolean wrote = false;
+      for (;;) {
+        int i = (int) head & (CAPACITY - 1);
+        Entry e = ring.get(i);
+        if (e == null) {
+          break;                // empty, or claimed but not yet filled
+        }
+        ring.set(i, null);
+        write(e);
+        head++;
+        wrote = true;
+      }
+      long lost = dropped.getAndSet(0);
       try {
-        output.write(msgbuf.toString());
-        output.flush();
+        if (lost > 0) {
+          output.write(lost + " messages dropped" + LINE_SEP);
+          wrote = true;
+        }
+        if (wrote) {
+          output.flush();
+        }
       } catch (IOException io) {
         // whoops, unable to write
       }
+      written = head;
+
+      if (closed && head == tail.get()) {
+        try {
+          output.close();
+        } catch (IOException io) {
+        }
+        return;
+      }
+
+      // A producer fills its slot before checking idle, so it either
+      // sees idle and wakes us, or we see its entry here
+      idle = true;
+      if (ring.get((int) head & (CAPACITY - 1)) == null && !closed) {
+        LockSupport.park(this);
+      }
+      idle = false;
     }
   }
 
-  private int getThreadId() {
-    Integer id;
-    synchronized (Logger.class) {
-      id = (Integer)threadIds.get();
-      if (id == null) {
-        id = new Integer(nextThreadId++);
-        threadIds.set(id);
+  private void write(Entry e) {
+    StringBuilder msgbuf = new StringBuilder("T");
+    msgbuf.append(e.threadId).append("|");
+    msgbuf.append(timestampFormat.format(new Date(e.time))).append("|");
+    msgbuf.append(e.level);
+    if (e.caller != null) {
+      msgbuf.append("|").append(e.caller);
+    }
+    msgbuf.append(LINE_SEP);
+    if (e.hasForm) {
+      msgbuf.append(e.msg).append(": ");
+    } else {
+      if (e.msg != null) {
+        msgbuf.append(e.msg).append(LINE_SEP);
+      }
+      if (e.throwable != null) {
+        StringWriter writer = new StringWriter();
+        e.throwable.printStackTrace(new PrintWriter(writer));
+        msgbuf.append(writer.toString());
       }
     }
-    return id.intValue();
-  }
-
-  private String inferCaller() {
-    // Infer the calling class and method from a stack trace
-    StringWriter writer = new StringWriter();
-    new Exception().printStackTrace(new PrintWriter(writer));
-    StringTokenizer stackTraceParser = new StringTokenizer(writer.toString(), "\r\n");
-    String line = null;
-    boolean foundLogger = false;
-    while (stackTraceParser.hasMoreTokens()) {
-      line = stackTraceParser.nextToken();
-      if (foundLogger == false) {
-        if (line.indexOf("jde.juci.Logger") != -1) {
-          foundLogger = true;
-        }
+    try {
+      output.write(msgbuf.toString());
+      if (e.hasForm) {
+        lispWriter.writeUnknown(e.form);
+        output.write(LINE_SEP);
       }
-      else {
-        if (line.indexOf("jde.juci.Logger") == -1) {
-          break;
-        }
+    } catch (IOException io) {
+      // whoops, unable to write
+    } catch (RuntimeException re) {
+      // a form that cannot be written should not stop the logger
+    }
+  }
+
+  private static String inferCaller() {
+    // The first frame outside the logger is the caller
+    String self = Logger.class.getName();
+    for (StackTraceElement frame : new Throwable().getStackTrace()) {
+      if (!frame.getClassName().equals(self)) {
+        return frame.getClassName() + "." + frame.getMethodName()
+          + "(" + frame.getFileName() + ":" + frame.getLineNumber() + ")";
       }
     }
-    StringTokenizer classMethodParser = new StringTokenizer(line);
-    classMethodParser.nextToken(); // past 'at'
-    return classMethodParser.nextToken();
+    return "?";
   }
 
 }
@@ -0,0 +1,110 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A <code>System.out</code> that sends each thread's output to the client
+ * of the session the thread is serving.  Server code answers requests by
+ * printing to <code>System.out</code>; with this stream installed, several
+ * sessions can do so at once.  Threads outside a session write to the
+ * original standard output.
+ */
+public class SessionOutput extends PrintStream {
+
+    private static final ThreadLocal<PrintStream> targets = new ThreadLocal<>();
+    private static final AtomicInteger sessions = new AtomicInteger();
+
+    private final PrintStream fallback;
+
+    private SessionOutput(PrintStream fallback) {
+        super(fallback, true);
+        this.fallback = fallback;
+    }
+
+    /**
+     * Replaces <code>System.out</code> with a <code>SessionOutput</code>,
+     * unless it already is one.
+     */
+    public static synchronized void install() {
+        if (!(System.out instanceof SessionOutput)) {
+            System.setOut(new SessionOutput(System.out));
+        }
+    }
+
+    /**
+     * Sends the calling thread's output to a session's client.
+     *
+     * @param out the client's stream, or <code>null</code> for standard
+     * output
+     */
+    public static void setTarget(PrintStream out) {
+        boolean had = targets.get() != null;
+        if (out == null) {
+            targets.remove();
+            if (had) {
+                sessions.decrementAndGet();
+            }
+        } else {
+            targets.set(out);
+            if (!had) {
+                sessions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of threads whose output goes to a session's
+     * client rather than to standard output.
+     */
+    public static int getSessionCount() {
+        return sessions.get();
+    }
+
+    /**
+     * Returns where the calling thread's output goes.
+     *
+     * @return the stream set by {@link #setTarget}, or standard output
+     */
+    public static PrintStream getTarget() {
+        PrintStream out = System.out;
+        return out instanceof SessionOutput ? ((SessionOutput) out).target() : out;
+    }
+
+    private PrintStream target() {
+        PrintStream out = targets.get();
+        return out != null ? out : fallback;
+    }
+
+    public void write(int b) {
+        target().write(b);
+    }
+
+    public void write(byte[] buf, int off, int len) {
+        target().write(buf, off, len);
+    }
+
+    public void flush() {
+        target().flush();
+    }
+
+    public boolean checkError() {
+        return target().checkError();
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs identical requests that arrive while one is in flight only once.
+ * The first caller of a request runs its handler, and the answer it
+ * prints is also sent to every caller of the same request, with the same
+ * arguments, that arrives before it finishes.  Several clients asking
+ * for the class info of the same hot type at once then cost one lookup.
+ *
+ * <p>Answers are shared by copying what the first caller's thread prints
+ * to <code>System.out</code>, so coalescing needs {@link SessionOutput}
+ * installed and more than one session served; otherwise there is no one
+ * to share with, and every caller runs the handler itself.  If the
+ * first caller's handler throws, the others throw the same exception; if
+ * it is cancelled, the others run the request themselves.</p>
+ *
+ * <p>Only requests without side effects should be coalesced.  A
+ * {@link Scope} tells apart requests whose answers depend on more than
+ * their arguments.</p>
+ */
+public class SingleFlight {
+
+    /**
+     * The state of the caller, beyond the arguments, that a request's
+     * answer depends on, such as the project it is asked about.
+     */
+    public interface Scope {
+
+        /**
+         * Returns the calling thread's scope; requests coalesce only
+         * within the same one.
+         */
+        String current();
+    }
+
+    private static class Flight {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger followers = new AtomicInteger();
+        // Set before done is counted down; neither if abandoned
+        byte[] answer;
+        Exception failure;
+    }
+
+    private final Scope scope;
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Creates a group of requests coalesced on their arguments alone.
+     */
+    public SingleFlight() {
+        this(null);
+    }
+
+    /**
+     * Creates a group of requests coalesced on their arguments and
+     * scope.
+     *
+     * @param scope the caller's scope, or <code>null</code> for none
+     */
+    public SingleFlight(Scope scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Returns a handler that coalesces identical concurrent requests
+     * before passing them to <code>handler</code>.
+     *
+     * @param name the request name, which with the arguments identifies a
+     * request
+     * @param handler the handler
+     */
+    public Dispatcher.Handler coalesce(final String name, final Dispatcher.Handler handler) {
+        return new Dispatcher.Handler() {
+            public void handle(List<Object> args) throws Exception {
+                if (!(System.out instanceof SessionOutput)
+                    || SessionOutput.getSessionCount() < 2) {
+                    // no one to share the answer with, so no need to copy it
+                    handler.handle(args);
+                    return;
+                }
+                StringBuilder key = new StringBuilder();
+                if (scope != null) {
+                    key.append(scope.current()).append(' ');
+                }
+                key.append(name);
+                for (Object arg : args) {
+                    key.append(' ');
+                    key(key, arg);
+                }
+                run(key.toString(), handler, args);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of requests answered with another caller's
+     * answer.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    // The number of requests being run for callers that may follow
+    int inFlight() {
+        return flights.size();
+    }
+
+    // The number of callers waiting for a request's answer
+    int followers(String key) {
+        Flight flight = flights.get(key);
+        return flight == null ? 0 : flight.followers.get();
+    }
+
+    private void run(String key, Dispatcher.Handler handler, List<Object> args) throws Exception {
+        for (;;) {
+            Flight flight = new Flight();
+            Flight leader = flights.putIfAbsent(key, flight);
+            if (leader == null) {
+                lead(key, flight, handler, args);
+                return;
+            } else if (follow(leader)) {
+                return;
+            }
+            // the first caller gave up; try again
+        }
+    }
+
+    private void lead(String key, Flight flight, Dispatcher.Handler handler, List<Object> args)
+        throws Exception {
+        PrintStream out = SessionOutput.getTarget();
+        ByteArrayOutputStream answer = new ByteArrayOutputStream();
+        PrintStream tee = new PrintStream(new Tee(out, answer));
+        SessionOutput.setTarget(tee);
+        try {
+            handler.handle(args);
+            tee.flush();
+            flight.answer = answer.toByteArray();
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            flight.failure = e;
+            throw e;
+        } finally {
+            SessionOutput.setTarget(out);
+            flights.remove(key, flight);
+            flight.done.countDown();
+        }
+    }
+
+    // Returns false if the first caller gave up without an answer
+    private boolean follow(Flight flight) throws Exception {
+        flight.followers.incrementAndGet();
+        while (!flight.done.await(10, TimeUnit.MILLISECONDS)) {
+            Cancellation.checkpoint();
+        }
+        if (flight.failure != null) {
+            throw flight.failure;
+        } else if (flight.answer == null) {
+            return false;
+        }
+        System.out.write(flight.answer, 0, flight.answer.length);
+        System.out.flush();
+        coalesced.incrementAndGet();
+        return true;
+    }
+
+    // Appends an argument so that different arguments give different keys
+    private static void key(StringBuilder sb, Object arg) {
+        if (arg instanceof Object[]) {
+            sb.append('[');
+            for (Object o : (Object[]) arg) {
+                sb.append(' ');
+                key(sb, o);
+            }
+            sb.append(']');
+        } else if (arg instanceof List) {
+            sb.append('(');
+            for (Object o : (List<?>) arg) {
+                sb.append(' ');
+                key(sb, o);
+            }
+            sb.append(')');
+        } else if (arg instanceof Quoted) {
+            sb.append('\'');
+            key(sb, ((Quoted) arg).getQuoted());
+        } else if (arg instanceof String) {
+            sb.append('"').append(((String) arg).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        } else {
+            sb.append(arg);
+        }
+    }
+
+    // Writes to the caller's client and to the copy for the others
+    private static class Tee extends OutputStream {
+        private final OutputStream out;
+        private final OutputStream copy;
+
+        Tee(OutputStream out, OutputStream copy) {
+            this.out = out;
+            this.copy = copy;
+        }
+
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy.write(b);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy.write(b, off, len);
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves sessions to clients connecting on a loopback TCP port, so that
+ * several editors can share one server and its caches.  Each connection
+ * gets its own {@link Session}, run on its own thread, which reads
+ * requests from the client and answers them in its own framing.  While a
+ * session runs, {@link SessionOutput} sends what its thread prints to
+ * <code>System.out</code> to that session's client, if installed.
+ *
+ * <p>Only the loopback interface is bound; the port is not reachable from
+ * other hosts.</p>
+ */
+public class SocketTransport {
+
+    /**
+     * The conversation with one client.
+     */
+    public interface Session {
+
+        /**
+         * Serves requests until the client disconnects or the session
+         * ends.
+         *
+         * @param in the client's requests
+         * @param out the stream to the client; also <code>System.out</code>
+         * for the session's thread
+         * @exception IOException if the connection fails
+         */
+        void serve(BufferedReader in, PrintStream out) throws IOException;
+    }
+
+    /**
+     * Makes a session for each new client.
+     */
+    public interface SessionFactory {
+        Session newSession();
+    }
+
+    private final ServerSocket socket;
+    private final SessionFactory sessions;
+    private final AtomicInteger sessionCount = new AtomicInteger();
+
+    /**
+     * Binds a loopback port.
+     *
+     * @param port the port, or 0 for any free one
+     * @param sessions makes the session for each client
+     * @exception IOException if the port cannot be bound
+     */
+    public SocketTransport(int port, SessionFactory sessions) throws IOException {
+        this.socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.sessions = sessions;
+    }
+
+    /**
+     * Returns the port clients connect to.
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Accepts clients on a background daemon thread.
+     */
+    public void start() {
+        Thread t = new Thread("SocketTransport listener " + getPort()) {
+                public void run() {
+                    try {
+                        SocketTransport.this.run();
+                    } catch (IOException e) {
+                        e.printStackTrace(System.err);
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Accepts clients until the transport is closed.
+     *
+     * @exception IOException if accepting fails for another reason
+     */
+    public void run() throws IOException {
+        for (;;) {
+            final Socket client;
+            try {
+                client = socket.accept();
+            } catch (SocketException e) {
+                if (socket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            Thread t = new Thread("SocketTransport session " + sessionCount.incrementAndGet()) {
+                    public void run() {
+                        serve(client);
+                    }
+                };
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Stops accepting clients.  Sessions already running go on until their
+     * clients disconnect.
+     */
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private void serve(Socket client) {
+        try (Socket s = client) {
+            s.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+            PrintStream out = new PrintStream(new BufferedOutputStream(s.getOutputStream()));
+            SessionOutput.setTarget(out);
+            try {
+                sessions.newSession().serve(in, out);
+            } finally {
+                SessionOutput.setTarget(null);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client went away
+        }
+    }
+}
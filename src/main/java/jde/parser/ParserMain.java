@@ -1,5 +1,9 @@
 package jde.parser;
 
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
 import jde.parser.syntaxtree.*;
 import jde.parser.visitor.*;
 
@@ -41,9 +45,12 @@ public class ParserMain {
     }
   }
 
+  // The parser is generated static, so there can be only one; every
+  // method that uses it holds the class lock, as requests from several
+  // clients may arrive at once
   static JavaParser parser;
   
-  public static void parseFile(String pathName)  {
+  public static synchronized void parseFile(String pathName)  {
     try {
       if (parser == null)
 	parser = new JavaParser(new java.io.FileInputStream(pathName));
@@ -71,7 +78,7 @@ public class ParserMain {
     System.out.flush();
   }
 
-  public static void getVariables(String pathName) {
+  public static synchronized void getVariables(String pathName) {
     try {
       if (parser == null)
 	parser = new JavaParser(new java.io.FileInputStream(pathName));
@@ -96,6 +103,84 @@ public class ParserMain {
     }
     
   }
-  
+
+  /**
+   * Returns the names a source file imports. Only the package and import
+   * declarations are parsed, so the rest of the file may use syntax this
+   * Java 1.1 grammar does not know. A static import yields the class it
+   * imports from; an on-demand import yields the package or class name
+   * followed by ".*".
+   *
+   * @param pathName path of the source file
+   * @return the imported names, in order
+   * @exception java.io.FileNotFoundException if the file does not exist
+   */
+  public static synchronized List<String> getImports(String pathName)
+    throws java.io.FileNotFoundException {
+    java.io.InputStream in = new java.io.FileInputStream(pathName);
+    List<String> imports = new ArrayList<>();
+    try {
+      if (parser == null)
+	parser = new JavaParser(in);
+      else
+	JavaParser.ReInit(in);
+
+      if (JavaParser.getToken(1).kind == JavaParserConstants.PACKAGE) {
+	try {
+	  JavaParser.PackageDeclaration();
+	} catch (ParseException e) {
+	  skipDeclaration(null);
+	}
+      }
+
+      while (JavaParser.getToken(1).kind == JavaParserConstants.IMPORT) {
+	if (JavaParser.getToken(2).kind == JavaParserConstants.STATIC) {
+	  StringBuilder name = new StringBuilder();
+	  skipDeclaration(name);
+	  // import static pkg.Class.member; or pkg.Class.*;
+	  int lastDot = name.lastIndexOf(".");
+	  if (lastDot > 0)
+	    imports.add(name.substring(0, lastDot));
+	  continue;
+	}
+	try {
+	  ImportDeclaration decl = JavaParser.ImportDeclaration();
+	  imports.add(getName(decl.f1) + (decl.f2.present() ? ".*" : ""));
+	} catch (ParseException e) {
+	  skipDeclaration(null);
+	}
+      }
+    } catch (TokenMgrError e) {
+      // a lexical error ends the header; keep what was read
+    } finally {
+      try {
+	in.close();
+      } catch (java.io.IOException e) {
+      }
+    }
+    return imports;
+  }
+
+  // Consumes tokens through the next semicolon, appending the names
+  // and dots after "import static" to name if it is not null.
+  private static void skipDeclaration(StringBuilder name) {
+    for (Token t = JavaParser.getNextToken();
+	 t.kind != JavaParserConstants.SEMICOLON && t.kind != JavaParserConstants.EOF;
+	 t = JavaParser.getNextToken()) {
+      if (name != null && t.kind != JavaParserConstants.IMPORT
+	  && t.kind != JavaParserConstants.STATIC)
+	name.append(t.image);
+    }
+  }
+
+  private static String getName(Name name) {
+    StringBuilder sb = new StringBuilder(name.f0.tokenImage);
+    for (Enumeration<?> e = name.f1.elements(); e.hasMoreElements();) {
+      NodeSequence seq = (NodeSequence) e.nextElement();
+      sb.append('.');
+      sb.append(((NodeToken) seq.elementAt(1)).tokenImage);
+    }
+    return sb.toString();
+  }
  
 }
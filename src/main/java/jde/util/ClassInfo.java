@@ -26,7 +26,12 @@ package jde.util;
 
 import java.io.*;
 import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import jde.util.DynamicClassLoader;
+import jde.juci.LispWriter;
 
 /**
  * This class provides information about classes on jdee-global-classpath.
@@ -96,17 +101,9 @@ public class ClassInfo {
    * @param child  Name of the supposed child class
    */
   public static void isAncestorOf(String ancestor, String child) {
-    try {
-      Class classAncestor = Class.forName( ancestor );
-      Class classChild = Class.forName( child );
-      if( classAncestor.isAssignableFrom( classChild ) )
-          System.out.println(T);
-      else
-        System.out.println(NIL);
-    } catch( Exception ex) {
-      System.out.println(NIL);
-    }
+    TypeHierarchy.isAncestorOf(ancestor, child);
   }
+
     
   /**
    * Returns true if the entity is accessible to the specified level of
@@ -156,323 +153,254 @@ public class ClassInfo {
 	return level;
   }
 	
-  private static StringBuffer listModifiers(int modifiers) {
-	StringBuffer sb = new StringBuffer (30);
-
-	if (Modifier.isAbstract(modifiers)) {
-	  sb.append("\"abstract\"");
-	  sb.append(SPACE);	  
-	}
-
-	if (Modifier.isFinal(modifiers)) {
-	  sb.append("\"final\"");
-	  sb.append(SPACE);	  
-	}
-
-	if (Modifier.isInterface(modifiers)) {
-	  sb.append("\"interface\"");
-	  sb.append(SPACE);	  
-	}
-
-	if (Modifier.isNative(modifiers)) {
-	  sb.append("\"native\"");
-	  sb.append(SPACE);	  
-	}
-
-	if (Modifier.isPrivate(modifiers)) {
-	  sb.append("\"private\"");
-	  sb.append(SPACE);	  
-	}
-
-	if (Modifier.isProtected(modifiers)) {
-	  sb.append("\"protected\"");
-	  sb.append(SPACE);	  
-	}
-
-	if (Modifier.isPublic(modifiers)) {
-	  sb.append("\"public\"");
-	  sb.append(SPACE);	  
-	}
+  /** Modifiers that {@link #listModifiers} lists. */
+  private static final int LISTED_MODIFIERS = Modifier.ABSTRACT | Modifier.FINAL
+    | Modifier.INTERFACE | Modifier.NATIVE | Modifier.PRIVATE | Modifier.PROTECTED
+    | Modifier.PUBLIC | Modifier.STATIC | Modifier.STRICT | Modifier.SYNCHRONIZED
+    | Modifier.TRANSIENT | Modifier.VOLATILE;
 
-	if (Modifier.isStatic(modifiers)) {
-	  sb.append("\"static\"");
-	  sb.append(SPACE);	  
-	}
-
-	if (Modifier.isStrict(modifiers)) {
-	  sb.append("\"strict\"");
-	  sb.append(SPACE);	  
-	}
-
-	if (Modifier.isSynchronized(modifiers)) {
-	  sb.append("\"synchronized\"");
-	  sb.append(SPACE);	  
-	}
-
-	if (Modifier.isTransient(modifiers)) {
-	  sb.append("\"transient\"");
-	  sb.append(SPACE);	  
-	}
-
-	if (Modifier.isVolatile(modifiers)) {
-	  sb.append("\"volotile\"");
-	  sb.append(SPACE);	  
-	}
+  /**
+   * Turns the type-name table of {@link #getClassInfo(String)} on or off.
+   * With the table, the first occurrence of a type name in a response is
+   * written as <code>#1="java.lang.String"</code> and later ones as
+   * <code>#1#</code>.  The setting is the calling client's; see
+   * {@link SessionState}.  Prints t.
+   *
+   * @param on whether to label repeated type names
+   */
+  public static void setTypeTable(boolean on) {
+    SessionState.current().setTypeTable(on);
+    System.out.println(T);
+    System.out.flush();
+  }
 
-	if (sb.length() > 0) {
-	  StringBuffer temp = new StringBuffer(sb.length() + 26);
-	  temp.append("(cons 'typemodifiers (list ");
-	  temp.append(sb);
-	  temp.append("))");
-	  sb = temp;
-	}
-	
-	return sb;
-	
+  private static boolean hasModifiers(int modifiers) {
+    return (modifiers & LISTED_MODIFIERS) != 0;
   }
 
-  private static StringBuffer listExceptions(Class[] classes) {
-	StringBuffer sb = new StringBuffer (30);
-	  	
-	sb.append("(cons 'throws  (list ");
-	for (int i = 0; i < classes.length; i++) {
-	  sb.append(printWithinQuotes(className(classes[i])));
-	  if ((i + 1) != classes.length) {
-		sb.append(SPACE);
-	  }
-	}
-	sb.append("))");
+  private static void listModifiers(int modifiers, LispEncoder out) {
+    if (!hasModifiers(modifiers)) {
+      return;
+    }
+    out.write("(cons 'typemodifiers (list ");
+    if (Modifier.isAbstract(modifiers)) {
+      out.write("\"abstract\" ");
+    }
+    if (Modifier.isFinal(modifiers)) {
+      out.write("\"final\" ");
+    }
+    if (Modifier.isInterface(modifiers)) {
+      out.write("\"interface\" ");
+    }
+    if (Modifier.isNative(modifiers)) {
+      out.write("\"native\" ");
+    }
+    if (Modifier.isPrivate(modifiers)) {
+      out.write("\"private\" ");
+    }
+    if (Modifier.isProtected(modifiers)) {
+      out.write("\"protected\" ");
+    }
+    if (Modifier.isPublic(modifiers)) {
+      out.write("\"public\" ");
+    }
+    if (Modifier.isStatic(modifiers)) {
+      out.write("\"static\" ");
+    }
+    if (Modifier.isStrict(modifiers)) {
+      out.write("\"strict\" ");
+    }
+    if (Modifier.isSynchronized(modifiers)) {
+      out.write("\"synchronized\" ");
+    }
+    if (Modifier.isTransient(modifiers)) {
+      out.write("\"transient\" ");
+    }
+    if (Modifier.isVolatile(modifiers)) {
+      out.write("\"volotile\" ");
+    }
+    out.write("))");
+  }
 
-	return sb;
+  private static void listExceptions(Class[] classes, LispEncoder out) {
+    out.write("(cons 'throws  (list ");
+    for (int i = 0; i < classes.length; i++) {
+      if (i > 0) {
+        out.write(SPACE);
+      }
+      out.typeName(className(classes[i]));
+    }
+    out.write("))");
   }
 
 
   /**
-   * Creates a field info list. The list has the following form
+   * Writes a field info list. The list has the following form
    *
-   *  (0 name access-level type)
+   *  (list "name" 'variable "type" nil modifiers doc)
    *
-   * where 0 indicates that this info list is for a field, name is 
-   * the name of the field, access-level is one of
-   * PUBLIC, PROTECTED, PACKAGE, or PRIVATE, and type is
-   * the type of the field. 
+   * where modifiers is nil or a list of the field's modifiers and doc
+   * is the field's docstring or nil.
    *  
-   * @param field field name 
+   * @param field the field
+   * @param out the response
    */
-  private static StringBuffer tokenizeField(Field field) {
-    StringBuffer sb = new StringBuffer (30);
-    sb.append(START_LIST);
-    sb.append(printWithinQuotes(field.getName()));
-    sb.append(SPACE);
-    sb.append("'variable");
-    sb.append(SPACE);
-    sb.append(printWithinQuotes(className(field.getType())));
-    sb.append(SPACE);
-	sb.append(NIL); // default value
-    sb.append(SPACE);
-
-	StringBuffer modifiers = listModifiers(field.getModifiers());
-	if (modifiers.length() > 0) {
-	  sb.append(START_LIST);
-	  sb.append(modifiers);
-	  sb.append(END_PAREN);
-	} else {
-	  sb.append(NIL);
-	}
-    sb.append(SPACE);
+  private static void tokenizeField(Field field, LispEncoder out) {
+    out.write(START_LIST);
+    out.name(field.getName());
+    out.write(" 'variable ");
+    out.typeName(className(field.getType()));
+    out.write(" nil "); // default value
+
+    int modifiers = field.getModifiers();
+    if (hasModifiers(modifiers)) {
+      out.write(START_LIST);
+      listModifiers(modifiers, out);
+      out.write(END_PAREN);
+    } else {
+      out.write(NIL);
+    }
+    out.write(SPACE);
 
-	sb.append(NIL); // docstring
-	sb.append(END_PAREN);
-        
-    return sb;
+    out.write(docstring(SourceIndex.getDoc(field)));
+    out.write(END_PAREN);
   }
     
   /**
-   * Prints (list "name" "params") to the system output.
+   * Writes (list "name" 'function params specifiers doc).
    *
-   * @param name constructor name
-   * @param params parameter type
+   * @param ctor the constructor
+   * @param out the response
    */
-  private static StringBuffer tokenizeCtor(Constructor ctor) {
-    StringBuffer sb = new StringBuffer (30);
-    sb.append(START_LIST);
-    sb.append(printWithinQuotes(ctor.getName()));
-    sb.append(SPACE);
-    sb.append("'function ");
-    sb.append(listClasses(ctor.getParameterTypes()));
-    sb.append(SPACE);
+  private static void tokenizeCtor(Constructor ctor, LispEncoder out) {
+    out.write(START_LIST);
+    out.name(ctor.getName());
+    out.write(" 'function ");
+    listClasses(ctor.getParameterTypes(), out);
+    out.write(SPACE);
 
     // extra specifiers
-    sb.append(START_LIST);
-    sb.append("'(constructor . t)");
-    StringBuffer temp = listModifiers(ctor.getModifiers());
-    if (temp.length() > 0) {
-      sb.append(SPACE);
-	  sb.append(temp);
+    out.write(START_LIST);
+    out.write("'(constructor . t)");
+    int modifiers = ctor.getModifiers();
+    if (hasModifiers(modifiers)) {
+      out.write(SPACE);
+      listModifiers(modifiers, out);
     } 
     Class[] types = ctor.getExceptionTypes();
     if (types.length > 0) {
-      sb.append(SPACE);
-      sb.append(listExceptions(types));
+      out.write(SPACE);
+      listExceptions(types, out);
     }
-    sb.append(END_PAREN);
-    sb.append(SPACE);
+    out.write(END_PAREN);
+    out.write(SPACE);
 
-    sb.append(NIL); // no docstring
+    out.write(docstring(SourceIndex.getDoc(ctor)));
 
-    sb.append(END_PAREN);
-
-    return sb;
+    out.write(END_PAREN);
   }
 
   /**
-   * Prints (list "name" "returnType" "args") to the system output.
+   * Writes (list "name" 'function params specifiers doc).
    *
-   * @param name method name
-   * @param returnType method return type
-   * @param args method arguments
+   * @param method the method
+   * @param out the response
    */
-  private static StringBuffer tokenizeMethod(Method method) {
-    StringBuffer sb = new StringBuffer (30);
-    sb.append(START_LIST);
-    sb.append(printWithinQuotes(method.getName()));
-    sb.append(SPACE);
-    sb.append("'function ");
-    sb.append(SPACE);
-    sb.append(listClasses(method.getParameterTypes()));
-    sb.append(SPACE);
+  private static void tokenizeMethod(Method method, LispEncoder out) {
+    out.write(START_LIST);
+    out.name(method.getName());
+    out.write(" 'function  ");
+    listClasses(method.getParameterTypes(), out);
+    out.write(SPACE);
 
     // extra specifiers
-    StringBuffer temp = listModifiers(method.getModifiers());
+    out.write("(list");
+    int modifiers = method.getModifiers();
+    if (hasModifiers(modifiers)) {
+      out.write(SPACE);
+      listModifiers(modifiers, out);
+    } 
     Class[] types = method.getExceptionTypes();
-
-    if (sb.length() > 0 || types.length > 0) {
-      sb.append("(list");
-      
-      if (temp.length() > 0) {
-	sb.append(SPACE);
-	sb.append(temp);
-      } 
-
-      if (types.length > 0) {
-	sb.append(SPACE);
-	sb.append(listExceptions(types));
-      }
-       
+    if (types.length > 0) {
+      out.write(SPACE);
+      listExceptions(types, out);
     }
+    out.write(END_PAREN);
+    out.write(SPACE);
 
-    sb.append(END_PAREN);
-    sb.append(SPACE);
+    out.write(docstring(SourceIndex.getDoc(method)));
 
-    sb.append(NIL); // no docstring
-
-    sb.append(END_PAREN);
-
-    return sb; 
+    out.write(END_PAREN);
   } 
 
   /**
-   * Get (list INNERCLASSINFO "className" access)
+   * Returns the docstring of a member as a lisp string, or nil if its
+   * source has not been indexed.
    *
-   * @param name className
+   * @param doc first sentence of the member's javadoc, or null
    */
-  private static StringBuffer innerClassInfo(Class ic) {
-    StringBuffer sb = new StringBuffer (30);
-    sb.append(START_LIST);
-    sb.append(printWithinQuotes(ic.getName()));
-    sb.append(SPACE);
-    sb.append(String.valueOf(INNER_CLASS_INFO));
-    sb.append(SPACE);
-    sb.append(accessLevel(ic.getModifiers()));
-    sb.append(END_PAREN);
-    return sb;
-  }    
+  private static String docstring(String doc) {
+    return doc == null ? NIL : LispWriter.quote(doc);
+  }
 
-	    
   /**
-   * Prints item within quotes i.e "item"
+   * Writes (list "className" INNERCLASSINFO access)
    *
-   * @param item string to be quoted.
+   * @param ic the inner class
+   * @param out the response
    */
-  private static String printWithinQuotes(String item) {
-    StringBuffer sb = new StringBuffer (30);
-    sb.append(DOUBLE_QUOTE);
-    sb.append(item);
-    sb.append(DOUBLE_QUOTE);
-        
-    return sb.toString();
-  }
-
+  private static void innerClassInfo(Class ic, LispEncoder out) {
+    out.write(START_LIST);
+    out.name(ic.getName());
+    out.write(SPACE);
+    out.write(String.valueOf(INNER_CLASS_INFO));
+    out.write(SPACE);
+    out.write(accessLevel(ic.getModifiers()));
+    out.write(END_PAREN);
+  }    
 
-  
- 
- private static void getInheritedInnerClasses(Class c, StringBuffer sb)  {
-    //This is only used while initializing
-    if (c == null) {
-      return;
-    }
-	
-	
-	Class[] classes = c.getDeclaredClasses();
 
-        
-    for (int index = 0; index < classes.length ; index++) {
-      Class ic = classes[index];
-      if (!Modifier.isPrivate(ic.getModifiers())) {
-		sb.append(innerClassInfo(ic));
+  /**
+   * Collects the inner classes of a class and the non-private inner
+   * classes of its superclasses.
+   */
+  private static List<Class> getInnerClasses(Class c) {
+    List<Class> inner = new ArrayList<>(Arrays.asList(c.getDeclaredClasses()));
+    for (Class s = c.getSuperclass(); s != null; s = s.getSuperclass()) {
+      Class[] classes = s.getDeclaredClasses();
+      for (int index = 0; index < classes.length ; index++) {
+        if (!Modifier.isPrivate(classes[index].getModifiers())) {
+          inner.add(classes[index]);
+        }
       }
     }
-
-	getInheritedInnerClasses(c.getSuperclass(), sb);
-
+    return inner;
   }
 
-  private static void getInnerClasses(Class c, StringBuffer sb) {
-
-
-	// Get methods declared by c.
-	Class[] classes = c.getDeclaredClasses();
-
-    for (int index = 0; index < classes.length ; index++) {
-	  sb.append(innerClassInfo(classes[index]));
-    }
-
-	getInheritedInnerClasses(c.getSuperclass(), sb);
-
-   }
-        
-
-  private static void getMemberInfo(Class c, StringBuffer sb) {
-    sb.append(START_LIST);
-        
-	// Get fields declared by c.
-	Field[] fields = c.getDeclaredFields();
-
-    for (int index = 0; index < fields.length ; index++) {
-	  sb.append(tokenizeField(fields[index]));
-	}
-
-    // constructors
+  // Everything that can fail with a LinkageError is looked up before the
+  // first token is written, so that an error never follows part of a
+  // response that has already been sent.
+  private static void getMemberInfo(Class c, LispEncoder out) {
+    Field[] fields = c.getDeclaredFields();
     Constructor[] ctors = c.getDeclaredConstructors();
-      
-    for (int index = 0; index < ctors.length; index++) {
-      sb.append(tokenizeCtor(ctors[index]));
-	}
-
-    // Get methods declared by c.
     Method[] methods = c.getDeclaredMethods();
+    List<Class> inner = getInnerClasses(c);
 
+    out.write(START_LIST);
+    for (int index = 0; index < fields.length ; index++) {
+      tokenizeField(fields[index], out);
+    }
+    for (int index = 0; index < ctors.length; index++) {
+      tokenizeCtor(ctors[index], out);
+    }
     for (int index = 0; index < methods.length ; index++) {
-      sb.append(tokenizeMethod(methods[index]));
+      tokenizeMethod(methods[index], out);
     }
-
-    // inner classes, including inherited classes
-    getInnerClasses(c, sb);
-
-    sb.append(END_PAREN);
-    sb.append(NL);
-	
-    return;
+    for (Iterator<Class> i = inner.iterator(); i.hasNext();) {
+      innerClassInfo(i.next(), out);
+    }
+    out.write(END_PAREN);
+    out.write(NL);
   }
    
   /**
@@ -486,20 +414,10 @@ public class ClassInfo {
       DynamicClassLoader dcl = new DynamicClassLoader();
       Class c = dcl.loadClass(className);
       if (c != null) {
-        StringBuffer sb = new StringBuffer (3000);
-        sb.append(START_LIST);
-		sb.append(printWithinQuotes(className));
-		sb.append(SPACE);
-		sb.append("'type");
-		sb.append(SPACE);
-        getMemberInfo(c, sb);
-        sb.append(END_PAREN);
-        sb.append(NL);
-                
-        Writer out
-          = new BufferedWriter(new OutputStreamWriter(System.out));
+        LispEncoder out = LispEncoder.forStdout(SessionState.current().isTypeTable());
+        classInfo(className, c, out);
+        out.write(NL);
         try {
-          out.write(sb.toString());
           out.flush();
         } catch (IOException e) {
         }
@@ -520,6 +438,35 @@ public class ClassInfo {
     }
   }
 
+  private static void classInfo(String className, Class c, LispEncoder out) {
+    out.write(START_LIST);
+    out.name(className);
+    out.write(" 'type ");
+    getMemberInfo(c, out);
+    out.write(END_PAREN);
+  }
+
+  /**
+   * Gets information on several classes in one request.  The classes are
+   * resolved in parallel and printed to System.out as
+   * <code>(list (cons "name" INFO) ...)</code>, where INFO is the list
+   * {@link #getClassInfo(String)} would print, <code>nil</code> if the
+   * class cannot be found, or <code>(list 'error "message")</code>.
+   *
+   * @param classNames fully qualified class names
+   */
+  public static void getClassInfoBatch(String[] classNames) {
+    new ClassInfoBatch() {
+      String render(String className) throws ClassNotFoundException {
+        DynamicClassLoader dcl = new DynamicClassLoader();
+        Class c = dcl.loadClass(className);
+        LispEncoder out = new LispEncoder(null, false);
+        classInfo(className, c, out);
+        return out.toString();
+      }
+    }.print(classNames);
+  }
+
 
     
   /**
@@ -553,24 +500,20 @@ public class ClassInfo {
       return c.getName();
   }
     
-  static StringBuffer listClasses(Class[] classes) {
-    StringBuffer sb = new StringBuffer (100);
-	if (classes.length > 0) {
-	  	
-	  sb.append(START_LIST);
-	  sb.append(SPACE);
-	  for (int i = 0; i < classes.length; i++) {
-		sb.append(printWithinQuotes(className(classes[i])));
-		if ((i + 1) != classes.length) {
-		  sb.append(SPACE);
-		}
-	  }
-	  sb.append(END_PAREN);
-	} else {
-	  sb.append(NIL);
-	}
-	
-	return sb;
+  static void listClasses(Class[] classes, LispEncoder out) {
+    if (classes.length > 0) {
+      out.write(START_LIST);
+      out.write(SPACE);
+      for (int i = 0; i < classes.length; i++) {
+        if (i > 0) {
+          out.write(SPACE);
+        }
+        out.typeName(className(classes[i]));
+      }
+      out.write(END_PAREN);
+    } else {
+      out.write(NIL);
+    }
   }
 
   /**
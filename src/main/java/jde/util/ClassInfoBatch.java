@@ -0,0 +1,174 @@
+/*
+ *    ClassInfoBatch.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import jde.juci.Cancellation;
+import jde.juci.LispWriter;
+
+/**
+ * Resolves the class info of many classes in one request.  Each class is
+ * loaded and reflected on a shared pool of daemon worker threads, and the
+ * results are printed to System.out as a single list of the form
+ *
+ * <pre>
+ *   (list (cons "a.B" INFO) (cons "c.D" INFO) ...)
+ * </pre>
+ *
+ * in the order the names were given.  INFO is whatever the subclass
+ * renders for the class, <code>nil</code> if the class cannot be found,
+ * or <code>(list 'error "message")</code> if loading it failed, so one bad
+ * class never aborts the rest of the batch.
+ */
+abstract class ClassInfoBatch {
+
+  /** Shared worker pool; reflection is CPU bound, so one thread per core. */
+  private static final ExecutorService pool =
+    Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                 new ThreadFactory() {
+                                   private int count = 0;
+                                   public synchronized Thread newThread(Runnable r) {
+                                     Thread t = new Thread(r, "jdee class info worker " + (++count));
+                                     t.setDaemon(true);
+                                     return t;
+                                   }
+                                 });
+
+  /**
+   * Loads a class and renders its info form.
+   *
+   * @param className fully qualified name of the class
+   * @return the lisp form describing the class
+   * @exception ClassNotFoundException if the class cannot be found
+   * @exception IOException if rendering fails
+   */
+  abstract String render(String className)
+    throws ClassNotFoundException, IOException;
+
+  /**
+   * Returns the info form for <code>className</code>, or an inline error
+   * form if it cannot be produced.
+   *
+   * @param className fully qualified name of the class
+   * @return a lisp form
+   */
+  String resolve(String className) {
+    try {
+      return render(className);
+    } catch (ClassNotFoundException | NoClassDefFoundError e) {
+      return JdeUtilities.NIL;
+    } catch (Exception e) {
+      return error("Trying to load " + className + " caused a Java exception: " + e);
+    } catch (UnsatisfiedLinkError e) {
+      // This occurs with classes that have native methods whose native
+      // implementations cannot be found.
+      return error("Trying to load " + className + " caused a Java UnsatisfiedLinkError: " + e);
+    } catch (LinkageError e) {
+      return error("Trying to load " + className + " caused a Java LinkageError: " + e);
+    }
+  }
+
+  /**
+   * Resolves all the classes in parallel and prints the combined list to
+   * System.out.
+   *
+   * @param classNames fully qualified class names
+   */
+  void print(String[] classNames) {
+    List<Future<String>> results = new ArrayList<>(classNames.length);
+    final SessionState state = SessionState.current();
+    for (int i = 0; i < classNames.length; i++) {
+      final String className = classNames[i];
+      results.add(pool.submit(new Callable<String>() {
+          public String call() {
+            SessionState previous = SessionState.bind(state);
+            try {
+              return resolve(className);
+            } finally {
+              SessionState.bind(previous);
+            }
+          }
+        }));
+    }
+
+    // the whole list is built before any of it is written, so that a
+    // cancelled batch prints nothing
+    StringBuilder sb = new StringBuilder(JdeUtilities.START_LIST);
+    for (int i = 0; i < classNames.length; i++) {
+      sb.append("\n(cons ");
+      sb.append(LispWriter.quote(classNames[i]));
+      sb.append(JdeUtilities.SPACE);
+      sb.append(get(classNames[i], results.get(i)));
+      sb.append(JdeUtilities.END_PAREN);
+      if (Cancellation.isCurrentCancelled()) {
+        for (Future<String> result : results) {
+          result.cancel(false);
+        }
+        Cancellation.checkpoint();
+      }
+    }
+    sb.append(JdeUtilities.END_PAREN);
+    sb.append("\n");
+
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 8192);
+    try {
+      out.write(sb.toString());
+      out.flush();
+    } catch (IOException e) {
+    }
+  }
+
+  private static String get(String className, Future<String> result) {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return error("Interrupted while loading " + className);
+    } catch (ExecutionException e) {
+      return error("Trying to load " + className + " caused a Java exception: " + e.getCause());
+    }
+  }
+
+  /**
+   * Formats an inline error entry.  Unlike the <code>(error ...)</code>
+   * form printed by the single class methods, this is data rather than a
+   * call, so evaluating the batch result does not signal.
+   *
+   * @param message the error message
+   * @return <code>(list 'error "message")</code>
+   */
+  static String error(String message) {
+    return "(list 'error " + LispWriter.quote(message) + ")";
+  }
+
+}
+
+// End of ClassInfoBatch.java
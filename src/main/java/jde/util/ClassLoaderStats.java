@@ -0,0 +1,268 @@
+/*
+ *    ClassLoaderStats.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters for {@link DynamicClassLoader}, with gauges of the JVM's
+ * class count and metaspace.  Every completion request makes a new loader
+ * and may define classes with it, so loaders that are never collected or
+ * a defined class count that keeps climbing within one classpath
+ * generation point at a leak long before the server runs out of memory.
+ *
+ * <p>The counters are published over JMX as
+ * <code>jde.util:type=ClassLoaderStats</code> and printed as an alist by
+ * {@link #getStats}.</p>
+ */
+public final class ClassLoaderStats implements ClassLoaderStatsMBean {
+
+  private static final ClassLoaderStats INSTANCE = new ClassLoaderStats();
+
+  private static final AtomicLong loadersCreated = new AtomicLong();
+  private static final AtomicLong classesDefined = new AtomicLong();
+  private static final AtomicLong platformLoads = new AtomicLong();
+  private static final AtomicLong forNameFallbacks = new AtomicLong();
+  private static final AtomicLong parentLoads = new AtomicLong();
+  private static final AtomicLong filesRead = new AtomicLong();
+  private static final AtomicLong bytesRead = new AtomicLong();
+  private static final AtomicLong zipOpens = new AtomicLong();
+  private static final AtomicLong archivesSkipped = new AtomicLong();
+
+  private static int definedGeneration;
+  private static long definedThisGeneration;
+
+  /** Weak references to loaders still reachable. */
+  private static final Set<Reference<ClassLoader>> liveLoaders =
+    Collections.synchronizedSet(new HashSet<Reference<ClassLoader>>());
+  private static final ReferenceQueue<ClassLoader> collectedLoaders = new ReferenceQueue<>();
+
+  static {
+    try {
+      ManagementFactory.getPlatformMBeanServer()
+        .registerMBean(INSTANCE, new ObjectName("jde.util:type=ClassLoaderStats"));
+    } catch (JMException e) {
+      System.err.println("Cannot register ClassLoaderStats MBean: " + e);
+    }
+  }
+
+  private ClassLoaderStats() {
+  }
+
+  /*************************************************************************
+   * Recording
+   *************************************************************************/
+
+  static void loaderCreated(ClassLoader loader) {
+    loadersCreated.incrementAndGet();
+    expungeCollected();
+    liveLoaders.add(new WeakReference<ClassLoader>(loader, collectedLoaders));
+  }
+
+  static void classDefined() {
+    classesDefined.incrementAndGet();
+    int generation = JdeUtilities.getClasspathGeneration();
+    synchronized (INSTANCE) {
+      if (generation != definedGeneration) {
+        definedGeneration = generation;
+        definedThisGeneration = 0;
+      }
+      definedThisGeneration++;
+    }
+  }
+
+  static void platformLoad() {
+    platformLoads.incrementAndGet();
+  }
+
+  static void forNameFallback() {
+    forNameFallbacks.incrementAndGet();
+  }
+
+  static void parentLoad() {
+    parentLoads.incrementAndGet();
+  }
+
+  static void fileRead(int bytes) {
+    filesRead.incrementAndGet();
+    bytesRead.addAndGet(bytes);
+  }
+
+  static void zipOpened() {
+    zipOpens.incrementAndGet();
+  }
+
+  static void archiveSkipped() {
+    archivesSkipped.incrementAndGet();
+  }
+
+  private static void expungeCollected() {
+    for (Reference<? extends ClassLoader> ref = collectedLoaders.poll();
+         ref != null; ref = collectedLoaders.poll()) {
+      liveLoaders.remove(ref);
+    }
+  }
+
+  /*************************************************************************
+   * ClassLoaderStatsMBean
+   *************************************************************************/
+
+  public long getLoadersCreated() {
+    return loadersCreated.get();
+  }
+
+  public long getLiveLoaders() {
+    expungeCollected();
+    return liveLoaders.size();
+  }
+
+  public long getClassesDefined() {
+    return classesDefined.get();
+  }
+
+  public synchronized long getClassesDefinedThisGeneration() {
+    return definedGeneration == JdeUtilities.getClasspathGeneration() ? definedThisGeneration : 0;
+  }
+
+  public int getClasspathGeneration() {
+    return JdeUtilities.getClasspathGeneration();
+  }
+
+  public long getPlatformLoads() {
+    return platformLoads.get();
+  }
+
+  public long getForNameFallbacks() {
+    return forNameFallbacks.get();
+  }
+
+  public long getParentLoads() {
+    return parentLoads.get();
+  }
+
+  public long getFilesRead() {
+    return filesRead.get();
+  }
+
+  public long getBytesRead() {
+    return bytesRead.get();
+  }
+
+  public long getZipOpens() {
+    return zipOpens.get();
+  }
+
+  public long getArchivesSkipped() {
+    return archivesSkipped.get();
+  }
+
+  public long getMetaspaceUsed() {
+    long used = -1;
+    for (Iterator<MemoryPoolMXBean> i = ManagementFactory.getMemoryPoolMXBeans().iterator();
+         i.hasNext();) {
+      MemoryPoolMXBean pool = i.next();
+      // "Metaspace" on JDK 8 and later, "... Perm Gen" before
+      if (pool.getName().equals("Metaspace") || pool.getName().endsWith("Perm Gen")) {
+        used = Math.max(used, 0) + pool.getUsage().getUsed();
+      }
+    }
+    return used;
+  }
+
+  public int getJvmLoadedClasses() {
+    return ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+  }
+
+  public long getJvmUnloadedClasses() {
+    return ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount();
+  }
+
+  public void reset() {
+    loadersCreated.set(0);
+    classesDefined.set(0);
+    platformLoads.set(0);
+    forNameFallbacks.set(0);
+    parentLoads.set(0);
+    filesRead.set(0);
+    bytesRead.set(0);
+    zipOpens.set(0);
+    archivesSkipped.set(0);
+    synchronized (this) {
+      definedThisGeneration = 0;
+    }
+  }
+
+  /**
+   * Returns the shared instance.
+   *
+   * @return the statistics
+   */
+  static ClassLoaderStats getInstance() {
+    return INSTANCE;
+  }
+
+  /*************************************************************************
+   * Lisp endpoint
+   *************************************************************************/
+
+  /**
+   * Prints the statistics as an alist,
+   * <code>(list (cons 'classes-defined 42) ...)</code>.
+   */
+  public static void getStats() {
+    ClassLoaderStats s = INSTANCE;
+    StringBuilder sb = new StringBuilder("(list");
+    entry(sb, "loaders-created", s.getLoadersCreated());
+    entry(sb, "live-loaders", s.getLiveLoaders());
+    entry(sb, "classes-defined", s.getClassesDefined());
+    entry(sb, "classes-defined-this-generation", s.getClassesDefinedThisGeneration());
+    entry(sb, "classpath-generation", s.getClasspathGeneration());
+    entry(sb, "platform-loads", s.getPlatformLoads());
+    entry(sb, "forname-fallbacks", s.getForNameFallbacks());
+    entry(sb, "parent-loads", s.getParentLoads());
+    entry(sb, "files-read", s.getFilesRead());
+    entry(sb, "bytes-read", s.getBytesRead());
+    entry(sb, "zip-opens", s.getZipOpens());
+    entry(sb, "archives-skipped", s.getArchivesSkipped());
+    entry(sb, "metaspace-used", s.getMetaspaceUsed());
+    entry(sb, "jvm-loaded-classes", s.getJvmLoadedClasses());
+    entry(sb, "jvm-unloaded-classes", s.getJvmUnloadedClasses());
+    sb.append(')');
+    System.out.println(sb);
+    System.out.flush();
+  }
+
+  private static void entry(StringBuilder sb, String name, long value) {
+    sb.append(" (cons '").append(name).append(' ').append(value).append(')');
+  }
+}
+
+// End of ClassLoaderStats.java
@@ -0,0 +1,76 @@
+/*
+ *    ClassLoaderStatsMBean.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+/**
+ * JMX view of {@link ClassLoaderStats}, registered as
+ * <code>jde.util:type=ClassLoaderStats</code>.
+ */
+public interface ClassLoaderStatsMBean {
+
+  /** @return number of DynamicClassLoaders created */
+  long getLoadersCreated();
+
+  /** @return number of DynamicClassLoaders not yet garbage collected */
+  long getLiveLoaders();
+
+  /** @return number of classes defined from the project classpath */
+  long getClassesDefined();
+
+  /** @return classes defined since the project classpath last changed */
+  long getClassesDefinedThisGeneration();
+
+  /** @return the current classpath generation */
+  int getClasspathGeneration();
+
+  /** @return number of classes loaded from a platform module */
+  long getPlatformLoads();
+
+  /** @return number of defineClass failures that fell back to Class.forName */
+  long getForNameFallbacks();
+
+  /** @return number of classes not on the project classpath, delegated to the parent loader */
+  long getParentLoads();
+
+  /** @return number of class files and archive entries read */
+  long getFilesRead();
+
+  /** @return number of class file bytes read */
+  long getBytesRead();
+
+  /** @return number of zip and jar files opened */
+  long getZipOpens();
+
+  /** @return number of archives skipped because their class name filter ruled the class out */
+  long getArchivesSkipped();
+
+  /** @return bytes of metaspace in use, or -1 if the JVM has no metaspace pool */
+  long getMetaspaceUsed();
+
+  /** @return number of classes currently loaded in the JVM */
+  int getJvmLoadedClasses();
+
+  /** @return number of classes unloaded by the JVM since it started */
+  long getJvmUnloadedClasses();
+
+  /** Sets all counters to zero. */
+  void reset();
+}
+
+// End of ClassLoaderStatsMBean.java
@@ -0,0 +1,267 @@
+/*
+ *    ClassMembers.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The members of a class visible at one access level, as listed by
+ * {@link Completion}: fields, constructors, methods and inner classes, each
+ * in reflection order with duplicates removed.
+ *
+ * <p>Instances are immutable and cached by {@link MemberCache}.  Each
+ * remembers the classpath generation it was built in and the class files
+ * or archives its classes were read from, so it can tell when it has gone
+ * stale.</p>
+ */
+final class ClassMembers {
+
+  private final String className;
+  private final int level;
+  private final String[] typeParameters;
+  private final List<MemberInfo> fields;
+  private final List<MemberInfo> constructors;
+  private final List<MemberInfo> methods;
+  private final List<MemberInfo> innerClasses;
+
+  private final int generation;
+  private final File[] sources;
+  private final long[] stamps;
+
+  ClassMembers(String className, int level, String[] typeParameters,
+               Collection<MemberInfo> fields,
+               Collection<MemberInfo> constructors,
+               Collection<MemberInfo> methods,
+               Collection<MemberInfo> innerClasses,
+               int generation,
+               Map<String, File> sources) {
+    this.className    = className;
+    this.level        = level;
+    this.typeParameters = typeParameters;
+    this.fields       = freeze(fields);
+    this.constructors = freeze(constructors);
+    this.methods      = freeze(methods);
+    this.innerClasses = freeze(innerClasses);
+    this.generation   = generation;
+
+    this.sources = sources.values().toArray(new File[sources.size()]);
+    this.stamps  = new long[this.sources.length];
+    for (int i = 0; i < this.sources.length; i++) {
+      stamps[i] = this.sources[i].lastModified();
+    }
+  }
+
+  private static List<MemberInfo> freeze(Collection<MemberInfo> members) {
+    return Collections.unmodifiableList(new ArrayList<MemberInfo>(members));
+  }
+
+  String getClassName() {
+    return className;
+  }
+
+  int getLevel() {
+    return level;
+  }
+
+  /**
+   * The names of the class's type variables, in which the generic types
+   * of its members are written.
+   */
+  String[] getTypeParameters() {
+    return typeParameters;
+  }
+
+  List<MemberInfo> getFields() {
+    return fields;
+  }
+
+  List<MemberInfo> getConstructors() {
+    return constructors;
+  }
+
+  List<MemberInfo> getMethods() {
+    return methods;
+  }
+
+  List<MemberInfo> getInnerClasses() {
+    return innerClasses;
+  }
+
+  /**
+   * Tests whether this listing still describes the class on the current
+   * classpath: the classpath has not been reset since it was built and
+   * none of the class files or archives it was read from has changed.
+   *
+   * @param currentGeneration the current classpath generation
+   * @return true if the listing can be reused
+   */
+  boolean isCurrent(int currentGeneration) {
+    if (generation != currentGeneration) {
+      return false;
+    }
+    for (int i = 0; i < sources.length; i++) {
+      if (sources[i].lastModified() != stamps[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*************************************************************************
+   * Prefix and camel-case matching
+   *************************************************************************/
+
+  /** Match rank: the name equals the pattern. */
+  static final int EXACT            = 0;
+  /** Match rank: the name starts with the pattern. */
+  static final int PREFIX           = 1;
+  /** Match rank: the name starts with the pattern, ignoring case. */
+  static final int PREFIX_IGNORE_CASE = 2;
+  /** Match rank: the pattern's humps match the name's humps. */
+  static final int CAMEL_CASE       = 3;
+  /** Match rank: no match. */
+  static final int NO_MATCH         = -1;
+
+  /**
+   * Ranks how well <code>name</code> matches <code>pattern</code>.  An
+   * empty pattern matches everything as a prefix.  A pattern matches as
+   * camel case when each of its humps, split before each upper case
+   * letter, starts a successive hump of the name: <code>gAN</code> and
+   * <code>getAtNa</code> both match <code>getAttributeNames</code>.
+   *
+   * @param pattern the typed prefix or camel-case pattern
+   * @param name the member name
+   * @return one of the match ranks, or {@link #NO_MATCH}
+   */
+  static int match(String pattern, String name) {
+    if (pattern.length() == 0) {
+      return PREFIX;
+    }
+    if (name.startsWith(pattern)) {
+      return name.length() == pattern.length() ? EXACT : PREFIX;
+    }
+    if (name.regionMatches(true, 0, pattern, 0, pattern.length())) {
+      return PREFIX_IGNORE_CASE;
+    }
+    if (camelCaseMatch(pattern, 0, name, 0)) {
+      return CAMEL_CASE;
+    }
+    return NO_MATCH;
+  }
+
+  private static boolean camelCaseMatch(String pattern, int p, String name, int n) {
+    if (p == pattern.length()) {
+      return true;
+    }
+
+    // the next hump of the pattern runs up to its next upper case letter
+    int end = p + 1;
+    while (end < pattern.length() && !Character.isUpperCase(pattern.charAt(end))) {
+      end++;
+    }
+    int len = end - p;
+
+    for (int h = n; h + len <= name.length(); h++) {
+      if (h == 0 || isHumpStart(name, h)) {
+        if (Character.toLowerCase(name.charAt(h)) == Character.toLowerCase(pattern.charAt(p))
+            && name.regionMatches(h + 1, pattern, p + 1, len - 1)
+            && camelCaseMatch(pattern, end, name, h + len)) {
+          return true;
+        }
+      }
+      if (p == 0) {
+        break;                  // the first hump must start the name
+      }
+    }
+    return false;
+  }
+
+  private static boolean isHumpStart(String name, int i) {
+    char c = name.charAt(i);
+    char prev = name.charAt(i - 1);
+    return Character.isUpperCase(c)
+      || (prev == '_' && c != '_')
+      || (Character.isDigit(c) && !Character.isDigit(prev));
+  }
+
+  /**
+   * A member that matched a pattern, with its rank.
+   */
+  static final class Match {
+    final MemberInfo member;
+    final int rank;
+
+    Match(MemberInfo member, int rank) {
+      this.member = member;
+      this.rank   = rank;
+    }
+  }
+
+  private static final Comparator<Match> RANKING = new Comparator<Match>() {
+      public int compare(Match a, Match b) {
+        if (a.rank != b.rank) {
+          return a.rank - b.rank;
+        }
+        String an = a.member.getSimpleName();
+        String bn = b.member.getSimpleName();
+        if (an.length() != bn.length()) {
+          return an.length() - bn.length();
+        }
+        int c = an.compareTo(bn);
+        return c != 0 ? c : a.member.getKind() - b.member.getKind();
+      }
+    };
+
+  /**
+   * Returns the members whose simple names match <code>pattern</code>,
+   * best matches first.  Within a rank, shorter names come first, then
+   * names in alphabetical order; the sort is stable, so overloads keep
+   * reflection order.
+   *
+   * @param pattern a prefix or camel-case pattern
+   * @return the ranked matches
+   */
+  List<Match> match(String pattern) {
+    List<Match> matches = new ArrayList<Match>();
+    collect(fields, pattern, matches);
+    collect(constructors, pattern, matches);
+    collect(methods, pattern, matches);
+    collect(innerClasses, pattern, matches);
+    Collections.sort(matches, RANKING);
+    return matches;
+  }
+
+  private static void collect(List<MemberInfo> members, String pattern, List<Match> matches) {
+    for (int i = 0; i < members.size(); i++) {
+      MemberInfo m = members.get(i);
+      int rank = match(pattern, m.getSimpleName());
+      if (rank != NO_MATCH) {
+        matches.add(new Match(m, rank));
+      }
+    }
+  }
+}
+
+// End of ClassMembers.java
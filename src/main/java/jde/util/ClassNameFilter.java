@@ -0,0 +1,93 @@
+/*
+ *    ClassNameFilter.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * A Bloom filter over binary class names (<code>a.b.C$D</code>).  It
+ * answers "definitely not present" exactly and "maybe present" with a
+ * false positive rate of about one percent, using ten bits per name.
+ * Built once from a complete list of names and never modified, so it is
+ * safe to share between threads.
+ */
+final class ClassNameFilter {
+
+  private static final int BITS_PER_NAME = 10;
+  private static final int HASHES = 7;
+
+  private final long[] bits;
+  private final int size;
+
+  /**
+   * Creates a filter containing <code>names</code>.
+   *
+   * @param names binary class names
+   */
+  ClassNameFilter(Collection<String> names) {
+    long n = Math.max(64, (long) names.size() * BITS_PER_NAME);
+    this.size = (int) Math.min(n, Integer.MAX_VALUE - 63);
+    this.bits = new long[(size + 63) >>> 6];
+
+    for (Iterator<String> i = names.iterator(); i.hasNext();) {
+      String name = i.next();
+      int h1 = name.hashCode();
+      int h2 = secondHash(name);
+      for (int k = 0; k < HASHES; k++) {
+        int bit = index(h1 + k * h2);
+        bits[bit >>> 6] |= 1L << bit;
+      }
+    }
+  }
+
+  /**
+   * Tests whether a name may be in the filter.
+   *
+   * @param name a binary class name
+   * @return false if <code>name</code> is definitely not in the filter
+   */
+  boolean mightContain(String name) {
+    int h1 = name.hashCode();
+    int h2 = secondHash(name);
+    for (int k = 0; k < HASHES; k++) {
+      int bit = index(h1 + k * h2);
+      if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int index(int hash) {
+    return (hash & Integer.MAX_VALUE) % size;
+  }
+
+  // FNV-1a, independent enough of String.hashCode for double hashing
+  private static int secondHash(String name) {
+    int h = 0x811c9dc5;
+    for (int i = 0; i < name.length(); i++) {
+      h ^= name.charAt(i);
+      h *= 0x01000193;
+    }
+    return h | 1;
+  }
+}
+
+// End of ClassNameFilter.java
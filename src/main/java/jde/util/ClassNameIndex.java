@@ -0,0 +1,132 @@
+/*
+ *    ClassNameIndex.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The unqualified class names of a classpath, sorted ignoring case so that
+ * the names starting with a prefix are found by binary search instead of
+ * a scan of every name.  Each name keeps the qualified names it stands
+ * for, so a match needs no further lookup on the classpath.  Built once
+ * from a complete set of names and never modified, so it is safe to share
+ * between threads.
+ */
+final class ClassNameIndex {
+
+  private final String[] names;
+  private final Map<String, List<String>> classNames;
+
+  /**
+   * Creates an index of the keys of <code>classNames</code>.
+   *
+   * @param classNames the qualified names of each unqualified class
+   * name, in classpath order
+   */
+  ClassNameIndex(Map<String, List<String>> classNames) {
+    this.classNames = new HashMap<>(classNames);
+    this.names = classNames.keySet().toArray(new String[classNames.size()]);
+    Arrays.sort(this.names, String.CASE_INSENSITIVE_ORDER);
+  }
+
+  int size() {
+    return names.length;
+  }
+
+  // First index whose name is not less than key, ignoring case
+  private int lowerBound(String key) {
+    int low = 0;
+    int high = names.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (String.CASE_INSENSITIVE_ORDER.compare(names[mid], key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * A name that matched a pattern, with its rank and the qualified names
+   * of the classes it names.
+   */
+  static final class Match {
+    final String name;
+    final int rank;
+    final List<String> classNames;
+
+    Match(String name, int rank, List<String> classNames) {
+      this.name = name;
+      this.rank = rank;
+      this.classNames = classNames;
+    }
+  }
+
+  private static final Comparator<Match> RANKING = new Comparator<Match>() {
+      public int compare(Match a, Match b) {
+        if (a.rank != b.rank) {
+          return a.rank - b.rank;
+        }
+        if (a.name.length() != b.name.length()) {
+          return a.name.length() - b.name.length();
+        }
+        return a.name.compareTo(b.name);
+      }
+    };
+
+  /**
+   * Returns the names that match <code>pattern</code> as
+   * {@link ClassMembers#match(String, String)} ranks them, best matches
+   * first, then shorter names, then in alphabetical order.  Every match,
+   * camel-case ones included, starts with the first letter of the
+   * pattern, so only the names starting with that letter are tried.
+   *
+   * @param pattern a non-empty prefix or camel-case pattern
+   * @return the ranked matches
+   */
+  List<Match> match(String pattern) {
+    if (pattern.length() == 0) {
+      return Collections.emptyList();
+    }
+    List<Match> matches = new ArrayList<Match>();
+    String first = pattern.substring(0, 1);
+    for (int i = lowerBound(first); i < names.length; i++) {
+      String name = names[i];
+      if (!name.regionMatches(true, 0, first, 0, 1)) {
+        break;
+      }
+      int rank = ClassMembers.match(pattern, name);
+      if (rank != ClassMembers.NO_MATCH) {
+        matches.add(new Match(name, rank, classNames.get(name)));
+      }
+    }
+    Collections.sort(matches, RANKING);
+    return matches;
+  }
+}
+
+// End of ClassNameIndex.java
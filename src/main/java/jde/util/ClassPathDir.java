@@ -2,6 +2,8 @@ package jde.util;
 
 import java.io.File;
 
+import jde.juci.Cancellation;
+
 /**
  * A ClassPathEntry that represents a directory in which classes are
  * stored.  This is scanned recursively for classes at load time.
@@ -49,6 +51,7 @@ class ClassPathDir extends ClassPathEntry {
      *
      */
     void load() {
+        // a load cut short by cancellation is dropped by reload
         addRecursively(directory,directory);
         setLoaded(true);
     }
@@ -61,6 +64,7 @@ class ClassPathDir extends ClassPathEntry {
      * @param rootDir a <code>File</code> value
      */
     void addRecursively(File directory, File rootDir) {
+        Cancellation.checkpoint();
         String [] files = directory.list();
 
         if (files == null) {
@@ -20,9 +20,11 @@ package jde.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -35,6 +37,12 @@ import java.util.Map;
  * can appear in multiple projects, but there is only ever one
  * instance.</p>
  *
+ * <p>Entries are shared between the requests of every client, so the
+ * classes found by a load are published whole once the load completes,
+ * and never changed after.  Readers take the published classes without a
+ * lock; a reload, or a load that is cancelled part way, leaves the last
+ * complete classes in place for them.</p>
+ *
  * Created: Tue Aug 14 19:28:04 2001
  *
  * @author Eric D. Friedman
@@ -42,10 +50,27 @@ import java.util.Map;
  */
 
 abstract class ClassPathEntry {
-    /** a map of unqualified class names to qualified names */
-    protected MultiValueMap nameToClassMap = new MultiValueMap();
-    /** a flag indicating whether this instance has been loaded or not */
-    protected boolean loaded = false;
+    /** a map of unqualified class names to qualified names, filled by
+        the load in progress */
+    protected MultiValueMap nameToClassMap;
+    /** binary names collected by the current load, or null if the
+        entry type does not record them */
+    private List<String> binaryNames;
+    /** the classes of the last complete load, or null if not loaded */
+    private volatile Loaded loaded;
+
+    /** The classes found by one complete load. */
+    private static final class Loaded {
+        /** unqualified class names to qualified names */
+        final MultiValueMap nameToClassMap;
+        /** filter over the binary names, or null if not recorded */
+        final ClassNameFilter classNameFilter;
+
+        Loaded(MultiValueMap nameToClassMap, ClassNameFilter classNameFilter) {
+            this.nameToClassMap = nameToClassMap;
+            this.classNameFilter = classNameFilter;
+        }
+    }
 
     private static Map<File, ClassPathEntry> entryMap = new HashMap<>();
     
@@ -63,7 +88,7 @@ abstract class ClassPathEntry {
      * @exception IllegalArgumentException if resource is not a
      * zip/jar or a directory.
      */
-    static ClassPathEntry instanceForEntry(File resource) throws IOException {
+    static synchronized ClassPathEntry instanceForEntry(File resource) throws IOException {
         ClassPathEntry entry;
         
         if (entryMap.containsKey(resource)) {
@@ -87,29 +112,64 @@ abstract class ClassPathEntry {
     }
 
     /**
-     * defines class loading behavior.
+     * defines class loading behavior: adds each class with
+     * {@link #addClass}, then calls <code>setLoaded(true)</code>.  Only
+     * called by {@link #reload}, with the entry locked.
      *
      * @exception IOException if an error occurs
      */
     abstract void load() throws IOException;
 
     /**
-     * clears the class list in the entry.
+     * clears the class list in the entry, so that the next use loads it
+     * again.
      *
      */
-    void clear() {
-        nameToClassMap.clear();
-        setLoaded(false);
+    synchronized void clear() {
+        loaded = null;
     }
 
     /**
-     * clears and reloads the class list in the entry.
+     * reloads the class list in the entry.  Until the load completes,
+     * readers go on seeing the classes of the last one.
      *
      * @exception IOException if an error occurs
      */
-    void reload() throws IOException {
-        clear();
-        load();
+    synchronized void reload() throws IOException {
+        nameToClassMap = new MultiValueMap();
+        binaryNames = null;
+        try {
+            load();
+        } finally {
+            // whatever a load cut short had collected is dropped
+            nameToClassMap = null;
+            binaryNames = null;
+        }
+    }
+
+    // The classes of the last complete load, loading them first if need be
+    private Loaded loaded() throws IOException {
+        Loaded l = loaded;
+        if (l == null) {
+            synchronized (this) {
+                if (loaded == null) {
+                    reload();
+                }
+                l = loaded;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Returns the filter over the binary names of the last complete load.
+     *
+     * @return the filter, or <code>null</code> if the entry is not loaded
+     * or does not record binary names
+     */
+    protected ClassNameFilter getClassNameFilter() {
+        Loaded l = loaded;
+        return l == null ? null : l.classNameFilter;
     }
 
     /**
@@ -130,19 +190,60 @@ abstract class ClassPathEntry {
         nameToClassMap.put(unqualified, qualifiedName);
     }
     
+    /**
+     * adds an unqualified => qualified mapping, and records the binary
+     * name of the class for {@link #mightContain}.
+     *
+     * @param qualifiedName the class name with inner classes separated
+     * by dots
+     * @param binaryName the class name with inner classes separated by
+     * dollar signs
+     */
+    protected void addClass(String qualifiedName, String binaryName) {
+        addClass(qualifiedName);
+        if (binaryNames == null) {
+            binaryNames = new ArrayList<>();
+        }
+        binaryNames.add(binaryName);
+    }
+
+    /**
+     * Tests whether this entry may contain a class.  Entries that record
+     * binary names while loading answer from a Bloom filter, so a miss
+     * costs a few hash probes instead of a trip to the disk.
+     *
+     * @param binaryName binary name of the class, e.g. <code>a.b.C$D</code>
+     * @return false if the class is definitely not in this entry; true
+     * by default
+     * @exception IOException if an error occurs
+     */
+    boolean mightContain(String binaryName) throws IOException {
+        return true;
+    }
+
     /**
      * Returns the list of qualified names that map to the specified
      * unqualified name.  Lazily loads the classes.
      *
      * @param unqualifiedName a <code>String</code> value
-     * @return a <code>List</code> value
+     * @return a <code>List</code> value, not to be modified
      * @exception IOException if an error occurs
      */
     List getClassNames(String unqualifiedName) throws IOException {
-        if (!isLoaded()) {
-            load();
-        }
-        return nameToClassMap.getAsList(unqualifiedName);
+        return loaded().nameToClassMap.getAsList(unqualifiedName);
+    }
+
+    /**
+     * Returns the unqualified names of the classes in this entry, the
+     * keys of {@link #getClassNames}.  Lazily loads the classes.
+     *
+     * @return a <code>Set</code> value, not to be modified
+     * @exception IOException if an error occurs
+     */
+    Set<String> getUnqualifiedNames() throws IOException {
+        @SuppressWarnings("unchecked")
+        Set<String> names = (Set<String>) loaded().nameToClassMap.keySet();
+        return names;
     }
 
     /**
@@ -150,16 +251,25 @@ abstract class ClassPathEntry {
      * @return value of loaded.
      */
     public boolean isLoaded() {
-        return loaded;
+        return loaded != null;
     }
 
     /**
-     * Set the value of loaded.
+     * Set the value of loaded.  Setting it publishes the classes the
+     * load in progress has added.
      *
      * @param loaded a <code>boolean</code> value
      */
-    public void setLoaded(boolean loaded) {
-        this.loaded = loaded;
+    public synchronized void setLoaded(boolean loaded) {
+        if (loaded) {
+            // the load is complete; keep only the compact filter
+            this.loaded = new Loaded(nameToClassMap,
+                                     binaryNames != null ? new ClassNameFilter(binaryNames) : null);
+            nameToClassMap = new MultiValueMap();
+            binaryNames = null;
+        } else {
+            this.loaded = null;
+        }
     }
 }
 
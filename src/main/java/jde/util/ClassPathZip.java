@@ -4,6 +4,8 @@ import java.util.*;
 import java.util.zip.*;
 import java.io.*;
 
+import jde.juci.Cancellation;
+
 /**
  * A ClassPathEntry representing a ZIP or JAR file.
  * <p>
@@ -30,6 +32,11 @@ import java.io.*;
 
 class ClassPathZip extends ClassPathEntry {
     private File zipOrJar;
+    private long lastModified;
+    private long lastChecked;
+
+    /** how often, in milliseconds, the archive timestamp is checked */
+    private static final long CHECK_INTERVAL = 1000;
 
     /**
      * Creates a ClassPathZip instance representing <code>zipOrJar</code>
@@ -48,22 +55,56 @@ class ClassPathZip extends ClassPathEntry {
      */
     @Override
     void load() throws IOException {
-        ZipFile zipFile = new ZipFile(zipOrJar);
-        Enumeration en = zipFile.entries();
-        while (en.hasMoreElements()) {
-            ZipEntry zipEntry = (ZipEntry) en.nextElement();
-            String current = zipEntry.getName();
-            if (current.toLowerCase().endsWith(".class")) {
-                current = current.substring(0, current.length() - 6);
-                current = current.replace('/', '.');
-                current = current.replace('\\', '.');
-                current = current.replace('$', '.');
-                super.addClass(current);
+        lastModified = zipOrJar.lastModified();
+        // a load cut short by cancellation is dropped by reload
+        try (ZipFile zipFile = new ZipFile(zipOrJar)) {
+            Enumeration en = zipFile.entries();
+            int count = 0;
+            while (en.hasMoreElements()) {
+                if ((++count & 0xff) == 0) {
+                    Cancellation.checkpoint();
+                }
+                ZipEntry zipEntry = (ZipEntry) en.nextElement();
+                String current = zipEntry.getName();
+                if (current.toLowerCase().endsWith(".class")) {
+                    current = current.substring(0, current.length() - 6);
+                    current = current.replace('/', '.');
+                    current = current.replace('\\', '.');
+                    String binaryName = current;
+                    current = current.replace('$', '.');
+                    super.addClass(current, binaryName);
+                }
             }
         }
         setLoaded(true);
     }
 
+    /**
+     * Answers from the filter of class names built by the last load,
+     * loading the archive first if needed.  The archive is reloaded if
+     * its timestamp has changed; that is checked at most once a second,
+     * so most answers do not touch the disk at all.
+     *
+     * @param binaryName binary name of the class
+     * @return false if the class is definitely not in the archive
+     * @exception IOException if the archive cannot be read
+     */
+    @Override
+    synchronized boolean mightContain(String binaryName) throws IOException {
+        long now = System.currentTimeMillis();
+        if (!isLoaded()) {
+            reload();
+            lastChecked = now;
+        } else if (now - lastChecked > CHECK_INTERVAL) {
+            lastChecked = now;
+            if (zipOrJar.lastModified() != lastModified) {
+                reload();
+            }
+        }
+        ClassNameFilter filter = getClassNameFilter();
+        return filter == null || filter.mightContain(binaryName);
+    }
+
     /**
      * Return the zip/jar name as our string.
      *
@@ -26,10 +26,23 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.Field;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.lang.reflect.TypeVariable;
+import java.io.File;
 import java.io.Writer;
 import java.io.BufferedWriter;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import jde.juci.Cancellation;
+import jde.juci.LispWriter;
 
 /**
  * This class provides completion facilities.
@@ -87,18 +100,9 @@ public class Completion {
    * @param child  Name of the supposed child class
    */
   public static void isAncestorOf(String ancestor, String child) {
-    try {
-      Class classAncestor = Class.forName(ancestor);
-      Class classChild = Class.forName(child);
-      if (classAncestor.isAssignableFrom(classChild)) {
-	System.out.println(T);
-      } else {
-	System.out.println(NIL);
-      }	  
-    } catch (Exception ex) {
-      System.out.println(NIL);
-    }
+    TypeHierarchy.isAncestorOf(ancestor, child);
   }
+
     
   /**
    * Returns true if the entity is accessible to the specified level of
@@ -156,12 +160,12 @@ public class Completion {
    * @param name constructor name
    * @param params parameter type
    */
-  private static String printConstructor(String name, Class[] params) {
+  private static String printConstructor(String name, String[] params) {
     StringBuffer sb = new StringBuffer (30);
     sb.append(START_LIST);
     sb.append(printWithinQuotes(name));
     sb.append(SPACE);
-    sb.append(listClassArray(params));
+    sb.append(listNameArray(params));
     sb.append(SPACE);
     
     return sb.toString();
@@ -176,14 +180,14 @@ public class Completion {
    */
   private static String printMethod(String name,
                                     String returnType,
-                                    Class[] args) {
+                                    String[] args) {
     StringBuffer sb = new StringBuffer (30);
     sb.append(START_LIST);
     sb.append(printWithinQuotes(name));
     sb.append(SPACE);
     sb.append(printWithinQuotes(returnType));
     sb.append(SPACE);
-    sb.append(listClassArray(args));
+    sb.append(listNameArray(args));
     sb.append(SPACE);
         
     return sb.toString(); 
@@ -205,13 +209,13 @@ public class Completion {
   /**
    * <code>printExceptions</code>
    *
-   * @param exceptions a <code>Class[]</code>
+   * @param exceptions a <code>String[]</code>
    * @return a <code>String</code>
    */
-  private static String printExceptions(Class[] exceptions) {
+  private static String printExceptions(String[] exceptions) {
     StringBuffer sb = new StringBuffer (30);
     sb.append(START_LIST);
-    sb.append(listClassArray(exceptions));
+    sb.append(listNameArray(exceptions));
     sb.append(END_PAREN);
     return sb.toString();
   }
@@ -230,6 +234,37 @@ public class Completion {
     return sb.toString();
   }
 
+  /**
+   * Prints the completion entry for a member: a field, constructor,
+   * method or inner class list as described above, with a trailing list
+   * of exceptions (or nil) for constructors and methods.
+   *
+   * @param m the member
+   * @return the entry
+   */
+  static String entry(MemberInfo m) {
+    String entry;
+    switch (m.getKind()) {
+    case MemberInfo.FIELD:
+      return printField(m.getName(), m.getType());
+    case MemberInfo.CONSTRUCTOR:
+      entry = printConstructor(m.getName(), m.getParameterTypes());
+      break;
+    case MemberInfo.METHOD:
+      entry = printMethod(m.getName(), m.getType(), m.getParameterTypes());
+      break;
+    default:
+      return printClass(m.getName());
+    }
+    // Add exceptions
+    String[] exceptions = m.getExceptionTypes();
+    if (exceptions.length > 0) {
+      return entry + printExceptions(exceptions) + END_PAREN;
+    } else {
+      return entry + NIL + END_PAREN;
+    }
+  }
+
   /**
    * Recursively finds fields of the specified access level in the
    * supplied class and superclasses.
@@ -237,11 +272,14 @@ public class Completion {
    * @param c the class to start the search in - nothing is done if
    * this is NULL
    * @param level  the access level to look for
-   * @param sb the StringBuffer where the results should be added
+   * @param bindings generic bindings of the listed class, see
+   * {@link GenericTypes#supertypeBindings}
+   * @param entries the set where the results should be added
    */
   private static void recursiveListFields(Class c,
                                           int level,
-                                          StringBuffer sb)  {
+                                          Map<TypeVariable<?>, String> bindings,
+                                          Set<MemberInfo> entries)  {
     //This is only used while initializing
     if (c == null) {
       return;
@@ -249,7 +287,6 @@ public class Completion {
 
     Field[] fields;
     Field   field;
-    String  f;
 
     // ----- Added by Petter for interfaces
     if (level == PUBLIC) {
@@ -265,11 +302,7 @@ public class Completion {
     for (int index = 0; index < fields.length ; index++) {
       field = fields[index];
       if (isAccessible(field.getModifiers(), level)) {
-        f = printField(field.getName(),
-                       className(field.getType()));
-        if (sb.toString().lastIndexOf(f) == -1) {
-          sb.append(f);
-        }
+        entries.add(MemberInfo.of(field, bindings));
       }
     }
 
@@ -284,7 +317,7 @@ public class Completion {
       // getFields() call has listed all the relevant fields.
       // For PRIVATE access, that is only applicable in the
       // calling class anyway, so we shouldn't do recursion.
-      recursiveListFields(c.getSuperclass(), level, sb);
+      recursiveListFields(c.getSuperclass(), level, bindings, entries);
     }
     // ----- End addition by Petter
   }
@@ -294,34 +327,21 @@ public class Completion {
    *
    * @param c the class to search in
    * @param level  the access level to look for
-   * @param sb the StringBuffer where the results should be added
+   * @param bindings generic bindings of the listed class, see
+   * {@link GenericTypes#supertypeBindings}
+   * @param entries the set where the results should be added
    */
   private static void listConstructors(Class c,
                                        int level,
-                                       StringBuffer sb)  {
+                                       Map<TypeVariable<?>, String> bindings,
+                                       Set<MemberInfo> entries)  {
     Constructor[] constrs = c.getDeclaredConstructors();
     Constructor constructor;
-    Class[] exceptions;
-    StringBuffer cons;
         
     for (int index = 0; index < constrs.length; index++) {
       constructor = constrs[index];
       if (isAccessible(constructor.getModifiers(), level)) {
-        cons = new StringBuffer(100);
-        cons.append(printConstructor(constructor.getName(),
-                                     constructor.getParameterTypes()));
-        // Add exceptions
-        exceptions = constructor.getExceptionTypes();
-                
-        if (exceptions.length > 0) {
-          cons.append(printExceptions(exceptions));
-        } else {
-          cons.append(NIL);
-        }
-        cons.append(END_PAREN);
-        if (sb.toString().lastIndexOf(cons.toString()) == -1) {
-          sb.append(cons);
-        }
+        entries.add(MemberInfo.of(constructor, bindings));
       }
     }
   }
@@ -333,11 +353,14 @@ public class Completion {
    * @param c the class to start the search in - nothing is done if this is
    * NULL
    * @param level  the access level to look for
-   * @param sb the StringBuffer where the results should be added
+   * @param bindings generic bindings of the listed class, see
+   * {@link GenericTypes#supertypeBindings}
+   * @param entries the set where the results should be added
    */
   private static void recursiveListMethods(Class c,
                                            int level,
-                                           StringBuffer sb)  {
+                                           Map<TypeVariable<?>, String> bindings,
+                                           Set<MemberInfo> entries)  {
     //This is only used while initializing
     if (c == null) {
       return;
@@ -345,8 +368,6 @@ public class Completion {
 	
     Method[] methods;
     Method method;
-    Class[] exceptions;
-    StringBuffer temp;
 
     // ----- Added by Petter for interfaces
     if (level == PUBLIC) {
@@ -362,23 +383,7 @@ public class Completion {
     for (int index = 0; index < methods.length ; index++) {
       method = methods[index];
       if (isAccessible(method.getModifiers(), level)) {
-        temp = new StringBuffer(100);
-        temp.append(printMethod(method.getName(),
-                                className(method.getReturnType()),
-                                method.getParameterTypes()));
-        // Add exceptions
-        exceptions = method.getExceptionTypes();
-                
-        if (exceptions.length > 0) {
-          temp.append(printExceptions(exceptions));
-        } else {
-          temp.append(NIL);
-        }
-        temp.append(END_PAREN);
-                
-        if (sb.toString().lastIndexOf(temp.toString()) == -1) {
-          sb.append(temp);
-        }
+        entries.add(MemberInfo.of(method, bindings));
       }
     }
 
@@ -394,7 +399,7 @@ public class Completion {
       // getMethods() call has listed all the relevant members.
       // For PRIVATE access, that is only applicable in the
       // calling class anyway, so we shouldn't do recursion.
-      recursiveListMethods(c.getSuperclass(), level, sb);
+      recursiveListMethods(c.getSuperclass(), level, bindings, entries);
     }
     // ----- End addition by Petter
   }
@@ -406,11 +411,11 @@ public class Completion {
    * @param c the class to start the search in - nothing is done if this is
    * NULL
    * @param level  the access level to look for
-   * @param sb the StringBuffer where the results should be added
+   * @param entries the set where the results should be added
    */
   private static void recursiveListInnerClasses(Class c,
                                                 int level,
-                                                StringBuffer sb) {
+                                                Set<MemberInfo> entries) {
     if (c == null) {
       return;
     }
@@ -418,7 +423,6 @@ public class Completion {
 	
     Class[] innerClasses;
     Class   innerClass;
-    String  clas;
 
     // ----- Added by Petter for interfaces
     if (level == PUBLIC) {
@@ -437,10 +441,7 @@ public class Completion {
     for (int index = 0; index < innerClasses.length ; index++) {
       innerClass = innerClasses[index];
       if (isAccessible(innerClass.getModifiers(), level)) {
-        clas = printClass(innerClass.getName());
-        if (sb.toString().lastIndexOf(clas) == -1) {
-          sb.append(clas);
-        }
+        entries.add(MemberInfo.of(innerClass));
       }
     }
 
@@ -455,41 +456,103 @@ public class Completion {
       // getClasses() call has listed all the relevant members.
       // For PRIVATE access, that is only applicable in the
       // calling class anyway, so we shouldn't do recursion.
-      recursiveListInnerClasses(c.getSuperclass(), level, sb);
+      recursiveListInnerClasses(c.getSuperclass(), level, entries);
     }
     // ----- End addition by Petter
   } 
     
-  private static void listClassInfo(Class c, int level, StringBuffer sb) {
-    sb.append(START_LIST);
-        
-    //we add the protected/private fields depending on the access level
-    sb.append(START_LIST);
-    recursiveListFields(c, level, sb);
-    sb.append(END_PAREN);
+  /**
+   * Lists the fields, constructors, methods and inner classes of a class
+   * at an access level.  Each section is collected into an
+   * insertion-ordered set, so duplicate members inherited along several
+   * paths are dropped in constant time.
+   *
+   * @param c the class to describe
+   * @param level the access level to look for
+   * @param generation the classpath generation <code>c</code> was loaded in
+   * @param sources the class files <code>c</code> and its project
+   * superclasses were read from
+   * @return the members
+   */
+  static ClassMembers listMembers(Class c, int level, int generation,
+                                  Map<String, File> sources) {
+    Set<MemberInfo> fields = new LinkedHashSet<MemberInfo>();
+    Set<MemberInfo> ctors = new LinkedHashSet<MemberInfo>();
+    Set<MemberInfo> methods = new LinkedHashSet<MemberInfo>();
+    Set<MemberInfo> innerClasses = new LinkedHashSet<MemberInfo>();
 
-    // constructors
-    sb.append(NL);
-    sb.append(START_LIST);
-    listConstructors(c, level, sb);
-    sb.append(END_PAREN);
+    // generic types of inherited members are written in terms of c's
+    // type variables
+    Map<TypeVariable<?>, String> bindings;
+    String[] typeParameters;
+    try {
+      bindings = GenericTypes.supertypeBindings(c);
+      typeParameters = GenericTypes.typeParameters(c);
+    } catch (RuntimeException | LinkageError e) {
+      bindings = Collections.emptyMap();
+      typeParameters = new String[0];
+    }
 
+    //we add the protected/private fields depending on the access level
+    recursiveListFields(c, level, bindings, fields);
+    // constructors
+    listConstructors(c, level, bindings, ctors);
     // methods, added recursively
-    sb.append(NL);
-    sb.append(START_LIST);
-    recursiveListMethods(c, level, sb);
-    sb.append(END_PAREN);
-
+    recursiveListMethods(c, level, bindings, methods);
     // inner classes, added recursively
-    sb.append(NL);
-    sb.append(START_LIST);
-    recursiveListInnerClasses(c, level, sb);
-    sb.append(END_PAREN);
-    sb.append(END_PAREN);
-    sb.append(NL);
-    
-    return;
+    recursiveListInnerClasses(c, level, innerClasses);
+
+    return new ClassMembers(c.getName(), level, typeParameters, fields, ctors, methods,
+                            innerClasses, generation, sources);
   }
+
+  /**
+   * Writes the fields, constructors, methods and inner classes of a
+   * class to <code>out</code>.
+   *
+   * @param c the class to describe
+   * @param level the access level to look for
+   * @param out the writer where the result is streamed
+   * @exception IOException if writing fails
+   */
+  static void listClassInfo(Class c, int level, Writer out)
+    throws IOException {
+    writeClassInfo(listMembers(c, level, JdeUtilities.getClasspathGeneration(),
+                               Collections.<String, File>emptyMap()),
+                   out);
+  }
+
+  /**
+   * Writes a class listing as four lists: fields, constructors, methods
+   * and inner classes.
+   *
+   * @param members the class members
+   * @param out the writer where the result is streamed
+   * @exception IOException if writing fails
+   */
+  static void writeClassInfo(ClassMembers members, Writer out)
+    throws IOException {
+    out.write(START_LIST);
+    writeSection(members.getFields(), out);
+    out.write(NL);
+    writeSection(members.getConstructors(), out);
+    out.write(NL);
+    writeSection(members.getMethods(), out);
+    out.write(NL);
+    writeSection(members.getInnerClasses(), out);
+    out.write(END_PAREN);
+    out.write(NL);
+  }
+
+  private static void writeSection(List<MemberInfo> entries, Writer out)
+    throws IOException {
+    out.write(START_LIST);
+    for (int i = 0; i < entries.size(); i++) {
+      out.write(entry(entries.get(i)));
+    }
+    out.write(END_PAREN);
+  }
+
   /**
    * Gets information on the specified class. Information is returned as a 
    * list of lists that is printed to System.out.
@@ -509,26 +572,25 @@ public class Completion {
    */
   public static void getClassInfo(String className, int level) {
     try {
-      DynamicClassLoader dcl = new DynamicClassLoader();
-      Class c = dcl.loadClass(className);
-      if (c != null) {
-        StringBuffer sb = new StringBuffer (3000);
-        sb.append(START_LIST);
-        sb.append(NL);
-        listClassInfo(c, level, sb);
-        sb.append(END_PAREN);
-        sb.append(NL);
-                
+      ClassMembers members = MemberCache.get(className, level);
+      Cancellation.checkpoint();
+      if (members != null) {
         Writer out
-          = new BufferedWriter(new OutputStreamWriter(System.out));
+          = new BufferedWriter(new OutputStreamWriter(System.out), 8192);
         try {
-          out.write(sb.toString());
+          out.write(START_LIST);
+          out.write(NL);
+          writeClassInfo(members, out);
+          out.write(END_PAREN);
+          out.write(NL);
           out.flush();
         } catch (IOException e) {
         }
       }
     } catch (ClassNotFoundException e) {
       System.out.println(NIL);              
+    } catch (CancellationException e) {
+      throw e;
     } catch (Exception e) {
       System.out.println("(error \"Trying to load " + className +
 			 " caused a Java exception: " + e + "\")");       
@@ -545,6 +607,354 @@ public class Completion {
     }    
   }
     
+  /**
+   * Resolves the static type of a chain of member accesses, such as
+   * <code>foo.getBar().getBaz(x).name</code>, from cached class listings.
+   * Each element of <code>chain</code> is either a field name or a method
+   * name followed by a slash and its number of arguments:
+   * <code>{"getBar/0", "getBaz/1", "name"}</code>.  If several overloads
+   * have the same arity, the one whose erased parameter types come first,
+   * compared as strings one by one, is used, so <code>remove/1</code> on
+   * a list is <code>remove(int)</code>; of a covariant override and the
+   * method it overrides, the one with the more specific return type.
+   * Static and instance members are not told apart.  Arrays have a
+   * <code>length</code> field and the methods of <code>Object</code>.
+   *
+   * <p>The receiver type may carry type arguments, as in
+   * <code>java.util.Map&lt;java.lang.String,java.util.List&lt;a.Foo&gt;&gt;</code>;
+   * they are followed through the generic types of the cached members,
+   * so <code>{"get/1", "get/1"}</code> on that receiver resolves to
+   * <code>a.Foo</code>.  Where an argument is unknown, the erased type
+   * is used.</p>
+   *
+   * @param type fully qualified static type of the receiver
+   * @param chain the member accesses, in order
+   * @param level access level for members of the receiver; the rest of the
+   * chain is resolved against public members
+   * @return the type of the last access, with type arguments where known,
+   * or <code>null</code> if some member cannot be found or a primitive or
+   * void is dereferenced
+   * @exception ClassNotFoundException if a type in the chain cannot be
+   * found
+   */
+  static String resolveChain(String type, String[] chain, int level)
+    throws ClassNotFoundException {
+    for (int i = 0; i < chain.length && type != null; i++) {
+      Cancellation.checkpoint();
+      String name = chain[i];
+      int arity = -1;
+      int slash = name.indexOf('/');
+      if (slash != -1) {
+        arity = Integer.parseInt(name.substring(slash + 1).trim());
+        name = name.substring(0, slash);
+      }
+
+      String raw = GenericTypes.raw(type);
+      if (raw.endsWith("[]")) {
+        if (arity == -1) {
+          type = name.equals("length") ? "int" : null;
+          continue;
+        } else if (name.equals("clone") && arity == 0) {
+          continue;
+        }
+        type = raw = "java.lang.Object";
+      } else if (raw.indexOf('.') == -1 && isPrimitive(raw)) {
+        return null;
+      }
+
+      type = memberType(MemberCache.get(raw, i == 0 ? level : PUBLIC),
+                        name, arity, GenericTypes.arguments(type));
+    }
+    return type;
+  }
+
+  private static boolean isPrimitive(String type) {
+    return type.equals("void") || type.equals("boolean") || type.equals("byte")
+      || type.equals("char") || type.equals("short") || type.equals("int")
+      || type.equals("long") || type.equals("float") || type.equals("double");
+  }
+
+  private static String memberType(ClassMembers members, String name, int arity,
+                                   String[] typeArguments) {
+    List<MemberInfo> candidates = arity == -1 ? members.getFields() : members.getMethods();
+    MemberInfo best = null;
+    for (int i = 0; i < candidates.size(); i++) {
+      MemberInfo m = candidates.get(i);
+      if (!m.getName().equals(name)) {
+        continue;
+      }
+      if (arity == -1) {
+        best = m;               // the field of the most derived class
+        break;
+      }
+      if (m.getParameterTypes().length == arity
+          && (best == null || isPreferred(m, best))) {
+        best = m;
+      }
+    }
+    return best == null ? null : genericType(members, best, typeArguments);
+  }
+
+  // Whether one overload of the same arity is chosen over another,
+  // whatever order reflection listed them in
+  private static boolean isPreferred(MemberInfo a, MemberInfo b) {
+    String[] pa = a.getParameterTypes();
+    String[] pb = b.getParameterTypes();
+    for (int i = 0; i < pa.length; i++) {
+      int c = pa[i].compareTo(pb[i]);
+      if (c != 0) {
+        return c < 0;
+      }
+    }
+    // the same parameters: an override with a covariant return type, or
+    // the bridge method compiled for it
+    if (a.getType().equals(b.getType())) {
+      return false;
+    }
+    try {
+      return TypeHierarchy.isAssignable(b.getType(), a.getType());
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  // The type of a member with the receiver's type arguments put in for
+  // its class's type variables, or the erased type if that leaves a
+  // variable, of the class or of the method, or an unknown wildcard
+  private static String genericType(ClassMembers members, MemberInfo m,
+                                    String[] typeArguments) {
+    String generic = m.getGenericType();
+    if (generic == null) {
+      return m.getType();
+    }
+    String[] vars = members.getTypeParameters();
+    Map<String, String> bindings = new HashMap<String, String>();
+    if (typeArguments.length == vars.length) {
+      for (int i = 0; i < vars.length; i++) {
+        bindings.put(vars[i], typeArguments[i]);
+      }
+    }
+    String type = GenericTypes.substitute(generic, bindings);
+    if (type.startsWith("? extends ")) {
+      type = type.substring("? extends ".length());
+    } else if (type.startsWith("?")) {
+      return m.getType();
+    }
+    return GenericTypes.hasVariable(type) ? m.getType() : type;
+  }
+
+  /**
+   * Gets information on the type at the end of a chain of member
+   * accesses, in one request rather than one per hop.  See
+   * {@link #resolveChain(String, String[], int)} for the chain syntax.
+   * Prints <code>(cons "finalType" INFO)</code> to System.out, where INFO
+   * is the list {@link #getClassInfo(String, int)} would print for the
+   * final type at public access, or <code>nil</code> if the chain cannot
+   * be resolved.
+   *
+   * @param receiverType fully qualified static type of the receiver
+   * @param chain the member accesses, in order
+   * @param level access level for members of the receiver
+   */
+  public static void getChainInfo(String receiverType, String[] chain,
+                                  int level) {
+    String type = receiverType;
+    try {
+      type = resolveChain(receiverType, chain, level);
+      if (type != null) {
+        type = GenericTypes.raw(type);
+      }
+      if (type == null || type.endsWith("[]") || isPrimitive(type)) {
+        System.out.println(NIL);
+        return;
+      }
+
+      ClassMembers members = MemberCache.get(type, chain.length == 0 ? level : PUBLIC);
+      Cancellation.checkpoint();
+      Writer out
+        = new BufferedWriter(new OutputStreamWriter(System.out), 8192);
+      try {
+        out.write("(cons ");
+        out.write(printWithinQuotes(type));
+        out.write(SPACE);
+        out.write(START_LIST);
+        out.write(NL);
+        writeClassInfo(members, out);
+        out.write(END_PAREN);
+        out.write(END_PAREN);
+        out.write(NL);
+        out.flush();
+      } catch (IOException e) {
+      }
+    } catch (ClassNotFoundException e) {
+      System.out.println(NIL);
+    } catch (NumberFormatException e) {
+      System.out.println("(error "
+                         + LispWriter.quote("Malformed member chain: " + e.getMessage()) + ")");
+    } catch (CancellationException e) {
+      throw e;
+    } catch (Exception e) {
+      System.out.println("(error \"Trying to load " + type +
+			 " caused a Java exception: " + e + "\")");
+    } catch (NoClassDefFoundError e) {
+      System.out.println(NIL);
+    } catch (LinkageError e) {
+      System.out.println("(error \"Trying to load " + type +
+			 " caused a Java LinkageError: " + e + "\")");
+    }
+  }
+
+  private static final String[] KIND_SYMBOLS = {
+    "'field", "'constructor", "'method", "'class"
+  };
+
+  /**
+   * Writes the completion entry of a member tagged with its kind,
+   * <code>(list 'method "name" ...)</code>.
+   *
+   * @param m the member
+   * @param out the writer where the entry is streamed
+   * @exception IOException if writing fails
+   */
+  static void writeEntry(MemberInfo m, Writer out) throws IOException {
+    writeEntry(KIND_SYMBOLS[m.getKind()], m, out);
+  }
+
+  /**
+   * Writes the completion entry of a member after a tag of the caller's
+   * choosing, <code>(list TAG "name" ...)</code>.
+   *
+   * @param tag the tag, e.g. <code>'method</code>
+   * @param m the member
+   * @param out the writer where the entry is streamed
+   * @exception IOException if writing fails
+   */
+  static void writeEntry(String tag, MemberInfo m, Writer out) throws IOException {
+    String entry = entry(m);
+    out.write(START_LIST);
+    out.write(tag);
+    out.write(SPACE);
+    out.write(entry, START_LIST.length(), entry.length() - START_LIST.length());
+  }
+
+  /**
+   * Gets the members of a class whose names match what the user has typed
+   * so far, best matches first, one page at a time.  A member matches if
+   * its name starts with <code>pattern</code> (exactly, then ignoring
+   * case) or if <code>pattern</code> is a camel-case abbreviation of it,
+   * such as <code>gAN</code> for <code>getAttributeNames</code>.
+   * Constructors and inner classes are matched on their simple class
+   * names.  The result is printed to System.out as
+   *
+   * <pre>
+   *   (list TOTAL (list (list 'method "name" "returnType" "arg"... exceptions)
+   *                     (list 'field "name" "type")
+   *                     (list 'constructor "name" "arg"... exceptions)
+   *                     (list 'class "name")
+   *                     ...))
+   * </pre>
+   *
+   * where TOTAL is the number of matching members before paging.
+   *
+   * @param className fully qualified class name
+   * @param level access level i.e. public, protected, default, and private
+   * @param pattern the prefix or camel-case pattern; empty matches all
+   * @param offset number of ranked matches to skip
+   * @param limit maximum number of matches to print; 0 or less for all
+   */
+  public static void getMatchingMembers(String className, int level,
+                                        String pattern,
+                                        int offset, int limit) {
+    try {
+      ClassMembers members = MemberCache.get(className, level);
+      List<ClassMembers.Match> matches =
+        members.match(pattern == null ? "" : pattern);
+      Cancellation.checkpoint();
+
+      int from = Math.max(0, Math.min(offset, matches.size()));
+      int to = limit > 0 ? Math.min(matches.size(), from + limit) : matches.size();
+
+      Writer out
+        = new BufferedWriter(new OutputStreamWriter(System.out), 8192);
+      try {
+        out.write(START_LIST);
+        out.write(String.valueOf(matches.size()));
+        out.write(SPACE);
+        out.write(START_LIST);
+        for (int i = from; i < to; i++) {
+          out.write(NL);
+          writeEntry(matches.get(i).member, out);
+        }
+        out.write(END_PAREN);
+        out.write(END_PAREN);
+        out.write(NL);
+        out.flush();
+      } catch (IOException e) {
+      }
+    } catch (ClassNotFoundException e) {
+      System.out.println(NIL);
+    } catch (CancellationException e) {
+      throw e;
+    } catch (Exception e) {
+      System.out.println("(error \"Trying to load " + className +
+			 " caused a Java exception: " + e + "\")");
+    } catch (NoClassDefFoundError e) {
+      System.out.println(NIL);
+    } catch (LinkageError e) {
+      System.out.println("(error \"Trying to load " + className +
+			 " caused a Java LinkageError: " + e + "\")");
+    }
+  }
+
+  /**
+   * Gets the first <code>limit</code> public members of a class matching
+   * a prefix or camel-case pattern.
+   *
+   * @param className fully qualified class name
+   * @param pattern the prefix or camel-case pattern
+   * @param limit maximum number of matches to print
+   * @see #getMatchingMembers(String, int, String, int, int)
+   */
+  public static void getMatchingMembers(String className, String pattern,
+                                        int limit) {
+    getMatchingMembers(className, PUBLIC, pattern, 0, limit);
+  }
+
+  /**
+   * Gets information on several classes in one request.  The classes are
+   * resolved in parallel and printed to System.out as
+   * <code>(list (cons "name" INFO) ...)</code>, where INFO is the list
+   * {@link #getClassInfo(String, int)} would print, <code>nil</code> if
+   * the class cannot be found, or <code>(list 'error "message")</code>.
+   *
+   * @param classNames fully qualified class names
+   * @param level access level i.e. public, protected, default, and private
+   */
+  public static void getClassInfoBatch(String[] classNames, final int level) {
+    new ClassInfoBatch() {
+      String render(String className)
+        throws ClassNotFoundException, IOException {
+        ClassMembers members = MemberCache.get(className, level);
+        StringWriter out = new StringWriter(3000);
+        out.write(START_LIST);
+        out.write(NL);
+        writeClassInfo(members, out);
+        out.write(END_PAREN);
+        return out.toString();
+      }
+    }.print(classNames);
+  }
+
+  /**
+   * Gets public information on several classes in one request.
+   *
+   * @param classNames fully qualified class names
+   * @see #getClassInfoBatch(String[], int)
+   */
+  public static void getClassInfoBatch(String[] classNames) {
+    getClassInfoBatch(classNames, PUBLIC);
+  }
+
   /**
    * Looks up an unqualified class name in the class path to find possible
    * fully qualified matches.
@@ -565,6 +975,8 @@ public class Completion {
         }
       }  catch (ClassNotFoundException e) {
         // try to find className in another package.     
+      } catch (CancellationException e) {
+        throw e;
       } catch (Exception e) {
 	System.out.println("(error \"Trying to load " + name +
 			 " caused a Java exception: " + e + "\")");       
@@ -590,6 +1002,17 @@ public class Completion {
       return c.getName();
   }
     
+  static String listNameArray(String[] names) {
+    StringBuffer sb = new StringBuffer (100);
+    for (int i = 0; i < names.length; i++) {
+      sb.append(printWithinQuotes(names[i]));
+      if ((i + 1) != names.length) {
+        sb.append(SPACE);
+      }
+    }
+    return sb.toString();
+  }
+
   static String listClassArray(Class[] classes) {
     StringBuffer sb = new StringBuffer (100);
     for (int i = 0; i < classes.length; i++) {
@@ -0,0 +1,330 @@
+/*
+ *    CreationCompletion.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import jde.juci.Cancellation;
+
+/**
+ * Completes the places where an object is created: the type after
+ * <code>new</code>, with the constructors and static factories of the
+ * likely classes, and the static members after a class name, as in
+ * <code>Collections.</code>, in one request.
+ *
+ * <p>Class names come from the project's {@link ClassNameIndex} and are
+ * ranked by how well they match, then by the project's {@link UsageStore}.
+ * Members come from the {@link MemberCache}.  Only the first
+ * {@link #LOAD_LIMIT} uncached classes of an answer are loaded while the
+ * user waits; the others are handed to the {@link Prefetcher}, so their
+ * constructors appear as the next keystroke narrows the list.</p>
+ */
+public final class CreationCompletion {
+
+  /** Number of uncached classes whose members one answer may load. */
+  static final int LOAD_LIMIT = 1;
+
+  private static final String FACTORY = "'factory";
+
+  private CreationCompletion() {
+  }
+
+  /**
+   * Returns the qualified names of the classes whose unqualified names
+   * match a pattern: by match rank, then most used first, then shorter
+   * names first.
+   *
+   * @param pc the project's classes
+   * @param pattern a prefix or camel-case pattern
+   * @return the ranked names
+   * @exception IOException if the classpath cannot be read
+   */
+  static List<String> rankClasses(ProjectClasses pc, String pattern) throws IOException {
+    List<ClassNameIndex.Match> matches = pc.getNameIndex().match(pattern);
+    final List<String> classNames = new ArrayList<>();
+    final Map<String, Integer> ranks = new HashMap<>();
+    for (Iterator<ClassNameIndex.Match> i = matches.iterator(); i.hasNext();) {
+      ClassNameIndex.Match match = i.next();
+      Cancellation.checkpoint();
+      for (Iterator<String> j = match.classNames.iterator(); j.hasNext();) {
+        String className = j.next();
+        if (!ranks.containsKey(className)) {
+          ranks.put(className, match.rank);
+          classNames.add(className);
+        }
+      }
+    }
+
+    UsageStore usage = pc.getUsage();
+    if (usage != null && classNames.size() > 1) {
+      final Map<String, Double> scores = new HashMap<>();
+      for (Iterator<String> i = classNames.iterator(); i.hasNext();) {
+        String className = i.next();
+        scores.put(className, usage.getScore(className));
+      }
+      Collections.sort(classNames, new Comparator<String>() {
+          public int compare(String a, String b) {
+            int c = ranks.get(a) - ranks.get(b);
+            return c != 0 ? c : Double.compare(scores.get(b), scores.get(a));
+          }
+        });
+    }
+    return classNames;
+  }
+
+  // A static method that returns an instance of its own class
+  private static boolean isFactory(MemberInfo m, ClassMembers members) {
+    return m.getKind() == MemberInfo.METHOD
+      && Modifier.isStatic(m.getModifiers())
+      && members.getClassName().equals(m.getType());
+  }
+
+  // The cached members of a class named as in source code, loading them
+  // if allowed
+  private static ClassMembers members(String name, boolean load) {
+    if (load) {
+      try {
+        return MemberCache.getQualified(name, Completion.PUBLIC);
+      } catch (ClassNotFoundException | LinkageError e) {
+        return null;
+      }
+    }
+    ClassMembers members = MemberCache.getIfCurrent(name, Completion.PUBLIC);
+    int index = name.lastIndexOf('.');
+    if (members == null && index != -1) {
+      members = MemberCache.getIfCurrent(name.substring(0, index) + '$'
+                                         + name.substring(index + 1),
+                                         Completion.PUBLIC);
+    }
+    return members;
+  }
+
+  private static void writeClass(String className, Writer out) throws IOException {
+    out.write(Completion.START_LIST);
+    out.write("'class \"");
+    out.write(className);
+    out.write("\")");
+  }
+
+  /**
+   * Writes the completions of the type after <code>new</code>.
+   *
+   * @param pc the project's classes
+   * @param typePattern what has been typed of the class name
+   * @param limit maximum number of classes; 0 or less for all
+   * @param out the writer where the answer is streamed
+   * @exception IOException if the classpath cannot be read or writing fails
+   */
+  static void completeNew(ProjectClasses pc, String typePattern, int limit, Writer out)
+    throws IOException {
+    List<String> classNames = rankClasses(pc, typePattern);
+    int to = limit > 0 ? Math.min(limit, classNames.size()) : classNames.size();
+
+    out.write(Completion.START_LIST);
+    out.write(String.valueOf(classNames.size()));
+    out.write(Completion.SPACE);
+    out.write(Completion.START_LIST);
+    int loads = 0;
+    List<String> prefetch = new ArrayList<>();
+    for (int i = 0; i < to; i++) {
+      Cancellation.checkpoint();
+      String className = classNames.get(i);
+      out.write(Completion.NL);
+      writeClass(className, out);
+
+      ClassMembers members = members(className, false);
+      if (members == null) {
+        if (loads == LOAD_LIMIT) {
+          prefetch.add(className);
+          continue;
+        }
+        loads++;
+        members = members(className, true);
+        if (members == null) {
+          continue;
+        }
+      }
+      List<MemberInfo> ctors = members.getConstructors();
+      for (int j = 0; j < ctors.size(); j++) {
+        out.write(Completion.NL);
+        Completion.writeEntry(ctors.get(j), out);
+      }
+      String factoryTag = FACTORY + " \"" + members.getClassName() + '"';
+      List<MemberInfo> methods = members.getMethods();
+      for (int j = 0; j < methods.size(); j++) {
+        if (isFactory(methods.get(j), members)) {
+          out.write(Completion.NL);
+          Completion.writeEntry(factoryTag, methods.get(j), out);
+        }
+      }
+    }
+    out.write(Completion.END_PAREN);
+    out.write(Completion.END_PAREN);
+    if (!prefetch.isEmpty()) {
+      Prefetcher.queue(prefetch.toArray(new String[prefetch.size()]));
+    }
+  }
+
+  /**
+   * Writes the completions of the static members of a class.
+   *
+   * @param pc the project's classes
+   * @param typeName the class, qualified or unqualified
+   * @param memberPattern what has been typed of the member name
+   * @param limit maximum number of members; 0 or less for all
+   * @param out the writer where the answer is streamed
+   * @exception ClassNotFoundException if the class cannot be found
+   * @exception IOException if the classpath cannot be read or writing fails
+   */
+  static void completeStatic(ProjectClasses pc, String typeName, String memberPattern,
+                             int limit, Writer out)
+    throws ClassNotFoundException, IOException {
+    final ClassMembers members = resolve(pc, typeName);
+
+    List<ClassMembers.Match> matches = new ArrayList<>();
+    for (Iterator<ClassMembers.Match> i = members.match(memberPattern).iterator(); i.hasNext();) {
+      ClassMembers.Match match = i.next();
+      MemberInfo m = match.member;
+      if (m.getKind() == MemberInfo.CLASS
+          || (m.getKind() != MemberInfo.CONSTRUCTOR && Modifier.isStatic(m.getModifiers()))) {
+        matches.add(match);
+      }
+    }
+    // factories ahead of other members of the same rank
+    Collections.sort(matches, new Comparator<ClassMembers.Match>() {
+        public int compare(ClassMembers.Match a, ClassMembers.Match b) {
+          if (a.rank != b.rank) {
+            return a.rank - b.rank;
+          }
+          return (isFactory(a.member, members) ? 0 : 1) - (isFactory(b.member, members) ? 0 : 1);
+        }
+      });
+    int to = limit > 0 ? Math.min(limit, matches.size()) : matches.size();
+
+    String factoryTag = FACTORY + " \"" + members.getClassName() + '"';
+    out.write(Completion.START_LIST);
+    out.write(String.valueOf(matches.size()));
+    out.write(Completion.SPACE);
+    out.write(Completion.START_LIST);
+    for (int i = 0; i < to; i++) {
+      MemberInfo m = matches.get(i).member;
+      out.write(Completion.NL);
+      if (isFactory(m, members)) {
+        Completion.writeEntry(factoryTag, m, out);
+      } else {
+        Completion.writeEntry(m, out);
+      }
+    }
+    out.write(Completion.END_PAREN);
+    out.write(Completion.END_PAREN);
+  }
+
+  // The members of a qualified class, or of the most used class with an
+  // unqualified name
+  private static ClassMembers resolve(ProjectClasses pc, String typeName)
+    throws ClassNotFoundException, IOException {
+    if (typeName.indexOf('.') != -1) {
+      return MemberCache.getQualified(typeName, Completion.PUBLIC);
+    }
+    for (Iterator<String> i = pc.getClassNames(typeName).iterator(); i.hasNext();) {
+      ClassMembers members = members(i.next(), true);
+      if (members != null) {
+        return members;
+      }
+    }
+    throw new ClassNotFoundException(typeName);
+  }
+
+  /**
+   * Completes an object creation.  With no member pattern, completes the
+   * type after <code>new</code>: lists the classes whose names match
+   * <code>typePattern</code>, each followed by its public constructors and
+   * static factories when its members are at hand.  With a member
+   * pattern, completes <code>Type.pattern</code>: lists the static
+   * members of the class named <code>typePattern</code> that match the
+   * pattern, static factories first.  Both match prefixes and camel-case
+   * abbreviations.  The result is printed to System.out as
+   *
+   * <pre>
+   *   (list TOTAL (list (list 'class "a.b.C")
+   *                     (list 'constructor "a.b.C" "arg"... exceptions)
+   *                     (list 'factory "a.b.C" "name" "a.b.C" "arg"... exceptions)
+   *                     (list 'method "name" "returnType" "arg"... exceptions)
+   *                     (list 'field "name" "type")
+   *                     ...))
+   * </pre>
+   *
+   * where TOTAL is the number of matching classes, or of matching static
+   * members, before the limit is applied.  Prints nil if the class of a
+   * member completion cannot be found.
+   *
+   * @param typePattern what has been typed of the class name, or the
+   * class name before the dot
+   * @param memberPattern what has been typed after the dot, or
+   * <code>null</code> after <code>new</code>
+   * @param limit maximum number of classes or members; 0 or less for all
+   */
+  public static void getCreationCompletions(String typePattern, String memberPattern,
+                                            int limit) {
+    try {
+      ProjectClasses pc = JdeUtilities.getCurrentProjectClass();
+      Writer out
+        = new BufferedWriter(new OutputStreamWriter(System.out), 8192);
+      if (memberPattern == null) {
+        completeNew(pc, typePattern, limit, out);
+      } else {
+        completeStatic(pc, typePattern, memberPattern, limit, out);
+      }
+      out.write(Completion.NL);
+      out.flush();
+    } catch (ClassNotFoundException | NoClassDefFoundError e) {
+      System.out.println(Completion.NIL);
+    } catch (IOException e) {
+      System.out.println("(error \"Trying to complete " + typePattern +
+                         " caused a Java exception: " + e + "\")");
+    } catch (LinkageError e) {
+      System.out.println("(error \"Trying to load " + typePattern +
+                         " caused a Java LinkageError: " + e + "\")");
+    }
+  }
+
+  /**
+   * Completes the type after <code>new</code>.
+   *
+   * @param typePattern what has been typed of the class name
+   * @param limit maximum number of classes; 0 or less for all
+   * @see #getCreationCompletions(String, String, int)
+   */
+  public static void getCreationCompletions(String typePattern, int limit) {
+    getCreationCompletions(typePattern, null, limit);
+  }
+}
+
+// End of CreationCompletion.java
@@ -25,6 +25,8 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -36,7 +38,9 @@ import java.util.zip.ZipFile;
  * This class loads the class binaries from the file system
  * all the time, it does not catch the class information.
  * There is caveat to this, classes that come with the JDK
- * such as java.lang.*, are loaded using the standard class loader.
+ * such as java.lang.*, are loaded using the standard class loader;
+ * on JDK 9 and later that is every package of the boot module layer
+ * (see {@link PlatformPackages}).
  * The rest of the class are always reloaded from the file system.
  *
  * Created: Sun Jul 01 08:11:12 2001
@@ -79,6 +83,19 @@ public class DynamicClassLoader extends ClassLoader {
    *
    */
   public static final String CLASS_FILE_TYPE = "class";
+
+  /**
+   * The class file or archive each class defined by this loader was read
+   * from, keyed by class name.
+   */
+  private Map<String, File> sources = new HashMap<>();
+
+  /**
+   * Creates a loader for the current project's classpath.
+   */
+  public DynamicClassLoader() {
+    ClassLoaderStats.loaderCreated(this);
+  }
   
   /**
    * Loads a class information from the file system,
@@ -93,10 +110,11 @@ public class DynamicClassLoader extends ClassLoader {
     byte[] classBytes = null;
     Class c;
 
-    //Checking if the class belong to either java.* or javax.*
-    if ((argClassName.startsWith("java.")) || 
-        (argClassName.startsWith("javax."))) {
-      return Class.forName(argClassName);
+    //Classes in platform packages, java.* and javax.* but on JDK 9+ also
+    //jdk.*, sun.* and the rest of the boot layer, come from their module
+    if (PlatformPackages.isPlatformClass(argClassName)) {
+      ClassLoaderStats.platformLoad();
+      return PlatformPackages.load(argClassName);
     } // end of if ()
     
     //First convert the class name from java.lang.String to java/lang/String
@@ -122,22 +140,34 @@ public class DynamicClassLoader extends ClassLoader {
     
     StringTokenizer st = new StringTokenizer(classpath, PATH_SEPARATOR);
     ZipFile zf;
+    File source = null;
     while (st.hasMoreTokens()) {
       file = new File(st.nextToken());  
+      source = file;
 
       //Check if the file is a directory if is not 
       //assume it is a jar or zip file
       try {
+        //skip archives whose class name filter rules the class out,
+        //which saves opening every jar on the classpath for a miss
+        ClassPathEntry entry = ClassPathEntry.instanceForEntry(file);
+        if (entry != null && !entry.mightContain(argClassName)) {
+          ClassLoaderStats.archiveSkipped();
+          continue;
+        } // end of if (entry != null ...)
+
         if (file.isDirectory()) {
           //if the file is a directory try to locate the class file 
           //and load it.
           file = new File(file, className);
+          source = file;
           classBytes = loadFile(file);
           if (classBytes != null) {
             break;
           } // end of if (classBytes != null)
         } else {
           zf = new ZipFile(file);
+          ClassLoaderStats.zipOpened();
           classBytes = loadFile(zf, className);
           if (classBytes != null) {
             break;
@@ -151,24 +181,41 @@ public class DynamicClassLoader extends ClassLoader {
     if (classBytes != null) {
       try {
         c = defineClass(argClassName, classBytes, 0, classBytes.length);
+        sources.put(argClassName, source);
+        ClassLoaderStats.classDefined();
       } catch (SecurityException e) {
         //basic packages such as java.lang.* can't be loaded directly
-        c = Class.forName(argClassName);
+        ClassLoaderStats.forNameFallback();
+        c = Class.forName(argClassName, false, getParent());
       } catch (ClassFormatError e) { 
-        c = Class.forName(argClassName);
+        ClassLoaderStats.forNameFallback();
+        c = Class.forName(argClassName, false, getParent());
       } catch (NoClassDefFoundError e) {
-        c = Class.forName(argClassName);
+        ClassLoaderStats.forNameFallback();
+        c = Class.forName(argClassName, false, getParent());
       }
       return c;
     } else {
+      ClassLoaderStats.parentLoad();
       try {
-        return Class.forName(argClassName);
+        return Class.forName(argClassName, false, getParent());
       } catch (ClassNotFoundException e) {
         throw new ClassNotFoundException(argClassName);
       } // end of try-catch
     } // end of else
   }//end of loadClass
 
+  /**
+   * Returns the class files and archives that the classes defined by this
+   * loader were read from.  Classes delegated to the system class loader
+   * are not included.
+   *
+   * @return map of class name to class file or archive
+   */
+  Map<String, File> getSources() {
+    return sources;
+  }
+
   private byte[] loadFile(File argFile) {
     byte[] b = null;
     InputStream in = null;
@@ -176,6 +223,7 @@ public class DynamicClassLoader extends ClassLoader {
       try {
         in = new FileInputStream(argFile);
         b = read(in, (int)argFile.length());
+        ClassLoaderStats.fileRead(b.length);
       } catch (FileNotFoundException e) {
         b = null;
       } catch (IOException e) {
@@ -202,6 +250,7 @@ public class DynamicClassLoader extends ClassLoader {
       if (ze != null) {
         in = argFile.getInputStream(ze);
         b = read(in, (int) ze.getSize());
+        ClassLoaderStats.fileRead(b.length);
       }
     } catch (IOException e) {
       b = null;
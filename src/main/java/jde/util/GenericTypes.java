@@ -0,0 +1,324 @@
+/*
+ *    GenericTypes.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generic types as strings, and the little algebra chained completion
+ * needs on them.
+ *
+ * <p>Types are written as in source code, but with binary class names and
+ * no spaces between type arguments:
+ * <code>java.util.Map$Entry&lt;K,java.util.List&lt;? extends V&gt;&gt;</code>.
+ * A type variable is written as its name.  The members of a class are
+ * described in terms of that class's own type variables, even when they
+ * are inherited: the <code>iterator()</code> that
+ * <code>java.util.ArrayList</code> inherits returns
+ * <code>java.util.Iterator&lt;E&gt;</code> with ArrayList's
+ * <code>E</code>.</p>
+ */
+final class GenericTypes {
+
+  private GenericTypes() {
+  }
+
+  /*************************************************************************
+   * From reflection
+   *************************************************************************/
+
+  /**
+   * Writes a reflected type as a string.
+   *
+   * @param t the type
+   * @param bindings strings to write for type variables; variables not
+   * in the map are written as their names
+   * @return the type
+   */
+  static String render(Type t, Map<TypeVariable<?>, String> bindings) {
+    StringBuilder sb = new StringBuilder();
+    render(t, bindings, sb);
+    return sb.toString();
+  }
+
+  private static void render(Type t, Map<TypeVariable<?>, String> bindings, StringBuilder sb) {
+    if (t instanceof Class) {
+      Class<?> c = (Class<?>) t;
+      if (c.isArray()) {
+        render(c.getComponentType(), bindings, sb);
+        sb.append("[]");
+      } else {
+        sb.append(c.getName());
+      }
+    } else if (t instanceof ParameterizedType) {
+      ParameterizedType p = (ParameterizedType) t;
+      render(p.getRawType(), bindings, sb);
+      Type[] args = p.getActualTypeArguments();
+      sb.append('<');
+      for (int i = 0; i < args.length; i++) {
+        if (i > 0) {
+          sb.append(',');
+        }
+        render(args[i], bindings, sb);
+      }
+      sb.append('>');
+    } else if (t instanceof GenericArrayType) {
+      render(((GenericArrayType) t).getGenericComponentType(), bindings, sb);
+      sb.append("[]");
+    } else if (t instanceof WildcardType) {
+      WildcardType w = (WildcardType) t;
+      Type[] lower = w.getLowerBounds();
+      Type[] upper = w.getUpperBounds();
+      if (lower.length > 0) {
+        sb.append("? super ");
+        render(lower[0], bindings, sb);
+      } else if (upper.length > 0 && upper[0] != Object.class) {
+        sb.append("? extends ");
+        render(upper[0], bindings, sb);
+      } else {
+        sb.append('?');
+      }
+    } else if (t instanceof TypeVariable) {
+      String bound = bindings.get(t);
+      sb.append(bound != null ? bound : ((TypeVariable) t).getName());
+    } else {
+      sb.append(t);
+    }
+  }
+
+  /**
+   * Tests whether a reflected type involves generics.
+   *
+   * @param t the type
+   * @return false for plain classes and arrays of them
+   */
+  static boolean isGeneric(Type t) {
+    return !(t instanceof Class);
+  }
+
+  /**
+   * Returns the names of the type variables of a class.
+   *
+   * @param c the class
+   * @return the names, in declaration order
+   */
+  static String[] typeParameters(Class<?> c) {
+    TypeVariable<?>[] vars = c.getTypeParameters();
+    String[] names = new String[vars.length];
+    for (int i = 0; i < vars.length; i++) {
+      names[i] = vars[i].getName();
+    }
+    return names;
+  }
+
+  /**
+   * Binds the type variables of a class's supertypes to what the class
+   * passes for them, in terms of the class's own type variables.  For
+   * <code>ArrayList&lt;E&gt;</code>, <code>AbstractList</code>'s and
+   * <code>List</code>'s <code>E</code> are bound to <code>E</code>; for
+   * <code>Properties</code>, <code>Hashtable</code>'s <code>K</code> and
+   * <code>V</code> are bound to <code>java.lang.Object</code>.  Variables
+   * of supertypes used raw are left out, so their members erase.
+   *
+   * @param c the class
+   * @return the bindings
+   */
+  static Map<TypeVariable<?>, String> supertypeBindings(Class<?> c) {
+    Map<TypeVariable<?>, String> bindings = new HashMap<>();
+    bindSupertypes(c, bindings, new HashSet<Class<?>>());
+    return bindings;
+  }
+
+  private static void bindSupertypes(Class<?> c, Map<TypeVariable<?>, String> bindings,
+                                     Set<Class<?>> visited) {
+    if (c == null || !visited.add(c)) {
+      return;
+    }
+    List<Type> supertypes = new ArrayList<>();
+    if (c.getGenericSuperclass() != null) {
+      supertypes.add(c.getGenericSuperclass());
+    }
+    Type[] interfaces = c.getGenericInterfaces();
+    for (int i = 0; i < interfaces.length; i++) {
+      supertypes.add(interfaces[i]);
+    }
+    for (int i = 0; i < supertypes.size(); i++) {
+      Type s = supertypes.get(i);
+      if (s instanceof ParameterizedType) {
+        ParameterizedType p = (ParameterizedType) s;
+        Class<?> raw = (Class<?>) p.getRawType();
+        TypeVariable<?>[] vars = raw.getTypeParameters();
+        Type[] args = p.getActualTypeArguments();
+        for (int j = 0; j < vars.length && j < args.length; j++) {
+          if (!bindings.containsKey(vars[j])) {
+            bindings.put(vars[j], render(args[j], bindings));
+          }
+        }
+        bindSupertypes(raw, bindings, visited);
+      } else if (s instanceof Class) {
+        bindSupertypes((Class<?>) s, bindings, visited);
+      }
+    }
+  }
+
+  /*************************************************************************
+   * On strings
+   *************************************************************************/
+
+  /**
+   * Returns the class part of a type, without type arguments:
+   * <code>java.util.List</code> for
+   * <code>java.util.List&lt;java.lang.String&gt;</code>, and
+   * <code>java.util.List[]</code> for an array of them.
+   *
+   * @param type a type
+   * @return its erasure, as far as the string tells
+   */
+  static String raw(String type) {
+    int lt = type.indexOf('<');
+    if (lt == -1) {
+      return type;
+    }
+    return type.substring(0, lt) + type.substring(type.lastIndexOf('>') + 1);
+  }
+
+  /**
+   * Returns the type arguments of a parameterized type.
+   *
+   * @param type a type
+   * @return its top-level type arguments; none if it has none or is an
+   * array
+   */
+  static String[] arguments(String type) {
+    int lt = type.indexOf('<');
+    if (lt == -1 || !type.endsWith(">")) {
+      return new String[0];
+    }
+    List<String> args = new ArrayList<>();
+    int depth = 0;
+    int start = lt + 1;
+    for (int i = start; i < type.length() - 1; i++) {
+      char c = type.charAt(i);
+      if (c == '<') {
+        depth++;
+      } else if (c == '>') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        args.add(type.substring(start, i).trim());
+        start = i + 1;
+      }
+    }
+    args.add(type.substring(start, type.length() - 1).trim());
+    return args.toArray(new String[args.size()]);
+  }
+
+  /**
+   * Replaces type variables in a type.
+   *
+   * @param type a type
+   * @param bindings type variable names to what replaces them
+   * @return the type with the variables in <code>bindings</code> replaced
+   */
+  static String substitute(String type, Map<String, String> bindings) {
+    if (bindings.isEmpty()) {
+      return type;
+    }
+    StringBuilder sb = new StringBuilder(type.length() + 16);
+    int i = 0;
+    while (i < type.length()) {
+      char c = type.charAt(i);
+      if (Character.isJavaIdentifierStart(c)) {
+        int start = i;
+        while (i < type.length()
+               && (Character.isJavaIdentifierPart(type.charAt(i)) || type.charAt(i) == '.')) {
+          i++;
+        }
+        String name = type.substring(start, i);
+        String bound = bindings.get(name);
+        sb.append(bound != null ? bound : name);
+      } else {
+        sb.append(c);
+        i++;
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Tests whether a type is, or is an array of, a type variable: a
+   * name with no package that is not a primitive type.
+   *
+   * @param type a type without wildcard
+   * @return true if the type names a variable
+   */
+  static boolean isVariable(String type) {
+    String name = raw(type);
+    int bracket = name.indexOf('[');
+    if (bracket != -1) {
+      name = name.substring(0, bracket);
+    }
+    return name.indexOf('.') == -1 && !isPrimitive(name);
+  }
+
+  /**
+   * Tests whether a type mentions a type variable anywhere, itself or in
+   * its type arguments, as <code>java.util.List&lt;T&gt;</code> does.
+   *
+   * @param type a type
+   * @return true if some name in the type is a variable
+   */
+  static boolean hasVariable(String type) {
+    int i = 0;
+    while (i < type.length()) {
+      if (Character.isJavaIdentifierStart(type.charAt(i))) {
+        int start = i;
+        while (i < type.length()
+               && (Character.isJavaIdentifierPart(type.charAt(i)) || type.charAt(i) == '.')) {
+          i++;
+        }
+        String name = type.substring(start, i);
+        if (name.indexOf('.') == -1 && !isPrimitive(name)
+            && !name.equals("extends") && !name.equals("super")) {
+          return true;
+        }
+      } else {
+        i++;
+      }
+    }
+    return false;
+  }
+
+  static boolean isPrimitive(String type) {
+    return type.equals("void") || type.equals("boolean") || type.equals("byte")
+      || type.equals("char") || type.equals("short") || type.equals("int")
+      || type.equals("long") || type.equals("float") || type.equals("double");
+  }
+}
+
+// End of GenericTypes.java
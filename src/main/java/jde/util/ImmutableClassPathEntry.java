@@ -78,4 +78,27 @@ class ImmutableClassPathEntry extends ClassPathEntry {
     List getClassNames(String unqualifiedName) throws IOException {
         return delegate.getClassNames(unqualifiedName);
     }
+
+    /**
+     * forwarded to delegate.
+     *
+     * @return a <code>Set</code> value
+     * @exception IOException if an error occurs
+     */
+    @Override
+    Set<String> getUnqualifiedNames() throws IOException {
+        return delegate.getUnqualifiedNames();
+    }
+
+    /**
+     * forwarded to delegate.
+     *
+     * @param binaryName a <code>String</code> value
+     * @return a <code>boolean</code> value
+     * @exception IOException if an error occurs
+     */
+    @Override
+    boolean mightContain(String binaryName) throws IOException {
+        return delegate.mightContain(binaryName);
+    }
 }
@@ -24,6 +24,9 @@ package jde.util;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jde.juci.EndpointStats;
 
 /**
  * This class provides various utility methods.
@@ -38,20 +41,20 @@ public class JdeUtilities {
 
   /** A cache of the items that are important across projects,
    * indexed by the project name */
-  private static Map<String,ProjectClasses> projectCache = new HashMap<>();
+  private static Map<String,ProjectClasses> projectCache = new ConcurrentHashMap<>();
 
-  /** The current project so that callers need not pass in the
-      project name every time.  This is convenient, but not
-      threadsafe.  If we need thread saftey, we can go change all
-      the emacs lisp callers to always pass in the project name */
-  private static String currentProjectName = "default";
+  /** The current project is kept per client (see {@link SessionState}),
+      so that callers need not pass in the project name every time and
+      clients sharing a server do not switch each other's project. */
+  private static final String DEFAULT_PROJECT = "default";
     
   // Have a default one just in case
   static {
     try {
       ProjectClasses defaultProject =
-        new ProjectClasses(System.getProperty("java.class.path"));
-      projectCache.put(currentProjectName,defaultProject);
+        new ProjectClasses(System.getProperty("java.class.path"),
+                           UsageStore.forProject(DEFAULT_PROJECT));
+      projectCache.put(DEFAULT_PROJECT,defaultProject);
     } catch (IOException e) {
       e.printStackTrace(System.err);
     } // end of try-catch
@@ -71,7 +74,9 @@ public class JdeUtilities {
 
   /**
    * Jde should call this everytime the project changes, or if the
-   * classpath needs to be updated.
+   * classpath needs to be updated.  Sets the project of the calling
+   * client only; a project already loaded with the same classpath is
+   * kept, caches and all, for the other clients working on it.
    *
    * @param projectName a <code>String</code> value
    * @param projectClassPath a <code>String</code> value
@@ -79,9 +84,15 @@ public class JdeUtilities {
   public static void setProjectValues(String projectName,
                                       String projectClassPath) {
     try {
-      currentProjectName = projectName;
-      ProjectClasses pc = new ProjectClasses(projectClassPath);
-      projectCache.put(projectName, pc);
+      SessionState.current().setProjectName(projectName);
+      ProjectClasses loaded = projectCache.get(projectName);
+      if (loaded == null || !projectClassPath.equals(loaded.getClassPath())) {
+        ProjectClasses pc = new ProjectClasses(projectClassPath,
+                                               UsageStore.forProject(projectName));
+        projectCache.put(projectName, pc);
+      }
+      SourceIndex.update(projectClassPath);
+      MemberStore.start();
     } catch (IOException e) {
       e.printStackTrace(System.err);
     } // end of try-catch
@@ -89,11 +100,33 @@ public class JdeUtilities {
 
   /* Convenience to get current project's name */
   public static String getCurrentProjectName() {
-    return currentProjectName;
+    return SessionState.current().getProjectName();
   }
     
   public static ProjectClasses getCurrentProjectClass() {
-    return projectCache.get(currentProjectName);
+    return projectCache.get(getCurrentProjectName());
+  }
+
+  /**
+   * Returns the classpath generation, a counter that changes whenever the
+   * current project or its classpath is set or reloaded.  No two projects
+   * share a generation.
+   *
+   * @return the current generation
+   */
+  static int getClasspathGeneration() {
+    return getClasspathGeneration(getCurrentProjectName());
+  }
+
+  /**
+   * Returns the classpath generation of a project.
+   *
+   * @param projectName the project
+   * @return its current generation, or 0 if it has not been set
+   */
+  static int getClasspathGeneration(String projectName) {
+    ProjectClasses pc = projectCache.get(projectName);
+    return pc != null ? pc.getGeneration() : 0;
   }
 
   /**
@@ -145,6 +178,7 @@ public class JdeUtilities {
    */
   public static void updateClassList(String classPathEntry) {
     ProjectClasses pc = projectCache.get(getCurrentProjectName());
+    pc.newGeneration();
 
     try {
       if (classPathEntry!=null) {
@@ -173,7 +207,7 @@ public class JdeUtilities {
    */
   public static void getQualifiedName(String className) {
     try {
-      ProjectClasses pc = projectCache.get(currentProjectName);
+      ProjectClasses pc = getCurrentProjectClass();
 
       StringBuilder result = new StringBuilder(START_PAREN);
       result.append(LIST);
@@ -191,6 +225,19 @@ public class JdeUtilities {
     } // end of try-catch
   }
 
+  /**
+   * Records that the current project used a class, for example by
+   * importing it or completing its name, so that later lookups rank it
+   * higher.  Prints t.
+   *
+   * @param className Fully qualified name of the class
+   */
+  public static void recordUsage(String className) {
+    UsageStore.forProject(getCurrentProjectName()).record(className);
+    System.out.println(T);
+    System.out.flush();
+  }
+
   public static void getJavaVersion() {
     StringBuilder sb = new StringBuilder(30);
     sb.append(DOUBLE_QUOTE);
@@ -200,8 +247,22 @@ public class JdeUtilities {
     System.out.flush();
   }
 
+  /**
+   * Prints the call counts and latencies of every server endpoint called
+   * so far, as an alist keyed by endpoint name.
+   *
+   * @see EndpointStats#getStats
+   */
+  public static void getEndpointStats() {
+    EndpointStats.getStats();
+  }
+
+  /**
+   * Ends the server, or on a server shared over a socket just the
+   * calling client's session.
+   */
   public static void exit() {
-    System.exit(7);
+    SessionState.current().exit();
   }
 } // JdeUtilities
 
@@ -0,0 +1,218 @@
+/*
+ *    LispEncoder.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the tokens of a lisp response into a buffer that is drained to
+ * a writer in chunks, so a large response is never assembled as one
+ * string.  The buffer is reused from response to response on the same
+ * thread.
+ *
+ * <p>With a type table, the first occurrence of each type name is written
+ * with a reader label, <code>#1="java.lang.String"</code>, and every
+ * later occurrence as a back-reference, <code>#1#</code>.  The Emacs
+ * reader then makes one string per distinct type instead of one per
+ * occurrence, and the response shrinks, without any change to the code
+ * that evaluates it.  Labels are numbered per response.</p>
+ */
+final class LispEncoder {
+
+  /** Buffered characters that trigger a write to the underlying writer. */
+  static final int CHUNK = 8192;
+
+  /**
+   * The reusable text buffer and copy-out array of one thread, and its
+   * writer over <code>System.out</code>.
+   */
+  private static final class Buffers {
+    final StringBuilder text = new StringBuilder(CHUNK + 1024);
+    char[] chars = new char[CHUNK + 1024];
+    PrintStream stdoutStream;
+    Writer stdoutWriter;
+  }
+
+  private static final ThreadLocal<Buffers> threadBuffers = new ThreadLocal<Buffers>() {
+      protected Buffers initialValue() {
+        return new Buffers();
+      }
+    };
+
+  private final StringBuilder buf;
+  private final Buffers buffers;
+  private final Writer out;
+  private final Map<String, Integer> labels;
+  private IOException error;
+
+  /**
+   * Creates an encoder.
+   *
+   * @param out the writer to drain to, or <code>null</code> to keep the
+   * whole response in the buffer for {@link #toString}
+   * @param typeTable whether to label repeated type names
+   */
+  LispEncoder(Writer out, boolean typeTable) {
+    this.out = out;
+    this.labels = typeTable ? new HashMap<String, Integer>() : null;
+    if (out == null) {
+      this.buffers = null;
+      this.buf = new StringBuilder(3000);
+    } else {
+      this.buffers = threadBuffers.get();
+      this.buf = buffers.text;
+      buf.setLength(0);
+    }
+  }
+
+  /**
+   * Returns an encoder that writes to <code>System.out</code>.  The
+   * writer over <code>System.out</code> is kept between responses and
+   * only rebuilt if <code>System.out</code> is replaced.  It is kept per
+   * thread, since <code>System.out</code> may send each session thread's
+   * output to its own client.
+   *
+   * @param typeTable whether to label repeated type names
+   * @return the encoder
+   */
+  static LispEncoder forStdout(boolean typeTable) {
+    return new LispEncoder(stdout(), typeTable);
+  }
+
+  private static Writer stdout() {
+    Buffers b = threadBuffers.get();
+    if (b.stdoutStream != System.out) {
+      b.stdoutStream = System.out;
+      b.stdoutWriter = new BufferedWriter(new OutputStreamWriter(System.out));
+    }
+    return b.stdoutWriter;
+  }
+
+  /**
+   * Appends text as it is.
+   *
+   * @param s text
+   * @return this encoder
+   */
+  LispEncoder write(String s) {
+    buf.append(s);
+    return drainIfFull();
+  }
+
+  /**
+   * Appends a character.
+   *
+   * @param c character
+   * @return this encoder
+   */
+  LispEncoder write(char c) {
+    buf.append(c);
+    return drainIfFull();
+  }
+
+  /**
+   * Appends a name within double quotes.  Names of Java classes and
+   * members hold no quotes or backslashes, so nothing is escaped.
+   *
+   * @param name a name
+   * @return this encoder
+   */
+  LispEncoder name(String name) {
+    buf.append('"').append(name).append('"');
+    return drainIfFull();
+  }
+
+  /**
+   * Appends a type name within double quotes, or a back-reference to an
+   * earlier occurrence when there is a type table.
+   *
+   * @param type a type name
+   * @return this encoder
+   */
+  LispEncoder typeName(String type) {
+    if (labels != null) {
+      Integer label = labels.get(type);
+      if (label != null) {
+        buf.append('#').append(label.intValue()).append('#');
+        return drainIfFull();
+      }
+      label = labels.size() + 1;
+      labels.put(type, label);
+      buf.append('#').append(label.intValue()).append('=');
+    }
+    return name(type);
+  }
+
+  private LispEncoder drainIfFull() {
+    if (out != null && buf.length() >= CHUNK) {
+      drain();
+    }
+    return this;
+  }
+
+  private void drain() {
+    if (error == null) {
+      int length = buf.length();
+      if (buffers.chars.length < length) {
+        buffers.chars = new char[length];
+      }
+      buf.getChars(0, length, buffers.chars, 0);
+      try {
+        out.write(buffers.chars, 0, length);
+      } catch (IOException e) {
+        error = e;
+      }
+    }
+    buf.setLength(0);
+  }
+
+  /**
+   * Writes what is left in the buffer and flushes the writer.
+   *
+   * @exception IOException if writing failed at any point
+   */
+  void flush() throws IOException {
+    if (out != null) {
+      drain();
+      if (error == null) {
+        out.flush();
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Returns the response of an encoder without a writer.
+   *
+   * @return the encoded text
+   */
+  public String toString() {
+    return buf.toString();
+  }
+}
+
+// End of LispEncoder.java
@@ -0,0 +1,151 @@
+/*
+ *    MemberCache.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of {@link ClassMembers}, keyed by
+ * project, class name and access level.  Entries are dropped when the project
+ * classpath changes (see {@link JdeUtilities#getClasspathGeneration}) or
+ * when a class file they were read from is rewritten, so a recompiled
+ * project class is picked up on the next request.
+ */
+final class MemberCache {
+
+  /** Maximum number of class listings kept. */
+  static final int CAPACITY = 2000;
+
+  private static final Map<String, ClassMembers> cache =
+    new LinkedHashMap<String, ClassMembers>(256, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String, ClassMembers> eldest) {
+        return size() > CAPACITY;
+      }
+    };
+
+  private MemberCache() {
+  }
+
+  // Clients of a shared server may work on different projects at once
+  // (see SessionState); the same class name can be a different class in each
+  private static String key(String className, int level) {
+    return JdeUtilities.getCurrentProjectName() + '#' + className + '#' + level;
+  }
+
+  /**
+   * Returns the members of <code>className</code> at <code>level</code>,
+   * loading and reflecting the class if no current listing is cached.
+   *
+   * @param className fully qualified class name
+   * @param level access level, one of the {@link Completion} constants
+   * @return the class members
+   * @exception ClassNotFoundException if the class cannot be found
+   */
+  static ClassMembers get(String className, int level) throws ClassNotFoundException {
+    ClassMembers members = getIfCurrent(className, level);
+    if (members == null) {
+      int generation = JdeUtilities.getClasspathGeneration();
+      MemberStore store = MemberStore.getShared();
+      if (store != null) {
+        members = store.get(className, level, generation);
+      }
+      if (members == null) {
+        DynamicClassLoader dcl = new DynamicClassLoader();
+        Class<?> c = dcl.loadClass(className);
+        members = Completion.listMembers(c, level, generation, dcl.getSources());
+        if (store != null) {
+          store.put(members, dcl.getSources());
+        }
+      }
+      put(members);
+    }
+    return members;
+  }
+
+  /**
+   * Returns the members of a class named as in source code, trying
+   * <code>a.b.C$D</code> when <code>a.b.C.D</code> cannot be found.
+   *
+   * @param name fully qualified class name, inner classes separated by
+   * dots or dollar signs
+   * @param level access level, one of the {@link Completion} constants
+   * @return the class members
+   * @exception ClassNotFoundException if no reading of the name is a class
+   */
+  static ClassMembers getQualified(String name, int level) throws ClassNotFoundException {
+    while (true) {
+      try {
+        return get(name, level);
+      } catch (ClassNotFoundException | NoClassDefFoundError e) {
+        int index = name.lastIndexOf('.');
+        if (index == -1) {
+          throw new ClassNotFoundException(name);
+        }
+        name = name.substring(0, index) + '$' + name.substring(index + 1);
+      }
+    }
+  }
+
+  /**
+   * Returns the cached members of <code>className</code> at
+   * <code>level</code> if they are still current.
+   *
+   * @param className fully qualified class name
+   * @param level access level
+   * @return the cached members, or <code>null</code>
+   */
+  static ClassMembers getIfCurrent(String className, int level) {
+    String key = key(className, level);
+    ClassMembers members;
+    synchronized (cache) {
+      members = cache.get(key);
+    }
+    if (members != null && !members.isCurrent(JdeUtilities.getClasspathGeneration())) {
+      synchronized (cache) {
+        cache.remove(key);
+      }
+      members = null;
+    }
+    return members;
+  }
+
+  static void put(ClassMembers members) {
+    synchronized (cache) {
+      cache.put(key(members.getClassName(), members.getLevel()), members);
+    }
+  }
+
+  /**
+   * Empties the cache.
+   */
+  static void clear() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  static int size() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+}
+
+// End of MemberCache.java
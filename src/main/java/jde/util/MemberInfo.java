@@ -0,0 +1,262 @@
+/*
+ *    MemberInfo.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable description of one member of a class: a field, a
+ * constructor, a method or an inner class.  Only type names are kept, never
+ * the reflective objects, so cached members do not pin the class loader
+ * that produced them.
+ *
+ * <p>Fields and methods also keep their generic types, if any, in the
+ * form {@link GenericTypes} writes them and in terms of the type variables
+ * of the class being listed, so that chained completion can follow type
+ * arguments without reflecting again.</p>
+ *
+ * <p>Two members are equal when they would print the same completion
+ * entry, which is how inherited duplicates are dropped.</p>
+ */
+final class MemberInfo {
+
+  static final int FIELD       = 0;
+  static final int CONSTRUCTOR = 1;
+  static final int METHOD      = 2;
+  static final int CLASS       = 3;
+
+  private static final String[] NO_NAMES = new String[0];
+
+  private final int kind;
+  private final String name;
+  private final String type;
+  private final String[] parameterTypes;
+  private final String[] exceptionTypes;
+  private final int modifiers;
+  private final String genericType;
+  private final String[] genericParameterTypes;
+  private final int hash;
+
+  MemberInfo(int kind, String name, String type,
+             String[] parameterTypes, String[] exceptionTypes,
+             int modifiers) {
+    this(kind, name, type, parameterTypes, exceptionTypes, modifiers, null, null);
+  }
+
+  MemberInfo(int kind, String name, String type,
+             String[] parameterTypes, String[] exceptionTypes,
+             int modifiers, String genericType, String[] genericParameterTypes) {
+    this.kind           = kind;
+    this.name           = name;
+    this.type           = type;
+    this.parameterTypes = parameterTypes;
+    this.exceptionTypes = exceptionTypes;
+    this.modifiers      = modifiers;
+    this.genericType    = genericType;
+    this.genericParameterTypes = genericParameterTypes;
+
+    int h = kind;
+    h = 31 * h + name.hashCode();
+    h = 31 * h + (type == null ? 0 : type.hashCode());
+    h = 31 * h + Arrays.hashCode(parameterTypes);
+    h = 31 * h + Arrays.hashCode(exceptionTypes);
+    this.hash = h;
+  }
+
+  /**
+   * Describes a field.
+   *
+   * @param f the field
+   * @param bindings type variables of the field's class and its
+   * supertypes bound in terms of the class being listed, see
+   * {@link GenericTypes#supertypeBindings}
+   */
+  static MemberInfo of(Field f, Map<TypeVariable<?>, String> bindings) {
+    String genericType = null;
+    try {
+      Type t = f.getGenericType();
+      if (GenericTypes.isGeneric(t)) {
+        genericType = GenericTypes.render(t, bindings);
+      }
+    } catch (RuntimeException | LinkageError e) {
+      // a malformed or unresolvable signature: keep the erasure
+    }
+    return new MemberInfo(FIELD, f.getName(), Completion.className(f.getType()),
+                          NO_NAMES, NO_NAMES, f.getModifiers(), genericType, null);
+  }
+
+  static MemberInfo of(Constructor<?> c, Map<TypeVariable<?>, String> bindings) {
+    String[] genericParameterTypes = null;
+    try {
+      genericParameterTypes = genericNames(c.getGenericParameterTypes(), bindings);
+    } catch (RuntimeException | LinkageError e) {
+    }
+    return new MemberInfo(CONSTRUCTOR, c.getName(), null,
+                          names(c.getParameterTypes()),
+                          names(c.getExceptionTypes()),
+                          c.getModifiers(), null, genericParameterTypes);
+  }
+
+  static MemberInfo of(Method m, Map<TypeVariable<?>, String> bindings) {
+    String genericType = null;
+    String[] genericParameterTypes = null;
+    try {
+      Type t = m.getGenericReturnType();
+      if (GenericTypes.isGeneric(t)) {
+        genericType = GenericTypes.render(t, bindings);
+      }
+      genericParameterTypes = genericNames(m.getGenericParameterTypes(), bindings);
+    } catch (RuntimeException | LinkageError e) {
+    }
+    return new MemberInfo(METHOD, m.getName(), Completion.className(m.getReturnType()),
+                          names(m.getParameterTypes()),
+                          names(m.getExceptionTypes()),
+                          m.getModifiers(), genericType, genericParameterTypes);
+  }
+
+  static MemberInfo of(Class<?> c) {
+    return new MemberInfo(CLASS, c.getName(), null,
+                          NO_NAMES, NO_NAMES, c.getModifiers());
+  }
+
+  // The generic parameter types, or null if none is generic
+  private static String[] genericNames(Type[] types, Map<TypeVariable<?>, String> bindings) {
+    String[] names = null;
+    for (int i = 0; i < types.length; i++) {
+      if (GenericTypes.isGeneric(types[i])) {
+        if (names == null) {
+          names = new String[types.length];
+        }
+        names[i] = GenericTypes.render(types[i], bindings);
+      }
+    }
+    if (names != null) {
+      for (int i = 0; i < types.length; i++) {
+        if (names[i] == null) {
+          names[i] = GenericTypes.render(types[i], bindings);
+        }
+      }
+    }
+    return names;
+  }
+
+  private static String[] names(Class<?>[] classes) {
+    if (classes.length == 0) {
+      return NO_NAMES;
+    }
+    String[] names = new String[classes.length];
+    for (int i = 0; i < classes.length; i++) {
+      names[i] = Completion.className(classes[i]);
+    }
+    return names;
+  }
+
+  int getKind() {
+    return kind;
+  }
+
+  /**
+   * The member name.  For constructors and inner classes this is the
+   * binary class name, as reflection reports it.
+   */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * The name matched against a completion prefix: the member name, or the
+   * simple class name for constructors and inner classes.
+   */
+  String getSimpleName() {
+    if (kind == CONSTRUCTOR || kind == CLASS) {
+      int i = Math.max(name.lastIndexOf('.'), name.lastIndexOf('$'));
+      return name.substring(i + 1);
+    }
+    return name;
+  }
+
+  /**
+   * The field type or method return type; <code>null</code> for
+   * constructors and inner classes.
+   */
+  String getType() {
+    return type;
+  }
+
+  String[] getParameterTypes() {
+    return parameterTypes;
+  }
+
+  String[] getExceptionTypes() {
+    return exceptionTypes;
+  }
+
+  int getModifiers() {
+    return modifiers;
+  }
+
+  /**
+   * The generic field type or method return type, such as
+   * <code>java.util.List&lt;E&gt;</code>; <code>null</code> if it is not
+   * generic.
+   */
+  String getGenericType() {
+    return genericType;
+  }
+
+  /**
+   * The generic parameter types; <code>null</code> if none of them is
+   * generic.
+   */
+  String[] getGenericParameterTypes() {
+    return genericParameterTypes;
+  }
+
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof MemberInfo)) {
+      return false;
+    }
+    MemberInfo other = (MemberInfo) o;
+    return hash == other.hash
+      && kind == other.kind
+      && name.equals(other.name)
+      && (type == null ? other.type == null : type.equals(other.type))
+      && Arrays.equals(parameterTypes, other.parameterTypes)
+      && Arrays.equals(exceptionTypes, other.exceptionTypes);
+  }
+
+  public int hashCode() {
+    return hash;
+  }
+
+  public String toString() {
+    return name;
+  }
+}
+
+// End of MemberInfo.java
@@ -0,0 +1,752 @@
+/*
+ *    MemberStore.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps the {@link ClassMembers} listings of {@link MemberCache} on disk,
+ * so that a restarted server does not have to load and reflect every JDK
+ * and library class again.
+ *
+ * <p>The store is one append-only file, <code>members.dat</code> under
+ * <code>~/.jdee/members</code> (or the directory named by the
+ * <code>jde.members.dir</code> property).  Each record holds a listing
+ * keyed by class name and access level, together with the identity of
+ * what it was built from: the path, size and modification time of each
+ * class file or archive its classes were read from, and the Java runtime
+ * for the classes that came from it.  A record whose identity no longer
+ * matches is ignored and the class is reflected again.</p>
+ *
+ * <p>Nothing is read until the first lookup, which maps the file and
+ * scans the record headers into a table of offsets; listings are decoded
+ * from the mapping only when asked for.  A record superseded by a later
+ * one, or found to be stale, becomes garbage; once garbage makes up more
+ * than half of a sizeable file the live records are copied to a new file
+ * on a background thread.</p>
+ *
+ * <p>Several servers may share the store.  Each takes a shared lock on
+ * <code>members.dat.lock</code> to read and an exclusive one to append,
+ * and picks up the records the others have appended.  A compaction marks
+ * the old file retired before renaming the new one over it, so that the
+ * others reopen the store rather than go on reading the old file.</p>
+ */
+final class MemberStore {
+
+  private static final int MAGIC = 0x4A44454D;       // "JDEM"
+  private static final int VERSION = 3;
+  private static final int HEADER = 12;
+
+  // The third word of the header: whether the file is still the store's
+  // or has been replaced by a compacted copy
+  private static final int LIVE = 0;
+  private static final int RETIRED = 1;
+
+  /** Size the file never grows past, so that it can be mapped whole. */
+  static final long MAX_SIZE = Integer.MAX_VALUE;
+
+  /** File size below which the store is never compacted. */
+  static final long COMPACT_MIN = 1 << 20;
+
+  private static final String RUNTIME =
+    System.getProperty("java.home") + File.pathSeparator + System.getProperty("java.version")
+    + File.pathSeparator + System.getProperty("java.class.path", "").hashCode();
+
+  private static final ExecutorService compactor =
+    Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "jdee member store");
+          t.setDaemon(true);
+          t.setPriority(Thread.MIN_PRIORITY);
+          return t;
+        }
+      });
+
+  private static volatile MemberStore shared;
+
+  private final File file;
+  private final long compactMin;
+
+  private RandomAccessFile lockFile;
+  private RandomAccessFile raf;
+  private FileChannel channel;
+  private MappedByteBuffer mapped;
+  /** End of the last complete record. */
+  private long end;
+  /** Times the file has been opened, so compaction sees if it changed. */
+  private int opened;
+
+  /** Key to offset of the key's latest record; null until loaded. */
+  private Map<String, Long> offsets;
+  private long garbage;
+  private boolean compacting;
+  private boolean disabled;
+
+  /**
+   * Creates a store backed by <code>file</code>.  The file is not opened
+   * until the first lookup or append.
+   *
+   * @param file the store's file
+   * @param compactMin file size below which the store is never compacted
+   */
+  MemberStore(File file, long compactMin) {
+    this.file = file;
+    this.compactMin = compactMin;
+  }
+
+  /**
+   * Turns on the shared store for {@link MemberCache}.  Called when the
+   * server is given a project, so that tests and other embedders do not
+   * write to the user's home directory.
+   */
+  static void start() {
+    if (shared == null) {
+      synchronized (MemberStore.class) {
+        if (shared == null) {
+          shared = new MemberStore(new File(directory(), "members.dat"), COMPACT_MIN);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the shared store.
+   *
+   * @return the store, or <code>null</code> if it has not been started
+   */
+  static MemberStore getShared() {
+    return shared;
+  }
+
+  private static File directory() {
+    String dir = System.getProperty("jde.members.dir");
+    if (dir == null) {
+      dir = System.getProperty("user.home") + File.separator + ".jdee"
+        + File.separator + "members";
+    }
+    return new File(dir);
+  }
+
+  private static String key(String className, int level) {
+    return className + '#' + level;
+  }
+
+  /*************************************************************************
+   * Lookup
+   *************************************************************************/
+
+  /**
+   * Returns the stored listing of a class if what it was built from has
+   * not changed.
+   *
+   * @param className fully qualified class name
+   * @param level access level
+   * @param generation the classpath generation to give the listing
+   * @return the listing, or <code>null</code>
+   */
+  synchronized ClassMembers get(String className, int level, int generation) {
+    if (disabled) {
+      return null;
+    }
+    try {
+      FileLock lock = acquire(true);
+      try {
+        String key = key(className, level);
+        Long offset = offsets.get(key);
+        if (offset == null) {
+          return null;
+        }
+        ClassMembers members = decode(offset.longValue(), generation);
+        if (members == null) {
+          offsets.remove(key);
+          garbage += recordSize(offset.longValue());
+          scheduleCompaction();
+        }
+        return members;
+      } finally {
+        lock.release();
+      }
+    } catch (IOException e) {
+      disable(e);
+      return null;
+    }
+  }
+
+  /**
+   * Appends a listing.
+   *
+   * @param members the listing
+   * @param sources the class file or archive each of its classes was
+   * read from, keyed by class name
+   */
+  synchronized void put(ClassMembers members, Map<String, File> sources) {
+    if (disabled) {
+      return;
+    }
+    try {
+      byte[] record = encode(members, sources);
+      FileLock lock = acquire(false);
+      try {
+        if (channel.size() > end) {
+          // a record cut short by a crash; no one else is appending
+          // while we hold the lock exclusively
+          channel.truncate(end);
+        }
+        if (end + 4 + record.length > MAX_SIZE) {
+          // full: the store stops growing until it is compacted
+          scheduleCompaction();
+          return;
+        }
+        long offset = end;
+        ByteBuffer buf = ByteBuffer.allocate(4 + record.length);
+        buf.putInt(record.length).put(record).flip();
+        while (buf.hasRemaining()) {
+          channel.write(buf, offset + buf.position());
+        }
+        end = offset + 4 + record.length;
+        Long previous = offsets.put(key(members.getClassName(), members.getLevel()), offset);
+        if (previous != null) {
+          garbage += recordSize(previous.longValue());
+          scheduleCompaction();
+        }
+      } finally {
+        lock.release();
+      }
+    } catch (IOException e) {
+      disable(e);
+    }
+  }
+
+  synchronized int size() throws IOException {
+    FileLock lock = acquire(true);
+    try {
+      return offsets.size();
+    } finally {
+      lock.release();
+    }
+  }
+
+  synchronized long getGarbage() {
+    return garbage;
+  }
+
+  // Stops using a store that cannot be read or written; completion
+  // carries on with reflection alone
+  private void disable(IOException e) {
+    System.err.println("Cannot use " + file + ": " + e);
+    close();
+    try {
+      if (lockFile != null) {
+        lockFile.close();
+      }
+    } catch (IOException ignore) {
+    }
+    lockFile = null;
+    disabled = true;
+  }
+
+  /*************************************************************************
+   * File
+   *************************************************************************/
+
+  // Locks the store against other processes, shared for reading and
+  // exclusive for writing, and brings offsets up to date with the file.
+  // The lock is on a separate file that is never replaced, since
+  // compaction renames a new file over the store's.  Called with the
+  // monitor held, as a JVM may hold only one lock on a file at a time.
+  private FileLock acquire(boolean shared) throws IOException {
+    if (lockFile == null) {
+      File dir = file.getParentFile();
+      if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Cannot create " + dir);
+      }
+      lockFile = new RandomAccessFile(file.getPath() + ".lock", "rw");
+    }
+    FileLock lock = lockFile.getChannel().lock(0, Long.MAX_VALUE, shared);
+    try {
+      if (offsets == null || retired()) {
+        if (shared) {
+          // opening may write to the file
+          lock.release();
+          lock = lockFile.getChannel().lock(0, Long.MAX_VALUE, false);
+        }
+        if (offsets == null || retired()) {
+          close();
+          open();
+        }
+      }
+      if (channel.size() > end) {
+        // records appended by other processes
+        map();
+        end = scan(end);
+      }
+      return lock;
+    } catch (IOException | RuntimeException e) {
+      lock.release();
+      throw e;
+    }
+  }
+
+  // Whether another process has compacted the file away from under us
+  private boolean retired() throws IOException {
+    ByteBuffer state = ByteBuffer.allocate(4);
+    while (state.hasRemaining()) {
+      if (channel.read(state, 8 + state.position()) < 0) {
+        return true;
+      }
+    }
+    return state.getInt(0) == RETIRED;
+  }
+
+  // Opens and maps the file, and scans the record headers.  Called with
+  // the lock held exclusively.
+  private void open() throws IOException {
+    raf = new RandomAccessFile(file, "rw");
+    channel = raf.getChannel();
+    offsets = new HashMap<>();
+    garbage = 0;
+    opened++;
+    long size = channel.size();
+    if (size == 0) {
+      channel.write(header(LIVE), 0);
+      end = HEADER;
+      map();
+      return;
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER);
+    while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+    }
+    if (header.hasRemaining() || size > MAX_SIZE
+        || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+        || header.getInt(8) != LIVE) {
+      // an older format, not ours, or a compaction that did not finish:
+      // start afresh, leaving the old file to whoever still has it open
+      close();
+      replace(fresh());
+      open();
+      return;
+    }
+    map();
+    end = scan(HEADER);
+    if (end < size) {
+      // a record cut short by a crash
+      channel.truncate(end);
+      map();
+    }
+  }
+
+  private static ByteBuffer header(int state) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER);
+    header.putInt(MAGIC).putInt(VERSION).putInt(state).flip();
+    return header;
+  }
+
+  // A new, empty store file beside the store's
+  private File fresh() throws IOException {
+    File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+    try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+      out.getChannel().write(header(LIVE));
+    }
+    return tmp;
+  }
+
+  // Renames tmp over the store's file.  Processes that have the old file
+  // open keep reading it until they see it retired.
+  private void replace(File tmp) throws IOException {
+    if (!tmp.renameTo(file)) {
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        tmp.delete();
+        throw new IOException("Cannot rename " + tmp + " to " + file);
+      }
+    }
+  }
+
+  private void map() throws IOException {
+    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+  }
+
+  private void ensureMapped(long end) throws IOException {
+    if (end > mapped.capacity()) {
+      map();
+    }
+  }
+
+  // Fills in offsets from the record headers from offset on; returns the
+  // end of the last complete record.  The file never grows past
+  // MAX_SIZE, so offsets into the mapping fit in an int.
+  private long scan(long offset) throws IOException {
+    long size = mapped.capacity();
+    while (offset + 4 <= size) {
+      int length = mapped.getInt((int) offset);
+      if (length <= 0 || offset + 4 + length > size) {
+        break;
+      }
+      DataInputStream in = input(offset);
+      String key = in.readUTF();
+      Long previous = offsets.put(key, offset);
+      if (previous != null) {
+        garbage += recordSize(previous.longValue());
+      }
+      offset += 4 + length;
+    }
+    return offset;
+  }
+
+  private long recordSize(long offset) throws IOException {
+    ensureMapped(offset + 4);
+    return 4 + mapped.getInt((int) offset);
+  }
+
+  // A stream over the payload of the record at offset
+  private DataInputStream input(long offset) throws IOException {
+    ensureMapped(offset + 4);
+    int length = mapped.getInt((int) offset);
+    ensureMapped(offset + 4 + length);
+    ByteBuffer buf = mapped.duplicate();
+    buf.position((int) offset + 4);
+    buf.limit((int) offset + 4 + length);
+    return new DataInputStream(new BufferInput(buf));
+  }
+
+  private void close() {
+    mapped = null;
+    offsets = null;
+    try {
+      if (raf != null) {
+        raf.close();
+      }
+    } catch (IOException e) {
+    }
+    raf = null;
+    channel = null;
+  }
+
+  /** An input stream over the remaining bytes of a buffer. */
+  private static final class BufferInput extends InputStream {
+    private final ByteBuffer buf;
+
+    BufferInput(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    public int read() {
+      return buf.hasRemaining() ? buf.get() & 0xff : -1;
+    }
+
+    public int read(byte[] b, int off, int len) {
+      if (!buf.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, buf.remaining());
+      buf.get(b, off, len);
+      return len;
+    }
+  }
+
+  /*************************************************************************
+   * Records
+   *************************************************************************/
+
+  // key, runtime, sources (class name, path, size, time), the class's
+  // type parameters, then the four sections of the listing
+  private static byte[] encode(ClassMembers members, Map<String, File> sources)
+    throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeUTF(key(members.getClassName(), members.getLevel()));
+    out.writeUTF(RUNTIME);
+    out.writeInt(sources.size());
+    for (Iterator<Map.Entry<String, File>> i = sources.entrySet().iterator(); i.hasNext();) {
+      Map.Entry<String, File> e = i.next();
+      out.writeUTF(e.getKey());
+      out.writeUTF(e.getValue().getPath());
+      out.writeLong(e.getValue().length());
+      out.writeLong(e.getValue().lastModified());
+    }
+    writeNames(members.getTypeParameters(), out);
+    writeSection(members.getFields(), out);
+    writeSection(members.getConstructors(), out);
+    writeSection(members.getMethods(), out);
+    writeSection(members.getInnerClasses(), out);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static void writeSection(List<MemberInfo> section, DataOutputStream out)
+    throws IOException {
+    out.writeInt(section.size());
+    for (int i = 0; i < section.size(); i++) {
+      MemberInfo m = section.get(i);
+      out.writeByte(m.getKind());
+      out.writeUTF(m.getName());
+      out.writeBoolean(m.getType() != null);
+      if (m.getType() != null) {
+        out.writeUTF(m.getType());
+      }
+      writeNames(m.getParameterTypes(), out);
+      writeNames(m.getExceptionTypes(), out);
+      out.writeInt(m.getModifiers());
+      out.writeBoolean(m.getGenericType() != null);
+      if (m.getGenericType() != null) {
+        out.writeUTF(m.getGenericType());
+      }
+      out.writeBoolean(m.getGenericParameterTypes() != null);
+      if (m.getGenericParameterTypes() != null) {
+        writeNames(m.getGenericParameterTypes(), out);
+      }
+    }
+  }
+
+  private static void writeNames(String[] names, DataOutputStream out) throws IOException {
+    out.writeShort(names.length);
+    for (int i = 0; i < names.length; i++) {
+      out.writeUTF(names[i]);
+    }
+  }
+
+  // The listing at offset, or null if what it was built from has changed
+  private ClassMembers decode(long offset, int generation) throws IOException {
+    DataInputStream in = input(offset);
+    String key = in.readUTF();
+    if (!RUNTIME.equals(in.readUTF())) {
+      return null;
+    }
+    String className = key.substring(0, key.lastIndexOf('#'));
+    int level = Integer.parseInt(key.substring(key.lastIndexOf('#') + 1));
+
+    Map<String, File> sources = new LinkedHashMap<>();
+    for (int n = in.readInt(); n > 0; n--) {
+      String name = in.readUTF();
+      File source = new File(in.readUTF());
+      if (source.length() != in.readLong() || source.lastModified() != in.readLong()) {
+        return null;
+      }
+      sources.put(name, source);
+    }
+    File own = sources.get(className);
+    if (own != null && !isOnClassPath(own)) {
+      return null;
+    }
+
+    String[] typeParameters = readNames(in);
+    List<MemberInfo> fields = readSection(in);
+    List<MemberInfo> ctors = readSection(in);
+    List<MemberInfo> methods = readSection(in);
+    List<MemberInfo> innerClasses = readSection(in);
+    return new ClassMembers(className, level, typeParameters,
+                            fields, ctors, methods, innerClasses, generation, sources);
+  }
+
+  // Whether a class file or archive still belongs to the project classpath
+  private static boolean isOnClassPath(File source) {
+    ProjectClasses pc = JdeUtilities.getCurrentProjectClass();
+    String classPath = pc == null ? null : pc.getClassPath();
+    if (classPath == null || classPath.equals("")) {
+      classPath = DynamicClassLoader.CLASS_PATH;
+    }
+    String path = source.getPath();
+    String[] entries = classPath.split(File.pathSeparator);
+    for (int i = 0; i < entries.length; i++) {
+      if (entries[i].length() > 0 && path.startsWith(entries[i])
+          && (path.length() == entries[i].length()
+              || path.charAt(entries[i].length()) == File.separatorChar
+              || entries[i].endsWith(File.separator))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<MemberInfo> readSection(DataInputStream in) throws IOException {
+    int n = in.readInt();
+    List<MemberInfo> section = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      int kind = in.readByte();
+      String name = in.readUTF();
+      String type = in.readBoolean() ? in.readUTF() : null;
+      String[] parameterTypes = readNames(in);
+      String[] exceptionTypes = readNames(in);
+      int modifiers = in.readInt();
+      String genericType = in.readBoolean() ? in.readUTF() : null;
+      String[] genericParameterTypes = in.readBoolean() ? readNames(in) : null;
+      section.add(new MemberInfo(kind, name, type, parameterTypes, exceptionTypes,
+                                 modifiers, genericType, genericParameterTypes));
+    }
+    return section;
+  }
+
+  private static final String[] NO_NAMES = new String[0];
+
+  private static String[] readNames(DataInputStream in) throws IOException {
+    int n = in.readUnsignedShort();
+    if (n == 0) {
+      return NO_NAMES;
+    }
+    String[] names = new String[n];
+    for (int i = 0; i < n; i++) {
+      names[i] = in.readUTF();
+    }
+    return names;
+  }
+
+  /*************************************************************************
+   * Compaction
+   *************************************************************************/
+
+  private void scheduleCompaction() throws IOException {
+    long size = channel.size();
+    if (compacting || size < compactMin || garbage * 2 < size) {
+      return;
+    }
+    compacting = true;
+    compactor.execute(new Runnable() {
+        public void run() {
+          try {
+            compact();
+          } catch (IOException e) {
+            synchronized (MemberStore.this) {
+              disable(e);
+            }
+          } finally {
+            synchronized (MemberStore.this) {
+              compacting = false;
+            }
+          }
+        }
+      });
+  }
+
+  /**
+   * Copies the live records to a new file and replaces the store's file
+   * with it.  The bulk of the copying happens without the store's monitor
+   * or lock, since records once written never change; only the records
+   * appended meanwhile are copied, and the file swapped, with both held.
+   *
+   * @exception IOException if the new file cannot be written
+   */
+  void compact() throws IOException {
+    Map<String, Long> live;
+    ByteBuffer source;
+    long copied;
+    int generation;
+    synchronized (this) {
+      if (disabled) {
+        return;
+      }
+      FileLock lock = acquire(true);
+      try {
+        ensureMapped(end);
+        live = new HashMap<>(offsets);
+        source = mapped.duplicate();
+        copied = end;
+        generation = opened;
+      } finally {
+        lock.release();
+      }
+    }
+
+    File tmp = fresh();
+    boolean done = false;
+    try {
+      long length;
+      try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+        FileChannel target = out.getChannel();
+        target.position(HEADER);
+        for (Iterator<Long> i = live.values().iterator(); i.hasNext();) {
+          copy(source, i.next().longValue(), target);
+        }
+        length = target.position();
+      }
+
+      synchronized (this) {
+        if (disabled) {
+          return;
+        }
+        FileLock lock = acquire(false);
+        try {
+          if (opened != generation) {
+            // replaced meanwhile, by another process's compaction
+            return;
+          }
+          // records appended meanwhile come after, and so supersede,
+          // the ones copied; any found stale meanwhile are dropped by
+          // the next compaction
+          ensureMapped(end);
+          try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            FileChannel target = out.getChannel();
+            target.position(length);
+            for (Iterator<Long> i = offsets.values().iterator(); i.hasNext();) {
+              long offset = i.next().longValue();
+              if (offset >= copied) {
+                copy(mapped, offset, target);
+              }
+            }
+            target.force(false);
+          }
+
+          channel.write(header(RETIRED), 0);
+          close();
+          replace(tmp);
+          done = true;
+          open();
+        } finally {
+          lock.release();
+        }
+      }
+    } finally {
+      if (!done) {
+        tmp.delete();
+      }
+    }
+  }
+
+  // Appends the record at offset in source to target
+  private static void copy(ByteBuffer source, long offset, FileChannel target)
+    throws IOException {
+    ByteBuffer record = source.duplicate();
+    int size = 4 + record.getInt((int) offset);
+    record.position((int) offset);
+    record.limit((int) offset + size);
+    while (record.hasRemaining()) {
+      target.write(record);
+    }
+  }
+}
+
+// End of MemberStore.java
@@ -0,0 +1,157 @@
+/*
+ *    PlatformPackages.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Knows which packages belong to the platform, so that
+ * {@link DynamicClassLoader} can load their classes straight from the
+ * platform instead of scanning the project classpath first.
+ *
+ * <p>On JDK 9 and later the boot module layer is asked, once, for every
+ * package of every module it contains, giving an exact map from package to
+ * the class loader of its module: <code>jdk.*</code>, <code>sun.*</code>
+ * and <code>com.sun.*</code> packages are covered as well as
+ * <code>java.*</code>, while a <code>javax.*</code> package that only
+ * lives on the project classpath is not.  The module API is reached
+ * through reflection so the server still runs on JDK 7 and 8, where the
+ * old <code>java.</code>/<code>javax.</code> prefix rule applies.</p>
+ */
+final class PlatformPackages {
+
+  /** Package name to the class loader of its module; null for boot. */
+  private static final Map<String, ClassLoader> packageLoaders;
+
+  /** Package name to module name. */
+  private static final Map<String, String> packageModules;
+
+  static {
+    Map<String, ClassLoader> loaders = new HashMap<>(2048);
+    Map<String, String> modules = new HashMap<>(2048);
+    try {
+      Class<?> layerClass = Class.forName("java.lang.ModuleLayer");
+      Class<?> moduleClass = Class.forName("java.lang.Module");
+      Method getName = moduleClass.getMethod("getName");
+      Method getPackages = moduleClass.getMethod("getPackages");
+      Method getClassLoader = moduleClass.getMethod("getClassLoader");
+
+      Object boot = layerClass.getMethod("boot").invoke(null);
+      Set<?> bootModules = (Set<?>) layerClass.getMethod("modules").invoke(boot);
+      for (Iterator<?> i = bootModules.iterator(); i.hasNext();) {
+        Object module = i.next();
+        String name = (String) getName.invoke(module);
+        ClassLoader loader = (ClassLoader) getClassLoader.invoke(module);
+        Set<?> packages = (Set<?>) getPackages.invoke(module);
+        for (Iterator<?> p = packages.iterator(); p.hasNext();) {
+          String pkg = (String) p.next();
+          loaders.put(pkg, loader);
+          modules.put(pkg, name);
+        }
+      }
+    } catch (ClassNotFoundException e) {
+      // JDK 8 or earlier: no module layer
+      loaders.clear();
+      modules.clear();
+    } catch (Exception e) {
+      e.printStackTrace(System.err);
+      loaders.clear();
+      modules.clear();
+    }
+    packageLoaders = Collections.unmodifiableMap(loaders);
+    packageModules = Collections.unmodifiableMap(modules);
+  }
+
+  private PlatformPackages() {
+  }
+
+  private static String packageOf(String className) {
+    int lastDot = className.lastIndexOf('.');
+    return lastDot == -1 ? "" : className.substring(0, lastDot);
+  }
+
+  /**
+   * Tests whether the module graph is known, that is whether this is
+   * JDK 9 or later.
+   *
+   * @return true if package lookups are exact
+   */
+  static boolean isModular() {
+    return !packageLoaders.isEmpty();
+  }
+
+  /**
+   * Tests whether a class belongs to a platform package and so should be
+   * loaded from the platform rather than the project classpath.
+   *
+   * @param className binary class name
+   * @return true for platform classes
+   */
+  static boolean isPlatformClass(String className) {
+    if (isModular()) {
+      return packageLoaders.containsKey(packageOf(className));
+    }
+    return hasPlatformPrefix(className);
+  }
+
+  /**
+   * The rule for JDK 8 and earlier, where the packages of the platform
+   * cannot be listed: <code>java.*</code> and <code>javax.*</code>.
+   *
+   * @param className binary class name
+   * @return true if the name starts with a platform prefix
+   */
+  static boolean hasPlatformPrefix(String className) {
+    return className.startsWith("java.") || className.startsWith("javax.");
+  }
+
+  /**
+   * Returns the name of the platform module that contains a class's
+   * package.
+   *
+   * @param className binary class name
+   * @return the module name, or <code>null</code> if the package is not
+   * in a platform module or this is not JDK 9 or later
+   */
+  static String moduleOf(String className) {
+    return packageModules.get(packageOf(className));
+  }
+
+  /**
+   * Loads a platform class from its module's class loader without
+   * initializing it.
+   *
+   * @param className binary class name of a platform class
+   * @return the class
+   * @exception ClassNotFoundException if the module has no such class
+   */
+  static Class<?> load(String className) throws ClassNotFoundException {
+    if (isModular()) {
+      return Class.forName(className, false, packageLoaders.get(packageOf(className)));
+    }
+    return Class.forName(className);
+  }
+}
+
+// End of PlatformPackages.java
@@ -0,0 +1,139 @@
+/*
+ *    Prefetcher.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.FileNotFoundException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import jde.parser.ParserMain;
+
+/**
+ * Warms the {@link MemberCache} with the classes a source file imports,
+ * so that the first completion after a buffer is opened does not have to
+ * load and reflect its class.  The work runs on one low-priority daemon
+ * thread; a class already cached or already queued is skipped.
+ *
+ * <p>On-demand imports (<code>java.util.*</code>) are not expanded: a
+ * package can hold hundreds of classes and most are never completed.</p>
+ */
+public final class Prefetcher {
+
+  private static final Set<String> queued = Collections.synchronizedSet(new HashSet<String>());
+
+  private static final ExecutorService worker =
+    Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "jdee prefetch");
+          t.setDaemon(true);
+          t.setPriority(Thread.MIN_PRIORITY);
+          return t;
+        }
+      });
+
+  private Prefetcher() {
+  }
+
+  /**
+   * Queues imported names for prefetching.
+   *
+   * @param imports imported names, as they appear in import declarations
+   * @return the number of classes queued
+   */
+  static int queue(String[] imports) {
+    int count = 0;
+    final SessionState state = SessionState.current();
+    for (int i = 0; i < imports.length; i++) {
+      final String name = imports[i];
+      // the same name may be queued for each project
+      final String key = state.getProjectName() + '#' + name;
+      if (name.endsWith(".*")
+          || MemberCache.getIfCurrent(name, Completion.PUBLIC) != null
+          || !queued.add(key)) {
+        continue;
+      }
+      worker.execute(new Runnable() {
+          public void run() {
+            SessionState previous = SessionState.bind(state);
+            try {
+              load(name);
+            } finally {
+              queued.remove(key);
+              SessionState.bind(previous);
+            }
+          }
+        });
+      count++;
+    }
+    return count;
+  }
+
+  // Caches the members of an imported class, trying a.b.C$D for a.b.C.D
+  private static void load(String name) {
+    try {
+      MemberCache.getQualified(name, Completion.PUBLIC);
+    } catch (ClassNotFoundException | LinkageError e) {
+    }
+  }
+
+  /**
+   * Prefetches the members of imported classes in the background.
+   * Prints the number of classes queued.
+   *
+   * @param imports imported names, as they appear in import declarations
+   */
+  public static void prefetch(String[] imports) {
+    System.out.println(queue(imports));
+    System.out.flush();
+  }
+
+  /**
+   * Parses the import declarations of a source file and prefetches the
+   * members of the imported classes in the background.  Prints the
+   * number of classes queued, or an error if the file cannot be read.
+   *
+   * @param pathName path of the source file
+   */
+  public static void prefetchFile(String pathName) {
+    try {
+      List<String> imports = ParserMain.getImports(pathName);
+      System.out.println(queue(imports.toArray(new String[imports.size()])));
+    } catch (FileNotFoundException e) {
+      System.out.println("(error \"File " + pathName + " not found.\")");
+    }
+    System.out.flush();
+  }
+
+  /**
+   * Waits for queued prefetches to finish; for tests.
+   */
+  static void drain() throws Exception {
+    worker.submit(new Runnable() {
+        public void run() {
+        }
+      }).get();
+  }
+}
+
+// End of Prefetcher.java
@@ -23,8 +23,13 @@ package jde.util;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jde.juci.Cancellation;
 
 /**
  * A class that represents a set of classpath entries for a project.
@@ -40,6 +45,20 @@ class ProjectClasses {
 
   private String classPath;
 
+  // ranks class name lookups; null for no ranking
+  private UsageStore usage;
+
+  // the classpath generation, renewed whenever the classpath is
+  // reloaded; drawn from one counter for all projects, so that caches
+  // can tell one project's generation from another's
+  private static final AtomicInteger generations = new AtomicInteger();
+  private volatile int generation = generations.incrementAndGet();
+
+  // prefix index over the unqualified class names, and the classpath
+  // generation it was built in
+  private ClassNameIndex nameIndex;
+  private int nameIndexGeneration;
+
   // the boot classpath is loaded at startup.
   private static ArrayList<ClassPathEntry> bootClassPathEntries = new ArrayList<>();
 
@@ -62,7 +81,20 @@ class ProjectClasses {
    * @exception IOException if an error occurs
    */
   ProjectClasses(String classPath) throws IOException {
+    this(classPath, null);
+  }
+
+  /**
+   * Creates a new <code>ProjectClasses</code> instance whose class name
+   * lookups are ranked by a project's usage.
+   *
+   * @param classPath the project classpath
+   * @param usage the project's usage store
+   * @exception IOException if an error occurs
+   */
+  ProjectClasses(String classPath, UsageStore usage) throws IOException {
     this.classPath = classPath;
+    this.usage = usage;
 
     StringTokenizer st = new StringTokenizer(classPath, File.pathSeparator);
 
@@ -78,6 +110,24 @@ class ProjectClasses {
     }
   }
 
+  /**
+   * Returns the classpath generation, which changes whenever the
+   * classpath is reloaded.
+   *
+   * @return the generation
+   */
+  int getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Starts a new classpath generation, so that caches built from the
+   * classpath know to rebuild.
+   */
+  void newGeneration() {
+    generation = generations.incrementAndGet();
+  }
+
   /**
    * Reload classes in a single classpath entry, which may be a class,
    * jar, or zip file.
@@ -117,7 +167,7 @@ class ProjectClasses {
 
   /**
    * Get fully qualified classnames in this classpath that
-   * matching the specified unqualified name.
+   * matching the specified unqualified name, most used first.
    *
    * @param unqualifiedName Unqualified name for which matching
    * qualified names are to be found.
@@ -127,6 +177,7 @@ class ProjectClasses {
   List<String> getClassNames(String unqualifiedName) throws IOException {
     List<String> rv = new ArrayList<>();
     for (ClassPathEntry cpe : classPathEntries) {
+      Cancellation.checkpoint();
       @SuppressWarnings("unchecked")
       List<String> classNames = (List<String>) cpe.getClassNames(unqualifiedName);
       for (String className : classNames) {
@@ -135,9 +186,56 @@ class ProjectClasses {
         }
       }
     }
+    if (usage != null) {
+      usage.rank(rv);
+    }
     return rv;
   }
 
+  /**
+   * Get the index of the unqualified class names in this classpath,
+   * with the qualified names each stands for in classpath order, building
+   * it on first use and again after the classpath has been reloaded.
+   *
+   * @return the index
+   * @exception IOException if an error occurs
+   */
+  synchronized ClassNameIndex getNameIndex() throws IOException {
+    int generation = this.generation;
+    if (nameIndex == null || nameIndexGeneration != generation) {
+      Map<String, List<String>> names = new HashMap<>();
+      for (ClassPathEntry cpe : classPathEntries) {
+        Cancellation.checkpoint();
+        for (String name : cpe.getUnqualifiedNames()) {
+          List<String> classNames = names.get(name);
+          if (classNames == null) {
+            classNames = new ArrayList<>(1);
+            names.put(name, classNames);
+          }
+          @SuppressWarnings("unchecked")
+          List<String> entryNames = (List<String>) cpe.getClassNames(name);
+          for (String className : entryNames) {
+            if (!classNames.contains(className)) {
+              classNames.add(className);
+            }
+          }
+        }
+      }
+      nameIndex = new ClassNameIndex(names);
+      nameIndexGeneration = generation;
+    }
+    return nameIndex;
+  }
+
+  /**
+   * Get the usage store that ranks this project's class name lookups.
+   *
+   * @return the store, or <code>null</code> if lookups are not ranked
+   */
+  UsageStore getUsage() {
+    return usage;
+  }
+
   @Override
   public String toString() {
     return classPathEntries.toString();
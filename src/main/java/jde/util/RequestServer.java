@@ -0,0 +1,468 @@
+/*
+ *    RequestServer.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import bsh.EvalError;
+import bsh.Interpreter;
+import jde.juci.Cancellation;
+import jde.juci.Dispatcher;
+import jde.juci.EndpointStats;
+import jde.juci.FramedOutputStream;
+import jde.juci.LispReader;
+import jde.juci.LispWriter;
+import jde.juci.SessionOutput;
+import jde.juci.SingleFlight;
+import jde.juci.SocketTransport;
+
+import static jde.juci.Dispatcher.arity;
+import static jde.juci.Dispatcher.integer;
+import static jde.juci.Dispatcher.string;
+import static jde.juci.Dispatcher.strings;
+
+/**
+ * Drop-in replacement for running <code>bsh.Interpreter</code> as the
+ * JDEE server.  Reads one request per line from standard input and
+ * prompts with <code>bsh % </code> after each, as the interpreter does.
+ * A request written as a lisp form whose head names a hot endpoint, such
+ * as
+ *
+ * <pre>
+ *   (jde.util.JdeUtilities.getQualifiedName "List")
+ * </pre>
+ *
+ * is read by {@link LispReader} and handed straight to the method; any
+ * other line is evaluated by BeanShell as before.  Errors in a dispatched
+ * request are printed as <code>(error "...")</code>.
+ *
+ * <p>Started with <code>--port N</code>, the server instead listens on
+ * loopback port <code>N</code> (0 for any free port, which is printed as
+ * <code>(jdee-server-port N)</code>), and serves every client that
+ * connects in the same way, each with its own BeanShell namespace,
+ * current project and type-table setting (see {@link SessionState}).
+ * The caches are shared between clients working on the same project.
+ * <code>(jde.util.JdeUtilities.exit)</code>, as a form or called from
+ * BeanShell, ends only the client's session.</p>
+ *
+ * <p><code>(jde.util.RequestServer.setFramed t)</code> switches a client
+ * to framed responses: instead of being followed by a prompt, each
+ * response is sent as length-prefixed frames ended by an empty frame, as
+ * written by {@link FramedOutputStream}, starting with the answer to that
+ * request.  Large responses then go out in pieces as they are produced.
+ * <code>(jde.util.RequestServer.setFramed nil)</code> switches back.</p>
+ *
+ * <p><code>(jde.util.RequestServer.cancel)</code> cancels the request
+ * sent just before it, if it has not been answered yet: the request stops
+ * at its next {@link Cancellation} checkpoint, or is skipped if it has
+ * not started, and its response is empty.  The cancel itself gets no
+ * response.  A client that has given up on a completion can so get the
+ * server on to the next one at once, without reading a stale answer.</p>
+ *
+ * <p>The lookups are shared between clients: a request that arrives
+ * while an identical one from another client on the same project, with
+ * the same output options, is still running waits for its answer
+ * instead of doing the same work again.</p>
+ *
+ * <p>Every request is timed in the {@link EndpointStats} of the method it
+ * calls; <code>(jde.util.JdeUtilities.getEndpointStats)</code> prints
+ * them.  BeanShell requests are timed under the endpoint they call only
+ * if it is one the dispatcher serves, and under <code>bsh</code>
+ * otherwise, so that arbitrary statements cannot grow the statistics
+ * without bound.</p>
+ */
+public class RequestServer {
+
+  static final String PROMPT = "bsh % ";
+  static final String CANCEL = "(jde.util.RequestServer.cancel)";
+
+  /** The endpoint BeanShell requests are timed under by default. */
+  static final String BSH = "bsh";
+
+  /** Lookups in flight, shared by all sessions whose answers would agree. */
+  static final SingleFlight flights = new SingleFlight(new SingleFlight.Scope() {
+      public String current() {
+        return SessionState.current().getOutputScope();
+      }
+    });
+
+  /** A request line as read, with the means to cancel it. */
+  private static class Request {
+    static final Request END = new Request(null);
+
+    final String line;
+    final Cancellation cancellation = new Cancellation();
+    IOException error;
+
+    Request(String line) {
+      this.line = line;
+    }
+  }
+
+  private final Dispatcher dispatcher;
+  private final Interpreter bsh;
+  private final PrintStream errors;
+
+  // Set while responses are framed
+  private FramedOutputStream framed;
+  private PrintStream unframed;
+
+  public RequestServer(Dispatcher dispatcher, Interpreter bsh) {
+    this(dispatcher, bsh, System.err);
+  }
+
+  /**
+   * Creates a server.
+   *
+   * @param dispatcher the endpoints to call without BeanShell
+   * @param bsh the interpreter for everything else
+   * @param errors where BeanShell errors are reported
+   */
+  public RequestServer(Dispatcher dispatcher, Interpreter bsh, PrintStream errors) {
+    this.dispatcher = dispatcher;
+    this.bsh = bsh;
+    this.errors = errors;
+    dispatcher.register("jde.util.RequestServer.setFramed", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          arity(args, 1, 1);
+          setFramed(args.get(0) != LispWriter.NIL);
+          System.out.println(JdeUtilities.T);
+        }
+      });
+  }
+
+  /**
+   * Returns the sessions served to socket clients.
+   */
+  static SocketTransport.SessionFactory sessions() {
+    SessionOutput.install();
+    return new SocketTransport.SessionFactory() {
+        public SocketTransport.Session newSession() {
+          return new SocketTransport.Session() {
+              public void serve(BufferedReader in, PrintStream out) throws IOException {
+                // System.out is this session's client, framed or not
+                SessionState previous = SessionState.bind(new SessionState(true));
+                try {
+                  Dispatcher d = hotEndpoints();
+                  d.register("jde.util.JdeUtilities.exit", new Dispatcher.Handler() {
+                      public void handle(List<Object> args) {
+                        JdeUtilities.exit();
+                      }
+                    });
+                  new RequestServer(d, new Interpreter(new StringReader(""), System.out, System.out, false),
+                                    System.out).run(in);
+                } finally {
+                  SessionState.bind(previous);
+                }
+              }
+            };
+        }
+      };
+  }
+
+  /**
+   * Returns a dispatcher for the endpoints called on every completion or
+   * import, bound under their qualified Java names.
+   */
+  public static Dispatcher hotEndpoints() {
+    Dispatcher d = new Dispatcher();
+    d.register("jde.util.JdeUtilities.setProjectValues", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          arity(args, 2, 2);
+          JdeUtilities.setProjectValues(string(args, 0), string(args, 1));
+        }
+      });
+    shared(d, "jde.util.JdeUtilities.getQualifiedName", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          arity(args, 1, 1);
+          JdeUtilities.getQualifiedName(string(args, 0));
+        }
+      });
+    shared(d, "jde.util.JdeUtilities.classExists", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          arity(args, 1, 1);
+          JdeUtilities.classExists(string(args, 0));
+        }
+      });
+    d.register("jde.util.JdeUtilities.recordUsage", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          arity(args, 1, 1);
+          JdeUtilities.recordUsage(string(args, 0));
+        }
+      });
+    shared(d, "jde.util.Completion.isAncestorOf", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          arity(args, 2, 2);
+          Completion.isAncestorOf(string(args, 0), string(args, 1));
+        }
+      });
+    shared(d, "jde.util.Completion.getClassInfo", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          if (arity(args, 1, 2) == 1) {
+            Completion.getClassInfo(string(args, 0));
+          } else if (args.get(1) instanceof Integer) {
+            Completion.getClassInfo(string(args, 0), integer(args, 1));
+          } else {
+            Completion.getClassInfo(string(args, 0), strings(args, 1));
+          }
+        }
+      });
+    shared(d, "jde.util.ClassInfo.getClassInfo", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          arity(args, 1, 1);
+          ClassInfo.getClassInfo(string(args, 0));
+        }
+      });
+    shared(d, "jde.util.Completion.getClassInfoBatch", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          if (arity(args, 1, 2) == 1) {
+            Completion.getClassInfoBatch(strings(args, 0));
+          } else {
+            Completion.getClassInfoBatch(strings(args, 0), integer(args, 1));
+          }
+        }
+      });
+    shared(d, "jde.util.Completion.getChainInfo", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          arity(args, 3, 3);
+          Completion.getChainInfo(string(args, 0), strings(args, 1), integer(args, 2));
+        }
+      });
+    shared(d, "jde.util.Completion.getMatchingMembers", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          if (arity(args, 3, 5) == 3) {
+            Completion.getMatchingMembers(string(args, 0), string(args, 1), integer(args, 2));
+          } else {
+            arity(args, 5, 5);
+            Completion.getMatchingMembers(string(args, 0), integer(args, 1), string(args, 2),
+                                          integer(args, 3), integer(args, 4));
+          }
+        }
+      });
+    d.register("jde.util.JdeUtilities.getEndpointStats", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          arity(args, 0, 0);
+          JdeUtilities.getEndpointStats();
+        }
+      });
+    shared(d, "jde.util.CreationCompletion.getCreationCompletions", new Dispatcher.Handler() {
+        public void handle(List<Object> args) {
+          if (arity(args, 2, 3) == 2) {
+            CreationCompletion.getCreationCompletions(string(args, 0), integer(args, 1));
+          } else {
+            CreationCompletion.getCreationCompletions(string(args, 0), string(args, 1),
+                                                      integer(args, 2));
+          }
+        }
+      });
+    return d;
+  }
+
+  // Registers an endpoint without side effects, coalescing identical
+  // requests from different sessions
+  private static void shared(Dispatcher d, String name, Dispatcher.Handler handler) {
+    d.register(name, flights.coalesce(name, handler));
+  }
+
+  /**
+   * Handles one request line.
+   *
+   * @param request a lisp form or BeanShell statements
+   */
+  public void handle(String request) {
+    Object form = null;
+    if (request.trim().startsWith("(")) {
+      try {
+        form = LispReader.read(request);
+      } catch (IOException e) {
+        // not a lisp form; leave it to BeanShell
+      }
+    }
+
+    if (form != null && dispatcher.getHandler(form) != null) {
+      try {
+        dispatcher.dispatch(form);
+      } catch (CancellationException e) {
+        // no answer for a cancelled request
+      } catch (Exception e) {
+        System.out.println("(error " + LispWriter.quote(e.getClass().getName() + ": " + e.getMessage()) + ")");
+      }
+    } else {
+      String name = endpointName(request);
+      EndpointStats stats = EndpointStats.forEndpoint(dispatcher.isBound(name) ? name : BSH);
+      long start = System.nanoTime();
+      boolean failed = false;
+      try {
+        bsh.eval(request);
+      } catch (EvalError e) {
+        failed = true;
+        if (!Cancellation.isCurrentCancelled()) {
+          errors.println("// Error: " + e.getMessage());
+          errors.flush();
+        }
+      }
+      stats.record(start, failed);
+    }
+    System.out.flush();
+  }
+
+  /**
+   * Returns the method a BeanShell request calls, such as
+   * <code>jde.util.JdeUtilities.getQualifiedName</code> for
+   * <code>jde.util.JdeUtilities.getQualifiedName("List");</code>, or
+   * <code>bsh</code> for a request that is not a call.
+   */
+  static String endpointName(String request) {
+    int n = request.length();
+    int i = 0;
+    while (i < n && Character.isWhitespace(request.charAt(i))) {
+      i++;
+    }
+    int begin = i;
+    while (i < n && (Character.isJavaIdentifierPart(request.charAt(i)) || request.charAt(i) == '.')) {
+      i++;
+    }
+    return i > begin && i < n && request.charAt(i) == '(' ? request.substring(begin, i) : BSH;
+  }
+
+  /**
+   * Handles requests until the input ends, or the session is ended.  The
+   * input is read on another thread, so that a cancel can reach the
+   * request it cancels while that request runs.
+   *
+   * @param in the requests, one per line
+   * @exception IOException if the input cannot be read
+   */
+  public void run(BufferedReader in) throws IOException {
+    BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    startReader(in, requests);
+
+    System.out.print(PROMPT);
+    System.out.flush();
+    for (;;) {
+      Request request;
+      try {
+        request = requests.take();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      if (request == Request.END) {
+        return;
+      } else if (request.error != null) {
+        throw request.error;
+      }
+
+      if (!request.cancellation.isCancelled()) {
+        Cancellation.begin(request.cancellation);
+        try {
+          handle(request.line);
+        } finally {
+          Cancellation.end();
+        }
+      }
+      if (SessionState.current().isEnded()) {
+        return;
+      }
+      endResponse();
+    }
+  }
+
+  // Queues the lines of in, acting on cancels as soon as they are read
+  private static void startReader(final BufferedReader in, final BlockingQueue<Request> requests) {
+    Thread reader = new Thread("RequestServer reader") {
+        public void run() {
+          Request last = null;
+          try {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+              if (line.trim().equals(CANCEL)) {
+                if (last != null) {
+                  last.cancellation.cancel();
+                }
+              } else {
+                last = new Request(line);
+                requests.add(last);
+              }
+            }
+            requests.add(Request.END);
+          } catch (IOException e) {
+            Request failed = new Request(null);
+            failed.error = e;
+            requests.add(failed);
+          }
+        }
+      };
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  private void endResponse() throws IOException {
+    System.out.flush();
+    if (framed != null) {
+      framed.endResponse();
+    } else {
+      System.out.print(PROMPT);
+      System.out.flush();
+    }
+  }
+
+  /**
+   * Switches the calling thread's output to or from framed responses.
+   */
+  void setFramed(boolean on) {
+    if (on == (framed != null)) {
+      return;
+    }
+    SessionOutput.install();
+    System.out.flush();
+    if (on) {
+      unframed = SessionOutput.getTarget();
+      framed = new FramedOutputStream(unframed);
+      SessionOutput.setTarget(new PrintStream(framed));
+    } else {
+      SessionOutput.setTarget(unframed);
+      framed = null;
+      unframed = null;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 2 && args[0].equals("--port")) {
+      SessionOutput.install();
+      SocketTransport transport = new SocketTransport(Integer.parseInt(args[1]), sessions());
+      System.out.println("(jdee-server-port " + transport.getPort() + ")");
+      System.out.flush();
+      transport.run();
+    } else {
+      SessionOutput.install();
+      new RequestServer(hotEndpoints(), new Interpreter())
+        .run(new BufferedReader(new InputStreamReader(System.in)));
+    }
+  }
+}
+
+// End of RequestServer.java
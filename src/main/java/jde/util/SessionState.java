@@ -0,0 +1,123 @@
+/*
+ *    SessionState.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+/**
+ * What one client of the server has chosen for itself: the project it
+ * works on and whether its class info uses a type table.  Each socket
+ * session has its own state, bound to the threads doing its work, so
+ * that one client setting its project neither retargets nor flushes
+ * another's.  Threads with no state bound use the server-wide state,
+ * which is all a server with a single client ever has.
+ */
+final class SessionState {
+
+  private static final SessionState server = new SessionState(false);
+
+  private static final ThreadLocal<SessionState> bound = new ThreadLocal<>();
+
+  private final boolean session;
+  private volatile String projectName = "default";
+  private volatile boolean typeTable;
+  private volatile boolean ended;
+
+  /**
+   * Creates a state.
+   *
+   * @param session whether it belongs to one client of a shared server,
+   * rather than to the whole server
+   */
+  SessionState(boolean session) {
+    this.session = session;
+  }
+
+  /**
+   * Returns the state of the session the calling thread works for.
+   *
+   * @return the bound state, or the server-wide one
+   */
+  static SessionState current() {
+    SessionState state = bound.get();
+    return state != null ? state : server;
+  }
+
+  /**
+   * Makes the calling thread work for a session, as when a pool thread
+   * takes on part of a session's request.
+   *
+   * @param state the session's state, or <code>null</code> for the
+   * server-wide one
+   * @return the state bound before, to restore afterwards
+   */
+  static SessionState bind(SessionState state) {
+    SessionState previous = bound.get();
+    if (state == null) {
+      bound.remove();
+    } else {
+      bound.set(state);
+    }
+    return previous;
+  }
+
+  String getProjectName() {
+    return projectName;
+  }
+
+  void setProjectName(String projectName) {
+    this.projectName = projectName;
+  }
+
+  boolean isTypeTable() {
+    return typeTable;
+  }
+
+  void setTypeTable(boolean on) {
+    typeTable = on;
+  }
+
+  /**
+   * Returns everything besides its arguments that the answer to a lookup
+   * depends on: the project, its classpath generation and whether class
+   * info uses a type table.  Sessions with the same scope may be given
+   * each other's answers.
+   *
+   * @return a key naming this state's view of the classpath
+   */
+  String getOutputScope() {
+    String project = projectName;
+    return project + '#' + JdeUtilities.getClasspathGeneration(project)
+      + (typeTable ? "#table" : "");
+  }
+
+  /**
+   * Ends the session, or the server if this is the server-wide state.
+   */
+  void exit() {
+    if (!session) {
+      System.exit(7);
+    }
+    ended = true;
+  }
+
+  boolean isEnded() {
+    return ended;
+  }
+}
+
+// End of SessionState.java
@@ -0,0 +1,540 @@
+/*
+ *    SourceIndex.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Parameter names and first-sentence javadoc for library classes, read
+ * from the JDK's <code>src.zip</code> and from the
+ * <code>-sources.jar</code> next to each jar on the project classpath.
+ *
+ * <p>Each source archive is scanned once, by a low-priority background
+ * thread, into an index file under <code>~/.jdee/index</code> (or the
+ * directory named by the <code>jde.index.dir</code> property).  The file
+ * name carries the archive's path, size and modification time, so a
+ * rebuilt archive gets a new index and an unchanged one is never scanned
+ * again.  The first use also sweeps the directory of the indexes of
+ * archives that have since changed or gone, and of the temporary files
+ * of builds that never finished.  Only the table of contents of an index is held in memory;
+ * members are read from disk a class at a time and the most recently
+ * used classes are kept.</p>
+ *
+ * <p>Lookups never wait for the indexer: until an archive is indexed its
+ * classes simply have no names or docs, and callers fall back to what
+ * reflection gives them.</p>
+ */
+public final class SourceIndex {
+
+  private static final int MAGIC = 0x4A444958; // "JDIX"
+  private static final int VERSION = 2;
+
+  /** Age after which an unfinished index build is taken to be dead. */
+  private static final long STALE_BUILD = 60 * 60 * 1000L;
+
+  private static final String INDEX_SUFFIX = ".idx";
+  private static final String BUILD_PREFIX = "index";
+  private static final String BUILD_SUFFIX = ".tmp";
+
+  /** Number of classes whose members are kept in memory. */
+  private static final int RECENT_CLASSES = 256;
+
+  private static final String SOURCES_SUFFIX = "-sources.jar";
+
+  /** Index of each class, keyed by binary class name. */
+  private static final Map<String, IndexFile> classIndex = new ConcurrentHashMap<>();
+
+  /** Archives already indexed or queued, by absolute path. */
+  private static final Set<String> archives = Collections.synchronizedSet(new HashSet<String>());
+
+  private static final Map<String, Map<String, String[]>> recent =
+    new LinkedHashMap<String, Map<String, String[]>>(RECENT_CLASSES, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String, Map<String, String[]>> eldest) {
+        return size() > RECENT_CLASSES;
+      }
+    };
+
+  private static final ExecutorService indexer =
+    Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "jdee source indexer");
+          t.setDaemon(true);
+          t.setPriority(Thread.MIN_PRIORITY);
+          return t;
+        }
+      });
+
+  private static final AtomicBoolean started = new AtomicBoolean();
+
+  private SourceIndex() {
+  }
+
+  /**
+   * An index file: its table of contents in memory, its members on disk.
+   */
+  static final class IndexFile {
+    private final File file;
+    private final Map<String, Long> offsets;
+
+    IndexFile(File file) throws IOException {
+      this.file = file;
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+        if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+          throw new IOException("Not a source index: " + file);
+        }
+        raf.seek(raf.length() - 8);
+        raf.seek(raf.readLong());
+        int count = raf.readInt();
+        Map<String, Long> map = new HashMap<>(count * 4 / 3 + 1);
+        // the table of contents is read in one go; RandomAccessFile
+        // itself is unbuffered
+        byte[] toc = new byte[(int) (raf.length() - 8 - raf.getFilePointer())];
+        raf.readFully(toc);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(toc));
+        for (int i = 0; i < count; i++) {
+          String className = in.readUTF();
+          map.put(className, in.readLong());
+        }
+        offsets = Collections.unmodifiableMap(map);
+      }
+    }
+
+    Set<String> getClassNames() {
+      return offsets.keySet();
+    }
+
+    /**
+     * Reads the members of a class.
+     *
+     * @param className binary class name
+     * @return member key to <code>{parameterNames, doc}</code>, or
+     * <code>null</code> if the class is not in this index
+     */
+    Map<String, String[]> read(String className) throws IOException {
+      Long offset = offsets.get(className);
+      if (offset == null) {
+        return null;
+      }
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+        raf.seek(offset.longValue());
+        int count = raf.readInt();
+        Map<String, String[]> members = new LinkedHashMap<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+          String key = raf.readUTF();
+          members.put(key, new String[] {raf.readUTF(), raf.readUTF()});
+        }
+        return members;
+      }
+    }
+  }
+
+  /*************************************************************************
+   * Indexing
+   *************************************************************************/
+
+  private static File platformSources() {
+    File javaHome = new File(System.getProperty("java.home"));
+    File src = new File(javaHome, "lib" + File.separator + "src.zip");
+    if (!src.isFile() && javaHome.getParentFile() != null) {
+      // JDK 8 and earlier: java.home is the jre directory
+      src = new File(javaHome.getParentFile(), "src.zip");
+    }
+    return src.isFile() ? src : null;
+  }
+
+  // Sweeps the index directory and queues the JDK sources on first use
+  private static void start() {
+    if (started.compareAndSet(false, true)) {
+      indexer.execute(new Runnable() {
+          public void run() {
+            sweep(indexDirectory());
+          }
+        });
+      File platformSources = platformSources();
+      if (platformSources != null) {
+        schedule(platformSources);
+      }
+    }
+  }
+
+  private static File indexDirectory() {
+    String dir = System.getProperty("jde.index.dir");
+    if (dir == null) {
+      dir = System.getProperty("user.home") + File.separator + ".jdee"
+        + File.separator + "index";
+    }
+    return new File(dir);
+  }
+
+  /**
+   * Queues the <code>-sources.jar</code> beside each archive on a
+   * classpath for indexing.
+   *
+   * @param classPath a classpath
+   */
+  static void update(String classPath) {
+    start();
+    if (classPath == null) {
+      return;
+    }
+    StringTokenizer st = new StringTokenizer(classPath, File.pathSeparator);
+    while (st.hasMoreTokens()) {
+      String entry = st.nextToken();
+      int dot = entry.lastIndexOf('.');
+      if (dot != -1 && !entry.endsWith(SOURCES_SUFFIX)
+          && (entry.endsWith(".jar") || entry.endsWith(".zip"))) {
+        File sources = new File(entry.substring(0, dot) + SOURCES_SUFFIX);
+        if (sources.isFile()) {
+          schedule(sources);
+        }
+      }
+    }
+  }
+
+  private static void schedule(final File archive) {
+    if (archives.add(archive.getAbsolutePath())) {
+      indexer.execute(new Runnable() {
+          public void run() {
+            try {
+              register(load(archive, indexDirectory()));
+            } catch (IOException e) {
+              System.err.println("Cannot index " + archive + ": " + e);
+            }
+          }
+        });
+    }
+  }
+
+  private static void register(IndexFile index) {
+    for (Iterator<String> i = index.getClassNames().iterator(); i.hasNext();) {
+      classIndex.put(i.next(), index);
+    }
+    synchronized (recent) {
+      recent.clear();
+    }
+  }
+
+  /**
+   * Returns the index of a source archive, scanning the archive into a
+   * new index file in <code>dir</code> unless a current one exists.
+   *
+   * @param archive a source jar or zip
+   * @param dir the index directory
+   * @return the index
+   * @exception IOException if the archive or index cannot be read or the
+   * index cannot be written
+   */
+  static IndexFile load(File archive, File dir) throws IOException {
+    File file = new File(dir, indexName(archive));
+    if (!file.isFile()) {
+      build(archive, dir, file);
+    }
+    return new IndexFile(file);
+  }
+
+  // The archive's name plus a hash of its identity
+  private static String indexName(File archive) {
+    String path = archive.getAbsolutePath();
+    long identity = path.hashCode();
+    identity = identity * 31 + archive.length();
+    identity = identity * 31 + archive.lastModified();
+    return archive.getName() + '-' + Long.toHexString(identity) + INDEX_SUFFIX;
+  }
+
+  /**
+   * Deletes the index files in <code>dir</code> that no archive refers to
+   * any more, because the archive they were built from has changed or
+   * gone or they are of an older format, and the temporary files of
+   * builds untouched for an hour, which a crash or a kill left behind.
+   * Builds still running in other processes keep writing their files, so
+   * they are left alone.
+   *
+   * @param dir the index directory
+   */
+  static void sweep(File dir) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < files.length; i++) {
+      File file = files[i];
+      String name = file.getName();
+      if (name.startsWith(BUILD_PREFIX) && name.endsWith(BUILD_SUFFIX)) {
+        if (now - file.lastModified() > STALE_BUILD) {
+          file.delete();
+        }
+      } else if (name.endsWith(INDEX_SUFFIX)) {
+        File archive = archiveOf(file);
+        if (archive == null || !archive.isFile() || !indexName(archive).equals(name)) {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  // The archive an index file was built from, or null if it is not an
+  // index of the current format
+  private static File archiveOf(File file) {
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return null;
+      }
+      return new File(in.readUTF());
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static void build(File archive, File dir, File file) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create " + dir);
+    }
+    File tmp = File.createTempFile(BUILD_PREFIX, BUILD_SUFFIX, dir);
+    try {
+      List<String> names = new ArrayList<>();
+      List<Integer> offsets = new ArrayList<>();
+      try (ZipFile zf = new ZipFile(archive);
+           DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(archive.getAbsolutePath());
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(64 * 1024);
+        byte[] chunk = new byte[8192];
+        for (Enumeration<? extends ZipEntry> e = zf.entries(); e.hasMoreElements();) {
+          ZipEntry entry = e.nextElement();
+          String name = entry.getName();
+          if (entry.isDirectory() || !name.endsWith(".java")
+              || name.endsWith("package-info.java") || name.endsWith("module-info.java")) {
+            continue;
+          }
+          buf.reset();
+          try (InputStream in = zf.getInputStream(entry)) {
+            for (int n = in.read(chunk); n != -1; n = in.read(chunk)) {
+              buf.write(chunk, 0, n);
+            }
+          }
+          Map<String, Map<String, String[]>> classes =
+            SourceScanner.scan(buf.toString("UTF-8"));
+          for (Map.Entry<String, Map<String, String[]>> c : classes.entrySet()) {
+            names.add(c.getKey());
+            offsets.add(out.size());
+            out.writeInt(c.getValue().size());
+            for (Map.Entry<String, String[]> m : c.getValue().entrySet()) {
+              out.writeUTF(m.getKey());
+              out.writeUTF(m.getValue()[0]);
+              out.writeUTF(m.getValue()[1]);
+            }
+          }
+        }
+
+        long tocOffset = out.size();
+        out.writeInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+          out.writeUTF(names.get(i));
+          out.writeLong(offsets.get(i).longValue());
+        }
+        out.writeLong(tocOffset);
+      }
+      if (!tmp.renameTo(file)) {
+        throw new IOException("Cannot rename " + tmp + " to " + file);
+      }
+    } finally {
+      tmp.delete();
+    }
+  }
+
+  /*************************************************************************
+   * Lookups
+   *************************************************************************/
+
+  private static Map<String, String[]> members(Class<?> c) {
+    start();
+    String className = c.getName();
+    Map<String, String[]> members;
+    synchronized (recent) {
+      members = recent.get(className);
+    }
+    if (members == null) {
+      IndexFile index = classIndex.get(className);
+      if (index == null) {
+        return null;
+      }
+      try {
+        members = index.read(className);
+      } catch (IOException e) {
+        return null;
+      }
+      if (members == null) {
+        return null;
+      }
+      synchronized (recent) {
+        recent.put(className, members);
+      }
+    }
+    return members;
+  }
+
+  // Finds a method or constructor, falling back to a member of the same
+  // name and arity whose differing parameter types look like type
+  // variables, which reflection reports erased.
+  private static String[] find(Class<?> c, String name, Class<?>[] parameterTypes) {
+    Map<String, String[]> members = members(c);
+    if (members == null) {
+      return null;
+    }
+    String key = SourceScanner.key(name, parameterTypes);
+    String[] member = members.get(key);
+    if (member != null || parameterTypes == null) {
+      return member;
+    }
+
+    String[] reflected = key.substring(name.length() + 1, key.length() - 1).split(",", -1);
+    for (Iterator<Map.Entry<String, String[]>> i = members.entrySet().iterator(); i.hasNext();) {
+      Map.Entry<String, String[]> e = i.next();
+      String candidate = e.getKey();
+      if (!candidate.startsWith(name + '(')) {
+        continue;
+      }
+      String[] types =
+        candidate.substring(name.length() + 1, candidate.length() - 1).split(",", -1);
+      if (types.length != reflected.length) {
+        continue;
+      }
+      boolean matches = true;
+      for (int j = 0; j < types.length && matches; j++) {
+        matches = types[j].equals(reflected[j]) || isTypeVariable(types[j]);
+      }
+      if (matches) {
+        return e.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static boolean isTypeVariable(String type) {
+    int end = type.indexOf('[');
+    String base = end == -1 ? type : type.substring(0, end);
+    if (base.length() == 0 || base.length() > 2 || !Character.isUpperCase(base.charAt(0))) {
+      return false;
+    }
+    return base.length() == 1 || Character.isDigit(base.charAt(1))
+      || Character.isUpperCase(base.charAt(1));
+  }
+
+  private static String[] names(String[] member, int arity) {
+    if (member == null || member[0].length() == 0) {
+      return null;
+    }
+    String[] names = member[0].split(",");
+    return names.length == arity ? names : null;
+  }
+
+  private static String doc(String[] member) {
+    return member == null || member[1].length() == 0 ? null : member[1];
+  }
+
+  /**
+   * Returns the parameter names of a method as declared in its source.
+   *
+   * @param method a method
+   * @return the names, or <code>null</code> if its source is not indexed
+   */
+  public static String[] getParameterNames(Method method) {
+    Class<?>[] types = method.getParameterTypes();
+    return names(find(method.getDeclaringClass(), method.getName(), types), types.length);
+  }
+
+  /**
+   * Returns the parameter names of a constructor as declared in its
+   * source.
+   *
+   * @param ctor a constructor
+   * @return the names, or <code>null</code> if its source is not indexed
+   */
+  public static String[] getParameterNames(Constructor<?> ctor) {
+    Class<?>[] types = ctor.getParameterTypes();
+    return names(find(ctor.getDeclaringClass(), "<init>", types), types.length);
+  }
+
+  /**
+   * Returns the first sentence of a method's javadoc.
+   *
+   * @param method a method
+   * @return the sentence, or <code>null</code> if there is none or its
+   * source is not indexed
+   */
+  public static String getDoc(Method method) {
+    return doc(find(method.getDeclaringClass(), method.getName(), method.getParameterTypes()));
+  }
+
+  /**
+   * Returns the first sentence of a constructor's javadoc.
+   *
+   * @param ctor a constructor
+   * @return the sentence, or <code>null</code>
+   */
+  public static String getDoc(Constructor<?> ctor) {
+    return doc(find(ctor.getDeclaringClass(), "<init>", ctor.getParameterTypes()));
+  }
+
+  /**
+   * Returns the first sentence of a field's javadoc.
+   *
+   * @param field a field
+   * @return the sentence, or <code>null</code>
+   */
+  public static String getDoc(Field field) {
+    return doc(find(field.getDeclaringClass(), field.getName(), null));
+  }
+}
+
+// End of SourceIndex.java
@@ -0,0 +1,484 @@
+/*
+ *    SourceScanner.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pulls parameter names and the first sentence of each javadoc comment
+ * out of a Java source file.  This is a scanner, not a parser: it follows
+ * braces to find class bodies, reads member declarations at class-body
+ * level and skips method bodies and initializers unread, so it copes with
+ * any language level and with code that does not compile.
+ *
+ * <p>Members are keyed as {@link #key} builds them from reflection:
+ * <code>name(Type,Type[])</code> with simple, erased type names for
+ * methods, <code>&lt;init&gt;(...)</code> for constructors and the bare
+ * name for fields.  Each value is <code>{parameterNames, doc}</code>,
+ * the names comma separated and either string possibly empty.</p>
+ */
+final class SourceScanner {
+
+  /** Longest first sentence kept. */
+  static final int MAX_DOC = 300;
+
+  private static final Pattern CODE_TAG =
+    Pattern.compile("\\{@(?:code|literal)\\s+([^}]*)\\}");
+  private static final Pattern LINK_TAG =
+    Pattern.compile("\\{@link(?:plain)?\\s+([^}\\s]+)\\s*([^}]*)\\}");
+  private static final Pattern INLINE_TAG = Pattern.compile("\\{@\\w+\\s*([^}]*)\\}");
+  private static final Pattern HTML_TAG = Pattern.compile("<[^>]*>");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private final String src;
+  private int pos;
+  private String pushback;
+  private String pendingDoc;
+  private String pkg = "";
+  private final Map<String, Map<String, String[]>> classes = new LinkedHashMap<>();
+
+  private SourceScanner(String src) {
+    this.src = src;
+  }
+
+  /**
+   * Scans a compilation unit.
+   *
+   * @param src the source text
+   * @return members of each class declared in <code>src</code>, keyed
+   * by binary class name
+   */
+  static Map<String, Map<String, String[]>> scan(String src) {
+    SourceScanner scanner = new SourceScanner(src);
+    scanner.parseBody(null);
+    return scanner.classes;
+  }
+
+  /**
+   * Builds the key of a member from its reflected name and parameter
+   * types.
+   *
+   * @param name member name, <code>&lt;init&gt;</code> for constructors
+   * @param parameterTypes parameter types, or <code>null</code> for a field
+   * @return the member key
+   */
+  static String key(String name, Class<?>[] parameterTypes) {
+    if (parameterTypes == null) {
+      return name;
+    }
+    StringBuilder sb = new StringBuilder(name);
+    sb.append('(');
+    for (int i = 0; i < parameterTypes.length; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(simpleName(parameterTypes[i]));
+    }
+    sb.append(')');
+    return sb.toString();
+  }
+
+  private static String simpleName(Class<?> c) {
+    if (c.isArray()) {
+      return simpleName(c.getComponentType()) + "[]";
+    }
+    String name = c.getName();
+    return name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1);
+  }
+
+  /*************************************************************************
+   * Tokens
+   *************************************************************************/
+
+  private String next() {
+    if (pushback != null) {
+      String t = pushback;
+      pushback = null;
+      return t;
+    }
+    int len = src.length();
+    while (pos < len) {
+      char c = src.charAt(pos);
+      if (Character.isWhitespace(c)) {
+        pos++;
+      } else if (c == '/' && pos + 1 < len && src.charAt(pos + 1) == '/') {
+        int end = src.indexOf('\n', pos);
+        pos = end == -1 ? len : end + 1;
+      } else if (c == '/' && pos + 1 < len && src.charAt(pos + 1) == '*') {
+        int end = src.indexOf("*/", pos + 2);
+        if (end == -1) {
+          end = len;
+        }
+        if (pos + 2 < end && src.charAt(pos + 2) == '*') {
+          pendingDoc = src.substring(pos + 3, end);
+        }
+        pos = Math.min(len, end + 2);
+      } else if (c == '"' || c == '\'') {
+        skipLiteral(c);
+        return "\"\"";
+      } else if (Character.isJavaIdentifierPart(c)) {
+        int start = pos;
+        while (pos < len && Character.isJavaIdentifierPart(src.charAt(pos))) {
+          pos++;
+        }
+        return src.substring(start, pos);
+      } else if (src.startsWith("...", pos)) {
+        pos += 3;
+        return "...";
+      } else {
+        pos++;
+        return String.valueOf(c);
+      }
+    }
+    return null;
+  }
+
+  private String peek() {
+    if (pushback == null) {
+      pushback = next();
+    }
+    return pushback;
+  }
+
+  private void skipLiteral(char quote) {
+    int len = src.length();
+    if (quote == '"' && src.startsWith("\"\"\"", pos)) {
+      int end = src.indexOf("\"\"\"", pos + 3);
+      pos = end == -1 ? len : end + 3;
+      return;
+    }
+    pos++;
+    while (pos < len) {
+      char c = src.charAt(pos++);
+      if (c == '\\') {
+        pos++;
+      } else if (c == quote || c == '\n') {
+        return;
+      }
+    }
+  }
+
+  private static boolean isIdentifier(String t) {
+    return t.length() > 0 && Character.isJavaIdentifierStart(t.charAt(0));
+  }
+
+  /*************************************************************************
+   * Declarations
+   *************************************************************************/
+
+  // Reads declarations up to the brace closing the body of className, or
+  // to the end of the file for the compilation unit itself (null).
+  private void parseBody(String className) {
+    List<String> decl = new ArrayList<>();
+    String doc = null;
+    for (String t = next(); t != null; t = next()) {
+      if (decl.isEmpty() && pendingDoc != null) {
+        doc = pendingDoc;
+        pendingDoc = null;
+      }
+      if (t.equals("@")) {
+        if (!"interface".equals(peek())) {
+          skipAnnotation();
+        }
+        continue;
+      }
+      if (t.equals("}")) {
+        return;
+      } else if (t.equals(";")) {
+        declaration(className, decl, doc);
+        decl.clear();
+      } else if (t.equals("=")) {
+        if (className != null) {
+          field(className, decl, doc);
+        }
+        skipInitializer();
+        decl.clear();
+      } else if (t.equals("{")) {
+        String nested = typeName(decl);
+        if (nested != null) {
+          parseBody(className == null
+                    ? (pkg.length() == 0 ? nested : pkg + '.' + nested)
+                    : className + '$' + nested);
+        } else {
+          if (className != null && decl.contains("(")) {
+            method(className, decl, doc);
+          }
+          skipBlock();
+        }
+        decl.clear();
+      } else {
+        decl.add(t);
+        continue;
+      }
+      doc = null;
+    }
+  }
+
+  private void skipAnnotation() {
+    next();                     // name
+    while (".".equals(peek())) {
+      next();
+      next();
+    }
+    if ("(".equals(peek())) {
+      next();
+      int depth = 1;
+      for (String t = next(); t != null && depth > 0; t = depth > 0 ? next() : null) {
+        if (t.equals("(")) {
+          depth++;
+        } else if (t.equals(")")) {
+          depth--;
+        }
+      }
+    }
+  }
+
+  private void skipBlock() {
+    int depth = 1;
+    for (String t = next(); t != null; t = next()) {
+      if (t.equals("{")) {
+        depth++;
+      } else if (t.equals("}") && --depth == 0) {
+        break;
+      }
+    }
+    pendingDoc = null;
+  }
+
+  private void skipInitializer() {
+    int depth = 0;
+    for (String t = next(); t != null; t = next()) {
+      if (t.equals("{") || t.equals("(") || t.equals("[")) {
+        depth++;
+      } else if (t.equals("}") || t.equals(")") || t.equals("]")) {
+        if (--depth < 0) {
+          pushback = t;         // unterminated: leave the body's brace
+          break;
+        }
+      } else if (t.equals(";") && depth == 0) {
+        break;
+      }
+    }
+    pendingDoc = null;
+  }
+
+  private static String typeName(List<String> decl) {
+    for (int i = 0; i + 1 < decl.size(); i++) {
+      String t = decl.get(i);
+      if ((t.equals("class") || t.equals("interface") || t.equals("enum")
+           || (t.equals("record") && i + 2 < decl.size() && decl.get(i + 2).equals("(")))
+          && isIdentifier(decl.get(i + 1))) {
+        return decl.get(i + 1);
+      }
+    }
+    return null;
+  }
+
+  private void declaration(String className, List<String> decl, String doc) {
+    if (decl.isEmpty()) {
+      return;
+    }
+    if (className == null) {
+      if (decl.get(0).equals("package")) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i < decl.size(); i++) {
+          sb.append(decl.get(i));
+        }
+        pkg = sb.toString();
+      }
+    } else if (decl.contains("(")) {
+      method(className, decl, doc);
+    } else {
+      field(className, decl, doc);
+    }
+  }
+
+  private void field(String className, List<String> decl, String doc) {
+    for (int i = decl.size() - 1; i >= 0; i--) {
+      if (isIdentifier(decl.get(i))) {
+        add(className, decl.get(i), "", doc);
+        return;
+      }
+    }
+  }
+
+  private void method(String className, List<String> decl, String doc) {
+    int open = decl.indexOf("(");
+    if (open < 1 || !isIdentifier(decl.get(open - 1))) {
+      return;
+    }
+    String name = decl.get(open - 1);
+    String simpleClassName =
+      className.substring(Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1);
+    if (name.equals(simpleClassName)) {
+      name = "<init>";
+    }
+
+    StringBuilder key = new StringBuilder(name).append('(');
+    StringBuilder names = new StringBuilder();
+    List<String> param = new ArrayList<>();
+    int angle = 0;
+    int paren = 0;
+    for (int i = open + 1; i < decl.size(); i++) {
+      String t = decl.get(i);
+      if (t.equals("<")) {
+        angle++;
+      } else if (t.equals(">")) {
+        angle--;
+      } else if (t.equals("(")) {
+        paren++;
+      } else if (t.equals(")") && paren-- == 0) {
+        parameter(param, key, names);
+        break;
+      } else if (t.equals(",") && angle == 0 && paren == 0) {
+        parameter(param, key, names);
+        param.clear();
+        continue;
+      }
+      param.add(t);
+    }
+    key.append(')');
+    add(className, key.toString(), names.toString(), doc);
+  }
+
+  // Appends the simple type of one parameter to key and its name to names.
+  private static void parameter(List<String> param, StringBuilder key, StringBuilder names) {
+    int nameIndex = -1;
+    for (int i = param.size() - 1; i >= 0; i--) {
+      if (isIdentifier(param.get(i))) {
+        nameIndex = i;
+        break;
+      }
+    }
+    if (nameIndex <= 0 || param.get(nameIndex).equals("this")) {
+      return;                   // no parameters, or a receiver parameter
+    }
+
+    String type = null;
+    int dims = 0;
+    int angle = 0;
+    for (int i = 0; i < param.size(); i++) {
+      String t = param.get(i);
+      if (t.equals("<")) {
+        angle++;
+      } else if (t.equals(">")) {
+        angle--;
+      } else if (angle > 0) {
+        continue;
+      } else if (t.equals("[") || t.equals("...")) {
+        dims++;
+      } else if (i < nameIndex && isIdentifier(t) && !t.equals("final")) {
+        type = t;
+      }
+    }
+    if (type == null) {
+      return;
+    }
+
+    if (names.length() > 0) {
+      names.append(',');
+      key.append(',');
+    }
+    names.append(param.get(nameIndex));
+    key.append(type);
+    for (int i = 0; i < dims; i++) {
+      key.append("[]");
+    }
+  }
+
+  private void add(String className, String key, String parameterNames, String doc) {
+    Map<String, String[]> members = classes.get(className);
+    if (members == null) {
+      members = new LinkedHashMap<>();
+      classes.put(className, members);
+    }
+    members.put(key, new String[] {parameterNames, firstSentence(doc)});
+  }
+
+  /*************************************************************************
+   * Javadoc
+   *************************************************************************/
+
+  /**
+   * Returns the first sentence of a javadoc comment as plain text, with
+   * inline tags and HTML markup removed.
+   *
+   * @param doc comment text between <code>/**</code> and the closing
+   * <code>*&#47;</code>, or <code>null</code>
+   * @return the first sentence, empty if there is none
+   */
+  static String firstSentence(String doc) {
+    if (doc == null) {
+      return "";
+    }
+    StringBuilder text = new StringBuilder();
+    String[] lines = doc.split("\n");
+    for (int i = 0; i < lines.length; i++) {
+      String line = lines[i].trim();
+      while (line.startsWith("*")) {
+        line = line.substring(1);
+      }
+      line = line.trim();
+      if (line.startsWith("@")) {
+        break;                  // block tags end the description
+      }
+      text.append(line).append(' ');
+      if (line.endsWith(".") || line.indexOf(". ") != -1) {
+        break;                  // the first sentence ends on this line
+      }
+    }
+    if (text.indexOf("{@inheritDoc}") != -1) {
+      return "";
+    }
+
+    String s = CODE_TAG.matcher(text).replaceAll("$1");
+    Matcher link = LINK_TAG.matcher(s);
+    StringBuffer sb = new StringBuffer();
+    while (link.find()) {
+      String label = link.group(2).trim();
+      if (label.length() == 0) {
+        label = link.group(1).replace('#', '.');
+        if (label.startsWith(".")) {
+          label = label.substring(1);
+        }
+      }
+      link.appendReplacement(sb, Matcher.quoteReplacement(label));
+    }
+    link.appendTail(sb);
+    s = INLINE_TAG.matcher(sb).replaceAll("$1");
+    s = HTML_TAG.matcher(s).replaceAll("");
+    s = s.replace("&lt;", "<").replace("&gt;", ">").replace("&nbsp;", " ").replace("&amp;", "&");
+    s = WHITESPACE.matcher(s).replaceAll(" ").trim();
+
+    for (int i = s.indexOf('.'); i != -1; i = s.indexOf('.', i + 1)) {
+      if (i + 1 == s.length() || Character.isWhitespace(s.charAt(i + 1))) {
+        s = s.substring(0, i + 1);
+        break;
+      }
+    }
+    return s.length() > MAX_DOC ? s.substring(0, MAX_DOC) : s;
+  }
+}
+
+// End of SourceScanner.java
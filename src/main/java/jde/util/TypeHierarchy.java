@@ -0,0 +1,369 @@
+/*
+ *    TypeHierarchy.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jde.juci.LispWriter;
+
+/**
+ * Answers subtype questions about classes on the project classpath from a
+ * cached graph of their supertypes.  Each class is loaded once, through
+ * {@link DynamicClassLoader} and without being initialized, to record its
+ * superclass and interfaces; the transitive set of supertypes of a class
+ * is computed once and memoized.  Each project has its own graph, which
+ * is dropped when the project classpath changes (see
+ * {@link JdeUtilities#getClasspathGeneration}); a class or supertype set
+ * is also reloaded when a class file or archive it was read from has
+ * changed since, as {@link MemberCache} does for member listings.  So a
+ * call in a loop costs a hash lookup and a few file timestamps.
+ *
+ * The graphs are concurrent maps and classes are loaded without holding
+ * any lock, so that one client waiting on a slow archive does not stall
+ * every other query.  Two threads missing the same class may both load
+ * it; the entries they compute are equal and the last one stays.
+ */
+public class TypeHierarchy {
+
+  private static final String OBJECT = "java.lang.Object";
+
+  private static final String[] ARRAY_SUPERTYPES = {
+    OBJECT, "java.lang.Cloneable", "java.io.Serializable"
+  };
+
+  /**
+   * The direct supertypes of one class.
+   */
+  private static final class Node {
+    final String superclass;    // null for interfaces and Object
+    final String[] interfaces;
+    final boolean isInterface;
+    final File source;          // null for classes of the system loader
+    final long stamp;
+
+    Node(Class<?> c, File source) {
+      Class<?> sc = c.getSuperclass();
+      Class<?>[] ifcs = c.getInterfaces();
+      superclass = sc != null ? sc.getName() : null;
+      interfaces = new String[ifcs.length];
+      for (int i = 0; i < ifcs.length; i++) {
+        interfaces[i] = ifcs[i].getName();
+      }
+      isInterface = c.isInterface();
+      this.source = source;
+      stamp = source != null ? source.lastModified() : 0;
+    }
+
+    boolean isCurrent() {
+      return source == null || source.lastModified() == stamp;
+    }
+  }
+
+  /**
+   * The transitive supertypes of one class, with the class files and
+   * archives of every class they were computed from.
+   */
+  private static final class Closure {
+    final Set<String> types;
+    final File[] sources;
+    final long[] stamps;
+
+    Closure(Set<String> types, Map<File, Long> sources) {
+      this.types = Collections.unmodifiableSet(types);
+      this.sources = new File[sources.size()];
+      this.stamps = new long[sources.size()];
+      int i = 0;
+      for (Iterator<Map.Entry<File, Long>> it = sources.entrySet().iterator(); it.hasNext(); i++) {
+        Map.Entry<File, Long> entry = it.next();
+        this.sources[i] = entry.getKey();
+        this.stamps[i] = entry.getValue().longValue();
+      }
+    }
+
+    void addSourcesTo(Map<File, Long> target) {
+      for (int i = 0; i < sources.length; i++) {
+        target.put(sources[i], Long.valueOf(stamps[i]));
+      }
+    }
+
+    boolean isCurrent() {
+      for (int i = 0; i < sources.length; i++) {
+        if (sources[i].lastModified() != stamps[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * The supertypes of one project's classes, in one classpath generation.
+   */
+  private static final class Graph {
+    final int generation;
+    final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    final Map<String, Closure> closures = new ConcurrentHashMap<>();
+
+    Graph(int generation) {
+      this.generation = generation;
+    }
+  }
+
+  /** Graphs by project name. */
+  private static final Map<String, Graph> graphs = new ConcurrentHashMap<>();
+
+  private TypeHierarchy() {
+  }
+
+  // The current project's graph, started afresh if its classpath changed
+  private static Graph graph() {
+    String project = JdeUtilities.getCurrentProjectName();
+    int current = JdeUtilities.getClasspathGeneration();
+    Graph graph = graphs.get(project);
+    if (graph == null || graph.generation != current) {
+      graph = new Graph(current);
+      graphs.put(project, graph);
+    }
+    return graph;
+  }
+
+  private static Node node(Graph graph, String className) throws ClassNotFoundException {
+    Node node = graph.nodes.get(className);
+    if (node == null || !node.isCurrent()) {
+      DynamicClassLoader dcl = new DynamicClassLoader();
+      Class<?> c = dcl.loadClass(className);
+      node = new Node(c, dcl.getSources().get(className));
+      graph.nodes.put(className, node);
+    }
+    return node;
+  }
+
+  private static Closure closure(Graph graph, String className)
+    throws ClassNotFoundException {
+    Closure closure = graph.closures.get(className);
+    if (closure == null || !closure.isCurrent()) {
+      Set<String> types = new LinkedHashSet<>();
+      Map<File, Long> sources = new LinkedHashMap<>();
+      if (className.endsWith("[]")) {
+        String component = className.substring(0, className.length() - 2);
+        if (!isPrimitive(component)) {
+          // arrays are covariant in their component type
+          Closure of = closure(graph, component);
+          for (Iterator<String> i = of.types.iterator(); i.hasNext();) {
+            types.add(i.next() + "[]");
+          }
+          of.addSourcesTo(sources);
+        }
+        Collections.addAll(types, ARRAY_SUPERTYPES);
+      } else if (!isPrimitive(className)) {
+        Node node = node(graph, className);
+        if (node.source != null) {
+          sources.put(node.source, Long.valueOf(node.stamp));
+        }
+        // superclass chain first, so the most specific classes lead
+        if (node.superclass != null) {
+          types.add(node.superclass);
+          Closure of = closure(graph, node.superclass);
+          types.addAll(of.types);
+          of.addSourcesTo(sources);
+        }
+        for (int i = 0; i < node.interfaces.length; i++) {
+          types.add(node.interfaces[i]);
+          Closure of = closure(graph, node.interfaces[i]);
+          types.addAll(of.types);
+          of.addSourcesTo(sources);
+        }
+        if (node.isInterface) {
+          types.add(OBJECT);
+        }
+      }
+      closure = new Closure(types, sources);
+      graph.closures.put(className, closure);
+    }
+    return closure;
+  }
+
+  private static boolean isPrimitive(String type) {
+    return type.indexOf('.') == -1
+      && (type.equals("boolean") || type.equals("byte") || type.equals("char")
+          || type.equals("short") || type.equals("int") || type.equals("long")
+          || type.equals("float") || type.equals("double") || type.equals("void"));
+  }
+
+  /**
+   * Returns every proper supertype of a class: its superclasses, most
+   * specific first, followed by its interfaces.
+   *
+   * @param className binary class name, or an array type such as
+   * <code>java.lang.String[]</code>
+   * @return the supertypes
+   * @exception ClassNotFoundException if a class cannot be found
+   */
+  static Set<String> supertypes(String className) throws ClassNotFoundException {
+    return closure(graph(), className).types;
+  }
+
+  /**
+   * Tests whether a value of type <code>child</code> can be assigned to
+   * a variable of type <code>ancestor</code>.
+   *
+   * @param ancestor binary class name
+   * @param child binary class name
+   * @return true if <code>ancestor</code> is <code>child</code> or one of
+   * its supertypes
+   * @exception ClassNotFoundException if <code>child</code> cannot be
+   * found, even when it is the same name as <code>ancestor</code>
+   */
+  static boolean isAssignable(String ancestor, String child)
+    throws ClassNotFoundException {
+    // look the child up first, so that a missing class is an error
+    Set<String> types = closure(graph(), child).types;
+    return ancestor.equals(child) || types.contains(ancestor);
+  }
+
+  /**
+   * Returns the most specific type that both classes are assignable to.
+   * A common superclass other than <code>Object</code> wins; otherwise
+   * the first common interface, in the order of <code>a</code>'s
+   * supertypes, that no other common interface extends.
+   *
+   * @param a binary class name
+   * @param b binary class name
+   * @return the common supertype; <code>java.lang.Object</code> if there
+   * is nothing more specific
+   * @exception ClassNotFoundException if a class cannot be found
+   */
+  static String findCommonSupertype(String a, String b)
+    throws ClassNotFoundException {
+    Graph graph = graph();
+    Set<String> aTypes = closure(graph, a).types;
+    Set<String> bTypes = closure(graph, b).types;
+    if (a.equals(b) || bTypes.contains(a)) {
+      return a;
+    }
+    if (aTypes.contains(b)) {
+      return b;
+    }
+
+    List<String> commonInterfaces = new ArrayList<>();
+    for (Iterator<String> i = aTypes.iterator(); i.hasNext();) {
+      String type = i.next();
+      if (!bTypes.contains(type) || type.endsWith("[]")) {
+        continue;
+      }
+      if (!node(graph, type).isInterface) {
+        if (!type.equals(OBJECT)) {
+          return type;          // the closest common superclass
+        }
+      } else {
+        commonInterfaces.add(type);
+      }
+    }
+
+    for (int i = 0; i < commonInterfaces.size(); i++) {
+      String candidate = commonInterfaces.get(i);
+      boolean mostSpecific = true;
+      for (int j = 0; j < commonInterfaces.size() && mostSpecific; j++) {
+        if (i != j && closure(graph, commonInterfaces.get(j)).types.contains(candidate)) {
+          mostSpecific = false;
+        }
+      }
+      if (mostSpecific) {
+        return candidate;
+      }
+    }
+    return OBJECT;
+  }
+
+  /**
+   * Empties the cache.
+   */
+  static void clear() {
+    graphs.clear();
+  }
+
+  /*************************************************************************
+   * Lisp endpoints
+   *************************************************************************/
+
+  /**
+   * Tests whether a class is an ancestor of another class.
+   * This method prints "t" to standard out if the class is an ancestor
+   * of the other class. If the class is not an ancestor or either class
+   * cannot be found, this method prints nil to standard out.
+   *
+   * @param ancestor Name of the ancestor class
+   * @param child  Name of the supposed child class
+   */
+  public static void isAncestorOf(String ancestor, String child) {
+    try {
+      System.out.println(isAssignable(ancestor, child) ? JdeUtilities.T : JdeUtilities.NIL);
+    } catch (Exception | LinkageError e) {
+      System.out.println(JdeUtilities.NIL);
+    }
+  }
+
+  /**
+   * Prints the most specific common supertype of two classes as a
+   * string, or nil if either class cannot be found.
+   *
+   * @param a Name of a class
+   * @param b Name of another class
+   */
+  public static void commonSupertype(String a, String b) {
+    try {
+      System.out.println(LispWriter.quote(findCommonSupertype(a, b)));
+    } catch (Exception | LinkageError e) {
+      System.out.println(JdeUtilities.NIL);
+    }
+  }
+
+  /**
+   * Prints all supertypes of a class as
+   * <code>(list "super" ... "interface" ...)</code>, superclasses first,
+   * or nil if the class cannot be found.
+   *
+   * @param className Name of the class
+   */
+  public static void allSupertypes(String className) {
+    try {
+      StringBuilder sb = new StringBuilder(JdeUtilities.START_PAREN);
+      sb.append(JdeUtilities.LIST);
+      for (Iterator<String> i = supertypes(className).iterator(); i.hasNext();) {
+        sb.append(JdeUtilities.SPACE);
+        sb.append(LispWriter.quote(i.next()));
+      }
+      sb.append(JdeUtilities.END_PAREN);
+      System.out.println(sb);
+    } catch (Exception | LinkageError e) {
+      System.out.println(JdeUtilities.NIL);
+    }
+  }
+}
+
+// End of TypeHierarchy.java
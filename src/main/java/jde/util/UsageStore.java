@@ -0,0 +1,341 @@
+/*
+ *    UsageStore.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers which classes a project uses, so that class name lookups can
+ * put the likely choice first: once <code>java.util.List</code> has been
+ * imported a few times it outranks <code>java.awt.List</code>.
+ *
+ * <p>Each use adds one to a class's score, and every score halves over
+ * the next {@link #HALF_LIFE} uses recorded in the project, so recent
+ * habits win over old ones.  At most {@link #CAPACITY} classes are kept;
+ * recording a new class when the store is full forgets the class with
+ * the lowest score.  A store is saved to a small text file under
+ * <code>~/.jdee/usage</code> (or the directory named by the
+ * <code>jde.usage.dir</code> property) on a background thread a few
+ * seconds after it changes, and when the server exits, so that recording
+ * a use costs no more than a map update.</p>
+ */
+public final class UsageStore {
+
+  /** Maximum number of classes remembered per project. */
+  static final int CAPACITY = 1000;
+
+  /** Number of uses over which a score halves. */
+  static final int HALF_LIFE = 200;
+
+  /** Milliseconds from a change to the store being written. */
+  static final long FLUSH_DELAY = 5000;
+
+  private static final double DECAY = Math.pow(0.5, 1.0 / HALF_LIFE);
+
+  private static final Map<String, UsageStore> stores = new HashMap<>();
+
+  private static final ScheduledExecutorService flusher =
+    Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "jdee usage store");
+          t.setDaemon(true);
+          t.setPriority(Thread.MIN_PRIORITY);
+          return t;
+        }
+      });
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread("jdee usage store exit") {
+        public void run() {
+          flushAll();
+        }
+      });
+  }
+
+  private final File file;
+  private final int capacity;
+
+  /** Whether there are changes not yet written, and a write is due. */
+  private boolean dirty;
+  private boolean scheduled;
+
+  /** Held while the file is written. */
+  private final Object writeLock = new Object();
+
+  /** Uses recorded so far; the clock scores decay against. */
+  private long tick;
+
+  /** Class name to {score, tick of last use}. */
+  private final Map<String, double[]> entries = new HashMap<>();
+
+  /**
+   * Creates a store backed by <code>file</code>, loading it if it exists.
+   *
+   * @param file the store's file, or <code>null</code> to keep it in
+   * memory only
+   * @param capacity maximum number of classes remembered
+   */
+  UsageStore(File file, int capacity) {
+    this.file = file;
+    this.capacity = capacity;
+    if (file != null && file.isFile()) {
+      load();
+    }
+  }
+
+  /**
+   * Returns the store of a project.
+   *
+   * @param projectName the project name
+   * @return the store
+   */
+  static synchronized UsageStore forProject(String projectName) {
+    UsageStore store = stores.get(projectName);
+    if (store == null) {
+      store = new UsageStore(new File(directory(), fileName(projectName)), CAPACITY);
+      stores.put(projectName, store);
+    }
+    return store;
+  }
+
+  /**
+   * Returns the store of the current project.
+   *
+   * @return the store
+   */
+  public static UsageStore forCurrentProject() {
+    return forProject(JdeUtilities.getCurrentProjectName());
+  }
+
+  private static File directory() {
+    String dir = System.getProperty("jde.usage.dir");
+    if (dir == null) {
+      dir = System.getProperty("user.home") + File.separator + ".jdee"
+        + File.separator + "usage";
+    }
+    return new File(dir);
+  }
+
+  // Project names are usually paths to prj.el files
+  private static String fileName(String projectName) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = Math.max(0, projectName.length() - 40); i < projectName.length(); i++) {
+      char c = projectName.charAt(i);
+      sb.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' ? c : '_');
+    }
+    sb.append('-').append(Integer.toHexString(projectName.hashCode())).append(".txt");
+    return sb.toString();
+  }
+
+  private double score(double[] entry) {
+    return entry[0] * Math.pow(DECAY, tick - (long) entry[1]);
+  }
+
+  /**
+   * Records a use of a class, such as choosing it as an import or
+   * completing its name.
+   *
+   * @param className fully qualified class name
+   */
+  public synchronized void record(String className) {
+    tick++;
+    double[] entry = entries.get(className);
+    if (entry == null) {
+      if (entries.size() >= capacity) {
+        evict();
+      }
+      entry = new double[2];
+      entries.put(className, entry);
+    }
+    entry[0] = score(entry) + 1;
+    entry[1] = tick;
+    dirty = true;
+    if (file != null && !scheduled) {
+      scheduled = true;
+      flusher.schedule(new Runnable() {
+          public void run() {
+            flush();
+          }
+        }, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void evict() {
+    String weakest = null;
+    double min = Double.MAX_VALUE;
+    for (Iterator<Map.Entry<String, double[]>> i = entries.entrySet().iterator(); i.hasNext();) {
+      Map.Entry<String, double[]> e = i.next();
+      double score = score(e.getValue());
+      if (score < min) {
+        min = score;
+        weakest = e.getKey();
+      }
+    }
+    entries.remove(weakest);
+  }
+
+  /**
+   * Returns the current score of a class.
+   *
+   * @param className fully qualified class name
+   * @return the score, 0 for a class never used
+   */
+  public synchronized double getScore(String className) {
+    double[] entry = entries.get(className);
+    return entry == null ? 0 : score(entry);
+  }
+
+  /**
+   * Sorts class names by descending score.  The sort is stable, so names
+   * with equal scores, in particular unused ones, keep their order.
+   *
+   * @param classNames fully qualified class names
+   */
+  public void rank(List<String> classNames) {
+    if (classNames.size() < 2) {
+      return;
+    }
+    final Map<String, Double> scores = new HashMap<>();
+    synchronized (this) {
+      if (entries.isEmpty()) {
+        return;
+      }
+      for (Iterator<String> i = classNames.iterator(); i.hasNext();) {
+        String className = i.next();
+        double[] entry = entries.get(className);
+        scores.put(className, entry == null ? 0 : score(entry));
+      }
+    }
+    Collections.sort(classNames, new Comparator<String>() {
+        public int compare(String a, String b) {
+          return Double.compare(scores.get(b), scores.get(a));
+        }
+      });
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /*************************************************************************
+   * Persistence
+   *************************************************************************/
+
+  // The first line holds the tick, then one "className score lastTick"
+  // line per class.
+  private void load() {
+    try (BufferedReader in =
+           new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+      String line = in.readLine();
+      if (line == null) {
+        return;
+      }
+      tick = Long.parseLong(line.trim());
+      while ((line = in.readLine()) != null) {
+        String[] fields = line.split(" ");
+        if (fields.length == 3 && entries.size() < capacity) {
+          entries.put(fields[0], new double[] {
+              Double.parseDouble(fields[1]), Long.parseLong(fields[2])
+            });
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      System.err.println("Cannot read " + file + ": " + e);
+      entries.clear();
+      tick = 0;
+    }
+  }
+
+  /**
+   * Writes the store if it has changed since it was last written.  The
+   * contents are copied under the store's lock and written outside it,
+   * so lookups and uses do not wait for the disk.
+   */
+  void flush() {
+    synchronized (writeLock) {
+      StringBuilder contents = new StringBuilder();
+      synchronized (this) {
+        scheduled = false;
+        if (!dirty || file == null) {
+          return;
+        }
+        dirty = false;
+        contents.append(tick).append('\n');
+        for (Iterator<Map.Entry<String, double[]>> i = entries.entrySet().iterator(); i.hasNext();) {
+          Map.Entry<String, double[]> e = i.next();
+          contents.append(e.getKey()).append(' ').append(e.getValue()[0])
+            .append(' ').append((long) e.getValue()[1]).append('\n');
+        }
+      }
+      save(contents.toString());
+    }
+  }
+
+  // Writes every project's store, as the server exits
+  private static void flushAll() {
+    List<UsageStore> all;
+    synchronized (UsageStore.class) {
+      all = new ArrayList<>(stores.values());
+    }
+    for (Iterator<UsageStore> i = all.iterator(); i.hasNext();) {
+      i.next().flush();
+    }
+  }
+
+  private void save(String contents) {
+    File dir = file.getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      return;
+    }
+    File tmp = new File(dir, file.getName() + ".tmp");
+    // a Writer rather than a PrintWriter, so that a failed write throws
+    // and a truncated file never replaces the good one
+    try (Writer out = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8")) {
+      out.write(contents);
+    } catch (IOException e) {
+      System.err.println("Cannot write " + file + ": " + e);
+      tmp.delete();
+      return;
+    }
+    if (!tmp.renameTo(file)) {
+      file.delete();
+      tmp.renameTo(file);
+    }
+  }
+}
+
+// End of UsageStore.java
@@ -3,6 +3,8 @@ package jde.wizards;
 import java.beans.Introspector;
 import java.lang.reflect.Method;
 
+import jde.util.SourceIndex;
+
 /**
  * Defines a default parameter name factory for the InterfaceFactory.
  * Tries hard to find a meaningfull name.
@@ -36,8 +38,10 @@ public class DefaultNameFactory implements NameFactory {
 
   /**
    * Make up a name for the nth parameter of a method.
-   * First this method tries to recognize bean methods, if the method is named
-   * "setName" and has one parameter, the parameter returned is the
+   * If the method's source has been indexed (see {@link SourceIndex}),
+   * the name it was declared with is used. Otherwise this method tries
+   * to recognize bean methods, if the method is named "setName" and has
+   * one parameter, the parameter returned is the
    * lowercased method name with "set" stripped: "name".
    *
    * Index Bean Properties are methods starting with "set" and having two
@@ -90,6 +94,11 @@ public class DefaultNameFactory implements NameFactory {
    */
   public String getParameterName(Signature sig, int num) {
     Method method = sig.getMethod();
+    String[] declared = SourceIndex.getParameterNames(method);
+    if (declared != null) {
+      return declared[num];
+    }
+
     String  methodName = method.getName();
     Class[] parameters = method.getParameterTypes();
     Class   type = parameters[num];
@@ -21,12 +21,16 @@ package jde.wizards;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.StringTokenizer;
 import java.util.Vector;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipEntry;
 
+import jde.util.UsageStore;
+
 /**
  * Converts an unqualified class name to import statements by scanning
  * through the classpath.
@@ -155,13 +159,14 @@ public class ImportWizard {
   
   /**
    * Looks up an unqualified class name in the class path to find possible
-   * fully qualified matches.
+   * fully qualified matches, the ones most used in the current project
+   * first.
    *
    * @param className a value of type 'String'
    */
   public static void makeImportStatement(String className) {
 
-    String importList = "(list";
+    List<String> matches = new ArrayList<>();
     
     for (int i = 0; i < CLASS_LIST.size(); i++) {
       String testName = (String) CLASS_LIST.elementAt(i);
@@ -171,13 +176,18 @@ public class ImportWizard {
 	  (testName.length() == className.length()) && testName.equals(className)) {
 	
 	// Avoid duplicates!
-	testName = " \"" +  testName + "\"";
-	if (importList.indexOf(testName) == -1)
-          importList += testName;
+	if (!matches.contains(testName))
+          matches.add(testName);
       }
     }
 
-    importList += ")";
+    UsageStore.forCurrentProject().rank(matches);
+
+    StringBuilder importList = new StringBuilder("(list");
+    for (String match : matches) {
+      importList.append(" \"").append(match).append('"');
+    }
+    importList.append(")");
     
 
     System.out.println(importList);
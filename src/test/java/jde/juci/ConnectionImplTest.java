@@ -36,6 +36,8 @@ import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test the <code>ConnectionImpl</code> class.
@@ -106,4 +108,82 @@ public class ConnectionImplTest {
         assertEquals("hello world", echo.ack("hello world"));
         ((Connection) echo).end();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMultiplexedAnswersInCompletionOrder() throws Exception {
+        Connection conn = ConnectionFactory.getConnection(EchoImpl.class, null, null);
+        StringWriter output = new StringWriter();
+        ConnectionImpl connimpl = (ConnectionImpl) Proxy.getInvocationHandler(conn);
+        connimpl.setOutput(new PrintWriter(output));
+
+        conn.setMultiplexed(true);
+        ((Echo) conn.withRequestId(1)).delayedAck("slow", 300);
+        ((Echo) conn.withRequestId(2)).ack("fast");
+        ((Echo) conn.withRequestId(3)).roundTrip(Arrays.asList(1, 2));
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (output.toString().split("\n").length < 3) {
+            assertTrue(output.toString(), System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        String[] lines = output.toString().trim().split("\\s*\n");
+        assertEquals("(jdee-juci-response 1 \"slow\")", lines[2]);
+        assertEquals(new java.util.HashSet<>(Arrays.asList("(jdee-juci-response 2 \"fast\")",
+                                                           "(jdee-juci-response 3 '(1 2))")),
+                     new java.util.HashSet<>(Arrays.asList(lines[0], lines[1])));
+        conn.setMultiplexed(false);
+        conn.end();
+    }
+
+    @Test
+    public void testCancelRequest() throws Exception {
+        Connection conn = ConnectionFactory.getConnection(EchoImpl.class, null, null);
+        StringWriter output = new StringWriter();
+        ConnectionImpl connimpl = (ConnectionImpl) Proxy.getInvocationHandler(conn);
+        connimpl.setOutput(new PrintWriter(output));
+
+        conn.setMultiplexed(true);
+        ((Echo) conn.withRequestId(1)).delayedAck("stale", 60000);
+        conn.cancelRequest(1);
+        ((Echo) conn.withRequestId(2)).delayedAck("fresh", 200);
+
+        long start = System.currentTimeMillis();
+        while (!output.toString().contains("(jdee-juci-response 2 \"fresh\")")) {
+            assertTrue(System.currentTimeMillis() - start < 10000);
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals("(jdee-juci-response 2 \"fresh\")", output.toString().trim());
+        conn.setMultiplexed(false);
+        conn.end();
+    }
+
+    @Test
+    public void testDispatchTable() throws Exception {
+        Connection conn = ConnectionFactory.getConnection(EchoImpl.class, null, null);
+        ConnectionImpl connimpl = (ConnectionImpl) Proxy.getInvocationHandler(conn);
+        connimpl.setOutput(new PrintWriter(new StringWriter()));
+
+        conn.pushResult("a");
+        assertEquals("a", conn.peekResult());
+        assertEquals("a", conn.popResult());
+        assertEquals(connimpl.hashCode(), conn.hashCode());
+        assertEquals(connimpl.toString(), conn.toString());
+        assertEquals("x", ((Echo) conn).delayedAck("x", 0));
+        conn.end();
+    }
+
+    @Test
+    public void testProxyEquality() throws Exception {
+        Connection conn = ConnectionFactory.getConnection(EchoImpl.class, null, null);
+        ConnectionImpl connimpl = (ConnectionImpl) Proxy.getInvocationHandler(conn);
+        Connection tagged = conn.withRequestId(1);
+
+        assertTrue(conn.equals(conn));
+        assertTrue(tagged.equals(tagged));
+        assertFalse(conn.equals(tagged));
+        assertFalse(conn.equals(connimpl));
+        assertFalse(conn.equals(null));
+        conn.end();
+    }
+}
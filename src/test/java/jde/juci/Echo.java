@@ -34,4 +34,6 @@ public interface Echo {
     String ack(String message);
 
     Object roundTrip(Object input);
+
+    String delayedAck(String message, int millis);
 }
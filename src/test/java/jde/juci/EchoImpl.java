@@ -38,4 +38,17 @@ public class EchoImpl implements Echo {
     public Object roundTrip(Object input) {
         return input;
     }
+
+    public String delayedAck(String message, int millis) {
+        long end = System.currentTimeMillis() + millis;
+        try {
+            while (System.currentTimeMillis() < end) {
+                Cancellation.checkpoint();
+                Thread.sleep(Math.min(10, millis));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return message;
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the {@link LatencyHistogram} and {@link EndpointStats} classes.
+ */
+public class EndpointStatsTest {
+
+    @Test
+    public void testBuckets() {
+        long[] values = {0, 1, 7, 8, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE};
+        for (long v : values) {
+            int b = LatencyHistogram.bucket(v);
+            assertTrue(v + " in bucket " + b,
+                       LatencyHistogram.lowest(b) <= v && v <= LatencyHistogram.highest(b));
+            assertTrue(LatencyHistogram.highest(b) - LatencyHistogram.lowest(b) <= Math.max(0, v / 8));
+        }
+        for (int b = 1; b < LatencyHistogram.bucket(Long.MAX_VALUE); b++) {
+            assertEquals(LatencyHistogram.highest(b - 1) + 1, LatencyHistogram.lowest(b));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 1000L);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(500500.0, h.getMean(), 0.1);
+        assertEquals(1000000, h.getMax());
+        assertEquals(1000000, h.getPercentile(100));
+        long p50 = h.getPercentile(50);
+        assertTrue(String.valueOf(p50), p50 >= 500000 && p50 <= 500000 * 9 / 8);
+        long p99 = h.getPercentile(99);
+        assertTrue(String.valueOf(p99), p99 >= 990000 && p99 <= 1000000);
+        h.reset();
+        assertEquals(0, h.getCount());
+    }
+
+    @Test
+    public void testDispatcher() throws Exception {
+        Dispatcher d = new Dispatcher();
+        d.register("test.endpoint", new Dispatcher.Handler() {
+                public void handle(List<Object> args) {
+                    if (args.isEmpty()) {
+                        throw new IllegalArgumentException();
+                    }
+                }
+            });
+        EndpointStats stats = EndpointStats.forEndpoint("test.endpoint");
+        assertSame(stats, EndpointStats.forEndpoint("test.endpoint"));
+        stats.reset();
+
+        d.dispatch(Arrays.<Object>asList(new Symbol("test.endpoint"), "x"));
+        try {
+            d.dispatch(Arrays.<Object>asList(new Symbol("test.endpoint")));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(2, stats.getCalls());
+        assertEquals(1, stats.getErrors());
+
+        Object calls = ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(new ObjectName("jde.juci:type=EndpointStats,name="
+                                         + ObjectName.quote("test.endpoint")), "Calls");
+        assertEquals(Long.valueOf(2), calls);
+    }
+}
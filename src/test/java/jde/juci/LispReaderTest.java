@@ -0,0 +1,120 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the {@link LispReader} and {@link Dispatcher} classes.
+ */
+public class LispReaderTest {
+
+    private static String write(Object o) {
+        StringWriter out = new StringWriter();
+        LispWriter writer = new LispWriter(new PrintWriter(out));
+        writer.setAutoQuoteLists(false);
+        writer.writeUnknown(o);
+        return out.toString();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        String[] forms = {
+            "(message \"Hello %s\" user-full-name)",
+            "(apply '+ 1 2 '(3 4))",
+            "(\"\" . find-buffer-file-type-coding-system)",
+            "\"\\\"abc\\'\\\\\\ndef\\b\\r\\t\\f\"",
+            "(0 -7 9223372036854775807 10.1 -0.5)",
+            "(?a ?\\( ?\\n t nil)",
+        };
+        for (int i = 0; i < forms.length; i++) {
+            assertEquals(forms[i], write(LispReader.read(forms[i])));
+        }
+    }
+
+    @Test
+    public void testAtoms() throws Exception {
+        assertEquals(Integer.valueOf(42), LispReader.read("42"));
+        assertEquals(Integer.valueOf(1), LispReader.read("+1."));
+        assertEquals(Long.valueOf(10000000000L), LispReader.read("10000000000"));
+        assertEquals(Double.valueOf(1e5), LispReader.read("1e5"));
+        assertSame(LispWriter.T, LispReader.read("t"));
+        assertSame(LispWriter.NIL, LispReader.read(" ; comment\n nil"));
+        assertEquals("1+", ((Symbol) LispReader.read("1+")).getName());
+        assertEquals("-", ((Symbol) LispReader.read("-")).getName());
+        assertEquals("a.b", ((Symbol) LispReader.read("a.b")).getName());
+        assertEquals("a b", ((Symbol) LispReader.read("a\\ b")).getName());
+        assertEquals(new ArrayList<Object>(), LispReader.read("()"));
+        assertArrayEquals(new Object[] {"a", 1}, (Object[]) LispReader.read("[\"a\" 1]"));
+    }
+
+    @Test
+    public void testSequence() throws Exception {
+        LispReader reader = new LispReader(new StringReader("(a) \"b\"\n'c"));
+        assertTrue(reader.read() instanceof List);
+        assertEquals("b", reader.read());
+        assertTrue(reader.read() instanceof Quoted);
+        try {
+            reader.read();
+            assertTrue(false);
+        } catch (EOFException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnbalanced() throws Exception {
+        LispReader.read("(a (b)");
+    }
+
+    @Test
+    public void testDispatch() throws Exception {
+        final List<Object> seen = new ArrayList<>();
+        Dispatcher d = new Dispatcher();
+        d.register("jde.Foo.bar", new Dispatcher.Handler() {
+                public void handle(List<Object> args) {
+                    Dispatcher.arity(args, 2, 2);
+                    seen.add(Dispatcher.string(args, 0));
+                    seen.addAll(Arrays.asList(Dispatcher.strings(args, 1)));
+                }
+            });
+        assertTrue(d.dispatch(LispReader.read("(jde.Foo.bar nil '(\"x\" \"y\"))")));
+        assertEquals(Arrays.asList(null, "x", "y"), seen);
+        assertEquals(false, d.dispatch(LispReader.read("(jde.Foo.baz)")));
+        assertEquals(false, d.dispatch(LispReader.read("\"jde.Foo.bar\"")));
+        try {
+            d.dispatch(LispReader.read("(jde.Foo.bar 1 nil)"));
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Micro benchmark for {@link LispWriter} on payloads like the ones in
+ * {@link LispWriterTest}: forms of symbols, strings with and without
+ * escapes, and numbers.  Compares the writer against the old one that
+ * printed every character through the <code>PrintWriter</code>.  Not a
+ * unit test; run it by hand with
+ *
+ * <pre>
+ *   mvn test-compile
+ *   java -cp target/classes:target/test-classes jde.juci.LispWriterBenchmark
+ * </pre>
+ */
+public class LispWriterBenchmark {
+
+    private static final int FORMS = 2000;
+    private static final int ROUNDS = 50;
+
+    /** A writer that throws away everything, so only formatting is timed. */
+    private static class NullWriter extends Writer {
+        public void write(char[] cbuf, int off, int len) {}
+        public void write(String str) {}
+        public void write(int c) {}
+        public void flush() {}
+        public void close() {}
+    }
+
+    /** The writer as it was: one print per character and per number. */
+    private static class LegacyWriter {
+        private final PrintWriter output;
+
+        LegacyWriter(PrintWriter output) {
+            this.output = output;
+        }
+
+        void writeForm(Collection<?> c) {
+            output.print("(");
+            for (Iterator<?> i = c.iterator(); i.hasNext();) {
+                writeUnknown(i.next());
+                if (i.hasNext())
+                    output.print(" ");
+            }
+            output.print(")");
+        }
+
+        void writeString(String string) {
+            output.print("\"");
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                switch (c) {
+                    case '\"':
+                    case '\'':
+                    case '\\':
+                        output.write("\\");
+                        output.write(c);
+                        break;
+                    case '\n':
+                        output.write("\\n");
+                        break;
+                    default:
+                        output.print(c);
+                        break;
+                }
+            }
+            output.print("\"");
+        }
+
+        void writeUnknown(Object o) {
+            if (o instanceof Number) {
+                output.write(Integer.toString(((Number) o).intValue()));
+            } else if (o instanceof Collection) {
+                writeForm((Collection) o);
+            } else if (o instanceof Symbol) {
+                output.write(((Symbol) o).getName());
+            } else {
+                writeString(o.toString());
+            }
+        }
+    }
+
+    private static List<Object> payload() {
+        List<Object> forms = new ArrayList<>();
+        for (int i = 0; i < FORMS; i++) {
+            List<Object> form = new ArrayList<>();
+            form.add(new Symbol("list"));
+            form.add("java.util.concurrent.ConcurrentHashMap");
+            form.add("computeIfAbsent");
+            form.add("He said \"hello\"\nand left");
+            form.add(i);
+            form.add(i * 31);
+            List<Object> params = new ArrayList<>();
+            params.add("java.lang.Object");
+            params.add("java.util.function.Function");
+            form.add(params);
+            forms.add(form);
+        }
+        return forms;
+    }
+
+    private static long legacy(List<Object> forms) {
+        long start = System.nanoTime();
+        PrintWriter out = new PrintWriter(new NullWriter());
+        new LegacyWriter(out).writeForm(forms);
+        out.flush();
+        return System.nanoTime() - start;
+    }
+
+    private static long buffered(List<Object> forms) {
+        long start = System.nanoTime();
+        PrintWriter out = new PrintWriter(new NullWriter());
+        LispWriter writer = new LispWriter(out);
+        writer.setAutoQuoteLists(false);
+        writer.writeForm(forms);
+        out.flush();
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Object> forms = payload();
+
+        // warm up
+        for (int r = 0; r < ROUNDS; r++) {
+            legacy(forms);
+            buffered(forms);
+        }
+
+        long legacy = 0;
+        long buffered = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            legacy   += legacy(forms);
+            buffered += buffered(forms);
+        }
+
+        System.out.println(String.format("%d forms  legacy %dus  buffered %dus  %.1fx",
+                                         FORMS,
+                                         legacy / ROUNDS / 1000,
+                                         buffered / ROUNDS / 1000,
+                                         (double) legacy / buffered));
+    }
+}
@@ -56,6 +56,13 @@ public class LispWriterTest {
         assertEquals("\"\\\"abc\\'\\\\\\ndef\\b\\r\\t\\f\"", output.toString());
     }
 
+    @Test
+    public void testQuote() {
+        assertEquals("\"\\\"abc\\'\\\\\\ndef\\b\\r\\t\\f\"",
+                     LispWriter.quote("\"abc'\\\ndef\b\r\t\f"));
+        assertEquals("", output.toString());
+    }
+
     @Test
     public void testIntPrimitive() {
         lwriter.writeInt(1010);
@@ -245,6 +252,38 @@ public class LispWriterTest {
         assertEquals("(apply '+ 1 2 '(3 4))", output.toString());
     }
 
+    @Test
+    public void testLongStringCrossesBuffer() {
+        StringBuilder in = new StringBuilder();
+        StringBuilder expected = new StringBuilder("\"");
+        for (int i = 0; i < 5000; i++) {
+            in.append("ab\"");
+            expected.append("ab\\\"");
+        }
+        expected.append('"');
+        lwriter.writeString(in.toString());
+        assertEquals(expected.toString(), output.toString());
+    }
+
+    @Test
+    public void testNumberEdges() {
+        lwriter.writeForm(Arrays.asList(0, -7, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE,
+                                        (short) 12, -0.5d));
+        assertEquals("(0 -7 -2147483648 9223372036854775807 -9223372036854775808 12 -0.5)",
+                     output.toString());
+    }
+
+    @Test
+    public void testDirectWritesStayInOrder() {
+        PrintWriter pw = new PrintWriter(output);
+        lwriter = new LispWriter(pw);
+        lwriter.writeString("a");
+        pw.print(" ");
+        lwriter.writeUnknown(Arrays.asList(new Symbol("b"), 1));
+        pw.println();
+        assertEquals("\"a\" '(b 1)" + System.getProperty("line.separator"), output.toString());
+    }
+
     @Test
     public void testWriteJdeeJuciInvokeElispForm() {
         List<Object> eval = new ArrayList<>();
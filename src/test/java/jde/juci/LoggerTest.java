@@ -0,0 +1,116 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the {@link Logger} class.
+ */
+public class LoggerTest {
+
+    @Test
+    public void testLevels() {
+        StringWriter out = new StringWriter();
+        Logger logger = new Logger(out);
+        logger.setLevel(Logger.INFO);
+        assertTrue(logger.isEnabled(Logger.ERROR));
+        assertFalse(logger.isDebugEnabled());
+
+        logger.debug("hidden");
+        logger.info("shown");
+        logger.debug("hidden form", Arrays.asList("a"));
+        logger.close();
+
+        String log = out.toString();
+        assertFalse(log.contains("hidden"));
+        assertTrue(log.contains("|INFO\n") || log.contains("|INFO\r\n"));
+        assertTrue(log.contains("shown"));
+
+        assertFalse(new Logger().isEnabled(Logger.ERROR));
+        assertFalse(logger.isEnabled(Logger.ERROR));
+    }
+
+    @Test
+    public void testWrittenInOrder() {
+        StringWriter out = new StringWriter();
+        Logger logger = new Logger(out);
+        for (int i = 0; i < 1000; i++) {
+            logger.debug("message " + i);
+        }
+        logger.debug("form", Arrays.asList("a", Integer.valueOf(1)));
+        logger.error("failed", new IllegalStateException("boom"));
+        logger.flush();
+
+        String log = out.toString();
+        int at = 0;
+        for (int i = 0; i < 1000; i++) {
+            at = log.indexOf("message " + i + System.getProperty("line.separator"), at);
+            assertTrue(at >= 0);
+        }
+        assertTrue(log.contains("form: '(\"a\" 1)"));
+        assertTrue(log.contains("java.lang.IllegalStateException: boom"));
+        logger.close();
+    }
+
+    @Test
+    public void testErrorsNotDropped() {
+        StringWriter out = new StringWriter();
+        Logger logger = new Logger(out);
+        for (int i = 0; i < 20000; i++) {
+            logger.debug("message " + i);
+            if (i % 1000 == 0) {
+                logger.error("error " + i);
+            }
+        }
+        logger.close();
+
+        String log = out.toString();
+        for (int i = 0; i < 20000; i += 1000) {
+            assertTrue(log.contains("error " + i + System.getProperty("line.separator")));
+        }
+    }
+
+    @Test
+    public void testCaller() {
+        StringWriter out = new StringWriter();
+        Logger logger = new Logger(out);
+        logger.debug("without");
+        logger.setInferCaller(true);
+        logger.debug("with");
+        logger.close();
+
+        String log = out.toString();
+        assertEquals(1, count(log, "jde.juci.LoggerTest.testCaller(LoggerTest.java:"));
+        assertTrue(log.indexOf("LoggerTest.testCaller") > log.indexOf("without"));
+    }
+
+    private static int count(String s, String sub) {
+        int n = 0;
+        for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package jde.juci;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the {@link SingleFlight} class.
+ */
+public class SingleFlightTest {
+
+    private final AtomicInteger runs = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    // Prints its argument once released
+    private final Dispatcher.Handler slow = new Dispatcher.Handler() {
+            public void handle(List<Object> args) throws Exception {
+                runs.incrementAndGet();
+                release.await();
+                System.out.print("(answer " + args.get(0) + ")");
+            }
+        };
+
+    @Before
+    public void setUp() {
+        SessionOutput.install();
+        // another client, so that there is someone to share answers with
+        SessionOutput.setTarget(new PrintStream(new ByteArrayOutputStream(), true));
+    }
+
+    @After
+    public void tearDown() {
+        SessionOutput.setTarget(null);
+    }
+
+    // Runs a request on another thread, returning what it printed
+    private static Future<String> request(ExecutorService pool, final Dispatcher.Handler handler,
+                                          final Object... args) {
+        return pool.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    SessionOutput.setTarget(new PrintStream(out, true));
+                    try {
+                        handler.handle(Arrays.asList(args));
+                    } finally {
+                        SessionOutput.setTarget(null);
+                    }
+                    return out.toString("UTF-8");
+                }
+            });
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        SingleFlight flights = new SingleFlight();
+        Dispatcher.Handler handler = flights.coalesce("test.slow", slow);
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Future<String> first = request(pool, handler, "\"x\"");
+            while (runs.get() == 0) {
+                Thread.sleep(5);
+            }
+            Future<String> second = request(pool, handler, "\"x\"");
+            Future<String> third = request(pool, handler, "\"x\"");
+            Future<String> other = request(pool, handler, "\"y\"");
+            while (flights.followers("test.slow \"\\\"x\\\"\"") < 2 || runs.get() < 2) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertEquals("(answer \"x\")", first.get());
+            assertEquals("(answer \"x\")", second.get());
+            assertEquals("(answer \"x\")", third.get());
+            assertEquals("(answer \"y\")", other.get());
+            assertEquals(2, runs.get());
+            assertEquals(2, flights.getCoalesced());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailureShared() throws Exception {
+        SingleFlight flights = new SingleFlight();
+        final CountDownLatch started = new CountDownLatch(1);
+        Dispatcher.Handler handler = flights.coalesce("test.failing", new Dispatcher.Handler() {
+                public void handle(List<Object> args) throws Exception {
+                    runs.incrementAndGet();
+                    started.countDown();
+                    release.await();
+                    throw new IllegalStateException("boom");
+                }
+            });
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Future<String> first = request(pool, handler);
+            started.await();
+            Future<String> second = request(pool, handler);
+            while (flights.followers("test.failing") < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<String> f : Arrays.asList(first, second)) {
+                try {
+                    f.get();
+                    assertTrue(false);
+                } catch (java.util.concurrent.ExecutionException e) {
+                    assertEquals("boom", e.getCause().getMessage());
+                }
+            }
+            assertEquals(1, runs.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testScopesKeptApart() throws Exception {
+        final ThreadLocal<String> project = new ThreadLocal<>();
+        SingleFlight flights = new SingleFlight(new SingleFlight.Scope() {
+                public String current() {
+                    return project.get();
+                }
+            });
+        final Dispatcher.Handler handler = flights.coalesce("test.slow", slow);
+        Dispatcher.Handler inProject = new Dispatcher.Handler() {
+                public void handle(List<Object> args) throws Exception {
+                    project.set((String) args.get(1));
+                    handler.handle(args.subList(0, 1));
+                }
+            };
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Future<String> a = request(pool, inProject, "x", "a");
+            Future<String> b = request(pool, inProject, "x", "b");
+            while (runs.get() < 2) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            assertEquals("(answer x)", a.get());
+            assertEquals("(answer x)", b.get());
+            assertEquals(0, flights.getCoalesced());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSingleSessionRunsDirectly() throws Exception {
+        SessionOutput.setTarget(null);
+        final SingleFlight flights = new SingleFlight();
+        final AtomicInteger inFlight = new AtomicInteger(-1);
+        Dispatcher.Handler handler = flights.coalesce("test.alone", new Dispatcher.Handler() {
+                public void handle(List<Object> args) {
+                    inFlight.set(flights.inFlight());
+                    System.out.print("alone");
+                }
+            });
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            assertEquals("alone", request(pool, handler).get());
+            assertEquals(0, inFlight.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
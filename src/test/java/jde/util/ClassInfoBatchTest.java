@@ -0,0 +1,187 @@
+/*
+ *    ClassInfoBatchTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jde.juci.LispWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the ordering, inline errors and shared pool of
+ * {@link ClassInfoBatch}.
+ */
+public class ClassInfoBatchTest {
+
+    private PrintStream stdout;
+    private ByteArrayOutputStream captured;
+
+    @Before
+    public void setUp() {
+        stdout = System.out;
+        captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+    }
+
+    @After
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    /** Renders each name as a string, after a delay given by the name. */
+    private static class Echo extends ClassInfoBatch {
+        final Set<String> workers = Collections.synchronizedSet(new HashSet<String>());
+        final AtomicInteger running = new AtomicInteger();
+        int mostRunning;
+
+        String render(String className) throws ClassNotFoundException, IOException {
+            workers.add(Thread.currentThread().getName());
+            int now = running.incrementAndGet();
+            synchronized (this) {
+                mostRunning = Math.max(mostRunning, now);
+            }
+            try {
+                int dot = className.lastIndexOf('.');
+                Thread.sleep(Integer.parseInt(className.substring(dot + 1)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return LispWriter.quote(className);
+        }
+    }
+
+    private static String expected(String... classNames) {
+        StringBuilder sb = new StringBuilder("(list ");
+        for (int i = 0; i < classNames.length; i++) {
+            sb.append("\n(cons \"").append(classNames[i]).append("\" \"")
+              .append(classNames[i]).append("\")");
+        }
+        return sb.append(")\n").toString();
+    }
+
+    @Test
+    public void testResultOrder() {
+        // the first names take the longest, so finish last
+        String[] names = {"a.200", "b.150", "c.100", "d.50", "e.0"};
+        new Echo().print(names);
+        assertEquals(expected(names), captured.toString());
+    }
+
+    @Test
+    public void testInlineErrors() {
+        new ClassInfoBatch() {
+            String render(String className) throws ClassNotFoundException {
+                if (className.equals("no.Such")) {
+                    throw new ClassNotFoundException(className);
+                } else if (className.equals("bad.Linkage")) {
+                    throw new NoClassDefFoundError("bad/Base");
+                } else if (className.equals("bad.Native")) {
+                    throw new UnsatisfiedLinkError("no lib");
+                } else if (className.equals("bad.Render")) {
+                    throw new IllegalStateException("say \"hi\"");
+                }
+                return "t";
+            }
+        }.print(new String[] {"no.Such", "ok.One", "bad.Linkage", "bad.Native", "bad.Render"});
+        assertEquals("(list \n(cons \"no.Such\" nil)"
+                     + "\n(cons \"ok.One\" t)"
+                     + "\n(cons \"bad.Linkage\" nil)"
+                     + "\n(cons \"bad.Native\" (list 'error \"Trying to load bad.Native caused"
+                     + " a Java UnsatisfiedLinkError: java.lang.UnsatisfiedLinkError: no lib\"))"
+                     + "\n(cons \"bad.Render\" (list 'error \"Trying to load bad.Render caused"
+                     + " a Java exception: java.lang.IllegalStateException: say \\\"hi\\\"\")))\n",
+                     captured.toString());
+    }
+
+    @Test
+    public void testMissingClassOfARealBatch() {
+        ClassInfo.getClassInfoBatch(new String[] {"java.lang.Runnable", "no.such.Clazz"});
+        String s = captured.toString();
+        assertTrue(s, s.startsWith("(list \n(cons \"java.lang.Runnable\" (list \"java.lang.Runnable\""));
+        assertTrue(s, s.endsWith("\n(cons \"no.such.Clazz\" nil))\n"));
+    }
+
+    @Test
+    public void testConcurrentBatchesShareThePool() throws Exception {
+        final int batches = 8;
+        final int perBatch = 12;
+        final Echo echo = new Echo();
+        final String[][] names = new String[batches][perBatch];
+        for (int b = 0; b < batches; b++) {
+            for (int i = 0; i < perBatch; i++) {
+                names[b][i] = "b" + b + "c" + i + "." + (i % 3) * 5;
+            }
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(batches);
+        for (int b = 0; b < batches; b++) {
+            final String[] batch = names[b];
+            Thread t = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            start.await();
+                            echo.print(batch);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            t.setDaemon(true);
+            t.start();
+        }
+        start.countDown();
+        assertTrue("batches did not finish", done.await(30, TimeUnit.SECONDS));
+
+        // each batch is written whole and in its own order
+        String out = captured.toString();
+        for (int b = 0; b < batches; b++) {
+            assertTrue(out, out.contains(expected(names[b])));
+        }
+        assertEquals(batches, out.split("\\(list ").length - 1);
+
+        // and every class was resolved on the fixed pool, never beyond it
+        int cores = Runtime.getRuntime().availableProcessors();
+        assertTrue(echo.workers.toString(), echo.workers.size() <= cores);
+        synchronized (echo) {
+            assertTrue(String.valueOf(echo.mostRunning), echo.mostRunning <= cores);
+        }
+        for (String worker : echo.workers) {
+            assertTrue(worker, worker.startsWith("jdee class info worker "));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *    ClassLoaderStatsTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the {@link DynamicClassLoader} counters of
+ * {@link ClassLoaderStats}.
+ */
+public class ClassLoaderStatsTest {
+
+    @Test
+    public void testCounters() throws Exception {
+        ClassLoaderStats stats = ClassLoaderStats.getInstance();
+        long created = stats.getLoadersCreated();
+        long platform = stats.getPlatformLoads();
+        long parent = stats.getParentLoads();
+
+        DynamicClassLoader dcl = new DynamicClassLoader();
+        dcl.loadClass("java.util.ArrayList");
+        try {
+            dcl.loadClass("no.such.Clazz");
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+
+        assertEquals(created + 1, stats.getLoadersCreated());
+        assertEquals(platform + 1, stats.getPlatformLoads());
+        assertEquals(parent + 1, stats.getParentLoads());
+        assertTrue(stats.getLiveLoaders() >= 1);
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        new DynamicClassLoader();
+        Object created = ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(new ObjectName("jde.util:type=ClassLoaderStats"), "LoadersCreated");
+        assertTrue(((Long) created).longValue() >= 1);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *    ClassMembersTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test the prefix and camel-case matching of {@link ClassMembers}.
+ */
+public class ClassMembersTest {
+
+    @Test
+    public void testPrefix() {
+        assertEquals(ClassMembers.EXACT, ClassMembers.match("size", "size"));
+        assertEquals(ClassMembers.PREFIX, ClassMembers.match("getAtt", "getAttribute"));
+        assertEquals(ClassMembers.PREFIX, ClassMembers.match("", "anything"));
+        assertEquals(ClassMembers.PREFIX_IGNORE_CASE, ClassMembers.match("getatt", "getAttribute"));
+        assertEquals(ClassMembers.NO_MATCH, ClassMembers.match("put", "getAttribute"));
+    }
+
+    @Test
+    public void testCamelCase() {
+        assertEquals(ClassMembers.CAMEL_CASE, ClassMembers.match("gAN", "getAttributeNames"));
+        assertEquals(ClassMembers.CAMEL_CASE, ClassMembers.match("getAtNa", "getAttributeNames"));
+        assertEquals(ClassMembers.CAMEL_CASE, ClassMembers.match("gN", "getAttributeNames"));
+        assertEquals(ClassMembers.NO_MATCH, ClassMembers.match("aN", "getAttributeNames"));
+        assertEquals(ClassMembers.NO_MATCH, ClassMembers.match("gNA", "getAttributeNames"));
+    }
+
+    @Test
+    public void testRanking() throws Exception {
+        ClassMembers members = MemberCache.get("java.lang.String", Completion.PUBLIC);
+        List<ClassMembers.Match> matches = members.match("eq");
+        assertEquals("equals", matches.get(0).member.getName());
+        for (int i = 1; i < matches.size(); i++) {
+            assertEquals(true, matches.get(i - 1).rank <= matches.get(i).rank);
+        }
+    }
+}
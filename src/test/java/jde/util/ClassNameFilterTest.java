@@ -0,0 +1,53 @@
+/*
+ *    ClassNameFilterTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the {@link ClassNameFilter} Bloom filter.
+ */
+public class ClassNameFilterTest {
+
+    @Test
+    public void testNoFalseNegativesAndFewFalsePositives() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            names.add("org.example.pkg" + (i % 37) + ".Class" + i + (i % 5 == 0 ? "$Inner" : ""));
+        }
+        ClassNameFilter filter = new ClassNameFilter(names);
+
+        for (String name : names) {
+            assertTrue(name, filter.mightContain(name));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("org.example.other.Missing" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 300);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *    ClassPathEntryTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+import jde.juci.Cancellation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Test that a {@link ClassPathEntry} keeps its classes for readers while
+ * it is reloaded.
+ */
+public class ClassPathEntryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCancelledReloadKeepsClasses() throws Exception {
+        File pkg = folder.newFolder("a", "b");
+        new File(pkg, "Foo.class").createNewFile();
+        ClassPathDir entry = new ClassPathDir(folder.getRoot());
+        assertEquals(Arrays.asList("a.b.Foo"), entry.getClassNames("Foo"));
+
+        new File(pkg, "Bar.class").createNewFile();
+        Cancellation cancelled = new Cancellation();
+        cancelled.cancel();
+        Cancellation.begin(cancelled);
+        try {
+            entry.reload();
+            fail("reload was not cancelled");
+        } catch (CancellationException e) {
+        } finally {
+            Cancellation.end();
+        }
+        assertEquals(Arrays.asList("a.b.Foo"), entry.getClassNames("Foo"));
+        assertEquals(0, entry.getClassNames("Bar").size());
+
+        entry.reload();
+        assertEquals(Arrays.asList("a.b.Bar"), entry.getClassNames("Bar"));
+        assertEquals(Arrays.asList("a.b.Foo"), entry.getClassNames("Foo"));
+    }
+}
+
+// End of ClassPathEntryTest.java
@@ -0,0 +1,134 @@
+/*
+ *    CompletionBenchmark.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Micro benchmark for {@link Completion#getClassInfo(String, int)} on the
+ * largest JDK classes.  Compares the old <code>lastIndexOf</code> based
+ * duplicate check against hashed member keys, then times the complete
+ * streamed listing.  Not a unit test; run it by hand with
+ *
+ * <pre>
+ *   mvn test-compile
+ *   java -cp target/classes:target/test-classes jde.util.CompletionBenchmark
+ * </pre>
+ */
+public class CompletionBenchmark {
+
+  private static final String[] CLASSES = {
+    "javax.swing.JComponent",
+    "javax.swing.JTable",
+    "javax.swing.text.JTextComponent",
+    "java.awt.Component",
+    "java.lang.String",
+    "java.util.concurrent.ConcurrentHashMap"
+  };
+
+  private static final int ROUNDS = 20;
+
+  /** A writer that throws away everything, so only formatting is timed. */
+  private static class NullWriter extends Writer {
+    public void write(char[] cbuf, int off, int len) {}
+    public void write(String str) {}
+    public void flush() {}
+    public void close() {}
+  }
+
+  private static String key(Method m) {
+    StringBuilder sb = new StringBuilder(100);
+    sb.append("(list \"").append(m.getName()).append("\" \"");
+    sb.append(Completion.className(m.getReturnType())).append("\" ");
+    sb.append(Completion.listClassArray(m.getParameterTypes()));
+    sb.append(" nil)");
+    return sb.toString();
+  }
+
+  private static long legacyDedupe(Class c) {
+    long start = System.nanoTime();
+    StringBuffer sb = new StringBuffer(3000);
+    for (Class k = c; k != null; k = k.getSuperclass()) {
+      Method[] methods = k.getDeclaredMethods();
+      for (int i = 0; i < methods.length; i++) {
+        String entry = key(methods[i]);
+        if (sb.toString().lastIndexOf(entry) == -1) {
+          sb.append(entry);
+        }
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long hashedDedupe(Class c) {
+    long start = System.nanoTime();
+    Set<String> entries = new HashSet<String>();
+    for (Class k = c; k != null; k = k.getSuperclass()) {
+      Method[] methods = k.getDeclaredMethods();
+      for (int i = 0; i < methods.length; i++) {
+        entries.add(key(methods[i]));
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long listing(Class c, int level) throws IOException {
+    long start = System.nanoTime();
+    Completion.listClassInfo(c, level, new NullWriter());
+    return System.nanoTime() - start;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String[] classes = args.length > 0 ? args : CLASSES;
+
+    System.out.println("class                                       legacy(us)  hashed(us)  speedup  listing(us)");
+    for (int i = 0; i < classes.length; i++) {
+      Class c = Class.forName(classes[i]);
+
+      // warm up
+      for (int r = 0; r < ROUNDS; r++) {
+        legacyDedupe(c);
+        hashedDedupe(c);
+        listing(c, Completion.PROTECTED);
+      }
+
+      long legacy = 0;
+      long hashed = 0;
+      long listing = 0;
+      for (int r = 0; r < ROUNDS; r++) {
+        legacy  += legacyDedupe(c);
+        hashed  += hashedDedupe(c);
+        listing += listing(c, Completion.PROTECTED);
+      }
+
+      System.out.println(String.format("%-42s %11d %11d %7.1fx %12d",
+                                       classes[i],
+                                       legacy / ROUNDS / 1000,
+                                       hashed / ROUNDS / 1000,
+                                       (double) legacy / hashed,
+                                       listing / ROUNDS / 1000));
+    }
+  }
+}
+
+// End of CompletionBenchmark.java
@@ -0,0 +1,123 @@
+/*
+ *    CompletionTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test the chained member type resolution of {@link Completion}.
+ */
+public class CompletionTest {
+
+    private static String resolve(String type, String... chain) throws Exception {
+        return Completion.resolveChain(type, chain, Completion.PUBLIC);
+    }
+
+    @Test
+    public void testOverloads() throws Exception {
+        // same arity, different return types: the least parameter types win
+        assertEquals("double", resolve("java.lang.Math", "abs/1"));
+        assertEquals("double", resolve("java.lang.Math", "max/2"));
+        assertEquals("java.lang.String", resolve("java.util.List<java.lang.String>", "remove/1"));
+        assertEquals("java.lang.Object", resolve("java.util.List", "remove/1"));
+        // arity tells overloads apart
+        assertEquals("int", resolve("java.lang.String", "indexOf/1"));
+        assertEquals("java.lang.String", resolve("java.lang.String", "substring/1"));
+        assertEquals("java.lang.String", resolve("java.lang.String", "substring/2"));
+        assertNull(resolve("java.lang.String", "substring/3"));
+    }
+
+    @Test
+    public void testCovariantOverrides() throws Exception {
+        // StringBuilder's append overrides return StringBuilder; the bridge
+        // methods returning AbstractStringBuilder are listed as well
+        assertEquals("java.lang.StringBuilder", resolve("java.lang.StringBuilder", "append/1"));
+        assertEquals("java.lang.StringBuilder",
+                     resolve("java.lang.StringBuilder", "append/1", "append/1", "reverse/0"));
+        assertEquals("java.lang.String", resolve("java.lang.StringBuilder", "append/1", "toString/0"));
+    }
+
+    @Test
+    public void testArrays() throws Exception {
+        assertEquals("int", resolve("java.lang.String[]", "length"));
+        assertEquals("java.lang.String[]", resolve("java.lang.String[]", "clone/0"));
+        assertEquals("java.lang.Class<?>", resolve("java.lang.String[]", "getClass/0"));
+        assertEquals("int", resolve("java.lang.String[][]", "clone/0", "length"));
+        assertEquals("char[]", resolve("java.lang.String", "toCharArray/0"));
+        assertEquals("int", resolve("java.lang.String", "toCharArray/0", "length"));
+        assertNull(resolve("java.lang.String[]", "size"));
+        assertNull(resolve("int[]", "foo/0"));
+    }
+
+    @Test
+    public void testUnknownMembers() throws Exception {
+        assertNull(resolve("java.lang.String", "noSuchMethod/0"));
+        assertNull(resolve("java.lang.String", "noSuchField"));
+        // a method is not a field, nor the other way round
+        assertNull(resolve("java.lang.String", "length"));
+        assertNull(resolve("java.lang.Integer", "MAX_VALUE/0"));
+        // the rest of the chain is not tried after a miss
+        assertNull(resolve("java.lang.String", "noSuchMethod/0", "length/0"));
+        // primitives and void cannot be dereferenced
+        assertNull(resolve("java.lang.String", "length/0", "toString/0"));
+        assertNull(resolve("java.io.PrintStream", "println/0", "toString/0"));
+    }
+
+    @Test
+    public void testMalformedArity() throws Exception {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+        try {
+            Completion.getChainInfo("java.lang.String", new String[] {"substring/x"}, 0);
+        } finally {
+            System.setOut(stdout);
+        }
+        assertEquals("(error \"Malformed member chain: For input string: \\\"x\\\"\")\n",
+                     captured.toString());
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testUnknownReceiver() throws Exception {
+        resolve("no.such.Clazz", "foo/0");
+    }
+
+    @Test
+    public void testStaticAndInstanceHops() throws Exception {
+        // static members of a type, then instance members of their values
+        assertEquals("int", resolve("java.lang.Integer", "MAX_VALUE"));
+        assertEquals("java.lang.Integer", resolve("java.lang.Integer", "valueOf/1"));
+        assertEquals("java.lang.String", resolve("java.lang.Integer", "valueOf/1", "toString/0"));
+        assertEquals("void", resolve("java.lang.System", "out", "println/1"));
+        // a method's own type variables are unknown, so erased
+        assertEquals("java.util.List", resolve("java.util.Collections", "emptyList/0"));
+        assertEquals("java.util.Set", resolve("java.util.Map", "entrySet/0"));
+        // static members are found through an instance too
+        assertEquals("java.lang.String", resolve("java.lang.Integer", "valueOf/1", "toString/1"));
+        assertEquals("java.io.PrintStream", resolve("java.lang.System", "out", "append/1"));
+    }
+}
+
+// End of CompletionTest.java
@@ -0,0 +1,92 @@
+/*
+ *    CreationCompletionBenchmark.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.Writer;
+
+/**
+ * Micro benchmark for {@link CreationCompletion} on the JDK and the test
+ * classpath.  Times the one-off build of the class name index, then the
+ * ranking of the classes matching each pattern and the complete answer
+ * after <code>new</code> once the members shown are cached.  Not a unit
+ * test; run it by hand with
+ *
+ * <pre>
+ *   mvn test-compile
+ *   java -cp target/classes:target/test-classes jde.util.CreationCompletionBenchmark
+ * </pre>
+ */
+public class CreationCompletionBenchmark {
+
+  private static final String[] PATTERNS = {
+    "S", "L", "Map", "HM", "List", "Conc", "BufferedR", "CHM"
+  };
+
+  private static final int LIMIT = 20;
+
+  private static final int ROUNDS = 50;
+
+  /** A writer that throws away everything, so only the answer is timed. */
+  private static class NullWriter extends Writer {
+    public void write(char[] cbuf, int off, int len) {}
+    public void write(String str) {}
+    public void flush() {}
+    public void close() {}
+  }
+
+  public static void main(String[] args) throws Exception {
+    String[] patterns = args.length > 0 ? args : PATTERNS;
+    ProjectClasses pc = new ProjectClasses(System.getProperty("java.class.path"));
+
+    long start = System.nanoTime();
+    ClassNameIndex index = pc.getNameIndex();
+    System.out.println(String.format("index of %d names built in %d ms",
+                                     index.size(),
+                                     (System.nanoTime() - start) / 1000000));
+
+    System.out.println("pattern        classes  rank(us)  answer(us)");
+    for (int i = 0; i < patterns.length; i++) {
+      // warm up, which also caches the members of the classes shown
+      for (int r = 0; r < ROUNDS; r++) {
+        CreationCompletion.rankClasses(pc, patterns[i]);
+        CreationCompletion.completeNew(pc, patterns[i], LIMIT, new NullWriter());
+      }
+      MemberCache.getQualified("java.lang.Object", Completion.PUBLIC);
+
+      int classes = 0;
+      long rank = 0;
+      long answer = 0;
+      for (int r = 0; r < ROUNDS; r++) {
+        long t = System.nanoTime();
+        classes = CreationCompletion.rankClasses(pc, patterns[i]).size();
+        rank += System.nanoTime() - t;
+        t = System.nanoTime();
+        CreationCompletion.completeNew(pc, patterns[i], LIMIT, new NullWriter());
+        answer += System.nanoTime() - t;
+      }
+
+      System.out.println(String.format("%-14s %7d %9d %11d",
+                                       patterns[i], classes,
+                                       rank / ROUNDS / 1000,
+                                       answer / ROUNDS / 1000));
+    }
+  }
+}
+
+// End of CreationCompletionBenchmark.java
@@ -0,0 +1,108 @@
+/*
+ *    CreationCompletionTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the class name index and the answers of {@link CreationCompletion}.
+ */
+public class CreationCompletionTest {
+
+    @Test
+    public void testIndexMatch() {
+        Map<String, List<String>> names = new HashMap<>();
+        String[] unqualified = {
+            "HashMap", "ConcurrentHashMap", "ConcurrentMap", "Concurrent",
+            "concurrentList", "Collections", "CharSequence"
+        };
+        for (int i = 0; i < unqualified.length; i++) {
+            names.put(unqualified[i], Arrays.asList("p." + unqualified[i]));
+        }
+        names.put("ConcurrentMap", Arrays.asList("p.ConcurrentMap", "q.ConcurrentMap"));
+        ClassNameIndex index = new ClassNameIndex(names);
+        List<ClassNameIndex.Match> matches = index.match("Concurrent");
+        assertEquals("Concurrent", matches.get(0).name);
+        assertEquals(ClassMembers.EXACT, matches.get(0).rank);
+        assertEquals(Arrays.asList("p.Concurrent"), matches.get(0).classNames);
+        assertEquals("ConcurrentMap", matches.get(1).name);
+        assertEquals(Arrays.asList("p.ConcurrentMap", "q.ConcurrentMap"), matches.get(1).classNames);
+        assertEquals("ConcurrentHashMap", matches.get(2).name);
+        assertEquals("concurrentList", matches.get(3).name);
+        assertEquals(ClassMembers.PREFIX_IGNORE_CASE, matches.get(3).rank);
+        assertEquals(4, matches.size());
+
+        matches = index.match("CHM");
+        assertEquals(1, matches.size());
+        assertEquals("ConcurrentHashMap", matches.get(0).name);
+        assertEquals(ClassMembers.CAMEL_CASE, matches.get(0).rank);
+
+        assertEquals(0, index.match("Z").size());
+    }
+
+    @Test
+    public void testRankClassesAgreesWithClassNames() throws Exception {
+        ProjectClasses pc = new ProjectClasses(System.getProperty("java.class.path"));
+        List<String> ranked = CreationCompletion.rankClasses(pc, "Li");
+        assertEquals(pc.getClassNames("List"),
+                     ranked.subList(0, pc.getClassNames("List").size()));
+        assertTrue(ranked.contains("java.util.LinkedList"));
+    }
+
+    @Test
+    public void testCompleteNew() throws Exception {
+        ProjectClasses pc = new ProjectClasses(System.getProperty("java.class.path"));
+        StringWriter out = new StringWriter();
+        CreationCompletion.completeNew(pc, "MultiVal", 0, out);
+        assertTrue(out.toString(), out.toString().startsWith(
+            "(list 1 (list \n(list 'class \"jde.util.MultiValueMap\")"
+            + "\n(list 'constructor \"jde.util.MultiValueMap\"  nil)"));
+    }
+
+    @Test
+    public void testCompleteStatic() throws Exception {
+        ProjectClasses pc = new ProjectClasses(System.getProperty("java.class.path"));
+        StringWriter out = new StringWriter();
+        CreationCompletion.completeStatic(pc, "java.lang.Integer", "valueO", 0, out);
+        String s = out.toString();
+        assertTrue(s, s.startsWith("(list 3 (list \n(list 'factory \"java.lang.Integer\" \"valueOf\""));
+
+        out = new StringWriter();
+        CreationCompletion.completeStatic(pc, "java.util.Collections", "emptyL", 1, out);
+        assertEquals("(list 2 (list \n(list 'method \"emptyList\" \"java.util.List\"  nil)))",
+                     out.toString());
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testCompleteStaticUnknownClass() throws Exception {
+        ProjectClasses pc = new ProjectClasses(System.getProperty("java.class.path"));
+        CreationCompletion.completeStatic(pc, "NoSuchClassAnywhere", "", 0, new StringWriter());
+    }
+}
+
+// End of CreationCompletionTest.java
@@ -0,0 +1,114 @@
+/*
+ *    GenericTypesTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test {@link GenericTypes} and generic chained type resolution.
+ */
+public class GenericTypesTest {
+
+    private static final String MAP =
+        "java.util.Map<java.lang.String,java.util.List<java.lang.Integer>>";
+
+    @Test
+    public void testRender() throws Exception {
+        Map<java.lang.reflect.TypeVariable<?>, String> none = new HashMap<>();
+        assertEquals("java.util.Set<java.util.Map$Entry<K,V>>",
+                     GenericTypes.render(java.util.Map.class.getMethod("entrySet")
+                                         .getGenericReturnType(), none));
+        assertEquals("java.util.Collection<? extends E>",
+                     GenericTypes.render(java.util.List.class.getMethod("addAll", java.util.Collection.class)
+                                         .getGenericParameterTypes()[0], none));
+    }
+
+    @Test
+    public void testSupertypeBindings() throws Exception {
+        Map<java.lang.reflect.TypeVariable<?>, String> bindings =
+            GenericTypes.supertypeBindings(java.util.Properties.class);
+        assertEquals("java.lang.Object",
+                     bindings.get(java.util.Hashtable.class.getTypeParameters()[0]));
+        assertEquals("java.util.Iterator<E>",
+                     GenericTypes.render(java.util.Collection.class.getMethod("iterator")
+                                         .getGenericReturnType(),
+                                         GenericTypes.supertypeBindings(java.util.ArrayList.class)));
+    }
+
+    @Test
+    public void testStrings() {
+        assertEquals("java.util.Map", GenericTypes.raw(MAP));
+        assertEquals("java.util.List[]", GenericTypes.raw("java.util.List<E>[]"));
+        assertArrayEquals(new String[] {"java.lang.String", "java.util.List<java.lang.Integer>"},
+                          GenericTypes.arguments(MAP));
+        assertEquals(0, GenericTypes.arguments("java.util.List<E>[]").length);
+
+        Map<String, String> bindings = new HashMap<>();
+        bindings.put("K", "java.lang.String");
+        bindings.put("V", "a.V");
+        assertEquals("java.util.Map$Entry<java.lang.String,a.V>",
+                     GenericTypes.substitute("java.util.Map$Entry<K,V>", bindings));
+        assertTrue(GenericTypes.isVariable("T[]"));
+        assertFalse(GenericTypes.isVariable("int[]"));
+        assertFalse(GenericTypes.isVariable("java.util.List<T>"));
+        assertTrue(GenericTypes.hasVariable("java.util.List<T>"));
+        assertTrue(GenericTypes.hasVariable("java.util.Map<java.lang.String,? extends V[]>"));
+        assertFalse(GenericTypes.hasVariable("java.util.Map<java.lang.String,? super int[]>"));
+        assertFalse(GenericTypes.hasVariable("java.lang.Class<?>"));
+    }
+
+    @Test
+    public void testResolveChain() throws Exception {
+        assertEquals("java.lang.Integer",
+                     Completion.resolveChain(MAP, new String[] {"get/1", "get/1"}, Completion.PUBLIC));
+        assertEquals("java.util.List<java.lang.Integer>",
+                     Completion.resolveChain(MAP, new String[] {"entrySet/0", "iterator/0",
+                                                                "next/0", "getValue/0"},
+                                             Completion.PUBLIC));
+        assertEquals("java.lang.String",
+                     Completion.resolveChain("java.util.ArrayList<java.lang.String>",
+                                             new String[] {"iterator/0", "next/0"},
+                                             Completion.PUBLIC));
+        // Raw receivers and unknown arguments erase
+        assertEquals("java.lang.Object",
+                     Completion.resolveChain("java.util.List", new String[] {"get/1"},
+                                             Completion.PUBLIC));
+        assertEquals("java.lang.Object",
+                     Completion.resolveChain("java.util.List<? super a.Foo>",
+                                             new String[] {"get/1"}, Completion.PUBLIC));
+        assertEquals("java.lang.String",
+                     Completion.resolveChain("java.util.List<? extends java.lang.String>",
+                                             new String[] {"get/1"}, Completion.PUBLIC));
+        assertEquals(Arrays.asList("int"),
+                     Arrays.asList(Completion.resolveChain("java.lang.String[]",
+                                                           new String[] {"length"},
+                                                           Completion.PUBLIC)));
+    }
+}
+
+// End of GenericTypesTest.java
@@ -0,0 +1,94 @@
+/*
+ *    LispEncoderTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the type table and chunked output of {@link LispEncoder}.
+ */
+public class LispEncoderTest {
+
+    @Test
+    public void testPlainTypeNames() {
+        LispEncoder out = new LispEncoder(null, false);
+        out.write("(list ").typeName("int").write(' ').typeName("int").write(')');
+        assertEquals("(list \"int\" \"int\")", out.toString());
+    }
+
+    @Test
+    public void testTypeTableLabelsRepeats() {
+        LispEncoder out = new LispEncoder(null, true);
+        out.write("(list ")
+            .typeName("java.lang.String").write(' ')
+            .typeName("int").write(' ')
+            .typeName("java.lang.String").write(' ')
+            .name("java.lang.String").write(' ')
+            .typeName("int").write(')');
+        assertEquals("(list #1=\"java.lang.String\" #2=\"int\" #1# \"java.lang.String\" #2#)",
+                     out.toString());
+    }
+
+    @Test
+    public void testLabelsArePerResponse() {
+        LispEncoder first = new LispEncoder(null, true);
+        first.typeName("long");
+        LispEncoder second = new LispEncoder(null, true);
+        second.typeName("int");
+        assertEquals("#1=\"int\"", second.toString());
+    }
+
+    @Test
+    public void testDrainsInChunks() throws IOException {
+        final int[] writes = new int[1];
+        StringWriter sink = new StringWriter() {
+                public void write(char[] cbuf, int off, int len) {
+                    writes[0]++;
+                    super.write(cbuf, off, len);
+                }
+            };
+        LispEncoder out = new LispEncoder(sink, false);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 3 * LispEncoder.CHUNK / 10; i++) {
+            out.name("name" + i);
+            expected.append("\"name").append(i).append('"');
+        }
+        assertTrue(writes[0] >= 2);
+        out.flush();
+        assertEquals(expected.toString(), sink.toString());
+    }
+
+    @Test
+    public void testClassInfoTypeTableReadsBack() {
+        LispEncoder plain = new LispEncoder(null, false);
+        LispEncoder labelled = new LispEncoder(null, true);
+        ClassInfo.listClasses(new Class[] {String.class, int[].class, String.class}, plain);
+        ClassInfo.listClasses(new Class[] {String.class, int[].class, String.class}, labelled);
+        assertEquals("(list  \"java.lang.String\" \"int[]\" \"java.lang.String\")", plain.toString());
+        assertEquals("(list  #1=\"java.lang.String\" #2=\"int[]\" #1#)", labelled.toString());
+    }
+}
+
+// End of LispEncoderTest.java
@@ -0,0 +1,178 @@
+/*
+ *    MemberStoreTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test persistence, invalidation and compaction of {@link MemberStore}.
+ */
+public class MemberStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ClassMembers list(Class c) {
+        return Completion.listMembers(c, Completion.PUBLIC, 0,
+                                      Collections.<String, File>emptyMap());
+    }
+
+    private static void assertSameMembers(ClassMembers expected, ClassMembers actual) {
+        assertEquals(expected.getClassName(), actual.getClassName());
+        assertEquals(expected.getLevel(), actual.getLevel());
+        assertEquals(expected.getFields(), actual.getFields());
+        assertEquals(expected.getConstructors(), actual.getConstructors());
+        assertEquals(expected.getMethods(), actual.getMethods());
+        assertEquals(expected.getInnerClasses(), actual.getInnerClasses());
+    }
+
+    @Test
+    public void testSurvivesReopen() throws Exception {
+        File file = new File(folder.getRoot(), "members.dat");
+        MemberStore store = new MemberStore(file, MemberStore.COMPACT_MIN);
+        assertNull(store.get("java.util.HashMap", Completion.PUBLIC, 0));
+        store.put(list(java.util.HashMap.class), Collections.<String, File>emptyMap());
+        store.put(list(java.util.Map.Entry.class), Collections.<String, File>emptyMap());
+
+        MemberStore reopened = new MemberStore(file, MemberStore.COMPACT_MIN);
+        assertEquals(2, reopened.size());
+        ClassMembers members = reopened.get("java.util.HashMap", Completion.PUBLIC, 7);
+        assertNotNull(members);
+        assertSameMembers(list(java.util.HashMap.class), members);
+        assertTrue(members.isCurrent(7));
+        assertSameMembers(list(java.util.Map.Entry.class),
+                          reopened.get("java.util.Map$Entry", Completion.PUBLIC, 7));
+    }
+
+    @Test
+    public void testChangedSourceInvalidates() throws Exception {
+        File source = folder.newFile("Base.class");
+        Map<String, File> sources = new HashMap<>();
+        sources.put("a.Base", source);
+
+        File file = new File(folder.getRoot(), "members.dat");
+        MemberStore store = new MemberStore(file, MemberStore.COMPACT_MIN);
+        store.put(list(java.util.ArrayList.class), sources);
+        assertNotNull(new MemberStore(file, MemberStore.COMPACT_MIN)
+                      .get("java.util.ArrayList", Completion.PUBLIC, 0));
+
+        try (FileOutputStream out = new FileOutputStream(source)) {
+            out.write(new byte[] {(byte) 0xca, (byte) 0xfe});
+        }
+        MemberStore reopened = new MemberStore(file, MemberStore.COMPACT_MIN);
+        assertNull(reopened.get("java.util.ArrayList", Completion.PUBLIC, 0));
+        assertEquals(0, reopened.size());
+        assertTrue(reopened.getGarbage() > 0);
+    }
+
+    @Test
+    public void testTruncatedRecordIsDropped() throws Exception {
+        File file = new File(folder.getRoot(), "members.dat");
+        MemberStore store = new MemberStore(file, MemberStore.COMPACT_MIN);
+        store.put(list(java.util.HashMap.class), Collections.<String, File>emptyMap());
+        long good = file.length();
+        store.put(list(java.util.TreeMap.class), Collections.<String, File>emptyMap());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 10);
+        }
+
+        MemberStore reopened = new MemberStore(file, MemberStore.COMPACT_MIN);
+        assertEquals(1, reopened.size());
+        assertEquals(good, file.length());
+        assertNull(reopened.get("java.util.TreeMap", Completion.PUBLIC, 0));
+        reopened.put(list(java.util.TreeMap.class), Collections.<String, File>emptyMap());
+        assertEquals(2, new MemberStore(file, MemberStore.COMPACT_MIN).size());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        File file = new File(folder.getRoot(), "members.dat");
+        MemberStore store = new MemberStore(file, Long.MAX_VALUE);
+        for (int i = 0; i < 5; i++) {
+            store.put(list(java.util.HashMap.class), Collections.<String, File>emptyMap());
+        }
+        store.put(list(java.util.TreeMap.class), Collections.<String, File>emptyMap());
+        long before = file.length();
+        assertTrue(store.getGarbage() > 0);
+
+        store.compact();
+        assertEquals(0, store.getGarbage());
+        assertTrue(file.length() < before);
+        assertSameMembers(list(java.util.HashMap.class),
+                          store.get("java.util.HashMap", Completion.PUBLIC, 0));
+
+        MemberStore reopened = new MemberStore(file, MemberStore.COMPACT_MIN);
+        assertEquals(2, reopened.size());
+        assertEquals(0, reopened.getGarbage());
+        assertSameMembers(list(java.util.TreeMap.class),
+                          reopened.get("java.util.TreeMap", Completion.PUBLIC, 0));
+    }
+    @Test
+    public void testSharedBetweenStores() throws Exception {
+        File file = new File(folder.getRoot(), "members.dat");
+        MemberStore first = new MemberStore(file, Long.MAX_VALUE);
+        MemberStore second = new MemberStore(file, Long.MAX_VALUE);
+        first.put(list(java.util.HashMap.class), Collections.<String, File>emptyMap());
+        assertEquals(1, second.size());
+        second.put(list(java.util.TreeMap.class), Collections.<String, File>emptyMap());
+        assertSameMembers(list(java.util.TreeMap.class),
+                          first.get("java.util.TreeMap", Completion.PUBLIC, 0));
+
+        // the second store goes on to the compacted file
+        first.put(list(java.util.HashMap.class), Collections.<String, File>emptyMap());
+        assertTrue(first.getGarbage() > 0);
+        first.compact();
+        assertEquals(0, first.getGarbage());
+        assertEquals(2, second.size());
+        second.put(list(java.util.Map.Entry.class), Collections.<String, File>emptyMap());
+        assertSameMembers(list(java.util.Map.Entry.class),
+                          first.get("java.util.Map$Entry", Completion.PUBLIC, 0));
+        assertEquals(3, new MemberStore(file, MemberStore.COMPACT_MIN).size());
+    }
+
+    @Test
+    public void testOldFormatIsReplaced() throws Exception {
+        File file = new File(folder.getRoot(), "members.dat");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(0x4A44454D);
+            raf.writeInt(2);
+            raf.writeInt(12345);
+        }
+        MemberStore store = new MemberStore(file, MemberStore.COMPACT_MIN);
+        assertEquals(0, store.size());
+        store.put(list(java.util.HashMap.class), Collections.<String, File>emptyMap());
+        assertEquals(1, new MemberStore(file, MemberStore.COMPACT_MIN).size());
+    }
+}
+
+// End of MemberStoreTest.java
@@ -0,0 +1,80 @@
+/*
+ *    PlatformPackagesTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test how {@link PlatformPackages} routes classes to the platform.
+ */
+public class PlatformPackagesTest {
+
+    @Test
+    public void testPrefixRule() {
+        assertTrue(PlatformPackages.hasPlatformPrefix("java.util.List"));
+        assertTrue(PlatformPackages.hasPlatformPrefix("javax.swing.JButton"));
+        assertTrue(PlatformPackages.hasPlatformPrefix("javax.servlet.Servlet"));
+        assertFalse(PlatformPackages.hasPlatformPrefix("jdk.internal.misc.Unsafe"));
+        assertFalse(PlatformPackages.hasPlatformPrefix("sun.misc.Unsafe"));
+        assertFalse(PlatformPackages.hasPlatformPrefix("javafoo.Bar"));
+        assertFalse(PlatformPackages.hasPlatformPrefix("jde.util.ClassInfo"));
+        assertFalse(PlatformPackages.hasPlatformPrefix("Foo"));
+    }
+
+    @Test
+    public void testModuleRouting() {
+        Assume.assumeTrue(PlatformPackages.isModular());
+        assertTrue(PlatformPackages.isPlatformClass("java.util.List"));
+        assertTrue(PlatformPackages.isPlatformClass("javax.swing.JButton"));
+        assertTrue(PlatformPackages.isPlatformClass("sun.misc.Unsafe"));
+        assertTrue(PlatformPackages.isPlatformClass("jdk.internal.misc.Unsafe"));
+        // javax packages that are not in the JDK come from the classpath
+        assertFalse(PlatformPackages.isPlatformClass("javax.servlet.Servlet"));
+        assertFalse(PlatformPackages.isPlatformClass("jde.util.ClassInfo"));
+        assertFalse(PlatformPackages.isPlatformClass("Foo"));
+
+        assertEquals("java.base", PlatformPackages.moduleOf("java.util.List"));
+        assertEquals("jdk.unsupported", PlatformPackages.moduleOf("sun.misc.Unsafe"));
+        assertNull(PlatformPackages.moduleOf("jde.util.ClassInfo"));
+    }
+
+    @Test
+    public void testLoadFromModule() throws Exception {
+        Assume.assumeTrue(PlatformPackages.isModular());
+        assertNull(PlatformPackages.load("java.lang.String").getClassLoader());
+        // java.sql is defined to the platform class loader, not boot
+        Class<?> connection = PlatformPackages.load("java.sql.Connection");
+        assertNotNull(connection.getClassLoader());
+        assertSame(Class.forName("java.sql.Connection"), connection);
+        assertSame(connection, new DynamicClassLoader().loadClass("java.sql.Connection"));
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testMissingPlatformClass() throws Exception {
+        PlatformPackages.load("java.util.NoSuchThing");
+    }
+}
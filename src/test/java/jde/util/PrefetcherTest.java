@@ -0,0 +1,70 @@
+/*
+ *    PrefetcherTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import jde.parser.ParserMain;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Test import parsing and prefetching by {@link Prefetcher}.
+ */
+public class PrefetcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGetImports() throws Exception {
+        File file = folder.newFile("Foo.java");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(("package a.b;\n"
+                       + "import java.util.ArrayList;\n"
+                       + "import static java.util.Collections.emptyList;\n"
+                       + "import java.util.concurrent.*;\n"
+                       + "import java.util.Map.Entry;\n"
+                       + "public class Foo<T> { java.util.List<T> list = emptyList(); }\n")
+                      .getBytes("UTF-8"));
+        }
+        assertEquals(Arrays.asList("java.util.ArrayList", "java.util.Collections",
+                                   "java.util.concurrent.*", "java.util.Map.Entry"),
+                     ParserMain.getImports(file.getPath()));
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        MemberCache.clear();
+        assertEquals(2, Prefetcher.queue(new String[] {
+                    "java.util.LinkedList", "java.util.*", "java.util.Map.Entry"
+                }));
+        Prefetcher.drain();
+        assertNotNull(MemberCache.getIfCurrent("java.util.LinkedList", Completion.PUBLIC));
+        assertNotNull(MemberCache.getIfCurrent("java.util.Map$Entry", Completion.PUBLIC));
+        assertEquals(0, Prefetcher.queue(new String[] {"java.util.LinkedList"}));
+    }
+}
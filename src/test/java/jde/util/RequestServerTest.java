@@ -0,0 +1,372 @@
+/*
+ *    RequestServerTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import bsh.Interpreter;
+import jde.juci.EndpointStats;
+import jde.juci.SessionOutput;
+import jde.juci.SocketTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test that {@link RequestServer} answers dispatched requests as
+ * BeanShell would.
+ */
+public class RequestServerTest {
+
+    private PrintStream stdout;
+    private ByteArrayOutputStream captured;
+    private RequestServer server;
+
+    @Before
+    public void setUp() {
+        stdout = System.out;
+        captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+        server = new RequestServer(RequestServer.hotEndpoints(), new Interpreter());
+    }
+
+    @After
+    public void tearDown() {
+        SessionOutput.setTarget(null);
+        System.setOut(stdout);
+    }
+
+    // The frames of each response in s, concatenated
+    private static String[] unframe(byte[] s) throws Exception {
+        java.util.List<String> responses = new java.util.ArrayList<>();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        int frames = 0;
+        for (int i = 0; i < s.length;) {
+            int len = Integer.parseInt(new String(s, i, 6, "US-ASCII"), 16);
+            i += 6;
+            if (len == 0) {
+                responses.add(frames + ":" + response.toString("UTF-8"));
+                response.reset();
+                frames = 0;
+            } else {
+                assertTrue(len <= jde.juci.FramedOutputStream.MAX_FRAME);
+                response.write(s, i, len);
+                i += len;
+                frames++;
+            }
+        }
+        return responses.toArray(new String[responses.size()]);
+    }
+
+    private String answer(String request) {
+        captured.reset();
+        server.handle(request);
+        return captured.toString();
+    }
+
+    @Test
+    public void testSameAnswerAsBeanShell() {
+        String[][] requests = {
+            {"(jde.util.Completion.getClassInfo \"java.util.Map$Entry\" 0)",
+             "jde.util.Completion.getClassInfo(\"java.util.Map$Entry\", 0);"},
+            {"(jde.util.Completion.getChainInfo \"java.lang.String\" '(\"trim/0\") 0)",
+             "jde.util.Completion.getChainInfo(\"java.lang.String\", new String[] {\"trim/0\"}, 0);"},
+            {"(jde.util.Completion.isAncestorOf \"java.util.List\" \"java.util.ArrayList\")",
+             "jde.util.Completion.isAncestorOf(\"java.util.List\", \"java.util.ArrayList\");"},
+        };
+        for (int i = 0; i < requests.length; i++) {
+            String dispatched = answer(requests[i][0]);
+            assertTrue(dispatched, dispatched.length() > 0);
+            assertEquals(answer(requests[i][1]), dispatched);
+        }
+    }
+
+    @Test
+    public void testBadArguments() {
+        assertEquals("(error \"java.lang.IllegalArgumentException: Not a list of strings: x\")\n",
+                     answer("(jde.util.Completion.getClassInfo \"java.lang.String\" x)"));
+        assertEquals("(error \"java.lang.IllegalArgumentException: Wrong number of arguments: 0\")\n",
+                     answer("(jde.util.JdeUtilities.getQualifiedName)"));
+    }
+
+    @Test
+    public void testErrorTextIsEscaped() {
+        assertEquals("(error \"java.lang.IllegalArgumentException: Not a list of strings:"
+                     + " say \\\"hi\\\"\\nback\\\\slash\\ttab\")\n",
+                     answer("(jde.util.Completion.getClassInfo \"java.lang.String\""
+                            + " \"say \\\"hi\\\"\\nback\\\\slash\\ttab\")"));
+    }
+
+    @Test
+    public void testEndpointStats() {
+        EndpointStats isAncestorOf = EndpointStats.forEndpoint("jde.util.Completion.isAncestorOf");
+        long calls = isAncestorOf.getCalls();
+        long errors = isAncestorOf.getErrors();
+        answer("(jde.util.Completion.isAncestorOf \"java.util.List\" \"java.util.ArrayList\")");
+        answer("jde.util.Completion.isAncestorOf(\"java.util.List\", \"java.util.ArrayList\");");
+        answer("(jde.util.Completion.isAncestorOf)");
+        assertEquals(calls + 3, isAncestorOf.getCalls());
+        assertEquals(errors + 1, isAncestorOf.getErrors());
+
+        String stats = answer("(jde.util.JdeUtilities.getEndpointStats)");
+        assertTrue(stats, stats.startsWith("(list "));
+        assertTrue(stats, stats.contains("(cons \"jde.util.Completion.isAncestorOf\" (list (cons 'calls "));
+
+        assertEquals("jde.util.Completion.getClassInfo",
+                     RequestServer.endpointName(" jde.util.Completion.getClassInfo(\"x\", 0);"));
+        assertEquals("bsh", RequestServer.endpointName("x = 1;"));
+    }
+
+    @Test
+    public void testUnknownEndpointsCountAsBsh() {
+        EndpointStats bsh = EndpointStats.forEndpoint("bsh");
+        long calls = bsh.getCalls();
+        answer("java.lang.Math.abs(-1);");
+        answer("java.lang.Math.max(1, 2);");
+        assertEquals(calls + 2, bsh.getCalls());
+
+        String stats = answer("(jde.util.JdeUtilities.getEndpointStats)");
+        assertFalse(stats, stats.contains("java.lang.Math"));
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        captured.reset();
+        server.run(new BufferedReader(new StringReader(
+            "(jde.util.Completion.isAncestorOf \"java.util.List\" \"java.util.ArrayList\")\n"
+            + "print(\"hi\");\n")));
+        assertEquals("bsh % t\nbsh % hi\nbsh % ", captured.toString());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        captured.reset();
+        server.run(new BufferedReader(new StringReader(
+            "while (true) { Thread.sleep(5); jde.juci.Cancellation.checkpoint(); }\n"
+            + "(jde.util.RequestServer.cancel)\n"
+            + "(jde.util.Completion.isAncestorOf \"java.util.List\" \"java.util.ArrayList\")\n")));
+        assertEquals("bsh % bsh % t\nbsh % ", captured.toString());
+    }
+
+    @Test
+    public void testSocketSessions() throws Exception {
+        SessionOutput.install();
+        final SocketTransport transport = new SocketTransport(0, RequestServer.sessions());
+        transport.start();
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] answers = new Future<?>[8];
+            for (int i = 0; i < answers.length; i++) {
+                final int n = i;
+                answers[i] = clients.submit(new Callable<String>() {
+                        public String call() throws Exception {
+                            try (Socket s = new Socket(InetAddress.getLoopbackAddress(), transport.getPort())) {
+                                PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+                                out.println("x = " + n + ";");
+                                out.println("(jde.util.Completion.isAncestorOf \"java.util.List\" \"java.util.ArrayList\")");
+                                out.println("print(x);");
+                                out.println("(jde.util.JdeUtilities.exit)");
+                                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+                                StringBuilder sb = new StringBuilder();
+                                for (int c = in.read(); c != -1; c = in.read()) {
+                                    sb.append((char) c);
+                                }
+                                return sb.toString();
+                            }
+                        }
+                    });
+            }
+            for (int i = 0; i < answers.length; i++) {
+                assertEquals("bsh % bsh % t\nbsh % " + i + "\nbsh % ", answers[i].get());
+            }
+        } finally {
+            clients.shutdown();
+            transport.close();
+        }
+    }
+
+    @Test
+    public void testSessionsKeepTheirOwnProject() throws Exception {
+        File home = new File("target/test-jdee");
+        System.setProperty("jde.members.dir", new File(home, "members").getPath());
+        System.setProperty("jde.index.dir", new File(home, "index").getPath());
+        System.setProperty("jde.usage.dir", new File(home, "usage").getPath());
+        String classPath = System.getProperty("java.class.path");
+
+        SessionOutput.install();
+        SocketTransport transport = new SocketTransport(0, RequestServer.sessions());
+        transport.start();
+        try (Socket a = new Socket(InetAddress.getLoopbackAddress(), transport.getPort());
+             Socket b = new Socket(InetAddress.getLoopbackAddress(), transport.getPort())) {
+            PrintWriter aOut = new PrintWriter(a.getOutputStream(), true);
+            BufferedReader aIn = new BufferedReader(new InputStreamReader(a.getInputStream()));
+            PrintWriter bOut = new PrintWriter(b.getOutputStream(), true);
+            BufferedReader bIn = new BufferedReader(new InputStreamReader(b.getInputStream()));
+            assertEquals("", untilPrompt(aIn));
+            assertEquals("", untilPrompt(bIn));
+
+            aOut.println("(jde.util.JdeUtilities.setProjectValues \"a\" \"" + classPath + "\")");
+            assertEquals("", untilPrompt(aIn));
+            bOut.println("(jde.util.JdeUtilities.setProjectValues \"b\" \"" + classPath + "\")");
+            assertEquals("", untilPrompt(bIn));
+            bOut.println("jde.util.ClassInfo.setTypeTable(true);");
+            assertEquals("t\n", untilPrompt(bIn));
+
+            aOut.println("print(jde.util.JdeUtilities.getCurrentProjectName());");
+            assertEquals("a\n", untilPrompt(aIn));
+            aOut.println("jde.util.ClassInfo.getClassInfo(\"java.lang.String\");");
+            String info = untilPrompt(aIn);
+            assertTrue(info, info.startsWith("(list") && !info.contains("#1="));
+            bOut.println("jde.util.ClassInfo.getClassInfo(\"java.lang.String\");");
+            info = untilPrompt(bIn);
+            assertTrue(info, info.contains("#1="));
+            bOut.println("print(jde.util.JdeUtilities.getCurrentProjectName());");
+            assertEquals("b\n", untilPrompt(bIn));
+
+            // ends b's session, not the server
+            bOut.println("jde.util.JdeUtilities.exit();");
+            assertEquals(-1, bIn.read());
+            aOut.println("print(jde.util.JdeUtilities.getCurrentProjectName());");
+            assertEquals("a\n", untilPrompt(aIn));
+        } finally {
+            transport.close();
+        }
+        assertEquals("default", JdeUtilities.getCurrentProjectName());
+    }
+
+    @Test
+    public void testSharedLookupsKeepTheirOwnOutput() throws Exception {
+        File home = new File("target/test-jdee");
+        System.setProperty("jde.members.dir", new File(home, "members").getPath());
+        System.setProperty("jde.index.dir", new File(home, "index").getPath());
+        System.setProperty("jde.usage.dir", new File(home, "usage").getPath());
+        String classPath = System.getProperty("java.class.path");
+
+        SessionState plain = new SessionState(true);
+        SessionState table = new SessionState(true);
+        table.setTypeTable(true);
+        assertFalse(plain.getOutputScope().equals(table.getOutputScope()));
+
+        SessionOutput.install();
+        SocketTransport transport = new SocketTransport(0, RequestServer.sessions());
+        transport.start();
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try (Socket a = new Socket(InetAddress.getLoopbackAddress(), transport.getPort());
+             Socket b = new Socket(InetAddress.getLoopbackAddress(), transport.getPort())) {
+            final PrintWriter aOut = new PrintWriter(a.getOutputStream(), true);
+            final BufferedReader aIn = new BufferedReader(new InputStreamReader(a.getInputStream()));
+            final PrintWriter bOut = new PrintWriter(b.getOutputStream(), true);
+            final BufferedReader bIn = new BufferedReader(new InputStreamReader(b.getInputStream()));
+            assertEquals("", untilPrompt(aIn));
+            assertEquals("", untilPrompt(bIn));
+
+            aOut.println("(jde.util.JdeUtilities.setProjectValues \"shared\" \"" + classPath + "\")");
+            assertEquals("", untilPrompt(aIn));
+            bOut.println("(jde.util.JdeUtilities.setProjectValues \"shared\" \"" + classPath + "\")");
+            assertEquals("", untilPrompt(bIn));
+            bOut.println("jde.util.ClassInfo.setTypeTable(true);");
+            assertEquals("t\n", untilPrompt(bIn));
+
+            // the same lookup from both sessions at once, so that a shared
+            // scope would hand one session the other's answer
+            final String request = "(jde.util.ClassInfo.getClassInfo \"javax.swing.JTable\")";
+            for (int round = 0; round < 10; round++) {
+                Future<String> aInfo = clients.submit(new Callable<String>() {
+                        public String call() throws Exception {
+                            aOut.println(request);
+                            return untilPrompt(aIn);
+                        }
+                    });
+                Future<String> bInfo = clients.submit(new Callable<String>() {
+                        public String call() throws Exception {
+                            bOut.println(request);
+                            return untilPrompt(bIn);
+                        }
+                    });
+                String info = aInfo.get();
+                assertTrue(info, info.startsWith("(list") && !info.contains("#1="));
+                info = bInfo.get();
+                assertTrue(info, info.contains("#1="));
+            }
+        } finally {
+            clients.shutdown();
+            transport.close();
+        }
+    }
+
+    // Reads a response up to the prompt that ends it
+    private static String untilPrompt(BufferedReader in) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        while (!sb.toString().endsWith(RequestServer.PROMPT)) {
+            int c = in.read();
+            if (c == -1) {
+                throw new java.io.EOFException(sb.toString());
+            }
+            sb.append((char) c);
+        }
+        return sb.substring(0, sb.length() - RequestServer.PROMPT.length());
+    }
+
+    @Test
+    public void testFramed() throws Exception {
+        SessionOutput.install();
+        server = new RequestServer(RequestServer.hotEndpoints(), new Interpreter());
+        String unframedInfo = answer("(jde.util.Completion.getClassInfo \"javax.swing.JTable\" 0)");
+
+        captured.reset();
+        server.run(new BufferedReader(new StringReader(
+            "(jde.util.RequestServer.setFramed t)\n"
+            + "(jde.util.Completion.getClassInfo \"javax.swing.JTable\" 0)\n"
+            + "print(\"hi\");\n"
+            + "(jde.util.RequestServer.setFramed nil)\n"
+            + "(jde.util.Completion.isAncestorOf \"java.util.List\" \"java.util.ArrayList\")\n")));
+        String all = captured.toString("UTF-8");
+        assertTrue(all, all.startsWith("bsh % "));
+        int tail = all.lastIndexOf("t\nbsh % t\nbsh % ");
+        assertEquals(all.length() - "t\nbsh % t\nbsh % ".length(), tail);
+
+        byte[] bytes = captured.toByteArray();
+        byte[] middle = java.util.Arrays.copyOfRange(bytes, "bsh % ".length(),
+                                                     bytes.length - "t\nbsh % t\nbsh % ".length());
+        String[] responses = unframe(middle);
+        assertEquals(3, responses.length);
+        assertEquals("1:t\n", responses[0]);
+        assertTrue(responses[1], Integer.parseInt(responses[1].substring(0, responses[1].indexOf(':'))) > 1);
+        assertEquals(unframedInfo, responses[1].substring(responses[1].indexOf(':') + 1));
+        assertEquals("1:hi\n", responses[2]);
+    }
+}
+
+// End of RequestServerTest.java
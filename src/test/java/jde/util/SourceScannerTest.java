@@ -0,0 +1,156 @@
+/*
+ *    SourceScannerTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the extraction of parameter names and docs by
+ * {@link SourceScanner} and their round trip through a
+ * {@link SourceIndex} file.
+ */
+public class SourceScannerTest {
+
+    private static final String SOURCE =
+        "package a.b;\n"
+        + "import java.util.*;\n"
+        + "/** The class. */\n"
+        + "@SuppressWarnings(value = {\"x\"})\n"
+        + "public class Foo<T> {\n"
+        + "    /** Number of {@code Foo}s made. Not thread safe. */\n"
+        + "    static int count = new int[] {1, 2}.length;\n"
+        + "    /**\n"
+        + "     * Makes a Foo from a\n"
+        + "     * {@link java.util.Map map}.\n"
+        + "     * @param map the map\n"
+        + "     */\n"
+        + "    public Foo(Map<String, List<T>> map) { if (map == null) { } }\n"
+        + "    /** Puts <b>all</b>. */\n"
+        + "    @Deprecated\n"
+        + "    public <K> void putAll(final K key, @Nullable T[] values, int... more) "
+        + "throws java.io.IOException {\n"
+        + "        String s = \"}\"; char c = '{';\n"
+        + "    }\n"
+        + "    abstract java.util.Map.Entry<String, ?> entry(int index);\n"
+        + "    static class Inner implements Runnable {\n"
+        + "        public void run() { new Thread() { public void run() { } }; }\n"
+        + "    }\n"
+        + "}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testScan() {
+        Map<String, Map<String, String[]>> classes = SourceScanner.scan(SOURCE);
+        assertEquals(2, classes.size());
+
+        Map<String, String[]> foo = classes.get("a.b.Foo");
+        assertArrayEquals(new String[] {"", "Number of Foos made."}, foo.get("count"));
+        assertArrayEquals(new String[] {"map", "Makes a Foo from a map."}, foo.get("<init>(Map)"));
+        assertArrayEquals(new String[] {"key,values,more", "Puts all."},
+                          foo.get("putAll(K,T[],int[])"));
+        assertArrayEquals(new String[] {"index", ""}, foo.get("entry(int)"));
+        assertEquals(4, foo.size());
+
+        Map<String, String[]> inner = classes.get("a.b.Foo$Inner");
+        assertArrayEquals(new String[] {"", ""}, inner.get("run()"));
+        assertEquals(1, inner.size());
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        assertEquals("put(Object,Object)",
+                     SourceScanner.key("put", Map.class.getMethod("put", Object.class, Object.class)
+                                       .getParameterTypes()));
+        assertEquals("entry(Entry[],int[][])",
+                     SourceScanner.key("entry", new Class[] {Map.Entry[].class, int[][].class}));
+        assertEquals("size", SourceScanner.key("size", null));
+    }
+
+    private static void writeArchive(File archive) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+            out.putNextEntry(new ZipEntry("a/b/Foo.java"));
+            out.write(SOURCE.getBytes("UTF-8"));
+            out.closeEntry();
+        }
+    }
+
+    @Test
+    public void testIndexFile() throws Exception {
+        File archive = folder.newFile("foo-sources.jar");
+        writeArchive(archive);
+        File dir = folder.newFolder("index");
+
+        SourceIndex.IndexFile index = SourceIndex.load(archive, dir);
+        assertEquals(2, index.getClassNames().size());
+        assertArrayEquals(new String[] {"key,values,more", "Puts all."},
+                          index.read("a.b.Foo").get("putAll(K,T[],int[])"));
+        assertNull(index.read("a.b.Bar"));
+
+        // a second load reuses the index file
+        assertEquals(1, dir.list().length);
+        assertEquals(2, SourceIndex.load(archive, dir).getClassNames().size());
+        assertEquals(1, dir.list().length);
+    }
+
+    @Test
+    public void testSweep() throws Exception {
+        File kept = folder.newFile("kept-sources.jar");
+        writeArchive(kept);
+        File changed = folder.newFile("changed-sources.jar");
+        writeArchive(changed);
+        File gone = folder.newFile("gone-sources.jar");
+        writeArchive(gone);
+        File dir = folder.newFolder("index");
+        SourceIndex.load(kept, dir);
+        SourceIndex.load(changed, dir);
+        SourceIndex.load(gone, dir);
+        changed.setLastModified(changed.lastModified() - 10000);
+        gone.delete();
+
+        new FileOutputStream(new File(dir, "older-format.idx")).close();
+        File deadBuild = File.createTempFile("index", ".tmp", dir);
+        deadBuild.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000L);
+        File liveBuild = File.createTempFile("index", ".tmp", dir);
+
+        SourceIndex.sweep(dir);
+        String[] left = dir.list();
+        Arrays.sort(left);
+        assertEquals(2, left.length);
+        assertEquals(liveBuild.getName(), left[0]);
+        assertTrue(left[1], left[1].startsWith("kept-sources.jar-"));
+        assertEquals(2, SourceIndex.load(kept, dir).getClassNames().size());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *    TypeHierarchyTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the supertype queries of {@link TypeHierarchy}.
+ */
+public class TypeHierarchyTest {
+
+    @Test
+    public void testIsAssignable() throws Exception {
+        assertTrue(TypeHierarchy.isAssignable("java.util.List", "java.util.ArrayList"));
+        assertTrue(TypeHierarchy.isAssignable("java.lang.Object", "java.lang.Runnable"));
+        assertTrue(TypeHierarchy.isAssignable("java.lang.String", "java.lang.String"));
+        assertTrue(TypeHierarchy.isAssignable("java.lang.CharSequence[]", "java.lang.String[]"));
+        assertTrue(TypeHierarchy.isAssignable("java.lang.Cloneable", "int[]"));
+        assertFalse(TypeHierarchy.isAssignable("java.util.ArrayList", "java.util.List"));
+        assertFalse(TypeHierarchy.isAssignable("java.lang.String[]", "java.lang.Object[]"));
+    }
+
+    @Test
+    public void testSupertypes() throws Exception {
+        assertEquals("java.util.AbstractList",
+                     TypeHierarchy.supertypes("java.util.ArrayList").iterator().next());
+        assertTrue(TypeHierarchy.supertypes("java.util.ArrayList").contains("java.util.Collection"));
+    }
+
+    @Test
+    public void testCommonSupertype() throws Exception {
+        assertEquals("java.util.AbstractList",
+                     TypeHierarchy.findCommonSupertype("java.util.ArrayList", "java.util.LinkedList"));
+        assertEquals("java.lang.Number",
+                     TypeHierarchy.findCommonSupertype("java.lang.Integer", "java.lang.Long"));
+        assertEquals("java.util.Collection",
+                     TypeHierarchy.findCommonSupertype("java.util.List", "java.util.Set"));
+        assertEquals("java.util.List",
+                     TypeHierarchy.findCommonSupertype("java.util.List", "java.util.ArrayList"));
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testMissingClass() throws Exception {
+        TypeHierarchy.isAssignable("java.lang.Object", "no.such.Clazz");
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testMissingClassIsNotItself() throws Exception {
+        TypeHierarchy.isAssignable("no.such.Clazz", "no.such.Clazz");
+    }
+
+    @Test
+    public void testChangedClassIsReloaded() throws Exception {
+        File home = new File("target/test-jdee");
+        System.setProperty("jde.members.dir", new File(home, "members").getPath());
+        System.setProperty("jde.index.dir", new File(home, "index").getPath());
+        System.setProperty("jde.usage.dir", new File(home, "usage").getPath());
+        File dir = new File("target/test-hierarchy");
+        File classFile = new File(dir, "hierarchy/Changing.class");
+
+        SessionState previous = SessionState.bind(new SessionState(true));
+        try {
+            compile(dir, "");
+            JdeUtilities.setProjectValues("hierarchy", dir.getPath());
+            assertFalse(TypeHierarchy.isAssignable("java.lang.Runnable", "hierarchy.Changing"));
+
+            long stamp = classFile.lastModified();
+            compile(dir, "implements Runnable { public void run() {} ");
+            classFile.setLastModified(stamp + 2000);
+            assertTrue(TypeHierarchy.isAssignable("java.lang.Runnable", "hierarchy.Changing"));
+            assertTrue(TypeHierarchy.supertypes("hierarchy.Changing[]")
+                       .contains("java.lang.Runnable[]"));
+        } finally {
+            SessionState.bind(previous);
+        }
+    }
+
+    private static void compile(File dir, String body) throws IOException {
+        File source = new File(dir, "hierarchy/Changing.java");
+        source.getParentFile().mkdirs();
+        try (Writer out = new FileWriter(source)) {
+            out.write("package hierarchy; public class Changing " + body
+                      + (body.isEmpty() ? "{}" : "}"));
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, "-d", dir.getPath(), source.getPath()));
+    }
+}
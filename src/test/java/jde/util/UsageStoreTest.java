@@ -0,0 +1,94 @@
+/*
+ *    UsageStoreTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package jde.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the ranking, decay and bound of {@link UsageStore}.
+ */
+public class UsageStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRank() {
+        UsageStore store = new UsageStore(null, 10);
+        store.record("java.util.List");
+        List<String> names =
+            new ArrayList<>(Arrays.asList("java.awt.List", "a.List", "java.util.List"));
+        store.rank(names);
+        assertEquals(Arrays.asList("java.util.List", "java.awt.List", "a.List"), names);
+    }
+
+    @Test
+    public void testDecay() {
+        UsageStore store = new UsageStore(null, 10);
+        for (int i = 0; i < 3; i++) {
+            store.record("java.awt.List");
+        }
+        double before = store.getScore("java.awt.List");
+        for (int i = 0; i < UsageStore.HALF_LIFE; i++) {
+            store.record("java.util.List");
+        }
+        assertEquals(before / 2, store.getScore("java.awt.List"), 1e-9);
+        assertTrue(store.getScore("java.util.List") > store.getScore("java.awt.List"));
+    }
+
+    @Test
+    public void testCapacity() {
+        UsageStore store = new UsageStore(null, 3);
+        store.record("a.A");
+        store.record("a.A");
+        store.record("b.B");
+        store.record("c.C");
+        store.record("d.D");
+        assertEquals(3, store.size());
+        assertEquals(0, store.getScore("b.B"), 0);
+        assertTrue(store.getScore("a.A") > 0);
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        File file = new File(folder.getRoot(), "usage.txt");
+        UsageStore store = new UsageStore(file, 10);
+        store.record("java.util.List");
+        store.record("java.util.Map");
+        store.record("java.util.List");
+        // written later, not on every use
+        assertFalse(file.exists());
+        store.flush();
+
+        UsageStore reloaded = new UsageStore(file, 10);
+        assertEquals(store.getScore("java.util.List"), reloaded.getScore("java.util.List"), 1e-9);
+        assertEquals(store.getScore("java.util.Map"), reloaded.getScore("java.util.Map"), 1e-9);
+    }
+}